@@ -1,17 +1,21 @@
 package ru.hse.core;
 
 import org.joml.Matrix4f;
+import org.joml.Quaternionf;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
+import org.lwjgl.BufferUtils;
 import ru.hse.core.utils.Constants;
 import ru.hse.core.utils.Settings;
 import ru.hse.engine.Camera;
 import ru.hse.engine.MeshedItem;
 import ru.hse.engine.animation.AnimatedItem;
 import ru.hse.engine.animation.AnimatedFrame;
+import ru.hse.engine.animation.JointsEncoding;
 import ru.hse.engine.shadows.ShadowCascade;
 import ru.hse.engine.shadows.ShadowRenderer;
 import ru.hse.engine.utils.FrustumCullingFilter;
+import ru.hse.engine.utils.LevelOfDetailSelector;
 import ru.hse.engine.utils.Utils;
 import ru.hse.engine.utils.Window;
 import ru.hse.engine.wrappers.Scene;
@@ -20,10 +24,13 @@ import ru.hse.graphics.ShaderProgram;
 import ru.hse.graphics.Transformation;
 import ru.hse.graphics.lighting.DirectionalLight;
 import ru.hse.graphics.lighting.PointLight;
+import ru.hse.graphics.model.InstancedMesh;
+import ru.hse.graphics.model.JointsPalette;
 import ru.hse.graphics.model.Mesh;
 import ru.hse.graphics.model.Texture;
 import ru.hse.graphics.skybox.Skybox;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +50,8 @@ public class Renderer {
 
     private final FrustumCullingFilter frustumCullingFilter;
 
+    private final LevelOfDetailSelector levelOfDetailSelector;
+
     private ShaderProgram sceneShaderProgram;
     private ShaderProgram skyBoxShaderProgram;
 
@@ -52,12 +61,30 @@ public class Renderer {
 
     private final float specularPower;
 
+    private final JointsEncoding jointsEncoding;
+
+    private final FloatBuffer jointVectors;
+
+    private final Matrix4f jointMatrix;
+
+    private final Quaternionf jointRotation;
+
+    private JointsPalette jointsPalette;
+
+    private MeshedItem jointsUniformItem;
+
+    private boolean isJointsTruncationReported;
+
+    private boolean isJointsPaletteOverflowReported;
+
     /**
      * The class' constructor.
      */
     public Renderer() {
         frustumCullingFilter = new FrustumCullingFilter();
 
+        levelOfDetailSelector = new LevelOfDetailSelector();
+
         transformation = new Transformation();
 
         shadowRenderer = new ShadowRenderer();
@@ -65,6 +92,14 @@ public class Renderer {
         filteredItems = new ArrayList<>();
 
         specularPower = SETTINGS.getSpecularPower();
+
+        jointsEncoding = SETTINGS.getJointsEncoding();
+
+        jointVectors = BufferUtils.createFloatBuffer(Constants.MAX_JOINT_VECTORS * JointsEncoding.VECTOR_SIZE_FLOATS);
+
+        jointMatrix = new Matrix4f();
+
+        jointRotation = new Quaternionf();
     }
 
     /**
@@ -75,6 +110,8 @@ public class Renderer {
     public void init() throws Exception {
         shadowRenderer.init();
 
+        jointsPalette = new JointsPalette(jointsEncoding);
+
         setupSkyboxShader();
         setupSceneShader();
     }
@@ -97,6 +134,8 @@ public class Renderer {
             frustumCullingFilter.filter(scene.getGameInstancedMeshes());
         }
 
+        updateJointsPalette(scene);
+
         if (scene.isRenderShadows() && sceneChanged)
             shadowRenderer.render(window, scene, camera, transformation);
 
@@ -104,10 +143,65 @@ public class Renderer {
 
         window.updateProjectionMatrix();
 
+        levelOfDetailSelector.update(window.getProjectionMatrix(), camera.getViewMatrix(), window.getHeight());
+
         renderScene(window, camera, scene);
         renderSkybox(window, camera, scene);
     }
 
+    /**
+     * Method for filling the joints palette shared by the meshes and the passes of the frame. Every visible skinned
+     * item drawn instanced and not played from an animation texture has its current frame encoded into the palette
+     * once, and the meshes drawing the item read the joints at the item's joints offset. Items which do not fit into
+     * the palette are drawn in the bind pose, which is reported once.
+     *
+     * @param scene scene to render
+     */
+    private void updateJointsPalette(Scene scene) {
+        jointsPalette.clear();
+
+        Map<InstancedMesh, List<MeshedItem>> mapMeshes = scene.getGameInstancedMeshes();
+
+        for (List<MeshedItem> items : mapMeshes.values())
+            for (MeshedItem item : items)
+                if (item instanceof AnimatedItem)
+                    ((AnimatedItem) item).setJointsOffset(-1);
+
+        for (Map.Entry<InstancedMesh, List<MeshedItem>> entry : mapMeshes.entrySet()) {
+            InstancedMesh mesh = entry.getKey();
+
+            if (!mesh.getVertexFormat().isSkinned())
+                continue;
+
+            for (MeshedItem item : entry.getValue()) {
+                if (!(item instanceof AnimatedItem) || !item.isInsideFrustum())
+                    continue;
+
+                AnimatedItem animatedItem = (AnimatedItem) item;
+
+                if (animatedItem.getJointsOffset() >= 0 || mesh.isAnimationTextureUsed(animatedItem))
+                    continue;
+
+                AnimatedFrame frame = animatedItem.getCurrentFrame();
+
+                if (!jointsPalette.fits(frame.getJointsAmount())) {
+                    if (!isJointsPaletteOverflowReported) {
+                        System.out.println("Joints palette is full, some animated items are drawn in the bind pose.");
+
+                        isJointsPaletteOverflowReported = true;
+                    }
+
+                    continue;
+                }
+
+                animatedItem.setJointsOffset(jointsPalette.add(frame.getJointMatrices(), frame.getJointsAmount()));
+            }
+        }
+
+        if (jointsPalette.getJointsAmount() > 0)
+            jointsPalette.upload(InstancedMesh.JOINTS_PALETTE_TEXTURE_UNIT);
+    }
+
     /**
      * Method for skybox shader setup.
      *
@@ -161,7 +255,10 @@ public class Renderer {
         sceneShaderProgram.createUniform("cascadeFarPlanes", Constants.CASCADES_NUMBER);
         sceneShaderProgram.createUniform("renderShadow");
 
-        sceneShaderProgram.createUniform("jointsMatrix");
+        sceneShaderProgram.createUniform("jointVectors");
+        sceneShaderProgram.createUniform("jointsEncoding");
+        sceneShaderProgram.createUniform("jointsPalette");
+        sceneShaderProgram.createUniform("animationTexture");
 
         sceneShaderProgram.createUniform("isInstanced");
         sceneShaderProgram.createUniform("numCols");
@@ -261,9 +358,14 @@ public class Renderer {
         for (int i = 0; i < Constants.CASCADES_NUMBER; i++)
             sceneShaderProgram.setUniform("shadowMap_" + i, start + i);
 
+        sceneShaderProgram.setUniform("jointsEncoding", jointsEncoding.ordinal());
+        sceneShaderProgram.setUniform("jointsPalette", InstancedMesh.JOINTS_PALETTE_TEXTURE_UNIT);
+        sceneShaderProgram.setUniform("animationTexture", InstancedMesh.ANIMATION_TEXTURE_UNIT);
+
         sceneShaderProgram.setUniform("renderShadow", scene.isRenderShadows() ? 1 : 0);
 
         renderMeshes(scene);
+        renderInstancedMeshes(scene, viewMatrix);
 
         sceneShaderProgram.unbind();
     }
@@ -276,6 +378,8 @@ public class Renderer {
     private void renderMeshes(Scene scene) {
         sceneShaderProgram.setUniform("isInstanced", 0);
 
+        jointsUniformItem = null;
+
         Map<Mesh, List<MeshedItem>> mapMeshes = scene.getGameMeshes();
 
         for (Mesh mesh : mapMeshes.keySet()) {
@@ -290,19 +394,101 @@ public class Renderer {
 
             shadowRenderer.bindTextures(GL_TEXTURE2);
 
-            mesh.renderList(mapMeshes.get(mesh), (MeshedItem gameItem) -> {
-                sceneShaderProgram.setUniform("selectedNonInstanced", gameItem.isSelected() ? 1.0f : 0.0f);
+            for (int level = 0; level < mesh.getLevelsAmount(); level++) {
+                List<MeshedItem> levelItems = levelOfDetailSelector.filter(mesh, level, mapMeshes.get(mesh));
 
-                Matrix4f modelMatrix = transformation.buildModelMatrix(gameItem);
-                sceneShaderProgram.setUniform("modelNonInstancedMatrix", modelMatrix);
+                if (!levelItems.isEmpty())
+                    mesh.getLevel(level).renderList(levelItems, this::setItemUniforms);
+            }
+        }
+    }
 
-                if (gameItem instanceof AnimatedItem) {
-                    AnimatedItem animatedItem = (AnimatedItem) gameItem;
-                    AnimatedFrame frame = animatedItem.getCurrentAnimation().getCurrentFrame();
-                    sceneShaderProgram.setUniform("jointsMatrix", frame.getJointMatrices());
-                }
-            });
+    /**
+     * Method for rendering instanced scene meshes, skinned items of a mesh are drawn together with their joint
+     * matrices in the mesh's palette.
+     *
+     * @param scene      scene to render
+     * @param viewMatrix camera's view matrix
+     */
+    private void renderInstancedMeshes(Scene scene, Matrix4f viewMatrix) {
+        sceneShaderProgram.setUniform("isInstanced", 1);
+
+        Map<InstancedMesh, List<MeshedItem>> mapMeshes = scene.getGameInstancedMeshes();
+
+        for (InstancedMesh mesh : mapMeshes.keySet()) {
+            sceneShaderProgram.setUniform("material", mesh.getMaterial());
+
+            Texture texture = mesh.getMaterial().getTexture();
+
+            if (texture != null) {
+                sceneShaderProgram.setUniform("numCols", texture.getNumCols());
+                sceneShaderProgram.setUniform("numRows", texture.getNumRows());
+            }
+
+            shadowRenderer.bindTextures(GL_TEXTURE2);
+
+            for (int level = 0; level < mesh.getLevelsAmount(); level++) {
+                List<MeshedItem> levelItems = levelOfDetailSelector.filter(mesh, level, mapMeshes.get(mesh));
+
+                if (!levelItems.isEmpty())
+                    mesh.getLevel(level).renderListInstanced(levelItems, transformation, viewMatrix);
+            }
+        }
+    }
+
+    /**
+     * Method for setting uniforms of a scene item, joints of an animated item are set once for all its meshes.
+     *
+     * @param gameItem item to render
+     */
+    private void setItemUniforms(MeshedItem gameItem) {
+        sceneShaderProgram.setUniform("selectedNonInstanced", gameItem.isSelected() ? 1.0f : 0.0f);
+
+        Matrix4f modelMatrix = transformation.buildModelMatrix(gameItem);
+        sceneShaderProgram.setUniform("modelNonInstancedMatrix", modelMatrix);
+
+        if (gameItem instanceof AnimatedItem && gameItem != jointsUniformItem) {
+            AnimatedItem animatedItem = (AnimatedItem) gameItem;
+            AnimatedFrame frame = animatedItem.getCurrentFrame();
+            setJointsUniform(frame);
+
+            jointsUniformItem = gameItem;
+        }
+    }
+
+    /**
+     * Method for setting joints of an animated frame encoded with the joints encoding of the settings, joints which do
+     * not fit into the uniform array are left out and reported once.
+     *
+     * @param frame animated frame
+     */
+    private void setJointsUniform(AnimatedFrame frame) {
+        int jointsAmount = frame.getJointsAmount();
+        int maxJointsAmount = jointsEncoding.getMaxJointsAmount(Constants.MAX_JOINT_VECTORS);
+
+        if (jointsAmount > maxJointsAmount) {
+            if (!isJointsTruncationReported) {
+                System.out.printf("Animated item has %d joints, only %d of them fit into the %s joints encoding.%n",
+                        jointsAmount, maxJointsAmount, jointsEncoding.name().toLowerCase());
+
+                isJointsTruncationReported = true;
+            }
+
+            jointsAmount = maxJointsAmount;
+        } else if (jointsEncoding == JointsEncoding.MATRIX) {
+            // Joint matrices are passed as they are
+            sceneShaderProgram.setVectorArrayUniform("jointVectors", frame.getJointMatrices());
+
+            return;
         }
+
+        jointsEncoding.encode(frame.getJointMatrices(), jointsAmount, jointVectors, 0, jointMatrix, jointRotation);
+
+        jointVectors.limit(jointsAmount * jointsEncoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS);
+
+        sceneShaderProgram.setVectorArrayUniform("jointVectors", jointVectors);
+
+        jointVectors.clear();
     }
 
     /**
@@ -350,6 +536,9 @@ public class Renderer {
         if (shadowRenderer != null) {
             shadowRenderer.cleanup();
         }
+        if (jointsPalette != null) {
+            jointsPalette.cleanUp();
+        }
         if (skyBoxShaderProgram != null) {
             skyBoxShaderProgram.cleanup();
         }
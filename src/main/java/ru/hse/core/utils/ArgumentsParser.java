@@ -5,6 +5,7 @@ import org.joml.Vector4f;
 import ru.hse.core.utils.exceptions.CommandLineArgumentsException;
 import ru.hse.core.utils.exceptions.InvalidSettingException;
 import ru.hse.core.utils.exceptions.SettingsFileException;
+import ru.hse.engine.animation.JointsEncoding;
 import ru.hse.graphics.lighting.PointLight;
 
 import java.io.IOException;
@@ -20,7 +21,9 @@ public class ArgumentsParser {
     private static final Settings SETTINGS = Settings.getInstance();
 
     private static final String[] flags = {"-al", "-sl", "-ld", "-lc", "-li", "-cla", "-afps", "-cp", "-cr", "-sp",
-            "-vsync", "-st", "-anim", "-ptm", "-ptt", "-scale", "-skscale", "-sc", "-pts", "-plc", "-plp"};
+            "-vsync", "-st", "-anim", "-ptm", "-ptt", "-scale", "-skscale", "-sc", "-pts", "-plc", "-plp",
+            "-bc", "-bp", "-ac", "-as", "-acmp", "-tmb", "-tms", "-tc", "-nmd", "-mm", "-mo", "-lpe", "-afd",
+            "-aspd", "-ipd", "-atex", "-je"};
 
     private static final int MAXIMAL_ARGUMENTS_AMOUNT = flags.length;
 
@@ -148,6 +151,40 @@ public class ArgumentsParser {
             else
                 throw new CommandLineArgumentsException("No light colors set for point lights.");
         }
+        if (settings.containsKey("-bc"))
+            SETTINGS.setBakeCacheEnabled(createBoolean(settings.get("-bc")));
+        if (settings.containsKey("-bp"))
+            SETTINGS.setBakingParallelism(Integer.parseInt(settings.get("-bp")));
+        if (settings.containsKey("-ac"))
+            SETTINGS.setAnimationClips(settings.get("-ac").split(","));
+        if (settings.containsKey("-as"))
+            SETTINGS.setAnimationSampled(createBoolean(settings.get("-as")));
+        if (settings.containsKey("-acmp"))
+            SETTINGS.setAnimationCompressed(createBoolean(settings.get("-acmp")));
+        if (settings.containsKey("-tmb"))
+            SETTINGS.setTextureMemoryBudget(Integer.parseInt(settings.get("-tmb")));
+        if (settings.containsKey("-tms"))
+            SETTINGS.setMaximalTextureSize(Integer.parseInt(settings.get("-tms")));
+        if (settings.containsKey("-tc"))
+            SETTINGS.setTextureCacheEnabled(createBoolean(settings.get("-tc")));
+        if (settings.containsKey("-nmd"))
+            SETTINGS.setNativeMemoryDebugEnabled(createBoolean(settings.get("-nmd")));
+        if (settings.containsKey("-mm"))
+            SETTINGS.setModelFileMapped(createBoolean(settings.get("-mm")));
+        if (settings.containsKey("-mo"))
+            SETTINGS.setMeshOptimized(createBoolean(settings.get("-mo")));
+        if (settings.containsKey("-lpe"))
+            SETTINGS.setLevelOfDetailPixelError(Float.parseFloat(settings.get("-lpe")));
+        if (settings.containsKey("-afd"))
+            SETTINGS.setAnimationFadeDuration(Float.parseFloat(settings.get("-afd")));
+        if (settings.containsKey("-aspd"))
+            SETTINGS.setAnimationSpeed(Float.parseFloat(settings.get("-aspd")));
+        if (settings.containsKey("-ipd"))
+            SETTINGS.setInstancesPerDraw(Integer.parseInt(settings.get("-ipd")));
+        if (settings.containsKey("-atex"))
+            SETTINGS.setAnimationTextureEnabled(createBoolean(settings.get("-atex")));
+        if (settings.containsKey("-je"))
+            SETTINGS.setJointsEncoding(createJointsEncoding(settings.get("-je")));
     }
 
     /**
@@ -168,36 +205,54 @@ public class ArgumentsParser {
     }
 
     /**
-     * Create command line from existing settings.
+     * Create command line from existing settings, every value is followed by a space.
      *
      * @return settings as a string in command line format
      */
     public static String createCommandLine() {
         String commandLine = "";
 
-        commandLine += "-al " + SETTINGS.getAmbientLightAsString();
-        commandLine += "-sl " + SETTINGS.getSkyboxLightAsString();
-        commandLine += "-ld " + SETTINGS.getLightDirectionAsString();
-        commandLine += "-lc " + SETTINGS.getLightColorAsString();
-        commandLine += "-li " + SETTINGS.getLightIntensity();
-        commandLine += "-cla " + SETTINGS.getCurrentLightAngle();
-        commandLine += "-afps " + SETTINGS.getAnimationFramesPerSecond();
-        commandLine += "-cp " + SETTINGS.getCameraPositionAsString();
-        commandLine += "-cr " + SETTINGS.getCameraRotationAsString();
-        commandLine += "-sp " + SETTINGS.getSpecularPower();
-        commandLine += "-vsync " + SETTINGS.isVSyncEnabled();
-        commandLine += "-st " + SETTINGS.getScreenshotType();
-        commandLine += "-anim " + SETTINGS.isModelAnimated();
-        commandLine += "-ptm " + SETTINGS.getPathToModel();
-        commandLine += "-ptt " + SETTINGS.getPathToTexture();
-        commandLine += "-scale " + SETTINGS.getScale();
-        commandLine += "-skscale " + SETTINGS.getSkyboxScale();
-        commandLine += "-sc " + SETTINGS.getSkyboxColor();
-        commandLine += "-pts " + SETTINGS.getSkyboxPath();
+        commandLine += "-al " + SETTINGS.getAmbientLightAsString() + " ";
+        commandLine += "-sl " + SETTINGS.getSkyboxLightAsString() + " ";
+        commandLine += "-ld " + SETTINGS.getLightDirectionAsString() + " ";
+        commandLine += "-lc " + SETTINGS.getLightColorAsString() + " ";
+        commandLine += "-li " + SETTINGS.getLightIntensity() + " ";
+        commandLine += "-cla " + SETTINGS.getCurrentLightAngle() + " ";
+        commandLine += "-afps " + SETTINGS.getAnimationFramesPerSecond() + " ";
+        commandLine += "-cp " + SETTINGS.getCameraPositionAsString() + " ";
+        commandLine += "-cr " + SETTINGS.getCameraRotationAsString() + " ";
+        commandLine += "-sp " + SETTINGS.getSpecularPower() + " ";
+        commandLine += "-vsync " + SETTINGS.isVSyncEnabled() + " ";
+        commandLine += "-st " + SETTINGS.getScreenshotType() + " ";
+        commandLine += "-anim " + SETTINGS.isModelAnimated() + " ";
+        commandLine += "-ptm " + SETTINGS.getPathToModel() + " ";
+        commandLine += "-ptt " + SETTINGS.getPathToTexture() + " ";
+        commandLine += "-scale " + SETTINGS.getScale() + " ";
+        commandLine += "-skscale " + SETTINGS.getSkyboxScale() + " ";
+        commandLine += "-sc " + SETTINGS.getSkyboxColorAsString() + " ";
+        commandLine += "-pts " + SETTINGS.getSkyboxPath() + " ";
         if (SETTINGS.getPointLights().length != 0) {
-            commandLine += "-plp " + SETTINGS.getPointLightPositions();
-            commandLine += "-plc " + SETTINGS.getPointLightColors();
+            commandLine += "-plp " + SETTINGS.getPointLightPositions() + " ";
+            commandLine += "-plc " + SETTINGS.getPointLightColors() + " ";
         }
+        commandLine += "-bc " + SETTINGS.isBakeCacheEnabled() + " ";
+        commandLine += "-bp " + SETTINGS.getBakingParallelism() + " ";
+        if (SETTINGS.getAnimationClips().length != 0)
+            commandLine += "-ac " + SETTINGS.getAnimationClipsAsString() + " ";
+        commandLine += "-as " + SETTINGS.isAnimationSampled() + " ";
+        commandLine += "-acmp " + SETTINGS.isAnimationCompressed() + " ";
+        commandLine += "-tmb " + SETTINGS.getTextureMemoryBudget() + " ";
+        commandLine += "-tms " + SETTINGS.getMaximalTextureSize() + " ";
+        commandLine += "-tc " + SETTINGS.isTextureCacheEnabled() + " ";
+        commandLine += "-nmd " + SETTINGS.isNativeMemoryDebugEnabled() + " ";
+        commandLine += "-mm " + SETTINGS.isModelFileMapped() + " ";
+        commandLine += "-mo " + SETTINGS.isMeshOptimized() + " ";
+        commandLine += "-lpe " + SETTINGS.getLevelOfDetailPixelError() + " ";
+        commandLine += "-afd " + SETTINGS.getAnimationFadeDuration() + " ";
+        commandLine += "-aspd " + SETTINGS.getAnimationSpeed() + " ";
+        commandLine += "-ipd " + SETTINGS.getInstancesPerDraw() + " ";
+        commandLine += "-atex " + SETTINGS.isAnimationTextureEnabled() + " ";
+        commandLine += "-je " + SETTINGS.getJointsEncoding().name().toLowerCase() + " ";
 
         return commandLine;
     }
@@ -280,6 +335,21 @@ public class ArgumentsParser {
         throw new InvalidSettingException("Invalid boolean value.");
     }
 
+    /**
+     * Create joints encoding from string.
+     *
+     * @param cmd command string given, "matrix", "affine" or "dual_quaternion"
+     * @return joints encoding
+     * @throws InvalidSettingException invalid setting error
+     */
+    private static JointsEncoding createJointsEncoding(String cmd) throws InvalidSettingException {
+        for (JointsEncoding jointsEncoding : JointsEncoding.values())
+            if (cmd.equalsIgnoreCase(jointsEncoding.name()))
+                return jointsEncoding;
+
+        throw new InvalidSettingException("Invalid joints encoding.");
+    }
+
     /**
      * Utility method to create PointLights array from given strings.
      *
@@ -16,7 +16,23 @@ public class Constants {
 
     public final static String WINDOW_TITLE = "Skeletal Animation Visualizer";
 
-    public final static int MAXIMAL_JOINTS_AMOUNT = 300;
-
     public final static int CASCADES_NUMBER = 3;
+
+    public final static int MAX_JOINT_VECTORS = 600;
+
+    public final static String BAKE_CACHE_DIRECTORY = "bake_cache";
+
+    public final static String TEXTURE_CACHE_DIRECTORY = "texture_cache";
+
+    public final static int BAKING_FRAMES_PER_TASK = 8;
+
+    public final static double DEFAULT_TICKS_PER_SECOND = 25.0;
+
+    public final static float ANIMATION_POSITION_TOLERANCE = 0.001f;
+
+    public final static float ANIMATION_ROTATION_TOLERANCE = 0.0005f;
+
+    public final static float ANIMATION_SCALING_TOLERANCE = 0.0005f;
+
+    public final static double UPLOAD_TIME_BUDGET = 0.004;
 }
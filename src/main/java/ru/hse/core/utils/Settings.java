@@ -3,6 +3,7 @@ package ru.hse.core.utils;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 import ru.hse.core.utils.exceptions.InvalidSettingException;
+import ru.hse.engine.animation.JointsEncoding;
 import ru.hse.graphics.lighting.PointLight;
 
 public class Settings {
@@ -51,6 +52,40 @@ public class Settings {
 
     private PointLight[] pointLights = {};
 
+    private boolean isBakeCacheEnabled = true;
+
+    private int bakingParallelism = Runtime.getRuntime().availableProcessors();
+
+    private String[] animationClips = {};
+
+    private boolean isAnimationSampled = true;
+
+    private boolean isAnimationCompressed = false;
+
+    private int textureMemoryBudget = 512;
+
+    private int maximalTextureSize = 4096;
+
+    private boolean isTextureCacheEnabled = true;
+
+    private boolean isNativeMemoryDebugEnabled = false;
+
+    private boolean isModelFileMapped = true;
+
+    private boolean isMeshOptimized = true;
+
+    private float levelOfDetailPixelError = 1.0f;
+
+    private float animationFadeDuration = 0.25f;
+
+    private float animationSpeed = 1.0f;
+
+    private int instancesPerDraw = 128;
+
+    private boolean isAnimationTextureEnabled = false;
+
+    private JointsEncoding jointsEncoding = JointsEncoding.MATRIX;
+
     public Vector3f getAmbientLight() {
         return ambientLight;
     }
@@ -290,6 +325,10 @@ public class Settings {
         return skyboxColor;
     }
 
+    public String getSkyboxColorAsString() {
+        return skyboxColor.x + "," + skyboxColor.y + "," + skyboxColor.z + "," + skyboxColor.w;
+    }
+
     public void setSkyboxColor(Vector4f skyboxColor) throws InvalidSettingException {
         if (skyboxColor.x > 1.0f || skyboxColor.x < 0.0f ||
                 skyboxColor.y > 1.0f || skyboxColor.y < 0.0f ||
@@ -299,4 +338,165 @@ public class Settings {
 
         this.skyboxColor = skyboxColor;
     }
+
+    public boolean isBakeCacheEnabled() {
+        return isBakeCacheEnabled;
+    }
+
+    public void setBakeCacheEnabled(boolean bakeCacheEnabled) {
+        isBakeCacheEnabled = bakeCacheEnabled;
+    }
+
+    public int getBakingParallelism() {
+        return bakingParallelism;
+    }
+
+    public void setBakingParallelism(int bakingParallelism) throws InvalidSettingException {
+        if (bakingParallelism < 1)
+            throw new InvalidSettingException("Invalid baking parallelism value.");
+
+        this.bakingParallelism = bakingParallelism;
+    }
+
+    public String[] getAnimationClips() {
+        return animationClips;
+    }
+
+    public String getAnimationClipsAsString() {
+        return String.join(",", animationClips);
+    }
+
+    public void setAnimationClips(String[] animationClips) {
+        this.animationClips = animationClips;
+    }
+
+    public boolean isAnimationSampled() {
+        return isAnimationSampled;
+    }
+
+    public void setAnimationSampled(boolean animationSampled) {
+        isAnimationSampled = animationSampled;
+    }
+
+    public boolean isAnimationCompressed() {
+        return isAnimationCompressed;
+    }
+
+    public void setAnimationCompressed(boolean animationCompressed) {
+        isAnimationCompressed = animationCompressed;
+    }
+
+    public int getTextureMemoryBudget() {
+        return textureMemoryBudget;
+    }
+
+    public void setTextureMemoryBudget(int textureMemoryBudget) throws InvalidSettingException {
+        if (textureMemoryBudget < 0)
+            throw new InvalidSettingException("Invalid texture memory budget value.");
+
+        this.textureMemoryBudget = textureMemoryBudget;
+    }
+
+    public int getMaximalTextureSize() {
+        return maximalTextureSize;
+    }
+
+    public void setMaximalTextureSize(int maximalTextureSize) throws InvalidSettingException {
+        if (maximalTextureSize < 0)
+            throw new InvalidSettingException("Invalid maximal texture size value.");
+
+        this.maximalTextureSize = maximalTextureSize;
+    }
+
+    public boolean isTextureCacheEnabled() {
+        return isTextureCacheEnabled;
+    }
+
+    public void setTextureCacheEnabled(boolean textureCacheEnabled) {
+        isTextureCacheEnabled = textureCacheEnabled;
+    }
+
+    public boolean isNativeMemoryDebugEnabled() {
+        return isNativeMemoryDebugEnabled;
+    }
+
+    public void setNativeMemoryDebugEnabled(boolean nativeMemoryDebugEnabled) {
+        isNativeMemoryDebugEnabled = nativeMemoryDebugEnabled;
+    }
+
+    public boolean isModelFileMapped() {
+        return isModelFileMapped;
+    }
+
+    public void setModelFileMapped(boolean modelFileMapped) {
+        isModelFileMapped = modelFileMapped;
+    }
+
+    public boolean isMeshOptimized() {
+        return isMeshOptimized;
+    }
+
+    public void setMeshOptimized(boolean meshOptimized) {
+        isMeshOptimized = meshOptimized;
+    }
+
+    public float getLevelOfDetailPixelError() {
+        return levelOfDetailPixelError;
+    }
+
+    public void setLevelOfDetailPixelError(float levelOfDetailPixelError) throws InvalidSettingException {
+        if (levelOfDetailPixelError < 0.0f)
+            throw new InvalidSettingException("Invalid level of detail pixel error.");
+
+        this.levelOfDetailPixelError = levelOfDetailPixelError;
+    }
+
+    public float getAnimationFadeDuration() {
+        return animationFadeDuration;
+    }
+
+    public void setAnimationFadeDuration(float animationFadeDuration) throws InvalidSettingException {
+        if (animationFadeDuration < 0.0f)
+            throw new InvalidSettingException("Invalid animation fade duration.");
+
+        this.animationFadeDuration = animationFadeDuration;
+    }
+
+    public float getAnimationSpeed() {
+        return animationSpeed;
+    }
+
+    public void setAnimationSpeed(float animationSpeed) throws InvalidSettingException {
+        if (animationSpeed < 0.0f)
+            throw new InvalidSettingException("Invalid animation speed.");
+
+        this.animationSpeed = animationSpeed;
+    }
+
+    public int getInstancesPerDraw() {
+        return instancesPerDraw;
+    }
+
+    public void setInstancesPerDraw(int instancesPerDraw) throws InvalidSettingException {
+        if (instancesPerDraw < 0)
+            throw new InvalidSettingException("Invalid instances per draw amount.");
+
+        this.instancesPerDraw = instancesPerDraw;
+    }
+
+    public boolean isAnimationTextureEnabled() {
+        return isAnimationTextureEnabled;
+    }
+
+    public void setAnimationTextureEnabled(boolean animationTextureEnabled) {
+        isAnimationTextureEnabled = animationTextureEnabled;
+    }
+
+    public JointsEncoding getJointsEncoding() {
+        return jointsEncoding;
+    }
+
+    public void setJointsEncoding(JointsEncoding jointsEncoding) {
+        this.jointsEncoding = jointsEncoding;
+    }
 }
@@ -7,11 +7,11 @@ import ru.hse.core.utils.ArgumentsParser;
 import ru.hse.core.utils.Constants;
 import ru.hse.core.utils.Settings;
 import ru.hse.engine.animation.AnimatedItem;
-import ru.hse.engine.animation.Animation;
-import ru.hse.engine.loaders.AnimatedMeshLoader;
-import ru.hse.engine.loaders.StaticMeshLoader;
-import ru.hse.engine.utils.AnimationTimer;
+import ru.hse.engine.loaders.ModelLoader;
 import ru.hse.engine.utils.MouseInput;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.engine.utils.TextureCache;
+import ru.hse.engine.utils.UploadQueue;
 import ru.hse.engine.utils.screenshots.ScreenCapture;
 import ru.hse.engine.utils.Window;
 import ru.hse.engine.wrappers.Scene;
@@ -27,16 +27,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.lwjgl.glfw.GLFW.*;
 
 public class AnimatorLogic implements Logic {
     private static final Settings SETTINGS = Settings.getInstance();
 
-    private final AnimationTimer timer;
-
     private final Camera camera;
 
     private final Renderer renderer;
@@ -45,9 +43,15 @@ public class AnimatorLogic implements Logic {
 
     private final Vector3f cameraPositionIncrement;
 
-    private final double timePerAnimationFrame;
+    private final UploadQueue uploadQueue;
+
+    private final ModelLoader modelLoader;
+
+    private CompletableFuture<MeshedItem> modelLoading;
+
+    private MeshedItem meshedItem;
 
-    private Animation animation;
+    private AnimatedItem animatedItem;
 
     private Scene scene;
 
@@ -56,6 +60,12 @@ public class AnimatorLogic implements Logic {
 
     private boolean isFirstTime;
     private boolean sceneChanged;
+    private boolean nextAnimationRequested;
+    private boolean playbackToggleRequested;
+    private boolean loopToggleRequested;
+    private boolean reloadRequested;
+
+    private boolean memoryUsageRequested;
 
     public AnimatorLogic() {
         cameraPositionIncrement = new Vector3f(0.0f, 0.0f, 0.0f);
@@ -71,9 +81,9 @@ public class AnimatorLogic implements Logic {
 
         isFirstTime = true;
 
-        timePerAnimationFrame = 1.0 / SETTINGS.getAnimationFramesPerSecond();
+        uploadQueue = new UploadQueue();
 
-        timer = new AnimationTimer();
+        modelLoader = new ModelLoader(uploadQueue);
     }
 
     @Override
@@ -82,19 +92,6 @@ public class AnimatorLogic implements Logic {
 
         scene = new Scene();
 
-        MeshedItem item;
-
-        if (SETTINGS.isModelAnimated()) {
-            item = AnimatedMeshLoader.loadAnimatedItem(SETTINGS.getPathToModel(), SETTINGS.getPathToTexture());
-
-            animation = ((AnimatedItem) item).getCurrentAnimation();
-        } else
-            item = new MeshedItem(StaticMeshLoader.load(SETTINGS.getPathToModel(), SETTINGS.getPathToTexture()));
-
-        item.setScale(SETTINGS.getScale());
-
-        scene.setMeshItems(new MeshedItem[]{item});
-
         scene.setRenderShadows(true);
 
         Skybox skyBox = new Skybox(SETTINGS.getSkyboxPath(), SETTINGS.getSkyboxColor());
@@ -108,7 +105,47 @@ public class AnimatorLogic implements Logic {
 
         screenCapture.initialize(window);
 
-        timer.init();
+        loadModel();
+    }
+
+    private void loadModel() {
+        if (modelLoading == null)
+            modelLoading = modelLoader.load(SETTINGS.getPathToModel(), SETTINGS.getPathToTexture(),
+                    SETTINGS.isModelAnimated());
+    }
+
+    private void updateModel() {
+        if (uploadQueue.process(Constants.UPLOAD_TIME_BUDGET))
+            sceneChanged = true;
+
+        if (modelLoading == null || !modelLoading.isDone())
+            return;
+
+        try {
+            setModel(modelLoading.join());
+        } catch (CompletionException e) {
+            System.out.println("Unable to load model: " + e.getCause().getMessage());
+        }
+
+        modelLoading = null;
+    }
+
+    private void setModel(MeshedItem item) {
+        if (meshedItem != null) {
+            scene.removeMeshItem(meshedItem);
+
+            for (Mesh mesh : meshedItem.getMeshes())
+                mesh.cleanUp();
+        }
+
+        item.setScale(SETTINGS.getScale());
+
+        scene.setMeshItems(new MeshedItem[]{item});
+
+        meshedItem = item;
+        animatedItem = item instanceof AnimatedItem ? (AnimatedItem) item : null;
+
+        sceneChanged = true;
     }
 
     private void setupLights() {
@@ -173,21 +210,53 @@ public class AnimatorLogic implements Logic {
             lightAngleIncrement = 0;
         }
         if (window.isKeyPressed(GLFW_KEY_SPACE)) {
-            if (SETTINGS.isModelAnimated()) {
+            if (animatedItem != null && !playbackToggleRequested) {
+                sceneChanged = true;
+
+                animatedItem.getPlayer().toggle();
+            }
+
+            playbackToggleRequested = true;
+        } else
+            playbackToggleRequested = false;
+        if (window.isKeyPressed(GLFW_KEY_L)) {
+            if (animatedItem != null && !loopToggleRequested) {
                 sceneChanged = true;
 
-                float elapsedTime = timer.getElapsedTime();
+                animatedItem.getPlayer().setLooped(!animatedItem.getPlayer().isLooped());
 
-                if (animation != null && timePerAnimationFrame > 0 && elapsedTime >= timePerAnimationFrame) {
-                    timer.updateLastLoopTime();
+                System.out.println("Animation looping " + (animatedItem.getPlayer().isLooped() ? "on." : "off."));
+            }
 
-                    animation.nextFrame();
-                } else if (animation != null)
-                    animation.nextFrame();
+            loopToggleRequested = true;
+        } else
+            loopToggleRequested = false;
+        if (window.isKeyPressed(GLFW_KEY_N)) {
+            if (animatedItem != null && !nextAnimationRequested) {
+                sceneChanged = true;
+
+                animatedItem.nextAnimation();
             }
-        }
+
+            nextAnimationRequested = true;
+        } else
+            nextAnimationRequested = false;
+        if (window.isKeyPressed(GLFW_KEY_R)) {
+            if (!reloadRequested)
+                loadModel();
+
+            reloadRequested = true;
+        } else
+            reloadRequested = false;
         if (window.isKeyPressed(GLFW_KEY_P))
             screenCapture.run();
+        if (window.isKeyPressed(GLFW_KEY_M)) {
+            if (!memoryUsageRequested)
+                NativeMemory.printUsage();
+
+            memoryUsageRequested = true;
+        } else
+            memoryUsageRequested = false;
         if (window.isKeyPressed(GLFW_KEY_C)) {
             try {
                 saveSettings();
@@ -205,6 +274,9 @@ public class AnimatorLogic implements Logic {
 
     @Override
     public void update(float interval, MouseInput mouseInput) {
+        if (animatedItem != null)
+            animatedItem.update(interval);
+
         if (mouseInput.isRightButtonPressed()) {
             Vector2f rotationVector = mouseInput.getDisplacementVector();
 
@@ -258,32 +330,46 @@ public class AnimatorLogic implements Logic {
     }
 
     @Override
-    public void render(Window window) {
+    public void render(Window window, float alpha) {
         if (isFirstTime) {
             sceneChanged = true;
 
             isFirstTime = false;
         }
 
+        updateModel();
+
+        if (animatedItem != null) {
+            animatedItem.getPlayer().setInterpolationAlpha(alpha);
+
+            if (animatedItem.getPlayer().isPlaying() || animatedItem.isFading())
+                sceneChanged = true;
+        }
+
         renderer.render(window, camera, scene, sceneChanged);
     }
 
     @Override
     public void cleanup() {
+        modelLoader.cleanup();
+
         renderer.cleanup();
 
-        Map<Mesh, List<MeshedItem>> mapMeshes = scene.getGameMeshes();
+        scene.cleanup();
 
-        for (Mesh mesh : mapMeshes.keySet())
-            mesh.cleanUp();
+        TextureCache.getInstance().cleanup();
     }
 
     private void showHelp() {
         System.out.println("Use 'W', 'S', 'A' and 'D' to move camera.\n" +
                 "Use 'X' and 'Z' to move camera up and down.\n" +
                 "Use left and right arrows to change light position.\n" +
-                "Use space bar to move model.\n" +
+                "Use space bar to play or pause model animation.\n" +
+                "Use 'L' to loop model animation or play it once.\n" +
+                "Use 'N' to switch model animation.\n" +
+                "Use 'R' to reload model.\n" +
                 "Use 'P' to save screenshot.\n" +
+                "Use 'M' to show native memory usage.\n" +
                 "Use 'G' to show wireframe.");
     }
 
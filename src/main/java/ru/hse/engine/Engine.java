@@ -1,6 +1,7 @@
 package ru.hse.engine;
 
 import ru.hse.engine.utils.MouseInput;
+import ru.hse.engine.utils.NativeMemory;
 import ru.hse.engine.utils.Timer;
 import ru.hse.engine.utils.Window;
 
@@ -65,7 +66,7 @@ public class Engine implements Runnable {
                 accumulator -= interval;
             }
 
-            render();
+            render(accumulator / interval);
 
             if (!window.isvSync())
                 sync();
@@ -74,6 +75,8 @@ public class Engine implements Runnable {
 
     protected void cleanup() {
         logic.cleanup();
+
+        NativeMemory.printLeaks();
     }
 
     private void sync() {
@@ -97,8 +100,8 @@ public class Engine implements Runnable {
         logic.update(interval, mouseInput);
     }
 
-    protected void render() {
-        logic.render(window);
+    protected void render(float alpha) {
+        logic.render(window, alpha);
         window.update();
     }
 }
@@ -10,7 +10,7 @@ public interface Logic {
 
     void update(float interval, MouseInput mouseInput);
 
-    void render(Window window);
+    void render(Window window, float alpha);
 
     void cleanup();
 }
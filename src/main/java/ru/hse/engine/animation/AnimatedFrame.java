@@ -1,24 +1,95 @@
 package ru.hse.engine.animation;
 
 import org.joml.Matrix4f;
-import ru.hse.core.utils.Constants;
+import org.lwjgl.BufferUtils;
 
-import java.util.Arrays;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class for animation frame representation.
+ * <p>
+ * Joint matrices of a frame are a slice of a native buffer with 16 floats per joint in column-major order, so they
+ * can be passed to OpenGL without copying. Frames of an animation are slices of one contiguous block.
  */
 public class AnimatedFrame {
-    private static final Matrix4f IDENTITY_MATRIX = new Matrix4f();
+    public static final int MATRIX_SIZE_FLOATS = 16;
 
-    private final Matrix4f[] jointMatrices;
+    private final FloatBuffer jointMatrices;
+
+    private final int jointsAmount;
 
     /**
      * The class' constructor.
+     *
+     * @param jointMatrices joint matrices, the buffer must not be moved
+     * @param jointsAmount  amount of joints
+     */
+    public AnimatedFrame(FloatBuffer jointMatrices, int jointsAmount) {
+        this.jointMatrices = jointMatrices;
+        this.jointsAmount = jointsAmount;
+    }
+
+    /**
+     * The class' constructor for a frame with identity joint matrices.
+     *
+     * @param jointsAmount amount of joints
+     */
+    public AnimatedFrame(int jointsAmount) {
+        this(createIdentityMatrices(jointsAmount), jointsAmount);
+    }
+
+    /**
+     * Create frames sharing one block of identity joint matrices.
+     *
+     * @param framesAmount amount of frames
+     * @param jointsAmount amount of joints
+     * @return created frames
      */
-    public AnimatedFrame() {
-        jointMatrices = new Matrix4f[Constants.MAXIMAL_JOINTS_AMOUNT];
-        Arrays.fill(jointMatrices, IDENTITY_MATRIX);
+    public static List<AnimatedFrame> createFrames(int framesAmount, int jointsAmount) {
+        return wrapFrames(createIdentityMatrices(framesAmount * jointsAmount), framesAmount, jointsAmount);
+    }
+
+    /**
+     * Create frames from a block of joint matrices laid out as frames x joints x 16 floats.
+     *
+     * @param matrices     joint matrices
+     * @param framesAmount amount of frames
+     * @param jointsAmount amount of joints
+     * @return created frames
+     */
+    public static List<AnimatedFrame> wrapFrames(FloatBuffer matrices, int framesAmount, int jointsAmount) {
+        List<AnimatedFrame> frames = new ArrayList<>(framesAmount);
+
+        int frameSize = jointsAmount * MATRIX_SIZE_FLOATS;
+
+        for (int i = 0; i < framesAmount; i++) {
+            FloatBuffer frameMatrices = matrices.duplicate();
+
+            frameMatrices.position(i * frameSize);
+            frameMatrices.limit((i + 1) * frameSize);
+
+            frames.add(new AnimatedFrame(frameMatrices.slice(), jointsAmount));
+        }
+
+        return frames;
+    }
+
+    /**
+     * Create native buffer of identity matrices.
+     *
+     * @param matricesAmount amount of matrices
+     * @return created buffer
+     */
+    private static FloatBuffer createIdentityMatrices(int matricesAmount) {
+        FloatBuffer matrices = BufferUtils.createFloatBuffer(matricesAmount * MATRIX_SIZE_FLOATS);
+
+        for (int i = 0; i < matricesAmount; i++)
+            for (int j = 0; j < 4; j++)
+                matrices.put(i * MATRIX_SIZE_FLOATS + j * 5, 1.0f);
+
+        return matrices;
     }
 
     /**
@@ -26,10 +97,30 @@ public class AnimatedFrame {
      *
      * @return joint matrices
      */
-    public Matrix4f[] getJointMatrices() {
+    public FloatBuffer getJointMatrices() {
         return jointMatrices;
     }
 
+    /**
+     * Joints amount getter.
+     *
+     * @return amount of joints
+     */
+    public int getJointsAmount() {
+        return jointsAmount;
+    }
+
+    /**
+     * Getter of the given joint matrix.
+     *
+     * @param position joint matrix position in the array
+     * @param dest     matrix to store the joint matrix
+     * @return joint matrix
+     */
+    public Matrix4f getJointMatrix(int position, Matrix4f dest) {
+        return dest.set(position * MATRIX_SIZE_FLOATS, jointMatrices);
+    }
+
     /**
      * Setter of the given joint matrix.
      *
@@ -37,6 +128,6 @@ public class AnimatedFrame {
      * @param jointMatrix new joint matrix
      */
     public void setJointMatrix(int position, Matrix4f jointMatrix) {
-        jointMatrices[position] = jointMatrix;
+        jointMatrix.get(position * MATRIX_SIZE_FLOATS, jointMatrices);
     }
 }
@@ -1,33 +1,96 @@
 package ru.hse.engine.animation;
 
+import ru.hse.core.utils.Settings;
 import ru.hse.engine.MeshedItem;
 import ru.hse.graphics.model.Mesh;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Animated scene item representation class.
+ * <p>
+ * Animations are shared clips, the item plays each of them with its own {@link AnimationState}, so any amount of
+ * items can share the meshes and the animations of one loaded model and still move independently. Animations are
+ * played by the item's {@link AnimationPlayer} at every update of the engine loop.
+ * <p>
+ * Switching between sampled animations can cross-fade them: during the fade all the active animations keep playing
+ * and their local poses are blended, the weight of the new animation growing linearly to 1 and the weights of the
+ * others falling to 0.
+ * <p>
+ * The current frame is evaluated once per update and interpolation alpha, so every mesh and pass drawing the item
+ * reuses it, and its joints are put into the renderer's joints palette once at the item's joints offset.
  */
 public class AnimatedItem extends MeshedItem {
+    private static final Settings SETTINGS = Settings.getInstance();
+
     private final Map<String, Animation> animations;
 
-    private Animation currentAnimation;
+    private final Map<String, AnimationState> states;
+
+    private final List<AnimationState> activeStates;
+
+    private final AnimationPlayer player;
+
+    private AnimationState currentState;
+
+    private AnimationState pendingState;
+
+    private CompletableFuture<Void> pendingBaking;
+
+    private AnimationBlender blender;
+
+    private AnimatedFrame currentFrame;
+
+    private float currentFrameAlpha;
+
+    private int jointsOffset;
 
     /**
      * The class' constructor.
      *
      * @param meshes     meshes of the item
-     * @param animations animations of the item
+     * @param animations animations of the item, they can be shared with other items
      */
     public AnimatedItem(Mesh[] meshes, Map<String, Animation> animations) {
         super(meshes);
 
         this.animations = animations;
 
-        Optional<Map.Entry<String, Animation>> entry = animations.entrySet().stream().findFirst();
+        states = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Animation> entry : animations.entrySet())
+            states.put(entry.getKey(), new AnimationState(entry.getValue()));
+
+        activeStates = new ArrayList<>();
+
+        player = new AnimationPlayer();
+
+        jointsOffset = -1;
 
-        currentAnimation = entry.map(Map.Entry::getValue).orElse(null);
+        if (!states.isEmpty())
+            activate(states.values().iterator().next());
+    }
+
+    /**
+     * Create an item sharing the meshes and the animations of this one, with its own playback state.
+     *
+     * @return created item
+     */
+    public AnimatedItem createInstance() {
+        return new AnimatedItem(getMeshes(), animations);
+    }
+
+    /**
+     * Animations getter.
+     *
+     * @return animations of the item shared with other items
+     */
+    public Map<String, Animation> getAnimations() {
+        return animations;
     }
 
     /**
@@ -36,6 +99,283 @@ public class AnimatedItem extends MeshedItem {
      * @return current animation
      */
     public Animation getCurrentAnimation() {
-        return currentAnimation;
+        AnimationState state = getCurrentState();
+
+        return state != null ? state.getAnimation() : null;
+    }
+
+    /**
+     * Current animation state getter.
+     * <p>
+     * An animation activated while not baked yet becomes current as soon as its background baking is finished.
+     *
+     * @return playback state of the current animation
+     */
+    public AnimationState getCurrentState() {
+        if (pendingBaking != null && pendingBaking.isDone()) {
+            if (pendingBaking.isCompletedExceptionally())
+                System.out.println("Unable to bake animation " + pendingState.getAnimation().getName() + ".");
+            else
+                activate(pendingState);
+
+            pendingState = null;
+            pendingBaking = null;
+        }
+
+        return currentState;
+    }
+
+    /**
+     * Getter of the animation state.
+     *
+     * @param name animation name
+     * @return playback state of the animation or null if the item has no such animation
+     */
+    public AnimationState getState(String name) {
+        return states.get(name);
+    }
+
+    /**
+     * Animation names getter.
+     *
+     * @return names of the item's animations
+     */
+    public List<String> getAnimationNames() {
+        return new ArrayList<>(animations.keySet());
+    }
+
+    /**
+     * Activate the animation with the given name.
+     * <p>
+     * If the animation is neither baked nor sampled, its frames are baked in the background and the current animation
+     * keeps playing until then.
+     *
+     * @param name animation name
+     */
+    public void setCurrentAnimation(String name) {
+        AnimationState state = states.get(name);
+
+        if (state == null)
+            return;
+
+        if (state.getAnimation().isReady()) {
+            activate(state);
+
+            pendingState = null;
+            pendingBaking = null;
+        } else {
+            pendingState = state;
+            pendingBaking = state.getAnimation().bakeAsync();
+        }
+    }
+
+    /**
+     * Make the state the only active one.
+     *
+     * @param state animation state
+     */
+    private void activate(AnimationState state) {
+        state.advance(0, player.isLooped());
+        state.setWeight(1);
+
+        activeStates.clear();
+        activeStates.add(state);
+
+        currentState = state;
+        currentFrame = null;
+    }
+
+    /**
+     * Cross-fade from the active animations to the animation with the given name.
+     * <p>
+     * Animations which cannot be blended are switched without fading.
+     *
+     * @param name    animation name
+     * @param seconds fade duration in seconds
+     */
+    public void crossFade(String name, double seconds) {
+        AnimationState state = states.get(name);
+        AnimationState current = getCurrentState();
+
+        if (state == null || state == current)
+            return;
+
+        if (seconds <= 0 || current == null || !isBlendable(state.getAnimation())) {
+            setCurrentAnimation(name);
+
+            return;
+        }
+
+        for (AnimationState activeState : activeStates) {
+            if (!isBlendable(activeState.getAnimation())) {
+                setCurrentAnimation(name);
+
+                return;
+            }
+        }
+
+        for (AnimationState activeState : activeStates)
+            activeState.fadeTo(0, seconds);
+
+        if (!activeStates.contains(state)) {
+            state.advance(0, player.isLooped());
+            state.setWeight(0);
+
+            activeStates.add(state);
+        }
+
+        state.fadeTo(1, seconds);
+
+        pendingState = null;
+        pendingBaking = null;
+
+        currentState = state;
+        currentFrame = null;
+    }
+
+    /**
+     * Check if the animation can be blended by the item's blender, the blender is created on the first use.
+     *
+     * @param animation animation
+     * @return true if the animation can be blended and false otherwise
+     */
+    private boolean isBlendable(Animation animation) {
+        if (!animation.isBlendable())
+            return false;
+
+        if (blender == null)
+            blender = new AnimationBlender(animation.getSkeleton());
+
+        return blender.accepts(animation);
+    }
+
+    /**
+     * Check if the item is cross-fading between animations.
+     *
+     * @return true if more than one animation is active and false otherwise
+     */
+    public boolean isFading() {
+        return activeStates.size() > 1;
+    }
+
+    /**
+     * Player getter.
+     *
+     * @return playback state of the item
+     */
+    public AnimationPlayer getPlayer() {
+        return player;
+    }
+
+    /**
+     * Move the active animations forward by the update interval and advance their fades, the animations which have
+     * faded out are deactivated. A not looped animation pauses the playback at its end and starts over when the
+     * playback is resumed.
+     *
+     * @param interval update interval in seconds
+     */
+    public void update(double interval) {
+        AnimationState state = getCurrentState();
+
+        if (state == null)
+            return;
+
+        currentFrame = null;
+
+        if (player.isPlaying() && !player.isLooped() && state.isFinished())
+            state.rewind();
+
+        double fadeTime = player.isPlaying() ? interval * player.getSpeed() : 0;
+
+        for (int i = activeStates.size() - 1; i >= 0; i--) {
+            AnimationState activeState = activeStates.get(i);
+
+            activeState.advance(player.getAnimationTime(activeState.getAnimation(), interval), player.isLooped());
+            activeState.updateWeight(fadeTime);
+
+            if (activeState != state && activeState.isFadedOut())
+                activeStates.remove(i);
+        }
+
+        if (!player.isLooped() && state.isFinished())
+            player.pause();
+    }
+
+    /**
+     * Current frame getter, the animations are sampled at the time interpolated with the player's alpha and the
+     * frame of a cross-fade is blended. The frame is evaluated once and reused until the next update or change of the
+     * alpha or the animation.
+     *
+     * @return current frame
+     */
+    public AnimatedFrame getCurrentFrame() {
+        AnimationState state = getCurrentState();
+
+        float alpha = player.getInterpolationAlpha();
+
+        if (currentFrame != null && currentFrameAlpha == alpha)
+            return currentFrame;
+
+        currentFrame = evaluateFrame(state, alpha);
+        currentFrameAlpha = alpha;
+
+        return currentFrame;
+    }
+
+    /**
+     * Evaluate frame of the active animations.
+     *
+     * @param state current animation state
+     * @param alpha interpolation factor, 0 is the time before the last update and 1 is the current time
+     * @return frame of the current animation or blended frame of a cross-fade
+     */
+    private AnimatedFrame evaluateFrame(AnimationState state, float alpha) {
+        if (activeStates.size() == 1)
+            return state.getFrame(alpha);
+
+        blender.begin();
+
+        for (int i = 0; i < activeStates.size(); i++) {
+            AnimationState activeState = activeStates.get(i);
+
+            blender.add(activeState, activeState.getWeight(alpha), alpha);
+        }
+
+        return blender.end();
+    }
+
+    /**
+     * Joints offset getter.
+     *
+     * @return index of the item's first joint in the renderer's joints palette or -1 if the item has no joints there
+     */
+    public int getJointsOffset() {
+        return jointsOffset;
+    }
+
+    /**
+     * Joints offset setter.
+     *
+     * @param jointsOffset index of the item's first joint in the renderer's joints palette or -1 if the item has no
+     *                     joints there
+     */
+    public void setJointsOffset(int jointsOffset) {
+        this.jointsOffset = jointsOffset;
+    }
+
+    /**
+     * Activate the animation following the current one.
+     */
+    public void nextAnimation() {
+        List<String> names = getAnimationNames();
+
+        if (names.isEmpty())
+            return;
+
+        AnimationState state = pendingState != null ? pendingState : currentState;
+
+        int index = state != null ? names.indexOf(state.getAnimation().getName()) : -1;
+
+        crossFade(names.get((index + 1) % names.size()), SETTINGS.getAnimationFadeDuration());
     }
 }
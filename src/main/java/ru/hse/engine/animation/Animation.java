@@ -1,41 +1,283 @@
 package ru.hse.engine.animation;
 
+import ru.hse.engine.animation.structure.Skeleton;
+
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Animation storage class.
+ * <p>
+ * An animation is either created with baked frames or with a baker keeping the raw channels only. In the latter
+ * case the animation can be sampled at any time with interpolation between the keys, or its frames are baked on the
+ * first use or in the background by {@link #bakeAsync()}, after which the raw channels are released. A sampled
+ * animation can also replace its raw channels with compressed ones.
+ * <p>
+ * Baked frames follow the keys of the channels, which are not always one tick apart, so the animation keeps the time
+ * of every frame and playback finds the frame of a time through them.
+ * <p>
+ * The animation is a clip shared by all the items playing it: it has no playback state, every item plays it with
+ * its own {@link AnimationState}.
  */
 public class Animation {
-    private int currentFrame;
+    private volatile List<AnimatedFrame> frames;
+
+    private volatile AnimationBaker baker;
+
+    private volatile CompressedClip compressedClip;
+
+    private CompletableFuture<Void> baking;
 
-    private final List<AnimatedFrame> frames;
+    private final boolean isSampled;
 
     private final String name;
 
+    private final float[] frameTimes;
+
     private final double duration;
 
+    private final double ticksPerSecond;
+
     /**
      * The class' constructor.
      *
-     * @param name     animation name
-     * @param frames   animation frames
-     * @param duration animation duration
+     * @param name           animation name
+     * @param frames         animation frames
+     * @param frameTimes     time of every frame in ticks
+     * @param duration       animation duration in ticks
+     * @param ticksPerSecond ticks per second
      */
-    public Animation(String name, List<AnimatedFrame> frames, double duration) {
+    public Animation(String name, List<AnimatedFrame> frames, float[] frameTimes, double duration,
+                     double ticksPerSecond) {
         this.name = name;
         this.frames = frames;
+        this.frameTimes = frameTimes;
+        this.duration = duration;
+        this.ticksPerSecond = ticksPerSecond;
+        this.isSampled = false;
+    }
+
+    /**
+     * The class' constructor for an animation sampled or baked on demand.
+     *
+     * @param name           animation name
+     * @param baker          baker of the animation frames
+     * @param duration       animation duration in ticks
+     * @param ticksPerSecond ticks per second
+     * @param sampled        true if the animation is sampled at the current time and false if its frames are baked
+     */
+    public Animation(String name, AnimationBaker baker, double duration, double ticksPerSecond, boolean sampled) {
+        this.name = name;
+        this.baker = baker;
+        this.frameTimes = baker.getFrameTimes();
         this.duration = duration;
+        this.ticksPerSecond = ticksPerSecond;
+        this.isSampled = sampled;
+    }
+
+    /**
+     * Skeleton getter.
+     *
+     * @return skeleton of the animation or null if the animation has neither raw nor compressed channels
+     */
+    public Skeleton getSkeleton() {
+        CompressedClip clip = compressedClip;
+
+        if (clip != null)
+            return clip.getSkeleton();
+
+        AnimationBaker animationBaker = baker;
+
+        return animationBaker != null ? animationBaker.getSkeleton() : null;
+    }
+
+    /**
+     * Check if local poses of the animation can be sampled for blending.
+     *
+     * @return true if the animation is sampled and false otherwise
+     */
+    public boolean isBlendable() {
+        return isSampled && isSamplingPossible();
+    }
+
+    /**
+     * Create sampler of the raw or compressed channels, every player of the animation needs its own one.
+     *
+     * @return sampler
+     */
+    public AnimationSampler createSampler() {
+        CompressedClip clip = compressedClip;
+
+        return clip != null ? clip.createSampler() : baker.createSampler();
+    }
+
+    /**
+     * Frames getter, the frames are baked if it has not been done yet.
+     *
+     * @return animation frames
+     */
+    public List<AnimatedFrame> getFrames() {
+        List<AnimatedFrame> result = frames;
+
+        if (result == null) {
+            bake();
+
+            result = frames;
+        }
+
+        return result;
+    }
+
+    /**
+     * Baker getter.
+     *
+     * @return baker of the animation frames or null if the animation is baked
+     */
+    public AnimationBaker getBaker() {
+        return baker;
+    }
+
+    /**
+     * Frame times getter.
+     *
+     * @return time of every baked frame in ticks
+     */
+    public float[] getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * Find the baked frame shown at the given time.
+     *
+     * @param time time in ticks
+     * @return index of the last frame not later than the time or 0 if the time precedes all the frames
+     */
+    public int findFrame(double time) {
+        int frame = Arrays.binarySearch(frameTimes, (float) time);
 
-        currentFrame = 0;
+        return frame >= 0 ? frame : Math.max(0, -frame - 2);
     }
 
     /**
-     * Current frame getter.
+     * Calculate interpolation factor between two baked frames, the frame following the last one in a looped
+     * animation is the first one.
      *
-     * @return current frame
+     * @param time      time in ticks
+     * @param frame     index of the frame found for the time
+     * @param nextFrame index of the following frame
+     * @return interpolation factor in [0, 1]
      */
-    public AnimatedFrame getCurrentFrame() {
-        return this.frames.get(currentFrame);
+    public float getFrameFactor(double time, int frame, int nextFrame) {
+        double delta = frameTimes[nextFrame] - frameTimes[frame];
+
+        if (nextFrame < frame)
+            delta += duration;
+
+        if (delta <= 0)
+            return 0;
+
+        return (float) Math.min(1, Math.max(0, (time - frameTimes[frame]) / delta));
+    }
+
+    /**
+     * Check if the animation frames are baked.
+     *
+     * @return true if the frames are baked and false otherwise
+     */
+    public boolean isBaked() {
+        return frames != null;
+    }
+
+    /**
+     * Check if the animation can be played without baking.
+     *
+     * @return true if the animation is baked or sampled and false otherwise
+     */
+    public boolean isReady() {
+        return isBaked() || isSampled && isSamplingPossible();
+    }
+
+    /**
+     * Check if the animation has its raw or compressed channels.
+     *
+     * @return true if the animation can be sampled and false otherwise
+     */
+    private boolean isSamplingPossible() {
+        return baker != null || compressedClip != null;
+    }
+
+    /**
+     * Check if the animation is sampled.
+     *
+     * @return true if the animation is sampled at the current time and false if the baked frames are played
+     */
+    public boolean isSampled() {
+        return isSampled;
+    }
+
+    /**
+     * Bake the animation frames in the calling thread if it has not been done yet.
+     */
+    public synchronized void bake() {
+        if (frames != null)
+            return;
+
+        AnimationBaker animationBaker = baker;
+
+        frames = animationBaker != null ? animationBaker.bake() : compressedClip.bake();
+
+        if (!isSampled) {
+            baker = null;
+            compressedClip = null;
+        }
+    }
+
+    /**
+     * Replace the raw channels with compressed ones if it has not been done yet.
+     *
+     * @return compressed clip or null if the animation has no raw channels
+     */
+    public synchronized CompressedClip compress() {
+        if (compressedClip == null && baker != null) {
+            compressedClip = new CompressedClip(baker);
+
+            baker = null;
+        }
+
+        return compressedClip;
+    }
+
+    /**
+     * Bake the animation frames in the background on the baking pool if it has not been done yet.
+     *
+     * @return future completed when the frames are baked
+     */
+    public synchronized CompletableFuture<Void> bakeAsync() {
+        if (baking == null)
+            baking = isBaked()
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.runAsync(this::bake, AnimationBaker.getPool());
+
+        return baking;
+    }
+
+    /**
+     * Duration getter.
+     *
+     * @return animation duration in ticks
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * Ticks per second getter.
+     *
+     * @return ticks per second
+     */
+    public double getTicksPerSecond() {
+        return ticksPerSecond;
     }
 
     /**
@@ -48,14 +290,11 @@ public class Animation {
     }
 
     /**
-     * Set next animation frame.
+     * Duration in seconds getter.
+     *
+     * @return animation duration in seconds
      */
-    public void nextFrame() {
-        int nextFrame = currentFrame + 1;
-
-        if (nextFrame > frames.size() - 1)
-            currentFrame = 0;
-        else
-            currentFrame = nextFrame;
+    public double getDurationSeconds() {
+        return ticksPerSecond > 0 ? duration / ticksPerSecond : 0;
     }
 }
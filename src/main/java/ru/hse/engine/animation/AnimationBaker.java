@@ -0,0 +1,189 @@
+package ru.hse.engine.animation;
+
+import ru.hse.core.utils.Constants;
+import ru.hse.core.utils.Settings;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Baker of animation frames from raw animation channels.
+ * <p>
+ * The baker keeps the channels bound to the skeleton, so they can also be sampled at any time without baking.
+ * Frames are baked at the keys of the channels, which are not always one tick apart, so the time of every frame is
+ * taken from the longest key track.
+ * <p>
+ * All the bakers share one fork/join pool sized by the baking parallelism of the settings, so clips baked at the
+ * same time share its workers and no threads are started per clip.
+ */
+public class AnimationBaker {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    private static ForkJoinPool pool;
+
+    private final Skeleton skeleton;
+
+    private final AnimationChannel[] channels;
+
+    private final int[] channelIndices;
+
+    private final int framesAmount;
+
+    private final float[] frameTimes;
+
+    /**
+     * The class' constructor.
+     *
+     * @param skeleton skeleton
+     * @param channels animation channels
+     */
+    public AnimationBaker(Skeleton skeleton, AnimationChannel[] channels) {
+        this.skeleton = skeleton;
+        this.channels = channels;
+
+        channelIndices = skeleton.bindChannels(channels);
+
+        float[] times = new float[0];
+
+        for (AnimationChannel channel : channels) {
+            if (channel.getPositionTimes().length > times.length)
+                times = channel.getPositionTimes();
+
+            if (channel.getRotationTimes().length > times.length)
+                times = channel.getRotationTimes();
+
+            if (channel.getScalingTimes().length > times.length)
+                times = channel.getScalingTimes();
+        }
+
+        framesAmount = times.length;
+        frameTimes = times;
+    }
+
+    /**
+     * Pool getter, the pool is created on the first use. Its workers are daemon threads, so it needs no shutdown.
+     *
+     * @return fork/join pool shared by all the bakers
+     */
+    static synchronized ForkJoinPool getPool() {
+        if (pool == null)
+            pool = new ForkJoinPool(SETTINGS.getBakingParallelism());
+
+        return pool;
+    }
+
+    /**
+     * Skeleton getter.
+     *
+     * @return skeleton
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+
+    /**
+     * Channels getter.
+     *
+     * @return animation channels
+     */
+    public AnimationChannel[] getChannels() {
+        return channels;
+    }
+
+    /**
+     * Frames amount getter.
+     *
+     * @return amount of frames to bake
+     */
+    public int getFramesAmount() {
+        return framesAmount;
+    }
+
+    /**
+     * Frame times getter.
+     *
+     * @return time of every frame to bake in ticks
+     */
+    public float[] getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * Create sampler of the animation.
+     *
+     * @return sampler
+     */
+    public AnimationSampler createSampler() {
+        return new AnimationSampler(skeleton, channels, channelIndices);
+    }
+
+    /**
+     * Bake all frames of the animation.
+     *
+     * @return baked frames
+     */
+    public List<AnimatedFrame> bake() {
+        List<AnimatedFrame> frames = AnimatedFrame.createFrames(framesAmount, skeleton.getJointsAmount());
+
+        if (SETTINGS.getBakingParallelism() > 1 && framesAmount > Constants.BAKING_FRAMES_PER_TASK)
+            getPool().invoke(new FramesBakingTask(frames, 0, framesAmount));
+        else
+            bakeFrames(frames, 0, framesAmount);
+
+        return frames;
+    }
+
+    /**
+     * Bake range of animation frames.
+     *
+     * @param frames animation frames to fill
+     * @param from   first frame of the range, inclusive
+     * @param to     last frame of the range, exclusive
+     */
+    private void bakeFrames(List<AnimatedFrame> frames, int from, int to) {
+        Skeleton.Workspace workspace = skeleton.createWorkspace();
+
+        for (int i = from; i < to; i++)
+            skeleton.buildFrame(channels, channelIndices, i, workspace, frames.get(i));
+    }
+
+    /**
+     * Fork/join task baking a range of animation frames.
+     */
+    private class FramesBakingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<AnimatedFrame> frames;
+
+        private final int from;
+
+        private final int to;
+
+        /**
+         * The class' constructor.
+         *
+         * @param frames animation frames to fill
+         * @param from   first frame of the range, inclusive
+         * @param to     last frame of the range, exclusive
+         */
+        FramesBakingTask(List<AnimatedFrame> frames, int from, int to) {
+            this.frames = frames;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= Constants.BAKING_FRAMES_PER_TASK) {
+                bakeFrames(frames, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new FramesBakingTask(frames, from, middle), new FramesBakingTask(frames, middle, to));
+            }
+        }
+    }
+}
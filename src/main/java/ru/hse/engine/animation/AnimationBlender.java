@@ -0,0 +1,126 @@
+package ru.hse.engine.animation;
+
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.structure.Skeleton;
+
+/**
+ * Blender of sampled animations of one skeleton.
+ * <p>
+ * Every animation is sampled at the time of its playback state into a local pose and accumulated into the blended
+ * pose with the weighted average of the poses added so far, then joint matrices of the blended pose are built into
+ * the blender's frame. All the buffers are allocated once, so blending allocates nothing.
+ */
+public class AnimationBlender {
+    private final Skeleton skeleton;
+
+    private final Skeleton.Workspace workspace;
+
+    private final AnimationPose pose;
+
+    private final AnimationPose animationPose;
+
+    private final AnimatedFrame frame;
+
+    private final Quaternionf rotation;
+
+    private final Quaternionf targetRotation;
+
+    private float totalWeight;
+
+    /**
+     * The class' constructor.
+     *
+     * @param skeleton skeleton of the blended animations
+     */
+    public AnimationBlender(Skeleton skeleton) {
+        this.skeleton = skeleton;
+
+        workspace = skeleton.createWorkspace();
+        pose = new AnimationPose(skeleton.getNodesAmount());
+        animationPose = new AnimationPose(skeleton.getNodesAmount());
+        frame = new AnimatedFrame(skeleton.getJointsAmount());
+        rotation = new Quaternionf();
+        targetRotation = new Quaternionf();
+    }
+
+    /**
+     * Skeleton getter.
+     *
+     * @return skeleton of the blended animations
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+
+    /**
+     * Check if the animation can be blended by the blender.
+     *
+     * @param animation animation
+     * @return true if the animation is sampled with the blender's skeleton and false otherwise
+     */
+    public boolean accepts(Animation animation) {
+        return animation.isBlendable() && animation.getSkeleton() == skeleton;
+    }
+
+    /**
+     * Start a new blend.
+     */
+    public void begin() {
+        totalWeight = 0;
+    }
+
+    /**
+     * Add the animation sampled at its current time to the blend.
+     *
+     * @param state  playback state of an animation accepted by the blender
+     * @param weight weight of the animation, animations with non-positive weights are skipped
+     */
+    public void add(AnimationState state, float weight) {
+        add(state, weight, 1);
+    }
+
+    /**
+     * Add the animation sampled between its previous and current time to the blend.
+     *
+     * @param state  playback state of an animation accepted by the blender
+     * @param weight weight of the animation, animations with non-positive weights are skipped
+     * @param alpha  interpolation factor, 0 is the time before the last move and 1 is the current time
+     */
+    public void add(AnimationState state, float weight, float alpha) {
+        if (weight <= 0)
+            return;
+
+        totalWeight += weight;
+
+        if (totalWeight == weight) {
+            state.samplePose(alpha, pose);
+
+            return;
+        }
+
+        pose.blend(state.samplePose(alpha, animationPose), weight / totalWeight, rotation, targetRotation);
+    }
+
+    /**
+     * Finish the blend, an empty blend is the rest pose.
+     *
+     * @return blended frame, reused by the following blends
+     */
+    public AnimatedFrame end() {
+        if (totalWeight == 0)
+            pose.set(skeleton.getRestPose());
+
+        skeleton.buildFrame(pose, workspace, frame);
+
+        return frame;
+    }
+
+    /**
+     * Blended pose getter.
+     *
+     * @return local pose of the last blend
+     */
+    public AnimationPose getPose() {
+        return pose;
+    }
+}
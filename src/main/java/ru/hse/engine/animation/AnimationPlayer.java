@@ -0,0 +1,137 @@
+package ru.hse.engine.animation;
+
+import ru.hse.core.utils.Settings;
+
+/**
+ * Playback state of an animated item.
+ * <p>
+ * Animations are moved forward by the fixed update interval of the engine loop scaled by the playback speed, so they
+ * play at their real rate whatever the frame rate is. Rendering happens between updates and samples the animations
+ * at the time interpolated with the fraction of the update interval elapsed since the last update.
+ */
+public class AnimationPlayer {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    private boolean isPlaying;
+
+    private boolean isLooped;
+
+    private double speed;
+
+    private float interpolationAlpha;
+
+    /**
+     * The class' constructor.
+     */
+    public AnimationPlayer() {
+        isPlaying = true;
+        isLooped = true;
+        speed = SETTINGS.getAnimationSpeed();
+        interpolationAlpha = 1;
+    }
+
+    /**
+     * Start or resume the playback.
+     */
+    public void play() {
+        isPlaying = true;
+    }
+
+    /**
+     * Pause the playback.
+     */
+    public void pause() {
+        isPlaying = false;
+    }
+
+    /**
+     * Pause a playing playback or resume a paused one.
+     */
+    public void toggle() {
+        isPlaying = !isPlaying;
+    }
+
+    /**
+     * Check if the playback is running.
+     *
+     * @return true if the animations are played and false if they are paused
+     */
+    public boolean isPlaying() {
+        return isPlaying;
+    }
+
+    /**
+     * Check if the animations are looped.
+     *
+     * @return true if the animations start over at their end and false if the playback stops there
+     */
+    public boolean isLooped() {
+        return isLooped;
+    }
+
+    /**
+     * Loop flag setter.
+     *
+     * @param looped true if the animations should start over at their end and false otherwise
+     */
+    public void setLooped(boolean looped) {
+        isLooped = looped;
+    }
+
+    /**
+     * Speed getter.
+     *
+     * @return playback speed, 1 is the real rate of the animations
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Speed setter, negative speeds are clamped to 0.
+     *
+     * @param speed playback speed, 1 is the real rate of the animations
+     */
+    public void setSpeed(double speed) {
+        this.speed = Math.max(0, speed);
+    }
+
+    /**
+     * Interpolation alpha getter.
+     *
+     * @return fraction of the update interval elapsed since the last update
+     */
+    public float getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
+    /**
+     * Interpolation alpha setter, the alpha is clamped to [0, 1].
+     *
+     * @param interpolationAlpha fraction of the update interval elapsed since the last update
+     */
+    public void setInterpolationAlpha(float interpolationAlpha) {
+        this.interpolationAlpha = Math.max(0, Math.min(1, interpolationAlpha));
+    }
+
+    /**
+     * Calculate animation time of the update interval.
+     * <p>
+     * A fixed animation frame rate set in the settings replaces the ticks per second of the animation.
+     *
+     * @param animation animation
+     * @param interval  update interval in seconds
+     * @return time to move the animation forward in seconds, 0 if the playback is paused
+     */
+    public double getAnimationTime(Animation animation, double interval) {
+        if (!isPlaying)
+            return 0;
+
+        int framesPerSecond = SETTINGS.getAnimationFramesPerSecond();
+
+        if (framesPerSecond > 0 && animation.getTicksPerSecond() > 0)
+            return interval * speed * framesPerSecond / animation.getTicksPerSecond();
+
+        return interval * speed;
+    }
+}
@@ -0,0 +1,211 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+
+/**
+ * Local pose of a skeleton representation class.
+ * <p>
+ * Every node has a translation, a rotation (x, y, z, w) and a scaling kept in flat arrays, so poses are blended
+ * component-wise without allocations. A node which is not animated keeps its rest transformation.
+ */
+public class AnimationPose {
+    private final float[] translations;
+
+    private final float[] rotations;
+
+    private final float[] scalings;
+
+    private final boolean[] animatedNodes;
+
+    /**
+     * The class' constructor.
+     *
+     * @param nodesAmount amount of nodes
+     */
+    public AnimationPose(int nodesAmount) {
+        translations = new float[3 * nodesAmount];
+        rotations = new float[4 * nodesAmount];
+        scalings = new float[3 * nodesAmount];
+        animatedNodes = new boolean[nodesAmount];
+    }
+
+    /**
+     * Nodes amount getter.
+     *
+     * @return amount of nodes
+     */
+    public int getNodesAmount() {
+        return animatedNodes.length;
+    }
+
+    /**
+     * Check if the node is animated.
+     *
+     * @param node node index
+     * @return true if the node is animated and false if it keeps its rest transformation
+     */
+    public boolean isAnimated(int node) {
+        return animatedNodes[node];
+    }
+
+    /**
+     * Node animation flag setter.
+     *
+     * @param node     node index
+     * @param animated true if the node is animated and false if it keeps its rest transformation
+     */
+    public void setAnimated(int node, boolean animated) {
+        animatedNodes[node] = animated;
+    }
+
+    /**
+     * Copy the node of the other pose.
+     *
+     * @param node node index
+     * @param pose pose of the same skeleton
+     */
+    public void setNode(int node, AnimationPose pose) {
+        System.arraycopy(pose.translations, 3 * node, translations, 3 * node, 3);
+        System.arraycopy(pose.rotations, 4 * node, rotations, 4 * node, 4);
+        System.arraycopy(pose.scalings, 3 * node, scalings, 3 * node, 3);
+
+        animatedNodes[node] = pose.animatedNodes[node];
+    }
+
+    /**
+     * Decompose transformation of the node into its translation, rotation and scaling.
+     *
+     * @param node           node index
+     * @param transformation node transformation without shear
+     * @param rotation       auxiliary quaternion
+     */
+    public void setTransformation(int node, Matrix4f transformation, Quaternionf rotation) {
+        setTranslation(node, transformation.m30(), transformation.m31(), transformation.m32());
+        setRotation(node, transformation.getUnnormalizedRotation(rotation).normalize());
+        setScaling(node, (float) Math.sqrt(transformation.m00() * transformation.m00()
+                        + transformation.m01() * transformation.m01() + transformation.m02() * transformation.m02()),
+                (float) Math.sqrt(transformation.m10() * transformation.m10()
+                        + transformation.m11() * transformation.m11() + transformation.m12() * transformation.m12()),
+                (float) Math.sqrt(transformation.m20() * transformation.m20()
+                        + transformation.m21() * transformation.m21() + transformation.m22() * transformation.m22()));
+    }
+
+    /**
+     * Node translation setter.
+     *
+     * @param node node index
+     * @param x    x coordinate of the translation
+     * @param y    y coordinate of the translation
+     * @param z    z coordinate of the translation
+     */
+    public void setTranslation(int node, float x, float y, float z) {
+        translations[3 * node] = x;
+        translations[3 * node + 1] = y;
+        translations[3 * node + 2] = z;
+    }
+
+    /**
+     * Node rotation setter.
+     *
+     * @param node node index
+     * @param x    x component of the rotation
+     * @param y    y component of the rotation
+     * @param z    z component of the rotation
+     * @param w    w component of the rotation
+     */
+    public void setRotation(int node, float x, float y, float z, float w) {
+        rotations[4 * node] = x;
+        rotations[4 * node + 1] = y;
+        rotations[4 * node + 2] = z;
+        rotations[4 * node + 3] = w;
+    }
+
+    /**
+     * Node rotation setter.
+     *
+     * @param node     node index
+     * @param rotation rotation
+     */
+    public void setRotation(int node, Quaternionf rotation) {
+        setRotation(node, rotation.x, rotation.y, rotation.z, rotation.w);
+    }
+
+    /**
+     * Node scaling setter.
+     *
+     * @param node node index
+     * @param x    x component of the scaling
+     * @param y    y component of the scaling
+     * @param z    z component of the scaling
+     */
+    public void setScaling(int node, float x, float y, float z) {
+        scalings[3 * node] = x;
+        scalings[3 * node + 1] = y;
+        scalings[3 * node + 2] = z;
+    }
+
+    /**
+     * Getter of the node rotation.
+     *
+     * @param node node index
+     * @param dest quaternion to store the rotation
+     * @return node rotation
+     */
+    public Quaternionf getRotation(int node, Quaternionf dest) {
+        return dest.set(rotations[4 * node], rotations[4 * node + 1], rotations[4 * node + 2],
+                rotations[4 * node + 3]);
+    }
+
+    /**
+     * Build local transformation of the node.
+     *
+     * @param node node index
+     * @param dest matrix to store the transformation
+     * @return node transformation
+     */
+    public Matrix4f getTransformation(int node, Matrix4f dest) {
+        return dest.translationRotateScale(translations[3 * node], translations[3 * node + 1],
+                translations[3 * node + 2], rotations[4 * node], rotations[4 * node + 1], rotations[4 * node + 2],
+                rotations[4 * node + 3], scalings[3 * node], scalings[3 * node + 1], scalings[3 * node + 2]);
+    }
+
+    /**
+     * Copy the other pose.
+     *
+     * @param pose pose of the same skeleton
+     */
+    public void set(AnimationPose pose) {
+        System.arraycopy(pose.translations, 0, translations, 0, translations.length);
+        System.arraycopy(pose.rotations, 0, rotations, 0, rotations.length);
+        System.arraycopy(pose.scalings, 0, scalings, 0, scalings.length);
+        System.arraycopy(pose.animatedNodes, 0, animatedNodes, 0, animatedNodes.length);
+    }
+
+    /**
+     * Blend the other pose into this one: translations and scalings are interpolated linearly and rotations
+     * spherically along the shortest arc. A node animated in either pose becomes animated.
+     *
+     * @param pose           pose of the same skeleton
+     * @param factor         interpolation factor, 0 keeps this pose and 1 takes the other one
+     * @param rotation       auxiliary quaternion
+     * @param targetRotation auxiliary quaternion
+     */
+    public void blend(AnimationPose pose, float factor, Quaternionf rotation, Quaternionf targetRotation) {
+        for (int i = 0; i < translations.length; i++) {
+            translations[i] += (pose.translations[i] - translations[i]) * factor;
+            scalings[i] += (pose.scalings[i] - scalings[i]) * factor;
+        }
+
+        for (int i = 0; i < animatedNodes.length; i++) {
+            getRotation(i, rotation).slerp(pose.getRotation(i, targetRotation), factor);
+
+            rotations[4 * i] = rotation.x;
+            rotations[4 * i + 1] = rotation.y;
+            rotations[4 * i + 2] = rotation.z;
+            rotations[4 * i + 3] = rotation.w;
+
+            animatedNodes[i] |= pose.animatedNodes[i];
+        }
+    }
+}
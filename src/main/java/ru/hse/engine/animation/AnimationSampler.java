@@ -0,0 +1,86 @@
+package ru.hse.engine.animation;
+
+import ru.hse.engine.animation.structure.SampledChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+/**
+ * Sampler of an animation at any time.
+ * <p>
+ * The sampler reuses its frame and keeps a key cursor per channel track, so sampling at increasing times costs a
+ * constant amount of work per channel and allocates nothing.
+ */
+public class AnimationSampler {
+    private final Skeleton skeleton;
+
+    private final SampledChannel[] channels;
+
+    private final int[] channelIndices;
+
+    private final int[] cursors;
+
+    private final Skeleton.Workspace workspace;
+
+    private final AnimatedFrame frame;
+
+    /**
+     * The class' constructor.
+     *
+     * @param skeleton       skeleton
+     * @param channels       animation channels
+     * @param channelIndices index of the channel of each skeleton node
+     */
+    public AnimationSampler(Skeleton skeleton, SampledChannel[] channels, int[] channelIndices) {
+        this.skeleton = skeleton;
+        this.channels = channels;
+        this.channelIndices = channelIndices;
+
+        cursors = new int[channels.length * SampledChannel.CURSORS_AMOUNT];
+        workspace = skeleton.createWorkspace();
+        frame = new AnimatedFrame(skeleton.getJointsAmount());
+    }
+
+    /**
+     * Sample the animation.
+     *
+     * @param time time in ticks
+     * @return animation frame, reused by the following calls
+     */
+    public AnimatedFrame sample(float time) {
+        return sample(time, frame);
+    }
+
+    /**
+     * Sample the animation into the given frame.
+     *
+     * @param time time in ticks
+     * @param dest animation frame to fill
+     * @return animation frame
+     */
+    public AnimatedFrame sample(float time, AnimatedFrame dest) {
+        skeleton.sampleFrame(channels, channelIndices, time, cursors, workspace, dest);
+
+        return dest;
+    }
+
+    /**
+     * Sample local pose of the animation.
+     *
+     * @param time time in ticks
+     * @param dest pose to fill
+     * @return pose
+     */
+    public AnimationPose samplePose(float time, AnimationPose dest) {
+        skeleton.samplePose(channels, channelIndices, time, cursors, workspace, dest);
+
+        return dest;
+    }
+
+    /**
+     * Skeleton getter.
+     *
+     * @return skeleton
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+}
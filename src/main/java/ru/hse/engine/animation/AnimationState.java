@@ -0,0 +1,253 @@
+package ru.hse.engine.animation;
+
+import java.util.List;
+
+/**
+ * Playback state of a shared animation clip in one item.
+ * <p>
+ * The state keeps the playhead, the speed and the blend weight of the clip together with its own sampler, so items
+ * playing the same clip move independently while the clip's channels and baked frames are stored once. The state
+ * remembers the time and the weight before the last update, so they can be interpolated between updates.
+ */
+public class AnimationState {
+    private final Animation animation;
+
+    private AnimationSampler sampler;
+
+    private int currentFrame;
+
+    private double currentTime;
+
+    private double previousTime;
+
+    private double speed;
+
+    private float weight;
+
+    private float previousWeight;
+
+    private float targetWeight;
+
+    private double weightRate;
+
+    /**
+     * The class' constructor.
+     *
+     * @param animation played animation
+     */
+    public AnimationState(Animation animation) {
+        this.animation = animation;
+
+        speed = 1;
+    }
+
+    /**
+     * Animation getter.
+     *
+     * @return played animation
+     */
+    public Animation getAnimation() {
+        return animation;
+    }
+
+    /**
+     * Speed getter.
+     *
+     * @return speed relative to the item's playback speed
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Speed setter, negative speeds are clamped to 0.
+     *
+     * @param speed speed relative to the item's playback speed
+     */
+    public void setSpeed(double speed) {
+        this.speed = Math.max(0, speed);
+    }
+
+    /**
+     * Current frame getter.
+     *
+     * @return current frame
+     */
+    public AnimatedFrame getCurrentFrame() {
+        return getFrame(1);
+    }
+
+    /**
+     * Getter of the frame between the previous and the current time.
+     *
+     * @param alpha interpolation factor, 0 is the time before the last move and 1 is the current time
+     * @return frame, a sampled frame is reused by the following calls
+     */
+    public AnimatedFrame getFrame(float alpha) {
+        if (animation.isBlendable())
+            return getSampler().sample((float) (getTime(alpha) * animation.getTicksPerSecond()));
+
+        List<AnimatedFrame> frames = animation.getFrames();
+
+        if (alpha >= 1)
+            return frames.get(currentFrame);
+
+        int frame = animation.findFrame(getTime(alpha) * animation.getTicksPerSecond());
+
+        return frames.get(Math.min(frames.size() - 1, frame));
+    }
+
+    /**
+     * Sample local pose of the animation between the previous and the current time.
+     *
+     * @param alpha interpolation factor, 0 is the time before the last move and 1 is the current time
+     * @param dest  pose to fill
+     * @return pose
+     */
+    public AnimationPose samplePose(float alpha, AnimationPose dest) {
+        return getSampler().samplePose((float) (getTime(alpha) * animation.getTicksPerSecond()), dest);
+    }
+
+    /**
+     * Sampler getter, the sampler is created on the first use.
+     *
+     * @return sampler of the animation's raw or compressed channels
+     */
+    private AnimationSampler getSampler() {
+        if (sampler == null)
+            sampler = animation.createSampler();
+
+        return sampler;
+    }
+
+    /**
+     * Calculate time between the time before the last move and the current time, a move looped over the end of the
+     * animation is interpolated through the end and any other move stays within the animation.
+     *
+     * @param alpha interpolation factor, 0 is the time before the last move and 1 is the current time
+     * @return time in seconds
+     */
+    public double getTime(float alpha) {
+        if (alpha >= 1)
+            return currentTime;
+
+        double durationSeconds = animation.getDurationSeconds();
+
+        double delta = currentTime - previousTime;
+
+        if (delta >= 0)
+            return Math.min(previousTime + delta * alpha, durationSeconds);
+
+        double time = previousTime + (delta + durationSeconds) * alpha;
+
+        return time >= durationSeconds ? time - durationSeconds : time;
+    }
+
+    /**
+     * Move the animation forward in time.
+     *
+     * @param seconds time in seconds, it is scaled by the state's speed
+     * @param looped  true if the animation starts over at its end and false if it stops there
+     */
+    public void advance(double seconds, boolean looped) {
+        double durationSeconds = animation.getDurationSeconds();
+
+        previousTime = currentTime;
+
+        if (durationSeconds <= 0) {
+            currentTime = 0;
+
+            return;
+        }
+
+        currentTime = looped
+                ? (currentTime + seconds * speed) % durationSeconds
+                : Math.min(currentTime + seconds * speed, durationSeconds);
+
+        if (!animation.isBlendable())
+            currentFrame = Math.min(animation.getFrames().size() - 1,
+                    animation.findFrame(currentTime * animation.getTicksPerSecond()));
+    }
+
+    /**
+     * Move the animation to its start.
+     */
+    public void rewind() {
+        currentTime = 0;
+        previousTime = 0;
+        currentFrame = 0;
+    }
+
+    /**
+     * Check if a not looped animation has reached its end.
+     *
+     * @return true if the animation is at its end and false otherwise
+     */
+    public boolean isFinished() {
+        return currentTime >= animation.getDurationSeconds();
+    }
+
+    /**
+     * Getter of the blend weight between the previous and the current update.
+     *
+     * @param alpha interpolation factor, 0 is the weight before the last update and 1 is the current weight
+     * @return blend weight
+     */
+    public float getWeight(float alpha) {
+        return previousWeight + (weight - previousWeight) * alpha;
+    }
+
+    /**
+     * Set the blend weight immediately.
+     *
+     * @param weight blend weight
+     */
+    public void setWeight(float weight) {
+        this.weight = weight;
+
+        previousWeight = weight;
+        targetWeight = weight;
+        weightRate = 0;
+    }
+
+    /**
+     * Start changing the blend weight linearly.
+     *
+     * @param target  final blend weight
+     * @param seconds duration of the change in seconds, the weight is set immediately if it is not positive
+     */
+    public void fadeTo(float target, double seconds) {
+        if (seconds <= 0) {
+            setWeight(target);
+
+            return;
+        }
+
+        targetWeight = target;
+        weightRate = Math.abs(target - weight) / seconds;
+    }
+
+    /**
+     * Move the blend weight towards its target.
+     *
+     * @param seconds time in seconds
+     */
+    public void updateWeight(double seconds) {
+        previousWeight = weight;
+
+        float step = (float) (weightRate * seconds);
+
+        weight = weight < targetWeight
+                ? Math.min(targetWeight, weight + step)
+                : Math.max(targetWeight, weight - step);
+    }
+
+    /**
+     * Check if the state has faded out completely.
+     *
+     * @return true if the weight has been 0 since the last update and is not going to grow, false otherwise
+     */
+    public boolean isFadedOut() {
+        return weight <= 0 && previousWeight <= 0 && targetWeight <= 0;
+    }
+}
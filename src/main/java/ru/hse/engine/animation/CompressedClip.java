@@ -0,0 +1,147 @@
+package ru.hse.engine.animation;
+
+import ru.hse.core.utils.Constants;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.CompressedAnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+import java.util.List;
+
+/**
+ * Animation clip with compressed channels.
+ */
+public class CompressedClip {
+    private final Skeleton skeleton;
+
+    private final CompressedAnimationChannel[] channels;
+
+    private final int[] channelIndices;
+
+    private final float[] frameTimes;
+
+    private final int rawSize;
+
+    private final int size;
+
+    private float maximalPositionError;
+
+    private float maximalRotationError;
+
+    private float maximalScalingError;
+
+    /**
+     * The class' constructor.
+     *
+     * @param baker baker of the animation with its raw channels
+     */
+    public CompressedClip(AnimationBaker baker) {
+        AnimationChannel[] rawChannels = baker.getChannels();
+
+        skeleton = baker.getSkeleton();
+        channels = new CompressedAnimationChannel[rawChannels.length];
+        frameTimes = baker.getFrameTimes();
+
+        int rawChannelsSize = 0;
+        int channelsSize = 0;
+
+        for (int i = 0; i < rawChannels.length; i++) {
+            AnimationChannel rawChannel = rawChannels[i];
+
+            channels[i] = CompressedAnimationChannel.compress(rawChannel, Constants.ANIMATION_POSITION_TOLERANCE,
+                    Constants.ANIMATION_ROTATION_TOLERANCE, Constants.ANIMATION_SCALING_TOLERANCE);
+
+            rawChannelsSize += Float.BYTES * (rawChannel.getPositionTimes().length + rawChannel.getPositions().length
+                    + rawChannel.getRotationTimes().length + rawChannel.getRotations().length
+                    + rawChannel.getScalingTimes().length + rawChannel.getScalings().length);
+            channelsSize += channels[i].getSize();
+
+            maximalPositionError = Math.max(maximalPositionError, channels[i].getMaximalPositionError());
+            maximalRotationError = Math.max(maximalRotationError, channels[i].getMaximalRotationError());
+            maximalScalingError = Math.max(maximalScalingError, channels[i].getMaximalScalingError());
+        }
+
+        channelIndices = skeleton.bindChannels(channels);
+        rawSize = rawChannelsSize;
+        size = channelsSize;
+    }
+
+    /**
+     * Compression ratio getter.
+     *
+     * @return size of the raw channels divided by the size of the compressed ones
+     */
+    public float getCompressionRatio() {
+        return size > 0 ? (float) rawSize / size : 1;
+    }
+
+    /**
+     * Maximal position error getter.
+     *
+     * @return maximal position error at the original keys
+     */
+    public float getMaximalPositionError() {
+        return maximalPositionError;
+    }
+
+    /**
+     * Maximal rotation error getter.
+     *
+     * @return maximal rotation error at the original keys in radians
+     */
+    public float getMaximalRotationError() {
+        return maximalRotationError;
+    }
+
+    /**
+     * Maximal scaling error getter.
+     *
+     * @return maximal scaling error at the original keys
+     */
+    public float getMaximalScalingError() {
+        return maximalScalingError;
+    }
+
+    /**
+     * Skeleton getter.
+     *
+     * @return skeleton
+     */
+    public Skeleton getSkeleton() {
+        return skeleton;
+    }
+
+    /**
+     * Frame times getter.
+     *
+     * @return time of every frame to bake in ticks
+     */
+    public float[] getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * Create sampler of the clip.
+     *
+     * @return sampler
+     */
+    public AnimationSampler createSampler() {
+        return new AnimationSampler(skeleton, channels, channelIndices);
+    }
+
+    /**
+     * Bake all frames of the clip by sampling it at the frame times of the raw channels, so the frames match the ones
+     * baked from the raw channels.
+     *
+     * @return baked frames
+     */
+    public List<AnimatedFrame> bake() {
+        AnimationSampler sampler = createSampler();
+
+        List<AnimatedFrame> frames = AnimatedFrame.createFrames(frameTimes.length, skeleton.getJointsAmount());
+
+        for (int i = 0; i < frameTimes.length; i++)
+            sampler.sample(frameTimes[i], frames.get(i));
+
+        return frames;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Encoding of joint matrices passed to the vertex shaders.
+ * <p>
+ * Every joint is encoded into a few vectors of four floats: a full matrix takes four columns, an affine matrix takes
+ * its three rows and a dual quaternion takes its real and dual parts. Skinning matrices are affine, so the affine
+ * encoding loses nothing, while dual quaternions keep only the rotation and the translation of a joint and drop its
+ * scaling, but do not collapse the skin around twisted joints. The shaders blend the encoded vectors of the joints of
+ * a vertex and decode the blended joint once.
+ */
+public enum JointsEncoding {
+    MATRIX(4),
+    AFFINE(3),
+    DUAL_QUATERNION(2);
+
+    public static final int VECTOR_SIZE_FLOATS = 4;
+
+    private final int vectorsAmount;
+
+    JointsEncoding(int vectorsAmount) {
+        this.vectorsAmount = vectorsAmount;
+    }
+
+    /**
+     * Vectors amount getter.
+     *
+     * @return amount of vectors of four floats per joint
+     */
+    public int getVectorsAmount() {
+        return vectorsAmount;
+    }
+
+    /**
+     * Calculate amount of joints fitting into the storage.
+     *
+     * @param maxVectorsAmount capacity of the storage in vectors of four floats
+     * @return maximal amount of encoded joints
+     */
+    public int getMaxJointsAmount(int maxVectorsAmount) {
+        return maxVectorsAmount / vectorsAmount;
+    }
+
+    /**
+     * Encode joint matrices.
+     *
+     * @param jointMatrices  joint matrices with 16 floats per joint
+     * @param jointsAmount   amount of joints
+     * @param dest           buffer to store the encoded joints, its position is not changed
+     * @param destPosition   index of the first float of the encoded joints in the buffer
+     * @param jointMatrix    auxiliary matrix
+     * @param jointRotation  auxiliary quaternion
+     */
+    public void encode(FloatBuffer jointMatrices, int jointsAmount, FloatBuffer dest, int destPosition,
+                       Matrix4f jointMatrix, Quaternionf jointRotation) {
+        int jointSize = vectorsAmount * VECTOR_SIZE_FLOATS;
+
+        for (int i = 0; i < jointsAmount; i++) {
+            jointMatrix.set(i * AnimatedFrame.MATRIX_SIZE_FLOATS, jointMatrices);
+
+            int position = destPosition + i * jointSize;
+
+            switch (this) {
+                case MATRIX:
+                    jointMatrix.get(position, dest);
+                    break;
+                case AFFINE:
+                    jointMatrix.get4x3Transposed(position, dest);
+                    break;
+                case DUAL_QUATERNION:
+                    encodeDualQuaternion(jointMatrix, jointRotation, dest, position);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Encode rotation and translation of the joint matrix into a dual quaternion: the real part is the rotation and
+     * the dual part is half of the translation multiplied by the rotation.
+     *
+     * @param jointMatrix   joint matrix
+     * @param jointRotation auxiliary quaternion
+     * @param dest          buffer to store the dual quaternion
+     * @param position      index of the first float of the dual quaternion in the buffer
+     */
+    private static void encodeDualQuaternion(Matrix4f jointMatrix, Quaternionf jointRotation, FloatBuffer dest,
+                                             int position) {
+        Quaternionf r = jointMatrix.getUnnormalizedRotation(jointRotation).normalize();
+
+        // The shortest arc keeps blending of neighbouring joints in one hemisphere
+        if (r.w < 0)
+            r.set(-r.x, -r.y, -r.z, -r.w);
+
+        float tx = jointMatrix.m30();
+        float ty = jointMatrix.m31();
+        float tz = jointMatrix.m32();
+
+        dest.put(position, r.x);
+        dest.put(position + 1, r.y);
+        dest.put(position + 2, r.z);
+        dest.put(position + 3, r.w);
+
+        dest.put(position + 4, 0.5f * (tx * r.w + ty * r.z - tz * r.y));
+        dest.put(position + 5, 0.5f * (-tx * r.z + ty * r.w + tz * r.x));
+        dest.put(position + 6, 0.5f * (tx * r.y - ty * r.x + tz * r.w));
+        dest.put(position + 7, -0.5f * (tx * r.x + ty * r.y + tz * r.z));
+    }
+}
@@ -0,0 +1,307 @@
+package ru.hse.engine.animation.structure;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.AnimationPose;
+
+import java.util.Arrays;
+
+/**
+ * Animation channel of a single node representation class.
+ * <p>
+ * Keys are stored in flat arrays: three floats per position and scaling key and four floats (x, y, z, w) per
+ * rotation key, with the time of every key in ticks kept in a separate array.
+ */
+public class AnimationChannel implements SampledChannel {
+    private final String nodeName;
+
+    private final float[] positionTimes;
+
+    private final float[] positions;
+
+    private final float[] rotationTimes;
+
+    private final float[] rotations;
+
+    private final float[] scalingTimes;
+
+    private final float[] scalings;
+
+    /**
+     * The class' constructor.
+     *
+     * @param nodeName      name of the animated node
+     * @param positionTimes times of the position keys
+     * @param positions     position keys
+     * @param rotationTimes times of the rotation keys
+     * @param rotations     rotation keys
+     * @param scalingTimes  times of the scaling keys
+     * @param scalings      scaling keys
+     */
+    public AnimationChannel(String nodeName, float[] positionTimes, float[] positions, float[] rotationTimes,
+                            float[] rotations, float[] scalingTimes, float[] scalings) {
+        this.nodeName = nodeName;
+        this.positionTimes = positionTimes;
+        this.positions = positions;
+        this.rotationTimes = rotationTimes;
+        this.rotations = rotations;
+        this.scalingTimes = scalingTimes;
+        this.scalings = scalings;
+    }
+
+    @Override
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    /**
+     * Position key times getter.
+     *
+     * @return times of the position keys
+     */
+    public float[] getPositionTimes() {
+        return positionTimes;
+    }
+
+    /**
+     * Position keys getter.
+     *
+     * @return position keys
+     */
+    public float[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Rotation key times getter.
+     *
+     * @return times of the rotation keys
+     */
+    public float[] getRotationTimes() {
+        return rotationTimes;
+    }
+
+    /**
+     * Rotation keys getter.
+     *
+     * @return rotation keys
+     */
+    public float[] getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Scaling key times getter.
+     *
+     * @return times of the scaling keys
+     */
+    public float[] getScalingTimes() {
+        return scalingTimes;
+    }
+
+    /**
+     * Scaling keys getter.
+     *
+     * @return scaling keys
+     */
+    public float[] getScalings() {
+        return scalings;
+    }
+
+    /**
+     * Frames amount getter.
+     *
+     * @return maximal amount of keys of the channel
+     */
+    public int getFramesAmount() {
+        return Math.max(Math.max(positions.length / 3, scalings.length / 3), rotations.length / 4);
+    }
+
+    /**
+     * Build node transformation of the given frame.
+     * <p>
+     * Channels with less keys than frames hold their last key.
+     *
+     * @param frame    frame
+     * @param rotation auxiliary quaternion
+     * @param dest     matrix to store the transformation
+     * @return node transformation
+     */
+    public Matrix4f getTransformation(int frame, Quaternionf rotation, Matrix4f dest) {
+        dest.identity();
+
+        int positionsAmount = positions.length / 3;
+
+        if (positionsAmount > 0) {
+            int key = 3 * Math.min(positionsAmount - 1, frame);
+
+            dest.translate(positions[key], positions[key + 1], positions[key + 2]);
+        }
+
+        int rotationsAmount = rotations.length / 4;
+
+        if (rotationsAmount > 0) {
+            int key = 4 * Math.min(rotationsAmount - 1, frame);
+
+            dest.rotate(rotation.set(rotations[key], rotations[key + 1], rotations[key + 2], rotations[key + 3]));
+        }
+
+        int scalingsAmount = scalings.length / 3;
+
+        if (scalingsAmount > 0) {
+            int key = 3 * Math.min(scalingsAmount - 1, frame);
+
+            dest.scale(scalings[key], scalings[key + 1], scalings[key + 2]);
+        }
+
+        return dest;
+    }
+
+    @Override
+    public Matrix4f sample(float time, int[] cursors, int cursorsOffset, Quaternionf rotation,
+                           Quaternionf targetRotation, Matrix4f dest) {
+        dest.identity();
+
+        if (positionTimes.length > 0) {
+            int key = findKey(positionTimes, time, cursors, cursorsOffset);
+            int nextKey = Math.min(key + 1, positionTimes.length - 1);
+
+            float factor = calculateFactor(positionTimes, key, nextKey, time);
+
+            dest.translate(lerp(positions, 3 * key, 3 * nextKey, factor),
+                    lerp(positions, 3 * key + 1, 3 * nextKey + 1, factor),
+                    lerp(positions, 3 * key + 2, 3 * nextKey + 2, factor));
+        }
+
+        if (rotationTimes.length > 0) {
+            int key = findKey(rotationTimes, time, cursors, cursorsOffset + 1);
+            int nextKey = Math.min(key + 1, rotationTimes.length - 1);
+
+            float factor = calculateFactor(rotationTimes, key, nextKey, time);
+
+            rotation.set(rotations[4 * key], rotations[4 * key + 1], rotations[4 * key + 2], rotations[4 * key + 3]);
+
+            if (factor > 0)
+                rotation.slerp(targetRotation.set(rotations[4 * nextKey], rotations[4 * nextKey + 1],
+                        rotations[4 * nextKey + 2], rotations[4 * nextKey + 3]), factor);
+
+            dest.rotate(rotation);
+        }
+
+        if (scalingTimes.length > 0) {
+            int key = findKey(scalingTimes, time, cursors, cursorsOffset + 2);
+            int nextKey = Math.min(key + 1, scalingTimes.length - 1);
+
+            float factor = calculateFactor(scalingTimes, key, nextKey, time);
+
+            dest.scale(lerp(scalings, 3 * key, 3 * nextKey, factor),
+                    lerp(scalings, 3 * key + 1, 3 * nextKey + 1, factor),
+                    lerp(scalings, 3 * key + 2, 3 * nextKey + 2, factor));
+        }
+
+        return dest;
+    }
+
+    @Override
+    public void samplePose(float time, int[] cursors, int cursorsOffset, Quaternionf rotation,
+                           Quaternionf targetRotation, AnimationPose pose, int node) {
+        pose.setTranslation(node, 0, 0, 0);
+        pose.setRotation(node, 0, 0, 0, 1);
+        pose.setScaling(node, 1, 1, 1);
+
+        if (positionTimes.length > 0) {
+            int key = findKey(positionTimes, time, cursors, cursorsOffset);
+            int nextKey = Math.min(key + 1, positionTimes.length - 1);
+
+            float factor = calculateFactor(positionTimes, key, nextKey, time);
+
+            pose.setTranslation(node, lerp(positions, 3 * key, 3 * nextKey, factor),
+                    lerp(positions, 3 * key + 1, 3 * nextKey + 1, factor),
+                    lerp(positions, 3 * key + 2, 3 * nextKey + 2, factor));
+        }
+
+        if (rotationTimes.length > 0) {
+            int key = findKey(rotationTimes, time, cursors, cursorsOffset + 1);
+            int nextKey = Math.min(key + 1, rotationTimes.length - 1);
+
+            float factor = calculateFactor(rotationTimes, key, nextKey, time);
+
+            rotation.set(rotations[4 * key], rotations[4 * key + 1], rotations[4 * key + 2], rotations[4 * key + 3]);
+
+            if (factor > 0)
+                rotation.slerp(targetRotation.set(rotations[4 * nextKey], rotations[4 * nextKey + 1],
+                        rotations[4 * nextKey + 2], rotations[4 * nextKey + 3]), factor);
+
+            pose.setRotation(node, rotation.normalize());
+        }
+
+        if (scalingTimes.length > 0) {
+            int key = findKey(scalingTimes, time, cursors, cursorsOffset + 2);
+            int nextKey = Math.min(key + 1, scalingTimes.length - 1);
+
+            float factor = calculateFactor(scalingTimes, key, nextKey, time);
+
+            pose.setScaling(node, lerp(scalings, 3 * key, 3 * nextKey, factor),
+                    lerp(scalings, 3 * key + 1, 3 * nextKey + 1, factor),
+                    lerp(scalings, 3 * key + 2, 3 * nextKey + 2, factor));
+        }
+    }
+
+    /**
+     * Find the last key not later than the given time.
+     *
+     * @param times       key times
+     * @param time        time in ticks
+     * @param cursors     cursors array
+     * @param cursorIndex index of the track's cursor
+     * @return key index
+     */
+    static int findKey(float[] times, float time, int[] cursors, int cursorIndex) {
+        int key = cursors[cursorIndex];
+
+        if (key >= times.length || times[key] > time) {
+            key = Arrays.binarySearch(times, time);
+
+            if (key < 0)
+                key = Math.max(0, -key - 2);
+        } else {
+            while (key + 1 < times.length && times[key + 1] <= time)
+                key++;
+        }
+
+        cursors[cursorIndex] = key;
+
+        return key;
+    }
+
+    /**
+     * Calculate interpolation factor between two keys.
+     *
+     * @param times   key times
+     * @param key     first key
+     * @param nextKey second key
+     * @param time    time in ticks
+     * @return interpolation factor in [0, 1]
+     */
+    static float calculateFactor(float[] times, int key, int nextKey, float time) {
+        float delta = times[nextKey] - times[key];
+
+        if (delta <= 0)
+            return 0;
+
+        return Math.min(1, Math.max(0, (time - times[key]) / delta));
+    }
+
+    /**
+     * Linear interpolation of two values of the array.
+     *
+     * @param values values
+     * @param first  first value index
+     * @param second second value index
+     * @param factor interpolation factor
+     * @return interpolated value
+     */
+    private static float lerp(float[] values, int first, int second, float factor) {
+        return values[first] + (values[second] - values[first]) * factor;
+    }
+}
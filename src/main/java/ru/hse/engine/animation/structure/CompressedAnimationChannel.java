@@ -0,0 +1,607 @@
+package ru.hse.engine.animation.structure;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.AnimationPose;
+
+import java.util.Arrays;
+
+/**
+ * Compressed animation channel of a single node representation class.
+ * <p>
+ * Keys which are reproduced by the interpolation of their neighbours within the given tolerance are dropped.
+ * Rotations are stored with the smallest three method: the largest component is omitted and the other three are
+ * quantized to 15 bits, with the index of the omitted component kept in the remaining bits. Positions and scalings
+ * are quantized to 16 bits relative to the channel's range of every component.
+ */
+public class CompressedAnimationChannel implements SampledChannel {
+    private static final int ROTATION_STEPS = 0x7FFF;
+
+    private static final float ROTATION_RANGE = (float) Math.sqrt(0.5);
+
+    private static final int VECTOR_STEPS = 0xFFFF;
+
+    private static final int MAXIMAL_REDUCED_SPAN = 64;
+
+    private final String nodeName;
+
+    private final float[] positionTimes;
+
+    private final short[] positions;
+
+    private final float[] positionMinimums;
+
+    private final float[] positionSteps;
+
+    private final float[] rotationTimes;
+
+    private final short[] rotations;
+
+    private final float[] scalingTimes;
+
+    private final short[] scalings;
+
+    private final float[] scalingMinimums;
+
+    private final float[] scalingSteps;
+
+    private float maximalPositionError;
+
+    private float maximalRotationError;
+
+    private float maximalScalingError;
+
+    /**
+     * The class' constructor.
+     *
+     * @param nodeName         name of the animated node
+     * @param positionTimes    times of the position keys
+     * @param positions        quantized position keys
+     * @param positionMinimums minimal value of every position component
+     * @param positionSteps    quantization step of every position component
+     * @param rotationTimes    times of the rotation keys
+     * @param rotations        quantized rotation keys
+     * @param scalingTimes     times of the scaling keys
+     * @param scalings         quantized scaling keys
+     * @param scalingMinimums  minimal value of every scaling component
+     * @param scalingSteps     quantization step of every scaling component
+     */
+    private CompressedAnimationChannel(String nodeName, float[] positionTimes, short[] positions,
+                                       float[] positionMinimums, float[] positionSteps, float[] rotationTimes,
+                                       short[] rotations, float[] scalingTimes, short[] scalings,
+                                       float[] scalingMinimums, float[] scalingSteps) {
+        this.nodeName = nodeName;
+        this.positionTimes = positionTimes;
+        this.positions = positions;
+        this.positionMinimums = positionMinimums;
+        this.positionSteps = positionSteps;
+        this.rotationTimes = rotationTimes;
+        this.rotations = rotations;
+        this.scalingTimes = scalingTimes;
+        this.scalings = scalings;
+        this.scalingMinimums = scalingMinimums;
+        this.scalingSteps = scalingSteps;
+    }
+
+    /**
+     * Compress animation channel.
+     *
+     * @param channel           animation channel
+     * @param positionTolerance maximal position error of the dropped keys
+     * @param rotationTolerance maximal rotation error of the dropped keys in radians
+     * @param scalingTolerance  maximal scaling error of the dropped keys
+     * @return compressed channel
+     */
+    public static CompressedAnimationChannel compress(AnimationChannel channel, float positionTolerance,
+                                                      float rotationTolerance, float scalingTolerance) {
+        float[] rotations = channel.getRotations().clone();
+
+        for (int i = 0; i < rotations.length; i += 4) {
+            float length = (float) Math.sqrt(rotations[i] * rotations[i] + rotations[i + 1] * rotations[i + 1]
+                    + rotations[i + 2] * rotations[i + 2] + rotations[i + 3] * rotations[i + 3]);
+
+            for (int j = 0; j < 4 && length > 0; j++)
+                rotations[i + j] /= length;
+        }
+
+        int[] positionKeys = reduceKeys(channel.getPositionTimes(), channel.getPositions(), 3, positionTolerance);
+        int[] rotationKeys = reduceKeys(channel.getRotationTimes(), rotations, 4, rotationTolerance);
+        int[] scalingKeys = reduceKeys(channel.getScalingTimes(), channel.getScalings(), 3, scalingTolerance);
+
+        float[] positionMinimums = new float[3];
+        float[] positionSteps = new float[3];
+        float[] scalingMinimums = new float[3];
+        float[] scalingSteps = new float[3];
+
+        short[] positions = quantizeVectors(channel.getPositions(), positionKeys, positionMinimums, positionSteps);
+        short[] scalings = quantizeVectors(channel.getScalings(), scalingKeys, scalingMinimums, scalingSteps);
+
+        short[] quantizedRotations = new short[3 * rotationKeys.length];
+
+        for (int i = 0; i < rotationKeys.length; i++)
+            quantizeRotation(rotations, rotationKeys[i], quantizedRotations, i);
+
+        CompressedAnimationChannel result = new CompressedAnimationChannel(channel.getNodeName(),
+                selectTimes(channel.getPositionTimes(), positionKeys), positions, positionMinimums, positionSteps,
+                selectTimes(channel.getRotationTimes(), rotationKeys), quantizedRotations,
+                selectTimes(channel.getScalingTimes(), scalingKeys), scalings, scalingMinimums, scalingSteps);
+
+        result.measureErrors(channel);
+
+        return result;
+    }
+
+    @Override
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    /**
+     * Size getter.
+     *
+     * @return size of the keys in bytes
+     */
+    public int getSize() {
+        return Float.BYTES * (positionTimes.length + rotationTimes.length + scalingTimes.length
+                + positionMinimums.length + positionSteps.length + scalingMinimums.length + scalingSteps.length)
+                + Short.BYTES * (positions.length + rotations.length + scalings.length);
+    }
+
+    /**
+     * Maximal position error getter.
+     *
+     * @return maximal position error at the original keys
+     */
+    public float getMaximalPositionError() {
+        return maximalPositionError;
+    }
+
+    /**
+     * Maximal rotation error getter.
+     *
+     * @return maximal rotation error at the original keys in radians
+     */
+    public float getMaximalRotationError() {
+        return maximalRotationError;
+    }
+
+    /**
+     * Maximal scaling error getter.
+     *
+     * @return maximal scaling error at the original keys
+     */
+    public float getMaximalScalingError() {
+        return maximalScalingError;
+    }
+
+    @Override
+    public Matrix4f sample(float time, int[] cursors, int cursorsOffset, Quaternionf rotation,
+                           Quaternionf targetRotation, Matrix4f dest) {
+        dest.identity();
+
+        if (positionTimes.length > 0) {
+            int key = AnimationChannel.findKey(positionTimes, time, cursors, cursorsOffset);
+            int nextKey = Math.min(key + 1, positionTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(positionTimes, key, nextKey, time);
+
+            dest.translate(lerp(positions, positionMinimums, positionSteps, key, nextKey, 0, factor),
+                    lerp(positions, positionMinimums, positionSteps, key, nextKey, 1, factor),
+                    lerp(positions, positionMinimums, positionSteps, key, nextKey, 2, factor));
+        }
+
+        if (rotationTimes.length > 0) {
+            int key = AnimationChannel.findKey(rotationTimes, time, cursors, cursorsOffset + 1);
+            int nextKey = Math.min(key + 1, rotationTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(rotationTimes, key, nextKey, time);
+
+            dequantizeRotation(rotations, key, rotation);
+
+            if (factor > 0)
+                rotation.slerp(dequantizeRotation(rotations, nextKey, targetRotation), factor);
+
+            dest.rotate(rotation);
+        }
+
+        if (scalingTimes.length > 0) {
+            int key = AnimationChannel.findKey(scalingTimes, time, cursors, cursorsOffset + 2);
+            int nextKey = Math.min(key + 1, scalingTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(scalingTimes, key, nextKey, time);
+
+            dest.scale(lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 0, factor),
+                    lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 1, factor),
+                    lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 2, factor));
+        }
+
+        return dest;
+    }
+
+    @Override
+    public void samplePose(float time, int[] cursors, int cursorsOffset, Quaternionf rotation,
+                           Quaternionf targetRotation, AnimationPose pose, int node) {
+        pose.setTranslation(node, 0, 0, 0);
+        pose.setRotation(node, 0, 0, 0, 1);
+        pose.setScaling(node, 1, 1, 1);
+
+        if (positionTimes.length > 0) {
+            int key = AnimationChannel.findKey(positionTimes, time, cursors, cursorsOffset);
+            int nextKey = Math.min(key + 1, positionTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(positionTimes, key, nextKey, time);
+
+            pose.setTranslation(node, lerp(positions, positionMinimums, positionSteps, key, nextKey, 0, factor),
+                    lerp(positions, positionMinimums, positionSteps, key, nextKey, 1, factor),
+                    lerp(positions, positionMinimums, positionSteps, key, nextKey, 2, factor));
+        }
+
+        if (rotationTimes.length > 0) {
+            int key = AnimationChannel.findKey(rotationTimes, time, cursors, cursorsOffset + 1);
+            int nextKey = Math.min(key + 1, rotationTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(rotationTimes, key, nextKey, time);
+
+            dequantizeRotation(rotations, key, rotation);
+
+            if (factor > 0)
+                rotation.slerp(dequantizeRotation(rotations, nextKey, targetRotation), factor);
+
+            pose.setRotation(node, rotation.normalize());
+        }
+
+        if (scalingTimes.length > 0) {
+            int key = AnimationChannel.findKey(scalingTimes, time, cursors, cursorsOffset + 2);
+            int nextKey = Math.min(key + 1, scalingTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(scalingTimes, key, nextKey, time);
+
+            pose.setScaling(node, lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 0, factor),
+                    lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 1, factor),
+                    lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 2, factor));
+        }
+    }
+
+    /**
+     * Measure maximal errors of the compressed keys at the times of the original keys.
+     *
+     * @param channel original animation channel
+     */
+    private void measureErrors(AnimationChannel channel) {
+        int[] cursors = new int[CURSORS_AMOUNT];
+
+        float[] times = channel.getPositionTimes();
+        float[] values = channel.getPositions();
+
+        for (int i = 0; i < times.length; i++) {
+            int key = AnimationChannel.findKey(positionTimes, times[i], cursors, 0);
+            int nextKey = Math.min(key + 1, positionTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(positionTimes, key, nextKey, times[i]);
+
+            float dx = lerp(positions, positionMinimums, positionSteps, key, nextKey, 0, factor) - values[3 * i];
+            float dy = lerp(positions, positionMinimums, positionSteps, key, nextKey, 1, factor) - values[3 * i + 1];
+            float dz = lerp(positions, positionMinimums, positionSteps, key, nextKey, 2, factor) - values[3 * i + 2];
+
+            maximalPositionError = Math.max(maximalPositionError, (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+        }
+
+        times = channel.getRotationTimes();
+        values = channel.getRotations();
+
+        Quaternionf rotation = new Quaternionf();
+        Quaternionf targetRotation = new Quaternionf();
+
+        for (int i = 0; i < times.length; i++) {
+            int key = AnimationChannel.findKey(rotationTimes, times[i], cursors, 1);
+            int nextKey = Math.min(key + 1, rotationTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(rotationTimes, key, nextKey, times[i]);
+
+            dequantizeRotation(rotations, key, rotation);
+
+            if (factor > 0)
+                rotation.slerp(dequantizeRotation(rotations, nextKey, targetRotation), factor);
+
+            targetRotation.set(values[4 * i], values[4 * i + 1], values[4 * i + 2], values[4 * i + 3]).normalize();
+
+            maximalRotationError = Math.max(maximalRotationError, angle(rotation, targetRotation));
+        }
+
+        times = channel.getScalingTimes();
+        values = channel.getScalings();
+
+        for (int i = 0; i < times.length; i++) {
+            int key = AnimationChannel.findKey(scalingTimes, times[i], cursors, 2);
+            int nextKey = Math.min(key + 1, scalingTimes.length - 1);
+
+            float factor = AnimationChannel.calculateFactor(scalingTimes, key, nextKey, times[i]);
+
+            float dx = lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 0, factor) - values[3 * i];
+            float dy = lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 1, factor) - values[3 * i + 1];
+            float dz = lerp(scalings, scalingMinimums, scalingSteps, key, nextKey, 2, factor) - values[3 * i + 2];
+
+            maximalScalingError = Math.max(maximalScalingError, (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+        }
+    }
+
+    /**
+     * Select keys to keep: a key is dropped if the interpolation between the kept keys around it reproduces the key
+     * within the tolerance.
+     *
+     * @param times     key times
+     * @param values    key values
+     * @param stride    amount of values per key, 4 for rotations and 3 for positions and scalings
+     * @param tolerance maximal error of the dropped keys
+     * @return indices of the kept keys
+     */
+    private static int[] reduceKeys(float[] times, float[] values, int stride, float tolerance) {
+        int keysAmount = times.length;
+
+        if (keysAmount <= 2)
+            return rangeOf(keysAmount);
+
+        boolean isConstant = true;
+
+        for (int i = 1; i < keysAmount && isConstant; i++)
+            isConstant = calculateError(values, stride, 0, 0, 0, i) <= tolerance;
+
+        if (isConstant)
+            return new int[]{0};
+
+        int[] keys = new int[keysAmount];
+        int keptAmount = 0;
+
+        keys[keptAmount++] = 0;
+
+        int anchor = 0;
+
+        while (anchor < keysAmount - 1) {
+            int end = anchor + 1;
+
+            while (end + 1 < keysAmount && end + 1 - anchor <= MAXIMAL_REDUCED_SPAN
+                    && isReproduced(times, values, stride, anchor, end + 1, tolerance))
+                end++;
+
+            keys[keptAmount++] = end;
+
+            anchor = end;
+        }
+
+        return Arrays.copyOf(keys, keptAmount);
+    }
+
+    /**
+     * Check if the interpolation between two keys reproduces all the keys between them.
+     *
+     * @param times     key times
+     * @param values    key values
+     * @param stride    amount of values per key
+     * @param first     first key
+     * @param last      last key
+     * @param tolerance maximal error
+     * @return true if all the keys are reproduced and false otherwise
+     */
+    private static boolean isReproduced(float[] times, float[] values, int stride, int first, int last,
+                                        float tolerance) {
+        float delta = times[last] - times[first];
+
+        for (int i = first + 1; i < last; i++) {
+            float factor = delta > 0 ? (times[i] - times[first]) / delta : 0;
+
+            if (calculateError(values, stride, first, last, factor, i) > tolerance)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculate error of the interpolation between two keys at the given key.
+     *
+     * @param values key values
+     * @param stride amount of values per key
+     * @param first  first key
+     * @param last   last key
+     * @param factor interpolation factor
+     * @param key    key to compare with
+     * @return distance for positions and scalings or angle for rotations
+     */
+    private static float calculateError(float[] values, int stride, int first, int last, float factor, int key) {
+        if (stride == 4) {
+            Quaternionf interpolated = new Quaternionf(values[4 * first], values[4 * first + 1],
+                    values[4 * first + 2], values[4 * first + 3]);
+
+            interpolated.slerp(new Quaternionf(values[4 * last], values[4 * last + 1], values[4 * last + 2],
+                    values[4 * last + 3]), factor);
+
+            return angle(interpolated, new Quaternionf(values[4 * key], values[4 * key + 1], values[4 * key + 2],
+                    values[4 * key + 3]));
+        }
+
+        float error = 0;
+
+        for (int i = 0; i < stride; i++) {
+            float interpolated = values[stride * first + i]
+                    + (values[stride * last + i] - values[stride * first + i]) * factor;
+            float difference = interpolated - values[stride * key + i];
+
+            error += difference * difference;
+        }
+
+        return (float) Math.sqrt(error);
+    }
+
+    /**
+     * Calculate angle between two rotations, the relative rotation is used to keep the precision for small angles.
+     *
+     * @param first  first rotation
+     * @param second second rotation
+     * @return angle in radians
+     */
+    private static float angle(Quaternionf first, Quaternionf second) {
+        double x = (double) first.w * second.x - (double) first.x * second.w - (double) first.y * second.z
+                + (double) first.z * second.y;
+        double y = (double) first.w * second.y + (double) first.x * second.z - (double) first.y * second.w
+                - (double) first.z * second.x;
+        double z = (double) first.w * second.z - (double) first.x * second.y + (double) first.y * second.x
+                - (double) first.z * second.w;
+        double w = (double) first.w * second.w + (double) first.x * second.x + (double) first.y * second.y
+                + (double) first.z * second.z;
+
+        return 2 * (float) Math.atan2(Math.sqrt(x * x + y * y + z * z), Math.abs(w));
+    }
+
+    /**
+     * Create array of the first indices.
+     *
+     * @param amount amount of indices
+     * @return indices from 0 to amount - 1
+     */
+    private static int[] rangeOf(int amount) {
+        int[] result = new int[amount];
+
+        for (int i = 0; i < amount; i++)
+            result[i] = i;
+
+        return result;
+    }
+
+    /**
+     * Select times of the kept keys.
+     *
+     * @param times key times
+     * @param keys  indices of the kept keys
+     * @return times of the kept keys
+     */
+    private static float[] selectTimes(float[] times, int[] keys) {
+        float[] result = new float[keys.length];
+
+        for (int i = 0; i < keys.length; i++)
+            result[i] = times[keys[i]];
+
+        return result;
+    }
+
+    /**
+     * Quantize vector keys relative to the range of every component.
+     *
+     * @param values   vector keys
+     * @param keys     indices of the kept keys
+     * @param minimums array to store minimal value of every component
+     * @param steps    array to store quantization step of every component
+     * @return quantized keys
+     */
+    private static short[] quantizeVectors(float[] values, int[] keys, float[] minimums, float[] steps) {
+        short[] result = new short[3 * keys.length];
+
+        for (int i = 0; i < 3; i++) {
+            float minimum = Float.POSITIVE_INFINITY;
+            float maximum = Float.NEGATIVE_INFINITY;
+
+            for (int key : keys) {
+                minimum = Math.min(minimum, values[3 * key + i]);
+                maximum = Math.max(maximum, values[3 * key + i]);
+            }
+
+            if (keys.length == 0)
+                continue;
+
+            minimums[i] = minimum;
+            steps[i] = (maximum - minimum) / VECTOR_STEPS;
+
+            for (int j = 0; j < keys.length; j++) {
+                int quantized = steps[i] > 0 ? Math.round((values[3 * keys[j] + i] - minimum) / steps[i]) : 0;
+
+                result[3 * j + i] = (short) Math.min(VECTOR_STEPS, Math.max(0, quantized));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Quantize rotation key with the smallest three method.
+     *
+     * @param rotations normalized rotation keys
+     * @param key       index of the key to quantize
+     * @param dest      array to store the quantized key
+     * @param index     index of the quantized key
+     */
+    private static void quantizeRotation(float[] rotations, int key, short[] dest, int index) {
+        int largest = 0;
+
+        for (int i = 1; i < 4; i++)
+            if (Math.abs(rotations[4 * key + i]) > Math.abs(rotations[4 * key + largest]))
+                largest = i;
+
+        float sign = rotations[4 * key + largest] < 0 ? -1 : 1;
+
+        int[] components = new int[3];
+
+        for (int i = 0, j = 0; i < 4; i++) {
+            if (i == largest)
+                continue;
+
+            float value = Math.min(ROTATION_RANGE, Math.max(-ROTATION_RANGE, sign * rotations[4 * key + i]));
+
+            components[j++] = Math.round((value + ROTATION_RANGE) / (2 * ROTATION_RANGE) * ROTATION_STEPS);
+        }
+
+        dest[3 * index] = (short) (components[0] | (largest & 1) << 15);
+        dest[3 * index + 1] = (short) (components[1] | (largest >> 1) << 15);
+        dest[3 * index + 2] = (short) components[2];
+    }
+
+    /**
+     * Restore rotation key quantized with the smallest three method.
+     *
+     * @param rotations quantized rotation keys
+     * @param key       index of the key
+     * @param dest      quaternion to store the rotation
+     * @return restored rotation
+     */
+    private static Quaternionf dequantizeRotation(short[] rotations, int key, Quaternionf dest) {
+        int first = rotations[3 * key] & 0xFFFF;
+        int second = rotations[3 * key + 1] & 0xFFFF;
+        int third = rotations[3 * key + 2] & 0xFFFF;
+
+        int largest = (first >>> 15) | (second >>> 15) << 1;
+
+        float a = (first & ROTATION_STEPS) * (2 * ROTATION_RANGE / ROTATION_STEPS) - ROTATION_RANGE;
+        float b = (second & ROTATION_STEPS) * (2 * ROTATION_RANGE / ROTATION_STEPS) - ROTATION_RANGE;
+        float c = (third & ROTATION_STEPS) * (2 * ROTATION_RANGE / ROTATION_STEPS) - ROTATION_RANGE;
+        float d = (float) Math.sqrt(Math.max(0, 1 - a * a - b * b - c * c));
+
+        switch (largest) {
+            case 0:
+                return dest.set(d, a, b, c);
+            case 1:
+                return dest.set(a, d, b, c);
+            case 2:
+                return dest.set(a, b, d, c);
+            default:
+                return dest.set(a, b, c, d);
+        }
+    }
+
+    /**
+     * Linear interpolation of a component of two quantized vector keys.
+     *
+     * @param values    quantized vector keys
+     * @param minimums  minimal value of every component
+     * @param steps     quantization step of every component
+     * @param key       first key
+     * @param nextKey   second key
+     * @param component component index
+     * @param factor    interpolation factor
+     * @return interpolated value
+     */
+    private static float lerp(short[] values, float[] minimums, float[] steps, int key, int nextKey, int component,
+                              float factor) {
+        float first = minimums[component] + (values[3 * key + component] & 0xFFFF) * steps[component];
+        float second = minimums[component] + (values[3 * nextKey + component] & 0xFFFF) * steps[component];
+
+        return first + (second - first) * factor;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hse.engine.animation.structure;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.AnimationPose;
+
+/**
+ * Animation channel of a single node sampled at any time.
+ */
+public interface SampledChannel {
+    int CURSORS_AMOUNT = 3;
+
+    /**
+     * Node name getter.
+     *
+     * @return name of the animated node
+     */
+    String getNodeName();
+
+    /**
+     * Build node transformation at the given time, interpolating between the neighbouring keys.
+     * <p>
+     * The last used key of every track is kept in the cursors, so sampling at increasing times only looks at the
+     * following keys.
+     *
+     * @param time           time in ticks
+     * @param cursors        cursors array
+     * @param cursorsOffset  index of the channel's first cursor, the channel uses {@link #CURSORS_AMOUNT} cursors
+     * @param rotation       auxiliary quaternion
+     * @param targetRotation auxiliary quaternion
+     * @param dest           matrix to store the transformation
+     * @return node transformation
+     */
+    Matrix4f sample(float time, int[] cursors, int cursorsOffset, Quaternionf rotation, Quaternionf targetRotation,
+                    Matrix4f dest);
+
+    /**
+     * Sample translation, rotation and scaling of the node at the given time into the pose, interpolating between
+     * the neighbouring keys. Missing tracks are sampled as identity.
+     *
+     * @param time           time in ticks
+     * @param cursors        cursors array
+     * @param cursorsOffset  index of the channel's first cursor, the channel uses {@link #CURSORS_AMOUNT} cursors
+     * @param rotation       auxiliary quaternion
+     * @param targetRotation auxiliary quaternion
+     * @param pose           pose to fill
+     * @param node           index of the node in the pose
+     */
+    void samplePose(float time, int[] cursors, int cursorsOffset, Quaternionf rotation, Quaternionf targetRotation,
+                    AnimationPose pose, int node);
+}
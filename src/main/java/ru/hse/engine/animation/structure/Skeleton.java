@@ -0,0 +1,381 @@
+package ru.hse.engine.animation.structure;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.AnimatedFrame;
+import ru.hse.engine.animation.AnimationPose;
+
+import java.util.*;
+
+/**
+ * Skeleton binding table representation class.
+ * <p>
+ * Nodes are stored in depth-first order, so every parent precedes its children and the whole tree is walked with
+ * a single pass over the parent indices.
+ */
+public class Skeleton {
+    private static final int[] NO_BONES = new int[0];
+
+    private final String[] nodeNames;
+
+    private final int[] parentIndices;
+
+    private final Matrix4f[] nodeTransformations;
+
+    private final int[][] nodeBoneIds;
+
+    private final Matrix4f[] boneOffsets;
+
+    private final Matrix4f globalInverseTransformation;
+
+    private final AnimationPose restPose;
+
+    /**
+     * The class' constructor.
+     *
+     * @param nodeNames                   names of the nodes
+     * @param parentIndices               indices of the nodes' parents or -1 for the root node
+     * @param nodeTransformations         transformations of the nodes
+     * @param nodeBoneIds                 ids of the bones affected by each node
+     * @param boneOffsets                 offset matrices of the bones
+     * @param globalInverseTransformation global inverse transformation
+     */
+    public Skeleton(String[] nodeNames, int[] parentIndices, Matrix4f[] nodeTransformations, int[][] nodeBoneIds,
+                     Matrix4f[] boneOffsets, Matrix4f globalInverseTransformation) {
+        this.nodeNames = nodeNames;
+        this.parentIndices = parentIndices;
+        this.nodeTransformations = nodeTransformations;
+        this.nodeBoneIds = nodeBoneIds;
+        this.boneOffsets = boneOffsets;
+        this.globalInverseTransformation = globalInverseTransformation;
+
+        restPose = new AnimationPose(nodeNames.length);
+
+        Quaternionf rotation = new Quaternionf();
+
+        for (int i = 0; i < nodeNames.length; i++)
+            restPose.setTransformation(i, nodeTransformations[i], rotation);
+    }
+
+    /**
+     * Create skeleton from the nodes tree and the bones.
+     *
+     * @param rootNode                    root node
+     * @param boneList                    bones list
+     * @param globalInverseTransformation global inverse transformation
+     * @return created skeleton
+     */
+    public static Skeleton create(Node rootNode, List<Bone> boneList, Matrix4f globalInverseTransformation) {
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+
+        collectNodes(rootNode, -1, nodes, parents);
+
+        Map<String, List<Integer>> boneIdsByName = new HashMap<>();
+
+        Matrix4f[] boneOffsets = new Matrix4f[boneList.size()];
+
+        for (Bone bone : boneList) {
+            boneIdsByName.computeIfAbsent(bone.getBoneName(), k -> new ArrayList<>()).add(bone.getBoneId());
+
+            boneOffsets[bone.getBoneId()] = bone.getOffsetMatrix();
+        }
+
+        int nodesAmount = nodes.size();
+
+        String[] nodeNames = new String[nodesAmount];
+        int[] parentIndices = new int[nodesAmount];
+        Matrix4f[] nodeTransformations = new Matrix4f[nodesAmount];
+        int[][] nodeBoneIds = new int[nodesAmount][];
+
+        for (int i = 0; i < nodesAmount; i++) {
+            Node node = nodes.get(i);
+
+            nodeNames[i] = node.getName();
+            parentIndices[i] = parents.get(i);
+            nodeTransformations[i] = node.getNodeTransformation();
+
+            List<Integer> boneIds = boneIdsByName.get(node.getName());
+
+            nodeBoneIds[i] = boneIds != null ? boneIds.stream().mapToInt(Integer::intValue).toArray() : NO_BONES;
+        }
+
+        return new Skeleton(nodeNames, parentIndices, nodeTransformations, nodeBoneIds, boneOffsets,
+                globalInverseTransformation);
+    }
+
+    /**
+     * Collect nodes of the tree in depth-first order.
+     *
+     * @param node        current node
+     * @param parentIndex index of the node's parent
+     * @param nodes       collected nodes
+     * @param parents     indices of the collected nodes' parents
+     */
+    private static void collectNodes(Node node, int parentIndex, List<Node> nodes, List<Integer> parents) {
+        int index = nodes.size();
+
+        nodes.add(node);
+        parents.add(parentIndex);
+
+        for (Node childNode : node.getChildren())
+            collectNodes(childNode, index, nodes, parents);
+    }
+
+    /**
+     * Node names getter.
+     *
+     * @return names of the nodes
+     */
+    public String[] getNodeNames() {
+        return nodeNames;
+    }
+
+    /**
+     * Parent indices getter.
+     *
+     * @return indices of the nodes' parents or -1 for the root node
+     */
+    public int[] getParentIndices() {
+        return parentIndices;
+    }
+
+    /**
+     * Node transformations getter.
+     *
+     * @return transformations of the nodes
+     */
+    public Matrix4f[] getNodeTransformations() {
+        return nodeTransformations;
+    }
+
+    /**
+     * Node bone ids getter.
+     *
+     * @return ids of the bones affected by each node
+     */
+    public int[][] getNodeBoneIds() {
+        return nodeBoneIds;
+    }
+
+    /**
+     * Bone offsets getter.
+     *
+     * @return offset matrices of the bones
+     */
+    public Matrix4f[] getBoneOffsets() {
+        return boneOffsets;
+    }
+
+    /**
+     * Global inverse transformation getter.
+     *
+     * @return global inverse transformation
+     */
+    public Matrix4f getGlobalInverseTransformation() {
+        return globalInverseTransformation;
+    }
+
+    /**
+     * Rest pose getter.
+     *
+     * @return local pose of the nodes' own transformations, none of the nodes is animated
+     */
+    public AnimationPose getRestPose() {
+        return restPose;
+    }
+
+    /**
+     * Nodes amount getter.
+     *
+     * @return amount of nodes
+     */
+    public int getNodesAmount() {
+        return nodeNames.length;
+    }
+
+    /**
+     * Joints amount getter.
+     *
+     * @return amount of joints
+     */
+    public int getJointsAmount() {
+        return boneOffsets.length;
+    }
+
+    /**
+     * Map each node to its animation channel.
+     *
+     * @param channels animation channels
+     * @return index of the channel of each node or -1 if the node is not animated
+     */
+    public int[] bindChannels(SampledChannel[] channels) {
+        Map<String, Integer> channelIndices = new HashMap<>();
+
+        for (int i = 0; i < channels.length; i++)
+            channelIndices.putIfAbsent(channels[i].getNodeName(), i);
+
+        int[] result = new int[nodeNames.length];
+
+        for (int i = 0; i < nodeNames.length; i++)
+            result[i] = channelIndices.getOrDefault(nodeNames[i], -1);
+
+        return result;
+    }
+
+    /**
+     * Create workspace for frames building.
+     *
+     * @return workspace
+     */
+    public Workspace createWorkspace() {
+        return new Workspace(nodeNames.length);
+    }
+
+    /**
+     * Build joint matrices of the frame.
+     *
+     * @param channels       animation channels
+     * @param channelIndices index of the channel of each node
+     * @param frame          frame to build
+     * @param workspace      workspace of the calling thread
+     * @param animatedFrame  animation frame to fill
+     */
+    public void buildFrame(AnimationChannel[] channels, int[] channelIndices, int frame, Workspace workspace,
+                           AnimatedFrame animatedFrame) {
+        for (int i = 0; i < nodeNames.length; i++) {
+            int channelIndex = channelIndices[i];
+
+            Matrix4f nodeTransformation = channelIndex >= 0
+                    ? channels[channelIndex].getTransformation(frame, workspace.rotation,
+                    workspace.nodeTransformation)
+                    : nodeTransformations[i];
+
+            transformNode(i, nodeTransformation, workspace, animatedFrame);
+        }
+    }
+
+    /**
+     * Build joint matrices at the given time.
+     *
+     * @param channels       animation channels
+     * @param channelIndices index of the channel of each node
+     * @param time           time in ticks
+     * @param cursors        key cursors of the channels
+     * @param workspace      workspace of the calling thread
+     * @param animatedFrame  animation frame to fill
+     */
+    public void sampleFrame(SampledChannel[] channels, int[] channelIndices, float time, int[] cursors,
+                            Workspace workspace, AnimatedFrame animatedFrame) {
+        for (int i = 0; i < nodeNames.length; i++) {
+            int channelIndex = channelIndices[i];
+
+            Matrix4f nodeTransformation = channelIndex >= 0
+                    ? channels[channelIndex].sample(time, cursors, channelIndex * SampledChannel.CURSORS_AMOUNT,
+                    workspace.rotation, workspace.targetRotation, workspace.nodeTransformation)
+                    : nodeTransformations[i];
+
+            transformNode(i, nodeTransformation, workspace, animatedFrame);
+        }
+    }
+
+    /**
+     * Sample local pose at the given time, the nodes which are not animated keep their rest transformations.
+     *
+     * @param channels       animation channels
+     * @param channelIndices index of the channel of each node
+     * @param time           time in ticks
+     * @param cursors        key cursors of the channels
+     * @param workspace      workspace of the calling thread
+     * @param pose           pose to fill
+     */
+    public void samplePose(SampledChannel[] channels, int[] channelIndices, float time, int[] cursors,
+                           Workspace workspace, AnimationPose pose) {
+        for (int i = 0; i < nodeNames.length; i++) {
+            int channelIndex = channelIndices[i];
+
+            if (channelIndex >= 0) {
+                channels[channelIndex].samplePose(time, cursors, channelIndex * SampledChannel.CURSORS_AMOUNT,
+                        workspace.rotation, workspace.targetRotation, pose, i);
+
+                pose.setAnimated(i, true);
+            } else
+                pose.setNode(i, restPose);
+        }
+    }
+
+    /**
+     * Build joint matrices of the local pose.
+     *
+     * @param pose          local pose
+     * @param workspace     workspace of the calling thread
+     * @param animatedFrame animation frame to fill
+     */
+    public void buildFrame(AnimationPose pose, Workspace workspace, AnimatedFrame animatedFrame) {
+        for (int i = 0; i < nodeNames.length; i++) {
+            Matrix4f nodeTransformation = pose.isAnimated(i)
+                    ? pose.getTransformation(i, workspace.nodeTransformation)
+                    : nodeTransformations[i];
+
+            transformNode(i, nodeTransformation, workspace, animatedFrame);
+        }
+    }
+
+    /**
+     * Calculate global transformation of the node and joint matrices of its bones.
+     *
+     * @param node               node index
+     * @param nodeTransformation local transformation of the node
+     * @param workspace          workspace of the calling thread
+     * @param animatedFrame      animation frame to fill
+     */
+    private void transformNode(int node, Matrix4f nodeTransformation, Workspace workspace,
+                               AnimatedFrame animatedFrame) {
+        Matrix4f[] globalTransformations = workspace.globalTransformations;
+
+        int parentIndex = parentIndices[node];
+
+        Matrix4f parentTransformation = parentIndex >= 0
+                ? globalTransformations[parentIndex]
+                : nodeTransformations[node];
+
+        parentTransformation.mul(nodeTransformation, globalTransformations[node]);
+
+        for (int boneId : nodeBoneIds[node])
+            animatedFrame.setJointMatrix(boneId, globalInverseTransformation
+                    .mul(globalTransformations[node], workspace.jointMatrix)
+                    .mul(boneOffsets[boneId]));
+    }
+
+    /**
+     * Auxiliary objects of frames building, one per thread.
+     */
+    public static class Workspace {
+        private final Matrix4f[] globalTransformations;
+
+        private final Matrix4f nodeTransformation;
+
+        private final Matrix4f jointMatrix;
+
+        private final Quaternionf rotation;
+
+        private final Quaternionf targetRotation;
+
+        /**
+         * The class' constructor.
+         *
+         * @param nodesAmount amount of nodes
+         */
+        private Workspace(int nodesAmount) {
+            globalTransformations = new Matrix4f[nodesAmount];
+
+            for (int i = 0; i < nodesAmount; i++)
+                globalTransformations[i] = new Matrix4f();
+
+            nodeTransformation = new Matrix4f();
+            jointMatrix = new Matrix4f();
+            rotation = new Quaternionf();
+            targetRotation = new Quaternionf();
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package ru.hse.engine.loaders;
 
 import org.joml.Matrix4f;
-import org.joml.Quaternionf;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.assimp.*;
+import ru.hse.core.utils.Constants;
+import ru.hse.core.utils.Settings;
 import ru.hse.engine.animation.AnimatedItem;
-import ru.hse.engine.animation.AnimatedFrame;
 import ru.hse.engine.animation.Animation;
+import ru.hse.engine.animation.AnimationBaker;
+import ru.hse.engine.animation.CompressedClip;
+import ru.hse.engine.animation.structure.AnimationChannel;
 import ru.hse.engine.animation.structure.Bone;
 import ru.hse.engine.animation.structure.Node;
-import ru.hse.engine.animation.structure.VertexWeight;
-import ru.hse.engine.utils.Utils;
-import ru.hse.graphics.model.Material;
+import ru.hse.engine.animation.structure.Skeleton;
+import ru.hse.engine.loaders.cache.BakeCache;
+import ru.hse.engine.loaders.cache.BakedModel;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.AnimationTexture;
+import ru.hse.graphics.model.InstancedMesh;
+import ru.hse.graphics.model.MaterialData;
 import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.MeshData;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.assimp.Assimp.*;
 
@@ -23,6 +34,12 @@ import static org.lwjgl.assimp.Assimp.*;
  * Loader of an animated mesh.
  */
 public class AnimatedMeshLoader extends StaticMeshLoader {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    // Influences are limited by processBones, so every vertex keeps its heaviest ones
+    private static final int DEFAULT_FLAGS = aiProcess_GenSmoothNormals | aiProcess_JoinIdenticalVertices
+            | aiProcess_Triangulate | aiProcess_FixInfacingNormals;
+
     /**
      * Load animated item.
      *
@@ -32,9 +49,7 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
      * @throws Exception an unhandled exception
      */
     public static AnimatedItem loadAnimatedItem(String meshPath, String texturesDirectory) throws Exception {
-        return loadAnimatedItem(meshPath, texturesDirectory,
-                aiProcess_GenSmoothNormals | aiProcess_JoinIdenticalVertices | aiProcess_Triangulate
-                        | aiProcess_FixInfacingNormals | aiProcess_LimitBoneWeights);
+        return loadAnimatedItem(meshPath, texturesDirectory, DEFAULT_FLAGS);
     }
 
     /**
@@ -48,11 +63,116 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
      */
     public static AnimatedItem loadAnimatedItem(String meshPath, String texturesDirectory, int flags)
             throws Exception {
-        AIScene aiScene = aiImportFile(meshPath, flags);
+        LoadedModel loadedModel = loadAnimatedModel(meshPath, texturesDirectory, flags);
 
-        if (aiScene == null)
-            throw new Exception("Error loading model");
+        try {
+            return createAnimatedItem(createMeshes(loadedModel), loadedModel.getAnimations());
+        } finally {
+            loadedModel.free();
+        }
+    }
+
+    /**
+     * Load CPU-side data of an animated mesh, it does not need an OpenGL context.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadAnimatedModel(String meshPath, String texturesDirectory) throws Exception {
+        return loadAnimatedModel(meshPath, texturesDirectory, DEFAULT_FLAGS);
+    }
+
+    /**
+     * Load CPU-side data of an animated mesh, it does not need an OpenGL context.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @param flags             loading flags
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadAnimatedModel(String meshPath, String texturesDirectory, int flags)
+            throws Exception {
+        return loadAnimatedModel(meshPath, texturesDirectory, flags, null);
+    }
+
+    /**
+     * Load CPU-side data of an animated mesh, it does not need an OpenGL context. The bake cache is used only for
+     * meshes imported from the disk.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @param flags             loading flags
+     * @param fileIO            file system to import the mesh from or null to import it from the disk
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadAnimatedModel(String meshPath, String texturesDirectory, int flags,
+                                                ModelFileIO fileIO) throws Exception {
+        BakeCache bakeCache = null;
+
+        String cacheKey = null;
+
+        BakedModel bakedModel = null;
+
+        if (fileIO == null && SETTINGS.isBakeCacheEnabled()) {
+            bakeCache = new BakeCache(Paths.get(Constants.BAKE_CACHE_DIRECTORY));
+
+            cacheKey = BakeCache.createKey(meshPath, texturesDirectory, flags, SETTINGS.isMeshOptimized(),
+                    SETTINGS.isAnimationSampled(), SETTINGS.getAnimationClips());
+
+            bakedModel = bakeCache.read(cacheKey, SETTINGS.isAnimationSampled());
+        }
+
+        if (bakedModel == null) {
+            bakedModel = bakeAnimatedModel(meshPath, texturesDirectory, flags, fileIO);
+
+            if (bakeCache != null)
+                bakeCache.write(cacheKey, bakedModel);
+        }
+
+        prepareAnimations(bakedModel.getAnimations());
+
+        LoadedModel loadedModel = new LoadedModel(bakedModel.getMaterials(), bakedModel.getMeshes(),
+                bakedModel.getAnimations());
+
+        decodeTextures(loadedModel);
+
+        return loadedModel;
+    }
 
+    /**
+     * Import the model and bake its animations.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @param flags             loading flags
+     * @param fileIO            file system to import the mesh from or null to import it from the disk
+     * @return baked model
+     * @throws Exception an unhandled exception
+     */
+    private static BakedModel bakeAnimatedModel(String meshPath, String texturesDirectory, int flags,
+                                                ModelFileIO fileIO) throws Exception {
+        AIScene aiScene = importScene(meshPath, flags, fileIO);
+
+        try {
+            return bakeScene(aiScene, texturesDirectory);
+        } finally {
+            releaseScene(aiScene);
+        }
+    }
+
+    /**
+     * Bake animations of the imported model.
+     *
+     * @param aiScene           imported scene
+     * @param texturesDirectory mesh's texture directory
+     * @return baked model
+     * @throws Exception an unhandled exception
+     */
+    private static BakedModel bakeScene(AIScene aiScene, String texturesDirectory) throws Exception {
         int materialsNumber = aiScene.mNumMaterials();
 
         PointerBuffer aiMaterials = aiScene.mMaterials();
@@ -60,12 +180,12 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
         if (aiMaterials == null)
             throw new Exception("Error loading model");
 
-        List<Material> materials = new ArrayList<>();
+        List<MaterialData> materials = new ArrayList<>();
 
         for (int i = 0; i < materialsNumber; i++) {
             AIMaterial aiMaterial = AIMaterial.create(aiMaterials.get(i));
 
-            processMaterial(aiMaterial, materials, texturesDirectory);
+            materials.add(processMaterial(aiMaterial, texturesDirectory));
         }
 
         List<Bone> boneList = new ArrayList<>();
@@ -77,16 +197,21 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
         if (aiMeshes == null)
             throw new Exception("Error loading model");
 
-        Mesh[] meshes = new Mesh[meshesNumber];
+        List<MeshData> meshes = new ArrayList<>();
 
         for (int i = 0; i < meshesNumber; i++) {
             AIMesh aiMesh = AIMesh.create(aiMeshes.get(i));
 
-            Mesh mesh = processMesh(aiMesh, materials, boneList);
-
-            meshes[i] = mesh;
+            meshes.add(processMesh(aiMesh, boneList));
         }
 
+        if (SETTINGS.isMeshOptimized())
+            MeshOptimizer.optimize(meshes);
+
+        MeshSplitter.split(meshes);
+
+        MeshSimplifier.createLevelsOfDetail(meshes);
+
         Node rootNode = buildNodesTree(Objects.requireNonNull(aiScene.mRootNode()), null);
 
         Matrix4f globalInverseTransformation = toMatrix(Objects.requireNonNull(aiScene.mRootNode())
@@ -95,9 +220,62 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
 
         Map<String, Animation> animations = processAnimations(aiScene, boneList, rootNode, globalInverseTransformation);
 
+        return new BakedModel(materials, meshes, boneList.size(), animations);
+    }
+
+    /**
+     * Create animated item of the uploaded meshes. If the animation texture is enabled in the settings, the baked
+     * animations are uploaded into a texture shared by the skinned instanced meshes.
+     *
+     * @param meshes     meshes of the item
+     * @param animations animations of the item
+     * @return created item
+     */
+    public static AnimatedItem createAnimatedItem(Mesh[] meshes, Map<String, Animation> animations) {
+        if (SETTINGS.isAnimationTextureEnabled()) {
+            AnimationTexture animationTexture = null;
+
+            for (Mesh mesh : meshes) {
+                if (!(mesh instanceof InstancedMesh) || !mesh.getVertexFormat().isSkinned())
+                    continue;
+
+                if (animationTexture == null)
+                    animationTexture = new AnimationTexture(animations.values(), SETTINGS.getJointsEncoding());
+
+                ((InstancedMesh) mesh).setAnimationTexture(animationTexture);
+            }
+        }
+
         return new AnimatedItem(meshes, animations);
     }
 
+    /**
+     * Set up playback of the animations according to the settings. The animation texture needs the frames of all the
+     * animations, so they are baked in parallel on the baking pool at loading when it is enabled.
+     *
+     * @param animations animations
+     */
+    private static void prepareAnimations(Map<String, Animation> animations) {
+        List<CompletableFuture<Void>> bakings = new ArrayList<>();
+
+        for (Animation animation : animations.values()) {
+            if (SETTINGS.isAnimationSampled() && SETTINGS.isAnimationCompressed()) {
+                CompressedClip clip = animation.compress();
+
+                if (clip != null)
+                    System.out.printf("Animation %s compressed %.2f times, maximal errors: position %.6f, " +
+                                    "rotation %.6f rad, scaling %.6f%n", animation.getName(), clip.getCompressionRatio(),
+                            clip.getMaximalPositionError(), clip.getMaximalRotationError(),
+                            clip.getMaximalScalingError());
+            }
+
+            if (SETTINGS.isAnimationTextureEnabled())
+                bakings.add(animation.bakeAsync());
+        }
+
+        CompletableFuture.allOf(bakings.toArray(new CompletableFuture[0])).join();
+    }
+
     /**
      * Build tree of nodes.
      *
@@ -126,6 +304,10 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
 
     /**
      * Load animations.
+     * <p>
+     * Only the animations listed in the settings are kept, or all of them if the list is empty. The animations keep
+     * their raw channels to be sampled at playback time. If sampling is disabled, the first kept animation is baked
+     * immediately and the other ones are baked on activation.
      *
      * @param aiScene                     loaded scene
      * @param boneList                    list of bones
@@ -137,7 +319,7 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
     private static Map<String, Animation> processAnimations(AIScene aiScene, List<Bone> boneList,
                                                             Node rootNode, Matrix4f globalInverseTransformation)
             throws Exception {
-        Map<String, Animation> animations = new HashMap<>();
+        Map<String, Animation> animations = new LinkedHashMap<>();
 
         int animationsAmount = aiScene.mNumAnimations();
 
@@ -146,208 +328,131 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
         if (aiAnimations == null)
             throw new Exception("Error loading model");
 
-        for (int i = 0; i < animationsAmount; i++) {
-            AIAnimation aiAnimation = AIAnimation.create(aiAnimations.get(i));
+        List<String> animationClips = Arrays.asList(SETTINGS.getAnimationClips());
 
-            int maxFrames = calculateAnimationMaximalFramesAmount(aiAnimation);
+        Skeleton skeleton = Skeleton.create(rootNode, boneList, globalInverseTransformation);
 
-            List<AnimatedFrame> frames = new ArrayList<>();
+        for (int i = 0; i < animationsAmount; i++) {
+            AIAnimation aiAnimation = AIAnimation.create(aiAnimations.get(i));
 
-            Animation animation = new Animation(aiAnimation.mName().dataString(), frames, aiAnimation.mDuration());
+            String name = aiAnimation.mName().dataString();
 
-            animations.put(animation.getName(), animation);
+            if (!animationClips.isEmpty() && !animationClips.contains(name))
+                continue;
 
-            for (int j = 0; j < maxFrames; j++) {
-                AnimatedFrame animatedFrame = new AnimatedFrame();
+            AnimationBaker baker = new AnimationBaker(skeleton, processChannels(aiAnimation));
 
-                buildFrameMatrices(aiAnimation, boneList, animatedFrame, j, rootNode,
-                        rootNode.getNodeTransformation(), globalInverseTransformation);
+            double ticksPerSecond = aiAnimation.mTicksPerSecond() > 0
+                    ? aiAnimation.mTicksPerSecond()
+                    : Constants.DEFAULT_TICKS_PER_SECOND;
 
-                frames.add(animatedFrame);
-            }
+            animations.put(name, new Animation(name, baker, aiAnimation.mDuration(), ticksPerSecond,
+                    SETTINGS.isAnimationSampled()));
         }
 
-        return animations;
-    }
-
-    /**
-     * Build matrices for each frame.
-     *
-     * @param aiAnimation                 loaded animation
-     * @param boneList                    bones list
-     * @param animatedFrame               animation frame
-     * @param frame                       current frame
-     * @param node                        current node
-     * @param parentTransformation        parent transformation
-     * @param globalInverseTransformation global inverse transformation
-     * @throws Exception an unhandled exception
-     */
-    private static void buildFrameMatrices(AIAnimation aiAnimation, List<Bone> boneList, AnimatedFrame animatedFrame,
-                                           int frame, Node node, Matrix4f parentTransformation,
-                                           Matrix4f globalInverseTransformation) throws Exception {
-        String nodeName = node.getName();
-
-        AINodeAnim aiNodeAnim = findAIAnimNode(aiAnimation, nodeName);
-
-        Matrix4f nodeTransformation = node.getNodeTransformation();
-
-        if (aiNodeAnim != null)
-            nodeTransformation = buildNodeTransformationMatrix(aiNodeAnim, frame);
+        for (String animationClip : animationClips)
+            if (!animations.containsKey(animationClip))
+                System.out.println("Animation " + animationClip + " not found.");
 
-        Matrix4f nodeGlobalTransformation = new Matrix4f(parentTransformation).mul(nodeTransformation);
+        if (!animations.isEmpty() && !SETTINGS.isAnimationSampled())
+            animations.values().iterator().next().bake();
 
-        List<Bone> affectedBones = boneList.stream().filter(b -> b.getBoneName()
-                        .equals(nodeName))
-                .collect(Collectors.toList());
-
-        for (Bone bone : affectedBones) {
-            Matrix4f boneTransform = new Matrix4f(globalInverseTransformation)
-                    .mul(nodeGlobalTransformation)
-                    .mul(bone.getOffsetMatrix());
-
-            animatedFrame.setJointMatrix(bone.getBoneId(), boneTransform);
-        }
-
-        for (Node childNode : node.getChildren())
-            buildFrameMatrices(aiAnimation, boneList, animatedFrame, frame, childNode,
-                    nodeGlobalTransformation, globalInverseTransformation);
+        return animations;
     }
 
     /**
-     * Build transformation matrix for the node.
+     * Load animation channels.
      *
-     * @param aiNodeAnim loaded node animation
-     * @param frame      current frame
-     * @return node transformation matrix
+     * @param aiAnimation loaded animation
+     * @return animation channels
      * @throws Exception an unhandled exception
      */
-    private static Matrix4f buildNodeTransformationMatrix(AINodeAnim aiNodeAnim, int frame) throws Exception {
-        AIVectorKey.Buffer positionKeys = aiNodeAnim.mPositionKeys();
-
-        if (positionKeys == null)
-            throw new Exception("Error loading model");
-
-        AIVectorKey.Buffer scalingKeys = aiNodeAnim.mScalingKeys();
-
-        if (scalingKeys == null)
-            throw new Exception("Error loading model");
+    private static AnimationChannel[] processChannels(AIAnimation aiAnimation) throws Exception {
+        int channelsAmount = aiAnimation.mNumChannels();
 
-        AIQuatKey.Buffer rotationKeys = aiNodeAnim.mRotationKeys();
+        PointerBuffer aiChannels = aiAnimation.mChannels();
 
-        if (rotationKeys == null)
+        if (aiChannels == null)
             throw new Exception("Error loading model");
 
-        AIVectorKey aiVectorKey;
-        AIVector3D aiVector3D;
-
-        Matrix4f nodeTransform = new Matrix4f();
+        AnimationChannel[] channels = new AnimationChannel[channelsAmount];
 
-        int positionsAmount = aiNodeAnim.mNumPositionKeys();
-
-        if (positionsAmount > 0) {
-            aiVectorKey = positionKeys.get(Math.min(positionsAmount - 1, frame));
-            aiVector3D = aiVectorKey.mValue();
-
-            nodeTransform.translate(aiVector3D.x(), aiVector3D.y(), aiVector3D.z());
-        }
-
-        int rotationsAmount = aiNodeAnim.mNumRotationKeys();
-
-        if (rotationsAmount > 0) {
-            AIQuatKey aiQuatKey = rotationKeys.get(Math.min(rotationsAmount - 1, frame));
-            AIQuaternion aiQuaternion = aiQuatKey.mValue();
-
-            Quaternionf quaternion = new Quaternionf(aiQuaternion.x(),
-                    aiQuaternion.y(),
-                    aiQuaternion.z(),
-                    aiQuaternion.w());
-
-            nodeTransform.rotate(quaternion);
-        }
+        for (int i = 0; i < channelsAmount; i++) {
+            AINodeAnim aiNodeAnim = AINodeAnim.create(aiChannels.get(i));
 
-        int scalingKeysAmount = aiNodeAnim.mNumScalingKeys();
+            AIVectorKey.Buffer positionKeys = aiNodeAnim.mPositionKeys();
+            AIQuatKey.Buffer rotationKeys = aiNodeAnim.mRotationKeys();
+            AIVectorKey.Buffer scalingKeys = aiNodeAnim.mScalingKeys();
 
-        if (scalingKeysAmount > 0) {
-            aiVectorKey = scalingKeys.get(Math.min(scalingKeysAmount - 1, frame));
-            aiVector3D = aiVectorKey.mValue();
+            if (positionKeys == null || rotationKeys == null || scalingKeys == null)
+                throw new Exception("Error loading model");
 
-            nodeTransform.scale(aiVector3D.x(), aiVector3D.y(), aiVector3D.z());
-        }
+            float[] positionTimes = new float[aiNodeAnim.mNumPositionKeys()];
+            float[] positions = new float[3 * positionTimes.length];
 
-        return nodeTransform;
-    }
+            for (int j = 0; j < positionTimes.length; j++) {
+                long key = positionKeys.address() + (long) j * AIVectorKey.SIZEOF;
+                long value = key + AIVectorKey.MVALUE;
 
-    /**
-     * Find animation node.
-     *
-     * @param aiAnimation loded animation
-     * @param nodeName    node name
-     * @return animation node
-     * @throws Exception an unhandled exception
-     */
-    private static AINodeAnim findAIAnimNode(AIAnimation aiAnimation, String nodeName) throws Exception {
-        AINodeAnim result = null;
+                positionTimes[j] = (float) AIVectorKey.nmTime(key);
 
-        int animNodesAmount = aiAnimation.mNumChannels();
+                positions[3 * j] = AIVector3D.nx(value);
+                positions[3 * j + 1] = AIVector3D.ny(value);
+                positions[3 * j + 2] = AIVector3D.nz(value);
+            }
 
-        PointerBuffer aiChannels = aiAnimation.mChannels();
+            float[] rotationTimes = new float[aiNodeAnim.mNumRotationKeys()];
+            float[] rotations = new float[4 * rotationTimes.length];
 
-        if (aiChannels == null)
-            throw new Exception("Error loading model");
+            for (int j = 0; j < rotationTimes.length; j++) {
+                long key = rotationKeys.address() + (long) j * AIQuatKey.SIZEOF;
+                long value = key + AIQuatKey.MVALUE;
 
-        for (int i = 0; i < animNodesAmount; i++) {
-            AINodeAnim aiNodeAnim = AINodeAnim.create(aiChannels.get(i));
+                rotationTimes[j] = (float) AIQuatKey.nmTime(key);
 
-            if (nodeName.equals(aiNodeAnim.mNodeName().dataString())) {
-                result = aiNodeAnim;
-                break;
+                rotations[4 * j] = AIQuaternion.nx(value);
+                rotations[4 * j + 1] = AIQuaternion.ny(value);
+                rotations[4 * j + 2] = AIQuaternion.nz(value);
+                rotations[4 * j + 3] = AIQuaternion.nw(value);
             }
-        }
-        return result;
-    }
-
-    /**
-     * Calculate animation maximal frames amount.
-     *
-     * @param aiAnimation loaded animation
-     * @return frames amount
-     * @throws Exception an unhandled exception
-     */
-    private static int calculateAnimationMaximalFramesAmount(AIAnimation aiAnimation) throws Exception {
-        int maximalFramesAmount = 0;
-
-        int nodeAnimationsAmount = aiAnimation.mNumChannels();
 
-        PointerBuffer aiChannels = aiAnimation.mChannels();
+            float[] scalingTimes = new float[aiNodeAnim.mNumScalingKeys()];
+            float[] scalings = new float[3 * scalingTimes.length];
 
-        if (aiChannels == null)
-            throw new Exception("Error loading model");
+            for (int j = 0; j < scalingTimes.length; j++) {
+                long key = scalingKeys.address() + (long) j * AIVectorKey.SIZEOF;
+                long value = key + AIVectorKey.MVALUE;
 
-        for (int i = 0; i < nodeAnimationsAmount; i++) {
-            AINodeAnim aiNodeAnim = AINodeAnim.create(aiChannels.get(i));
+                scalingTimes[j] = (float) AIVectorKey.nmTime(key);
 
-            int numFrames = Math.max(Math.max(aiNodeAnim.mNumPositionKeys(),
-                            aiNodeAnim.mNumScalingKeys()),
-                    aiNodeAnim.mNumRotationKeys());
+                scalings[3 * j] = AIVector3D.nx(value);
+                scalings[3 * j + 1] = AIVector3D.ny(value);
+                scalings[3 * j + 2] = AIVector3D.nz(value);
+            }
 
-            maximalFramesAmount = Math.max(maximalFramesAmount, numFrames);
+            channels[i] = new AnimationChannel(aiNodeAnim.mNodeName().dataString(), positionTimes, positions,
+                    rotationTimes, rotations, scalingTimes, scalings);
         }
 
-        return maximalFramesAmount;
+        return channels;
     }
 
     /**
-     * Load bones.
+     * Load bones. Every vertex keeps its MAX_WEIGHTS heaviest influences sorted by weight, the kept weights are
+     * renormalised to sum up to one. The kept influences are the leading non-zero weights of the vertex, their amount
+     * is packed into the vertex by {@link ru.hse.graphics.model.VertexFormat}, so the shaders blend only them.
      *
      * @param aiMesh   loaded mesh
      * @param boneList bones list
-     * @param boneIds  bones ids
-     * @param weights  weights
+     * @param boneIds  zeroed bones ids buffer with MAX_WEIGHTS elements per vertex
+     * @param weights  zeroed weights buffer with MAX_WEIGHTS elements per vertex
      * @throws Exception an unhandled exception
      */
-    private static void processBones(AIMesh aiMesh, List<Bone> boneList, List<Integer> boneIds, List<Float> weights)
+    private static void processBones(AIMesh aiMesh, List<Bone> boneList, IntBuffer boneIds, FloatBuffer weights)
             throws Exception {
-        Map<Integer, List<VertexWeight>> weightSet = new HashMap<>();
+        int verticesAmount = aiMesh.mNumVertices();
+
+        int[] influencesAmounts = new int[verticesAmount];
 
         int bonesAmount = aiMesh.mNumBones();
 
@@ -367,87 +472,107 @@ public class AnimatedMeshLoader extends StaticMeshLoader {
 
             int weightsAmount = aiBone.mNumWeights();
 
-            AIVertexWeight.Buffer aiWeights = aiBone.mWeights();
+            long weightsAddress = aiBone.mWeights().address();
 
             for (int j = 0; j < weightsAmount; j++) {
-                AIVertexWeight aiVertexWeight = aiWeights.get(j);
-
-                VertexWeight vertexWeight = new VertexWeight(bone.getBoneId(),
-                        aiVertexWeight.mVertexId(), aiVertexWeight.mWeight());
+                long aiVertexWeight = weightsAddress + (long) j * AIVertexWeight.SIZEOF;
 
-                List<VertexWeight> vertexWeightList = weightSet.computeIfAbsent(vertexWeight.getVertexId(), k -> new ArrayList<>());
+                int vertexId = AIVertexWeight.nmVertexId(aiVertexWeight);
 
-                vertexWeightList.add(vertexWeight);
+                insertInfluence(boneIds, weights, vertexId * Mesh.MAX_WEIGHTS,
+                        Math.min(influencesAmounts[vertexId]++, Mesh.MAX_WEIGHTS), bone.getBoneId(),
+                        AIVertexWeight.nmWeight(aiVertexWeight));
             }
         }
 
-        int verticesAmount = aiMesh.mNumVertices();
+        int droppedVerticesAmount = 0;
+
+        for (int vertexId = 0; vertexId < verticesAmount; vertexId++) {
+            if (influencesAmounts[vertexId] > Mesh.MAX_WEIGHTS)
+                droppedVerticesAmount++;
+
+            normalizeInfluences(weights, vertexId * Mesh.MAX_WEIGHTS);
+        }
 
-        for (int i = 0; i < verticesAmount; i++) {
-            List<VertexWeight> vertexWeightList = weightSet.get(i);
+        if (droppedVerticesAmount > 0)
+            System.out.printf("Mesh %s: %d of %d vertices have more than %d influences, the lightest are dropped%n",
+                    aiMesh.mName().dataString(), droppedVerticesAmount, verticesAmount, Mesh.MAX_WEIGHTS);
+    }
 
-            int size = vertexWeightList != null ? vertexWeightList.size() : 0;
+    /**
+     * Insert influence into the vertex's slots sorted by weight. If the slots are full, the lightest influence is
+     * dropped.
+     *
+     * @param boneIds          bones ids buffer
+     * @param weights          weights buffer
+     * @param offset           index of the vertex's first slot
+     * @param influencesAmount amount of the vertex's occupied slots
+     * @param boneId           id of the bone
+     * @param weight           weight of the influence
+     */
+    private static void insertInfluence(IntBuffer boneIds, FloatBuffer weights, int offset, int influencesAmount,
+                                        int boneId, float weight) {
+        int slot = influencesAmount;
 
-            for (int j = 0; j < Mesh.MAX_WEIGHTS; j++) {
-                if (j < size) {
-                    VertexWeight vertexWeight = vertexWeightList.get(j);
+        while (slot > 0 && weights.get(offset + slot - 1) < weight)
+            slot--;
 
-                    weights.add(vertexWeight.getWeight());
-                    boneIds.add(vertexWeight.getBoneId());
-                } else {
-                    weights.add(0.0f);
-                    boneIds.add(0);
-                }
-            }
+        if (slot == Mesh.MAX_WEIGHTS)
+            return;
+
+        for (int i = Math.min(influencesAmount, Mesh.MAX_WEIGHTS - 1); i > slot; i--) {
+            boneIds.put(offset + i, boneIds.get(offset + i - 1));
+            weights.put(offset + i, weights.get(offset + i - 1));
         }
+
+        boneIds.put(offset + slot, boneId);
+        weights.put(offset + slot, weight);
     }
 
     /**
-     * Load mesh.
+     * Renormalise the vertex's weights to sum up to one.
      *
-     * @param aiMesh    loaded mesh
-     * @param materials materials
-     * @param boneList  bones list
-     * @return mesh
-     * @throws Exception an unhandled exception
+     * @param weights weights buffer
+     * @param offset  index of the vertex's first slot
      */
-    private static Mesh processMesh(AIMesh aiMesh, List<Material> materials, List<Bone> boneList) throws Exception {
-        List<Float> vertices = new ArrayList<>();
-        List<Float> textures = new ArrayList<>();
-        List<Float> normals = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
-        List<Integer> boneIds = new ArrayList<>();
-        List<Float> weights = new ArrayList<>();
-
-        processVertices(aiMesh, vertices);
-        processNormals(aiMesh, normals);
-        processTextureCoordinates(aiMesh, textures);
-        processIndices(aiMesh, indices);
-        processBones(aiMesh, boneList, boneIds, weights);
-
-        if (textures.size() == 0) {
-            int elementsAmount = (vertices.size() / 3) * 2;
-
-            for (int i = 0; i < elementsAmount; i++)
-                textures.add(0.0f);
-        }
+    private static void normalizeInfluences(FloatBuffer weights, int offset) {
+        float sum = 0;
 
-        Mesh mesh = new Mesh(Utils.listToArray(vertices), Utils.listToArray(textures),
-                Utils.listToArray(normals), Utils.listIntToArray(indices),
-                Utils.listIntToArray(boneIds), Utils.listToArray(weights));
+        for (int i = 0; i < Mesh.MAX_WEIGHTS; i++)
+            sum += weights.get(offset + i);
 
-        Material material;
+        if (sum <= 0)
+            return;
 
-        int materialIndex = aiMesh.mMaterialIndex();
+        for (int i = 0; i < Mesh.MAX_WEIGHTS; i++)
+            weights.put(offset + i, weights.get(offset + i) / sum);
+    }
 
-        if (materialIndex >= 0 && materialIndex < materials.size())
-            material = materials.get(materialIndex);
-        else
-            material = new Material();
+    /**
+     * Load mesh.
+     *
+     * @param aiMesh   loaded mesh
+     * @param boneList bones list
+     * @return mesh data
+     * @throws Exception an unhandled exception
+     */
+    private static MeshData processMesh(AIMesh aiMesh, List<Bone> boneList) throws Exception {
+        int influencesAmount = Mesh.MAX_WEIGHTS * aiMesh.mNumVertices();
+
+        MeshData meshData = new MeshData(processVertices(aiMesh), processTextureCoordinates(aiMesh),
+                processNormals(aiMesh), processIndices(aiMesh),
+                NativeMemory.callocInt(NativeMemory.Tag.MESH, influencesAmount),
+                NativeMemory.callocFloat(NativeMemory.Tag.MESH, influencesAmount), aiMesh.mMaterialIndex());
 
-        mesh.setMaterial(material);
+        try {
+            processBones(aiMesh, boneList, meshData.getJointIndices(), meshData.getWeights());
+        } catch (Exception e) {
+            meshData.free();
+
+            throw e;
+        }
 
-        return mesh;
+        return meshData;
     }
 
     /**
@@ -0,0 +1,96 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.engine.animation.Animation;
+import ru.hse.graphics.model.MaterialData;
+import ru.hse.graphics.model.MeshData;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CPU-side loaded model representation class.
+ * <p>
+ * The model is prepared by a worker thread and has everything needed to create its meshes in the thread owning the
+ * OpenGL context, its textures are decoded by the texture cache.
+ */
+public class LoadedModel {
+    private final List<MaterialData> materials;
+
+    private final List<MeshData> meshes;
+
+    private final Map<String, Animation> animations;
+
+    /**
+     * The class' constructor.
+     *
+     * @param materials  materials of the model
+     * @param meshes     meshes of the model
+     * @param animations animations of the model or null for a static model
+     */
+    public LoadedModel(List<MaterialData> materials, List<MeshData> meshes, Map<String, Animation> animations) {
+        this.materials = materials;
+        this.meshes = meshes;
+        this.animations = animations;
+    }
+
+    /**
+     * Materials getter.
+     *
+     * @return materials
+     */
+    public List<MaterialData> getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Meshes getter.
+     *
+     * @return meshes
+     */
+    public List<MeshData> getMeshes() {
+        return meshes;
+    }
+
+    /**
+     * Texture paths getter.
+     *
+     * @return distinct paths to the textures of the materials
+     */
+    public Set<String> getTexturePaths() {
+        Set<String> texturePaths = new LinkedHashSet<>();
+
+        for (MaterialData materialData : materials)
+            if (materialData.isTextured())
+                texturePaths.add(materialData.getTexturePath());
+
+        return texturePaths;
+    }
+
+    /**
+     * Animations getter.
+     *
+     * @return animations or null for a static model
+     */
+    public Map<String, Animation> getAnimations() {
+        return animations;
+    }
+
+    /**
+     * Check if the model is animated.
+     *
+     * @return true if the model has animations and false otherwise
+     */
+    public boolean isAnimated() {
+        return animations != null;
+    }
+
+    /**
+     * Free native memory of the meshes.
+     */
+    public void free() {
+        for (MeshData meshData : meshes)
+            meshData.free();
+    }
+}
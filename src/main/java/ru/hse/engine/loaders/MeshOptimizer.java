@@ -0,0 +1,373 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Post-import mesh optimisation stage.
+ * <p>
+ * Triangles are reordered for the post-transform vertex cache with Tom Forsyth's linear-speed algorithm, then
+ * vertices are renumbered in the order of their first use, so the vertex fetch reads the streams sequentially. The
+ * optimisation works on the CPU-side data only, it does not need an OpenGL context. Its effect is measured with the
+ * average cache miss ratio (ACMR, transformed vertices per triangle) and the average transformed to vertex ratio
+ * (ATVR, transformed vertices per vertex, 1 is ideal) of a FIFO cache.
+ */
+public class MeshOptimizer {
+    public static final int FIFO_CACHE_SIZE = 16;
+
+    private static final int CACHE_SIZE = 32;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    private static final int MAXIMAL_TABULATED_VALENCE = 32;
+
+    private static final float[] CACHE_POSITION_SCORES = new float[CACHE_SIZE];
+
+    private static final float[] VALENCE_SCORES = new float[MAXIMAL_TABULATED_VALENCE + 1];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            CACHE_POSITION_SCORES[i] = i < 3
+                    ? LAST_TRIANGLE_SCORE
+                    : (float) Math.pow(1.0f - (float) (i - 3) / (CACHE_SIZE - 3), CACHE_DECAY_POWER);
+        }
+
+        for (int i = 1; i <= MAXIMAL_TABULATED_VALENCE; i++)
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * Optimise the meshes in place and print the cache statistics before and after.
+     *
+     * @param meshes meshes
+     */
+    public static void optimize(List<MeshData> meshes) {
+        long trianglesAmount = 0;
+        long verticesAmount = 0;
+        long missesBefore = 0;
+        long missesAfter = 0;
+
+        for (MeshData meshData : meshes) {
+            int[] indices = getIndices(meshData);
+            int meshVerticesAmount = meshData.getPositions().remaining() / 3;
+
+            trianglesAmount += indices.length / 3;
+            verticesAmount += meshVerticesAmount;
+            missesBefore += countCacheMisses(indices, meshVerticesAmount, FIFO_CACHE_SIZE);
+
+            indices = optimizeVertexCache(indices, meshVerticesAmount);
+
+            int[] remap = optimizeVertexFetch(indices, meshVerticesAmount);
+
+            remapVertices(meshData, remap);
+
+            meshData.getIndices().duplicate().put(indices);
+
+            missesAfter += countCacheMisses(indices, meshVerticesAmount, FIFO_CACHE_SIZE);
+        }
+
+        if (trianglesAmount == 0)
+            return;
+
+        System.out.printf("Meshes optimised: ACMR %.3f -> %.3f, ATVR %.3f -> %.3f (FIFO cache of %d vertices)%n",
+                (double) missesBefore / trianglesAmount, (double) missesAfter / trianglesAmount,
+                (double) missesBefore / verticesAmount, (double) missesAfter / verticesAmount, FIFO_CACHE_SIZE);
+    }
+
+    /**
+     * Reorder triangles for the post-transform vertex cache.
+     *
+     * @param indices        triangle list indices
+     * @param verticesAmount amount of vertices
+     * @return reordered indices
+     */
+    public static int[] optimizeVertexCache(int[] indices, int verticesAmount) {
+        int trianglesAmount = indices.length / 3;
+
+        int[] valences = new int[verticesAmount];
+
+        for (int i = 0; i < 3 * trianglesAmount; i++)
+            valences[indices[i]]++;
+
+        int[] offsets = new int[verticesAmount + 1];
+
+        for (int i = 0; i < verticesAmount; i++)
+            offsets[i + 1] = offsets[i] + valences[i];
+
+        int[] vertexTriangles = new int[3 * trianglesAmount];
+        int[] remainingValences = new int[verticesAmount];
+
+        for (int i = 0; i < 3 * trianglesAmount; i++) {
+            int vertex = indices[i];
+
+            vertexTriangles[offsets[vertex] + remainingValences[vertex]++] = i / 3;
+        }
+
+        int[] cachePositions = new int[verticesAmount];
+        Arrays.fill(cachePositions, -1);
+
+        float[] vertexScores = new float[verticesAmount];
+
+        for (int i = 0; i < verticesAmount; i++)
+            vertexScores[i] = calculateVertexScore(-1, remainingValences[i]);
+
+        float[] triangleScores = new float[trianglesAmount];
+
+        int bestTriangle = -1;
+        float bestScore = -1;
+
+        for (int i = 0; i < trianglesAmount; i++) {
+            triangleScores[i] = vertexScores[indices[3 * i]] + vertexScores[indices[3 * i + 1]]
+                    + vertexScores[indices[3 * i + 2]];
+
+            if (triangleScores[i] > bestScore) {
+                bestScore = triangleScores[i];
+                bestTriangle = i;
+            }
+        }
+
+        boolean[] addedTriangles = new boolean[trianglesAmount];
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] nextCache = new int[CACHE_SIZE + 3];
+        int cacheAmount = 0;
+
+        int[] result = new int[3 * trianglesAmount];
+
+        int scanPosition = 0;
+
+        for (int i = 0; i < trianglesAmount; i++) {
+            if (bestTriangle < 0) {
+                while (addedTriangles[scanPosition])
+                    scanPosition++;
+
+                bestTriangle = scanPosition;
+            }
+
+            addedTriangles[bestTriangle] = true;
+
+            int nextCacheAmount = 0;
+
+            for (int j = 0; j < 3; j++) {
+                int vertex = indices[3 * bestTriangle + j];
+
+                result[3 * i + j] = vertex;
+
+                removeTriangle(vertexTriangles, offsets[vertex], remainingValences, vertex, bestTriangle);
+
+                if (cachePositions[vertex] != -2) {
+                    cachePositions[vertex] = -2;
+
+                    nextCache[nextCacheAmount++] = vertex;
+                }
+            }
+
+            for (int j = 0; j < cacheAmount; j++) {
+                int vertex = cache[j];
+
+                if (cachePositions[vertex] != -2)
+                    nextCache[nextCacheAmount++] = vertex;
+            }
+
+            for (int j = 0; j < nextCacheAmount; j++) {
+                int vertex = nextCache[j];
+
+                cachePositions[vertex] = j < CACHE_SIZE ? j : -1;
+                vertexScores[vertex] = calculateVertexScore(cachePositions[vertex], remainingValences[vertex]);
+            }
+
+            bestTriangle = -1;
+            bestScore = -1;
+
+            for (int j = 0; j < nextCacheAmount; j++) {
+                int vertex = nextCache[j];
+
+                for (int k = offsets[vertex]; k < offsets[vertex] + remainingValences[vertex]; k++) {
+                    int triangle = vertexTriangles[k];
+
+                    triangleScores[triangle] = vertexScores[indices[3 * triangle]]
+                            + vertexScores[indices[3 * triangle + 1]] + vertexScores[indices[3 * triangle + 2]];
+
+                    if (triangleScores[triangle] > bestScore) {
+                        bestScore = triangleScores[triangle];
+                        bestTriangle = triangle;
+                    }
+                }
+            }
+
+            int[] swap = cache;
+            cache = nextCache;
+            nextCache = swap;
+
+            cacheAmount = Math.min(nextCacheAmount, CACHE_SIZE);
+        }
+
+        return result;
+    }
+
+    /**
+     * Renumber vertices in the order of their first use, unused vertices are moved to the end.
+     *
+     * @param indices        triangle list indices, they are renumbered in place
+     * @param verticesAmount amount of vertices
+     * @return new index of every vertex
+     */
+    public static int[] optimizeVertexFetch(int[] indices, int verticesAmount) {
+        int[] remap = new int[verticesAmount];
+        Arrays.fill(remap, -1);
+
+        int nextVertex = 0;
+
+        for (int i = 0; i < indices.length; i++) {
+            if (remap[indices[i]] < 0)
+                remap[indices[i]] = nextVertex++;
+
+            indices[i] = remap[indices[i]];
+        }
+
+        for (int i = 0; i < verticesAmount; i++)
+            if (remap[i] < 0)
+                remap[i] = nextVertex++;
+
+        return remap;
+    }
+
+    /**
+     * Count vertices transformed with a FIFO post-transform cache.
+     *
+     * @param indices        triangle list indices
+     * @param verticesAmount amount of vertices
+     * @param cacheSize      size of the cache
+     * @return amount of cache misses
+     */
+    public static int countCacheMisses(int[] indices, int verticesAmount, int cacheSize) {
+        int[] insertionTimes = new int[verticesAmount];
+        Arrays.fill(insertionTimes, -cacheSize);
+
+        int misses = 0;
+
+        for (int index : indices) {
+            if (misses - insertionTimes[index] >= cacheSize)
+                insertionTimes[index] = misses++;
+        }
+
+        return misses;
+    }
+
+    /**
+     * Calculate score of a vertex.
+     *
+     * @param cachePosition    position of the vertex in the cache or -1 if it is not cached
+     * @param remainingValence amount of the vertex's triangles which are not added yet
+     * @return score
+     */
+    private static float calculateVertexScore(int cachePosition, int remainingValence) {
+        if (remainingValence == 0)
+            return -1;
+
+        float score = cachePosition >= 0 ? CACHE_POSITION_SCORES[cachePosition] : 0;
+
+        if (remainingValence <= MAXIMAL_TABULATED_VALENCE)
+            return score + VALENCE_SCORES[remainingValence];
+
+        return score + VALENCE_BOOST_SCALE * (float) Math.pow(remainingValence, -VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * Remove added triangle from the vertex's remaining triangles.
+     *
+     * @param vertexTriangles   triangles of all the vertices
+     * @param offset            offset of the vertex's triangles
+     * @param remainingValences amounts of the remaining triangles of all the vertices
+     * @param vertex            vertex
+     * @param triangle          added triangle
+     */
+    private static void removeTriangle(int[] vertexTriangles, int offset, int[] remainingValences, int vertex,
+                                       int triangle) {
+        int last = offset + remainingValences[vertex] - 1;
+
+        for (int i = offset; i <= last; i++) {
+            if (vertexTriangles[i] == triangle) {
+                vertexTriangles[i] = vertexTriangles[last];
+                remainingValences[vertex]--;
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy indices of the mesh.
+     *
+     * @param meshData mesh data
+     * @return indices
+     */
+    private static int[] getIndices(MeshData meshData) {
+        IntBuffer indices = meshData.getIndices();
+
+        int[] result = new int[indices.remaining()];
+        indices.duplicate().get(result);
+
+        return result;
+    }
+
+    /**
+     * Move the vertices of the mesh to their new indices.
+     *
+     * @param meshData mesh data
+     * @param remap    new index of every vertex
+     */
+    private static void remapVertices(MeshData meshData, int[] remap) {
+        remap(meshData.getPositions(), 3, remap);
+        remap(meshData.getTextCoords(), 2, remap);
+        remap(meshData.getNormals(), 3, remap);
+
+        if (meshData.getWeights() != null)
+            remap(meshData.getWeights(), 4, remap);
+
+        if (meshData.getJointIndices() != null)
+            remap(meshData.getJointIndices(), 4, remap);
+    }
+
+    /**
+     * Move the elements of a vertex stream to their new indices.
+     *
+     * @param buffer stream
+     * @param size   amount of elements per vertex
+     * @param remap  new index of every vertex
+     */
+    private static void remap(FloatBuffer buffer, int size, int[] remap) {
+        float[] elements = new float[buffer.remaining()];
+        buffer.duplicate().get(elements);
+
+        for (int i = 0; i < remap.length; i++)
+            for (int j = 0; j < size; j++)
+                buffer.put(buffer.position() + remap[i] * size + j, elements[i * size + j]);
+    }
+
+    /**
+     * Move the elements of a vertex stream to their new indices.
+     *
+     * @param buffer stream
+     * @param size   amount of elements per vertex
+     * @param remap  new index of every vertex
+     */
+    private static void remap(IntBuffer buffer, int size, int[] remap) {
+        int[] elements = new int[buffer.remaining()];
+        buffer.duplicate().get(elements);
+
+        for (int i = 0; i < remap.length; i++)
+            for (int j = 0; j < size; j++)
+                buffer.put(buffer.position() + remap[i] * size + j, elements[i * size + j]);
+    }
+}
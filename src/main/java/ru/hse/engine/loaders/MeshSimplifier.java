@@ -0,0 +1,650 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Post-import levels of detail generation stage.
+ * <p>
+ * Every mesh gets a chain of simplified index buffers referencing the mesh's own vertices, so the levels share the
+ * mesh's vertex buffer and keep the skinning attributes of the vertices exactly. Triangles are simplified by edge
+ * collapses ordered by the quadric error metric. A vertex is collapsed into its neighbour only if it is an interior
+ * vertex of a manifold surface without attribute seams, both vertices have the same dominant joint and no triangle
+ * around the vertex flips. Every level is bounded by and records its error, the distance between the simplified and
+ * the original surface estimated by the quadrics in the mesh's units.
+ */
+public class MeshSimplifier {
+    public static final float[] LEVEL_RATIOS = {0.5f, 0.25f, 0.125f};
+
+    public static final float MAX_RELATIVE_ERROR = 0.05f;
+
+    private static final float MIN_REDUCTION = 0.8f;
+
+    private static final int QUADRIC_SIZE = 11;
+
+    private final int verticesAmount;
+
+    private final float[] positions;
+
+    private final int[] indices;
+
+    private final int[] positionIds;
+
+    private final boolean[] movable;
+
+    private final int[] dominantJoints;
+
+    private final double[] quadrics;
+
+    private int[] result;
+
+    private int resultIndicesAmount;
+
+    private double resultErrorSquared;
+
+    /**
+     * The class' constructor.
+     *
+     * @param meshData mesh data
+     */
+    private MeshSimplifier(MeshData meshData) {
+        verticesAmount = meshData.getPositions().remaining() / 3;
+
+        positions = new float[3 * verticesAmount];
+        meshData.getPositions().duplicate().get(positions);
+
+        indices = new int[meshData.getIndices().remaining()];
+        meshData.getIndices().duplicate().get(indices);
+
+        int[] canonicalVertices = weldVertices(meshData, false);
+
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = canonicalVertices[indices[i]];
+
+        positionIds = weldVertices(meshData, true);
+
+        dominantJoints = new int[verticesAmount];
+
+        IntBuffer jointIndices = meshData.getJointIndices();
+
+        for (int i = 0; i < verticesAmount; i++)
+            dominantJoints[i] = jointIndices != null
+                    ? jointIndices.get(jointIndices.position() + Mesh.MAX_WEIGHTS * i)
+                    : -1;
+
+        movable = findMovableVertices();
+
+        quadrics = new double[QUADRIC_SIZE * verticesAmount];
+
+        for (int i = 0; i < indices.length / 3; i++)
+            addTriangleQuadric(indices[3 * i], indices[3 * i + 1], indices[3 * i + 2]);
+
+        result = indices.clone();
+        resultIndicesAmount = result.length;
+    }
+
+    /**
+     * Create levels of detail of the meshes.
+     *
+     * @param meshes meshes
+     */
+    public static void createLevelsOfDetail(List<MeshData> meshes) {
+        long[] trianglesAmounts = new long[LEVEL_RATIOS.length + 1];
+
+        int simplifiedMeshesAmount = 0;
+
+        for (MeshData meshData : meshes) {
+            createLevelsOfDetail(meshData);
+
+            int trianglesAmount = meshData.getIndices().remaining() / 3;
+
+            trianglesAmounts[0] += trianglesAmount;
+
+            IntBuffer[] levelsIndices = meshData.getLevelsIndices();
+
+            if (levelsIndices.length > 0)
+                simplifiedMeshesAmount++;
+
+            for (int i = 0; i < LEVEL_RATIOS.length; i++) {
+                if (i < levelsIndices.length)
+                    trianglesAmount = levelsIndices[i].remaining() / 3;
+
+                trianglesAmounts[i + 1] += trianglesAmount;
+            }
+        }
+
+        if (simplifiedMeshesAmount == 0)
+            return;
+
+        StringBuilder message = new StringBuilder("Levels of detail created for " + simplifiedMeshesAmount + " of "
+                + meshes.size() + " meshes, triangles " + trianglesAmounts[0]);
+
+        for (int i = 1; i < trianglesAmounts.length; i++)
+            message.append(" -> ").append(trianglesAmounts[i]);
+
+        System.out.println(message);
+    }
+
+    /**
+     * Create levels of detail of the mesh, every level is simplified from the previous one. A level is kept if it has
+     * noticeably less triangles than the previous one.
+     *
+     * @param meshData mesh data
+     */
+    public static void createLevelsOfDetail(MeshData meshData) {
+        int indicesAmount = meshData.getIndices().remaining();
+
+        if (indicesAmount < 3)
+            return;
+
+        MeshSimplifier simplifier = new MeshSimplifier(meshData);
+
+        float maxError = MAX_RELATIVE_ERROR * simplifier.calculateRadius();
+
+        IntBuffer[] levelsIndices = new IntBuffer[LEVEL_RATIOS.length];
+        float[] levelsErrors = new float[LEVEL_RATIOS.length];
+
+        int levelsAmount = 0;
+        int previousIndicesAmount = indicesAmount;
+
+        float[] error = new float[1];
+
+        for (float ratio : LEVEL_RATIOS) {
+            int[] levelIndices = simplifier.simplify(3 * (int) (ratio * indicesAmount / 3), maxError, error);
+
+            if (levelIndices.length == 0 || levelIndices.length > MIN_REDUCTION * previousIndicesAmount)
+                break;
+
+            levelIndices = MeshOptimizer.optimizeVertexCache(levelIndices, simplifier.verticesAmount);
+
+            levelsIndices[levelsAmount] = NativeMemory.allocInt(NativeMemory.Tag.MESH, levelIndices.length);
+            levelsIndices[levelsAmount].put(levelIndices).flip();
+
+            levelsErrors[levelsAmount] = error[0];
+
+            levelsAmount++;
+            previousIndicesAmount = levelIndices.length;
+        }
+
+        meshData.setLevelsOfDetail(Arrays.copyOf(levelsIndices, levelsAmount),
+                Arrays.copyOf(levelsErrors, levelsAmount));
+    }
+
+    /**
+     * Simplify the mesh further, every call continues from the result of the previous one.
+     *
+     * @param targetIndicesAmount amount of indices to stop at
+     * @param maxError            maximal error of the simplified mesh
+     * @param error               array to store the error of the simplified mesh in
+     * @return indices of the simplified mesh, there are more indices than the target if the error limit is reached
+     */
+    private int[] simplify(int targetIndicesAmount, float maxError, float[] error) {
+        int indicesAmount = resultIndicesAmount;
+
+        double maxErrorSquared = (double) maxError * maxError;
+
+        int[] remap = new int[verticesAmount];
+        boolean[] touched = new boolean[verticesAmount];
+
+        int[] offsets = new int[verticesAmount + 1];
+        int[] vertexTriangles = new int[indicesAmount];
+
+        int[] candidateVertices = new int[4 * indicesAmount];
+        long[] candidates = new long[2 * indicesAmount];
+
+        while (indicesAmount > targetIndicesAmount) {
+            int trianglesAmount = indicesAmount / 3;
+
+            // Triangles of every vertex
+            Arrays.fill(offsets, 0);
+
+            for (int i = 0; i < indicesAmount; i++)
+                offsets[result[i] + 1]++;
+
+            for (int i = 0; i < verticesAmount; i++)
+                offsets[i + 1] += offsets[i];
+
+            for (int i = 0; i < indicesAmount; i++)
+                vertexTriangles[offsets[result[i]]++] = i / 3;
+
+            for (int i = verticesAmount; i > 0; i--)
+                offsets[i] = offsets[i - 1];
+
+            offsets[0] = 0;
+
+            // Collapses sorted by their error
+            int candidatesAmount = 0;
+
+            for (int i = 0; i < indicesAmount; i++) {
+                int vertex = result[i];
+                int target = result[i - i % 3 + (i + 1) % 3];
+
+                for (int j = 0; j < 2; j++) {
+                    if (movable[vertex] && dominantJoints[vertex] == dominantJoints[target]) {
+                        double errorSquared = evaluateCollapse(vertex, target);
+
+                        if (errorSquared <= maxErrorSquared) {
+                            candidateVertices[2 * candidatesAmount] = vertex;
+                            candidateVertices[2 * candidatesAmount + 1] = target;
+
+                            candidates[candidatesAmount] = (long) Float.floatToIntBits((float) errorSquared) << 32
+                                    | candidatesAmount;
+
+                            candidatesAmount++;
+                        }
+                    }
+
+                    int swap = vertex;
+                    vertex = target;
+                    target = swap;
+                }
+            }
+
+            Arrays.sort(candidates, 0, candidatesAmount);
+
+            // Independent collapses
+            for (int i = 0; i < verticesAmount; i++)
+                remap[i] = i;
+
+            Arrays.fill(touched, false);
+
+            int removedTrianglesNeeded = (indicesAmount - targetIndicesAmount + 2) / 3;
+            int removedTrianglesAmount = 0;
+            int collapsesAmount = 0;
+
+            for (int i = 0; i < candidatesAmount && removedTrianglesAmount < removedTrianglesNeeded; i++) {
+                int candidate = (int) candidates[i];
+
+                int vertex = candidateVertices[2 * candidate];
+                int target = candidateVertices[2 * candidate + 1];
+
+                if (touched[vertex] || touched[target] || hasTriangleFlips(result, offsets, vertexTriangles, vertex,
+                        target))
+                    continue;
+
+                for (int j = offsets[vertex]; j < offsets[vertex + 1]; j++) {
+                    int triangle = vertexTriangles[j];
+
+                    boolean removed = false;
+
+                    for (int k = 0; k < 3; k++) {
+                        touched[result[3 * triangle + k]] = true;
+
+                        if (result[3 * triangle + k] == target)
+                            removed = true;
+                    }
+
+                    if (removed)
+                        removedTrianglesAmount++;
+                }
+
+                resultErrorSquared = Math.max(resultErrorSquared,
+                        evaluateCollapse(vertex, target));
+
+                int source = QUADRIC_SIZE * positionIds[vertex];
+                int destination = QUADRIC_SIZE * positionIds[target];
+
+                for (int j = 0; j < QUADRIC_SIZE; j++)
+                    quadrics[destination + j] += quadrics[source + j];
+
+                remap[vertex] = target;
+
+                collapsesAmount++;
+            }
+
+            if (collapsesAmount == 0)
+                break;
+
+            // Remapped triangles without the collapsed ones
+            int resultIndicesAmount = 0;
+
+            for (int i = 0; i < trianglesAmount; i++) {
+                int a = remap[result[3 * i]];
+                int b = remap[result[3 * i + 1]];
+                int c = remap[result[3 * i + 2]];
+
+                if (a == b || b == c || c == a)
+                    continue;
+
+                result[resultIndicesAmount++] = a;
+                result[resultIndicesAmount++] = b;
+                result[resultIndicesAmount++] = c;
+            }
+
+            indicesAmount = resultIndicesAmount;
+        }
+
+        resultIndicesAmount = indicesAmount;
+
+        error[0] = (float) Math.sqrt(resultErrorSquared);
+
+        return Arrays.copyOf(result, indicesAmount);
+    }
+
+    /**
+     * Check if moving the vertex to the target flips any of the vertex's triangles which are not collapsed.
+     *
+     * @param triangles       triangle list indices
+     * @param offsets         offsets of the vertices' triangles
+     * @param vertexTriangles triangles of all the vertices
+     * @param vertex          collapsed vertex
+     * @param target          vertex the collapsed vertex is moved to
+     * @return true if a triangle flips or becomes degenerate and false otherwise
+     */
+    private boolean hasTriangleFlips(int[] triangles, int[] offsets, int[] vertexTriangles, int vertex, int target) {
+        for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+            int triangle = vertexTriangles[i];
+
+            int a = triangles[3 * triangle];
+            int b = triangles[3 * triangle + 1];
+            int c = triangles[3 * triangle + 2];
+
+            if (a == target || b == target || c == target)
+                continue;
+
+            // Rotate the triangle, so the vertex is the first one
+            if (b == vertex) {
+                b = c;
+                c = a;
+            } else if (c == vertex) {
+                c = b;
+                b = a;
+            }
+
+            float bx = positions[3 * b] - positions[3 * vertex];
+            float by = positions[3 * b + 1] - positions[3 * vertex + 1];
+            float bz = positions[3 * b + 2] - positions[3 * vertex + 2];
+            float cx = positions[3 * c] - positions[3 * vertex];
+            float cy = positions[3 * c + 1] - positions[3 * vertex + 1];
+            float cz = positions[3 * c + 2] - positions[3 * vertex + 2];
+
+            float nx = by * cz - bz * cy;
+            float ny = bz * cx - bx * cz;
+            float nz = bx * cy - by * cx;
+
+            bx = positions[3 * b] - positions[3 * target];
+            by = positions[3 * b + 1] - positions[3 * target + 1];
+            bz = positions[3 * b + 2] - positions[3 * target + 2];
+            cx = positions[3 * c] - positions[3 * target];
+            cy = positions[3 * c + 1] - positions[3 * target + 1];
+            cz = positions[3 * c + 2] - positions[3 * target + 2];
+
+            float mx = by * cz - bz * cy;
+            float my = bz * cx - bx * cz;
+            float mz = bx * cy - by * cx;
+
+            if (nx * mx + ny * my + nz * mz <= 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Evaluate error of moving the vertex to the target.
+     *
+     * @param vertex   collapsed vertex
+     * @param target   vertex the collapsed vertex is moved to
+     * @return mean squared distance from the target to the planes of both vertices
+     */
+    private double evaluateCollapse(int vertex, int target) {
+        int q = QUADRIC_SIZE * positionIds[vertex];
+        int r = QUADRIC_SIZE * positionIds[target];
+
+        double x = positions[3 * target];
+        double y = positions[3 * target + 1];
+        double z = positions[3 * target + 2];
+
+        double weight = quadrics[q + 10] + quadrics[r + 10];
+
+        if (weight <= 0)
+            return 0;
+
+        double error = 0;
+
+        for (int i = 0; i < 2; i++) {
+            int o = i == 0 ? q : r;
+
+            error += quadrics[o] * x * x + quadrics[o + 1] * y * y + quadrics[o + 2] * z * z
+                    + 2 * (quadrics[o + 3] * x * y + quadrics[o + 4] * x * z + quadrics[o + 5] * y * z)
+                    + 2 * (quadrics[o + 6] * x + quadrics[o + 7] * y + quadrics[o + 8] * z)
+                    + quadrics[o + 9];
+        }
+
+        return Math.max(0, error / weight);
+    }
+
+    /**
+     * Add plane quadric of the triangle weighted by its area to the quadrics of its positions.
+     *
+     * @param a first vertex
+     * @param b second vertex
+     * @param c third vertex
+     */
+    private void addTriangleQuadric(int a, int b, int c) {
+        double bx = positions[3 * b] - positions[3 * a];
+        double by = positions[3 * b + 1] - positions[3 * a + 1];
+        double bz = positions[3 * b + 2] - positions[3 * a + 2];
+        double cx = positions[3 * c] - positions[3 * a];
+        double cy = positions[3 * c + 1] - positions[3 * a + 1];
+        double cz = positions[3 * c + 2] - positions[3 * a + 2];
+
+        double nx = by * cz - bz * cy;
+        double ny = bz * cx - bx * cz;
+        double nz = bx * cy - by * cx;
+
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+        if (length == 0)
+            return;
+
+        double area = length / 2;
+
+        nx /= length;
+        ny /= length;
+        nz /= length;
+
+        double d = -(nx * positions[3 * a] + ny * positions[3 * a + 1] + nz * positions[3 * a + 2]);
+
+        int[] vertices = {a, b, c};
+
+        for (int vertex : vertices) {
+            int q = QUADRIC_SIZE * positionIds[vertex];
+
+            quadrics[q] += area * nx * nx;
+            quadrics[q + 1] += area * ny * ny;
+            quadrics[q + 2] += area * nz * nz;
+            quadrics[q + 3] += area * nx * ny;
+            quadrics[q + 4] += area * nx * nz;
+            quadrics[q + 5] += area * ny * nz;
+            quadrics[q + 6] += area * nx * d;
+            quadrics[q + 7] += area * ny * d;
+            quadrics[q + 8] += area * nz * d;
+            quadrics[q + 9] += area * d * d;
+            quadrics[q + 10] += area;
+        }
+    }
+
+    /**
+     * Find vertices which can be collapsed: interior vertices of a manifold surface with a single set of attributes.
+     *
+     * @return true for every movable vertex
+     */
+    private boolean[] findMovableVertices() {
+        boolean[] locked = new boolean[verticesAmount];
+
+        // Positions shared by vertices with different attributes are seams
+        int[] positionVertices = new int[verticesAmount];
+        Arrays.fill(positionVertices, -1);
+
+        for (int vertex : indices) {
+            int positionId = positionIds[vertex];
+
+            if (positionVertices[positionId] < 0)
+                positionVertices[positionId] = vertex;
+            else if (positionVertices[positionId] != vertex)
+                locked[positionId] = true;
+        }
+
+        // Every edge of a closed manifold surface is used once in each direction
+        int trianglesAmount = indices.length / 3;
+
+        long[] edges = new long[indices.length];
+
+        for (int i = 0; i < trianglesAmount; i++) {
+            for (int j = 0; j < 3; j++) {
+                int a = positionIds[indices[3 * i + j]];
+                int b = positionIds[indices[3 * i + (j + 1) % 3]];
+
+                edges[3 * i + j] = (long) a << 32 | b;
+            }
+        }
+
+        Arrays.sort(edges);
+
+        for (int i = 0; i < edges.length; i++) {
+            int a = (int) (edges[i] >>> 32);
+            int b = (int) edges[i];
+
+            boolean repeated = i > 0 && edges[i - 1] == edges[i] || i + 1 < edges.length && edges[i + 1] == edges[i];
+
+            long reverseEdge = (long) b << 32 | a;
+
+            int reverseIndex = Arrays.binarySearch(edges, reverseEdge);
+
+            boolean manifold = a != b && !repeated && reverseIndex >= 0
+                    && (reverseIndex == 0 || edges[reverseIndex - 1] != reverseEdge)
+                    && (reverseIndex + 1 == edges.length || edges[reverseIndex + 1] != reverseEdge);
+
+            if (!manifold) {
+                locked[a] = true;
+                locked[b] = true;
+            }
+        }
+
+        boolean[] result = new boolean[verticesAmount];
+
+        for (int i = 0; i < verticesAmount; i++)
+            result[i] = !locked[positionIds[i]];
+
+        return result;
+    }
+
+    /**
+     * Map every vertex to the first vertex with the same position or the same attributes.
+     *
+     * @param meshData      mesh data
+     * @param positionsOnly true to compare the positions only
+     * @return index of the first equal vertex of every vertex
+     */
+    private int[] weldVertices(MeshData meshData, boolean positionsOnly) {
+        int[][] streams = positionsOnly
+                ? new int[][]{toBits(meshData.getPositions())}
+                : new int[][]{toBits(meshData.getPositions()), toBits(meshData.getTextCoords()),
+                toBits(meshData.getNormals()), toBits(meshData.getWeights()), toInts(meshData.getJointIndices())};
+
+        int[] sizes = new int[streams.length];
+
+        for (int i = 0; i < streams.length; i++)
+            sizes[i] = verticesAmount > 0 ? streams[i].length / verticesAmount : 0;
+
+        int tableSize = Integer.highestOneBit(Math.max(1, 2 * verticesAmount)) << 1;
+
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+
+        int[] result = new int[verticesAmount];
+
+        for (int i = 0; i < verticesAmount; i++) {
+            int hash = 1;
+
+            for (int j = 0; j < streams.length; j++)
+                for (int k = 0; k < sizes[j]; k++)
+                    hash = 31 * hash + streams[j][i * sizes[j] + k];
+
+            int slot = (hash ^ hash >>> 16) & (tableSize - 1);
+
+            while (table[slot] >= 0 && !equalVertices(streams, sizes, table[slot], i))
+                slot = (slot + 1) & (tableSize - 1);
+
+            if (table[slot] < 0)
+                table[slot] = i;
+
+            result[i] = table[slot];
+        }
+
+        return result;
+    }
+
+    /**
+     * Compare attributes of the vertices.
+     *
+     * @param streams vertex streams
+     * @param sizes   amounts of elements per vertex of the streams
+     * @param a       first vertex
+     * @param b       second vertex
+     * @return true if all the attributes are equal and false otherwise
+     */
+    private static boolean equalVertices(int[][] streams, int[] sizes, int a, int b) {
+        for (int i = 0; i < streams.length; i++)
+            for (int j = 0; j < sizes[i]; j++)
+                if (streams[i][a * sizes[i] + j] != streams[i][b * sizes[i] + j])
+                    return false;
+
+        return true;
+    }
+
+    /**
+     * Copy bits of the floats.
+     *
+     * @param buffer floats, may be null
+     * @return bits of the floats
+     */
+    private static int[] toBits(FloatBuffer buffer) {
+        if (buffer == null)
+            return new int[0];
+
+        int[] result = new int[buffer.remaining()];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = Float.floatToIntBits(buffer.get(buffer.position() + i) + 0.0f);
+
+        return result;
+    }
+
+    /**
+     * Copy the ints.
+     *
+     * @param buffer ints, may be null
+     * @return ints
+     */
+    private static int[] toInts(IntBuffer buffer) {
+        if (buffer == null)
+            return new int[0];
+
+        int[] result = new int[buffer.remaining()];
+        buffer.duplicate().get(result);
+
+        return result;
+    }
+
+    /**
+     * Calculate radius of the mesh the same way the mesh's bounding radius is calculated.
+     *
+     * @return maximal absolute coordinate
+     */
+    private float calculateRadius() {
+        float radius = 0;
+
+        for (float coordinate : positions)
+            radius = Math.max(radius, Math.abs(coordinate));
+
+        return radius;
+    }
+}
@@ -0,0 +1,184 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Post-import mesh splitting stage.
+ * <p>
+ * A mesh with more vertices than 16-bit indices can address is split into parts which can, so every mesh is drawn
+ * with 16-bit or narrower indices. Triangles are taken in their order, so the parts keep the vertex cache order of
+ * the optimised mesh, and the vertices of a part are numbered in the order of their first use.
+ */
+public class MeshSplitter {
+    public static final int MAX_VERTICES = 1 << 16;
+
+    /**
+     * Split the meshes in place, every split mesh is replaced with its parts and freed.
+     *
+     * @param meshes meshes
+     */
+    public static void split(List<MeshData> meshes) {
+        int splitMeshesAmount = 0;
+        int partsAmount = 0;
+
+        for (int i = 0; i < meshes.size(); i++) {
+            MeshData meshData = meshes.get(i);
+
+            if (meshData.getPositions().remaining() / 3 <= MAX_VERTICES)
+                continue;
+
+            List<MeshData> parts = split(meshData, MAX_VERTICES);
+
+            meshes.remove(i);
+            meshes.addAll(i, parts);
+
+            meshData.free();
+
+            i += parts.size() - 1;
+
+            splitMeshesAmount++;
+            partsAmount += parts.size();
+        }
+
+        if (splitMeshesAmount > 0)
+            System.out.println(splitMeshesAmount + " meshes split into " + partsAmount + " parts for 16-bit indices");
+    }
+
+    /**
+     * Split the mesh into parts with limited amount of vertices.
+     *
+     * @param meshData          mesh data
+     * @param maxVerticesAmount maximal amount of vertices of a part
+     * @return parts allocated with NativeMemory
+     */
+    public static List<MeshData> split(MeshData meshData, int maxVerticesAmount) {
+        IntBuffer indices = meshData.getIndices();
+
+        int indicesStart = indices.position();
+        int trianglesAmount = indices.remaining() / 3;
+
+        int[] remap = new int[meshData.getPositions().remaining() / 3];
+        Arrays.fill(remap, -1);
+
+        int[] partVertices = new int[maxVerticesAmount];
+        int[] partIndices = new int[3 * trianglesAmount];
+
+        List<MeshData> parts = new ArrayList<>();
+
+        int partVerticesAmount = 0;
+        int partIndicesAmount = 0;
+
+        for (int i = 0; i < trianglesAmount; i++) {
+            int newVerticesAmount = 0;
+
+            for (int j = 0; j < 3; j++)
+                if (remap[indices.get(indicesStart + 3 * i + j)] < 0)
+                    newVerticesAmount++;
+
+            if (partVerticesAmount + newVerticesAmount > maxVerticesAmount) {
+                parts.add(createPart(meshData, partVertices, partVerticesAmount, partIndices, partIndicesAmount));
+
+                for (int j = 0; j < partVerticesAmount; j++)
+                    remap[partVertices[j]] = -1;
+
+                partVerticesAmount = 0;
+                partIndicesAmount = 0;
+            }
+
+            for (int j = 0; j < 3; j++) {
+                int vertex = indices.get(indicesStart + 3 * i + j);
+
+                if (remap[vertex] < 0) {
+                    remap[vertex] = partVerticesAmount;
+                    partVertices[partVerticesAmount++] = vertex;
+                }
+
+                partIndices[partIndicesAmount++] = remap[vertex];
+            }
+        }
+
+        if (partIndicesAmount > 0)
+            parts.add(createPart(meshData, partVertices, partVerticesAmount, partIndices, partIndicesAmount));
+
+        return parts;
+    }
+
+    /**
+     * Create part of the mesh.
+     *
+     * @param meshData       mesh data
+     * @param vertices       indices of the part's vertices in the mesh
+     * @param verticesAmount amount of the part's vertices
+     * @param indices        indices of the part
+     * @param indicesAmount  amount of the part's indices
+     * @return part allocated with NativeMemory
+     */
+    private static MeshData createPart(MeshData meshData, int[] vertices, int verticesAmount, int[] indices,
+                                       int indicesAmount) {
+        IntBuffer partIndices = NativeMemory.allocInt(NativeMemory.Tag.MESH, indicesAmount);
+        partIndices.put(indices, 0, indicesAmount).flip();
+
+        IntBuffer jointIndices = null;
+        FloatBuffer weights = null;
+
+        if (meshData.getJointIndices() != null && meshData.getWeights() != null) {
+            jointIndices = copyVertices(meshData.getJointIndices(), Mesh.MAX_WEIGHTS, vertices, verticesAmount);
+            weights = copyVertices(meshData.getWeights(), Mesh.MAX_WEIGHTS, vertices, verticesAmount);
+        }
+
+        return new MeshData(copyVertices(meshData.getPositions(), 3, vertices, verticesAmount),
+                copyVertices(meshData.getTextCoords(), 2, vertices, verticesAmount),
+                copyVertices(meshData.getNormals(), 3, vertices, verticesAmount),
+                partIndices, jointIndices, weights, meshData.getMaterialIndex());
+    }
+
+    /**
+     * Copy elements of the vertices from a vertex stream.
+     *
+     * @param buffer         stream
+     * @param size           amount of elements per vertex
+     * @param vertices       indices of the vertices
+     * @param verticesAmount amount of the vertices
+     * @return copied elements allocated with NativeMemory
+     */
+    private static FloatBuffer copyVertices(FloatBuffer buffer, int size, int[] vertices, int verticesAmount) {
+        FloatBuffer result = NativeMemory.allocFloat(NativeMemory.Tag.MESH, size * verticesAmount);
+
+        for (int i = 0; i < verticesAmount; i++)
+            for (int j = 0; j < size; j++)
+                result.put(buffer.get(buffer.position() + vertices[i] * size + j));
+
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Copy elements of the vertices from a vertex stream.
+     *
+     * @param buffer         stream
+     * @param size           amount of elements per vertex
+     * @param vertices       indices of the vertices
+     * @param verticesAmount amount of the vertices
+     * @return copied elements allocated with NativeMemory
+     */
+    private static IntBuffer copyVertices(IntBuffer buffer, int size, int[] vertices, int verticesAmount) {
+        IntBuffer result = NativeMemory.allocInt(NativeMemory.Tag.MESH, size * verticesAmount);
+
+        for (int i = 0; i < verticesAmount; i++)
+            for (int j = 0; j < size; j++)
+                result.put(buffer.get(buffer.position() + vertices[i] * size + j));
+
+        result.flip();
+
+        return result;
+    }
+}
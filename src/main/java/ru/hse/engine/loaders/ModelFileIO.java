@@ -0,0 +1,270 @@
+package ru.hse.engine.loaders;
+
+import org.lwjgl.assimp.AIFile;
+import org.lwjgl.assimp.AIFileCloseProc;
+import org.lwjgl.assimp.AIFileFlushProc;
+import org.lwjgl.assimp.AIFileIO;
+import org.lwjgl.assimp.AIFileOpenProc;
+import org.lwjgl.assimp.AIFileReadProc;
+import org.lwjgl.assimp.AIFileSeek;
+import org.lwjgl.assimp.AIFileTellProc;
+import org.lwjgl.assimp.AIFileWriteProc;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.assimp.Assimp.*;
+
+/**
+ * Assimp file system reading files from byte buffers.
+ * <p>
+ * The model file and its sidecar files (materials, animations) are read by Assimp from the buffers, which are either
+ * memory-mapped files or data already in memory, e.g. entries of an asset pack. Assimp still copies every block it
+ * reads into its own buffer, but the files are not read through the stream I/O and the pages of a mapped file are
+ * loaded by the OS on demand. The file system must be closed after the import.
+ */
+public class ModelFileIO implements AutoCloseable {
+    private final FileSource fileSource;
+
+    private final Map<Long, ByteBuffer> openedFilesMap;
+
+    private final AIFileIO fileIO;
+
+    private final AIFileOpenProc openProc;
+
+    private final AIFileCloseProc closeProc;
+
+    private final AIFileReadProc readProc;
+
+    private final AIFileWriteProc writeProc;
+
+    private final AIFileTellProc tellProc;
+
+    private final AIFileTellProc fileSizeProc;
+
+    private final AIFileSeek seekProc;
+
+    private final AIFileFlushProc flushProc;
+
+    /**
+     * Source of the files' content.
+     */
+    public interface FileSource {
+        /**
+         * Open the file.
+         *
+         * @param fileName name of the file requested by Assimp
+         * @return direct buffer with the file's content or null if there is no such file
+         * @throws IOException input or output error
+         */
+        ByteBuffer open(String fileName) throws IOException;
+    }
+
+    /**
+     * The class' constructor.
+     *
+     * @param fileSource source of the files' content
+     */
+    public ModelFileIO(FileSource fileSource) {
+        this.fileSource = fileSource;
+
+        openedFilesMap = new HashMap<>();
+
+        openProc = AIFileOpenProc.create((fileIOAddress, fileName, openMode) ->
+                open(MemoryUtil.memUTF8(fileName), MemoryUtil.memASCII(openMode)));
+        closeProc = AIFileCloseProc.create((fileIOAddress, fileAddress) -> close(fileAddress));
+
+        readProc = AIFileReadProc.create(this::read);
+        writeProc = AIFileWriteProc.create((fileAddress, buffer, size, count) -> 0);
+        tellProc = AIFileTellProc.create(fileAddress -> openedFilesMap.get(fileAddress).position());
+        fileSizeProc = AIFileTellProc.create(fileAddress -> openedFilesMap.get(fileAddress).limit());
+        seekProc = AIFileSeek.create(this::seek);
+        flushProc = AIFileFlushProc.create(fileAddress -> {
+        });
+
+        fileIO = AIFileIO.calloc().set(openProc, closeProc, MemoryUtil.NULL);
+    }
+
+    /**
+     * Create file system memory-mapping files from the disk.
+     *
+     * @return file system
+     */
+    public static ModelFileIO mapped() {
+        return new ModelFileIO(ModelFileIO::map);
+    }
+
+    /**
+     * Create file system reading files from memory.
+     *
+     * @param files direct buffers with the files' content by the files' names
+     * @return file system
+     */
+    public static ModelFileIO of(Map<String, ByteBuffer> files) {
+        Map<String, ByteBuffer> normalizedFiles = new HashMap<>();
+
+        for (Map.Entry<String, ByteBuffer> entry : files.entrySet())
+            normalizedFiles.put(normalize(entry.getKey()), entry.getValue());
+
+        return new ModelFileIO(fileName -> normalizedFiles.get(normalize(fileName)));
+    }
+
+    /**
+     * Assimp file system getter.
+     *
+     * @return file system to pass to aiImportFileEx
+     */
+    public AIFileIO getFileIO() {
+        return fileIO;
+    }
+
+    /**
+     * Memory-map file.
+     *
+     * @param fileName name of the file
+     * @return mapped file or null if there is no such file
+     * @throws IOException input or output error
+     */
+    private static ByteBuffer map(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+
+        if (!Files.isRegularFile(path))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Normalize file name, so different spellings of a path are the same name.
+     *
+     * @param fileName name of the file
+     * @return normalized name
+     */
+    private static String normalize(String fileName) {
+        return Paths.get(fileName.replace('\\', '/')).normalize().toString();
+    }
+
+    /**
+     * Open file for Assimp, only reading is supported.
+     *
+     * @param fileName name of the file
+     * @param openMode fopen-like mode
+     * @return address of the opened file or NULL if the file can not be opened
+     */
+    private long open(String fileName, String openMode) {
+        if (openMode.contains("w") || openMode.contains("a") || openMode.contains("+"))
+            return MemoryUtil.NULL;
+
+        ByteBuffer content;
+
+        try {
+            content = fileSource.open(fileName);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Unable to open model file " + fileName + ": " + e.getMessage());
+
+            return MemoryUtil.NULL;
+        }
+
+        if (content == null || !content.isDirect())
+            return MemoryUtil.NULL;
+
+        AIFile file = AIFile.calloc()
+                .set(readProc, writeProc, tellProc, fileSizeProc, seekProc, flushProc, MemoryUtil.NULL);
+
+        openedFilesMap.put(file.address(), content.slice());
+
+        return file.address();
+    }
+
+    /**
+     * Close file opened for Assimp.
+     *
+     * @param fileAddress address of the file
+     */
+    private void close(long fileAddress) {
+        if (openedFilesMap.remove(fileAddress) != null)
+            AIFile.create(fileAddress).free();
+    }
+
+    /**
+     * Read elements of the file.
+     *
+     * @param fileAddress   address of the file
+     * @param bufferAddress address of the buffer to read into
+     * @param size          size of an element
+     * @param count         amount of elements to read
+     * @return amount of the elements read
+     */
+    private long read(long fileAddress, long bufferAddress, long size, long count) {
+        ByteBuffer content = openedFilesMap.get(fileAddress);
+
+        if (size == 0)
+            return 0;
+
+        long elementsAmount = Math.min(count, content.remaining() / size);
+
+        MemoryUtil.memCopy(MemoryUtil.memAddress(content), bufferAddress, elementsAmount * size);
+
+        content.position(content.position() + (int) (elementsAmount * size));
+
+        return elementsAmount;
+    }
+
+    /**
+     * Move position in the file.
+     *
+     * @param fileAddress address of the file
+     * @param offset      offset
+     * @param origin      origin of the offset
+     * @return aiReturn_SUCCESS or aiReturn_FAILURE if the position is out of the file
+     */
+    private int seek(long fileAddress, long offset, int origin) {
+        ByteBuffer content = openedFilesMap.get(fileAddress);
+
+        long position = offset;
+
+        if (origin == aiOrigin_CUR)
+            position += content.position();
+        else if (origin == aiOrigin_END)
+            position += content.limit();
+
+        if (position < 0 || position > content.limit())
+            return aiReturn_FAILURE;
+
+        content.position((int) position);
+
+        return aiReturn_SUCCESS;
+    }
+
+    /**
+     * Close the file system, the files left open are closed too.
+     */
+    @Override
+    public void close() {
+        for (long fileAddress : openedFilesMap.keySet())
+            AIFile.create(fileAddress).free();
+
+        openedFilesMap.clear();
+
+        fileIO.free();
+
+        openProc.free();
+        closeProc.free();
+        readProc.free();
+        writeProc.free();
+        tellProc.free();
+        fileSizeProc.free();
+        seekProc.free();
+        flushProc.free();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.engine.MeshedItem;
+import ru.hse.engine.utils.UploadQueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Asynchronous model loader.
+ * <p>
+ * Models are imported, baked and have their textures decoded by a worker thread. Their textures and meshes are then
+ * created by the upload queue in the thread owning the OpenGL context.
+ */
+public class ModelLoader {
+    private final ExecutorService executor;
+
+    private final UploadQueue uploadQueue;
+
+    private boolean isClosed;
+
+    /**
+     * The class' constructor.
+     *
+     * @param uploadQueue queue for the GPU uploads
+     */
+    public ModelLoader(UploadQueue uploadQueue) {
+        this.uploadQueue = uploadQueue;
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Model loader");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Load model in the background.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @param animated          true if the model is animated and false otherwise
+     * @return future completed with the loaded item by the upload queue
+     */
+    public CompletableFuture<MeshedItem> load(String meshPath, String texturesDirectory, boolean animated) {
+        CompletableFuture<MeshedItem> result = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            LoadedModel loadedModel;
+
+            try {
+                loadedModel = animated
+                        ? AnimatedMeshLoader.loadAnimatedModel(meshPath, texturesDirectory)
+                        : StaticMeshLoader.loadModel(meshPath, texturesDirectory);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+
+                return;
+            }
+
+            submit(loadedModel, result);
+        });
+
+        return result;
+    }
+
+    /**
+     * Submit upload of the loaded model, the model is freed instead if the loader is closed.
+     *
+     * @param loadedModel loaded model
+     * @param result      future completed with the loaded item by the upload queue
+     */
+    private synchronized void submit(LoadedModel loadedModel, CompletableFuture<MeshedItem> result) {
+        if (isClosed) {
+            loadedModel.free();
+
+            result.cancel(false);
+
+            return;
+        }
+
+        uploadQueue.submit(new ModelUpload(loadedModel, result));
+    }
+
+    /**
+     * Cleanup method, models being loaded are abandoned and the uploads left in the queue are cancelled, so their
+     * data is freed. A model still being imported is freed by the worker when its import is finished.
+     */
+    public void cleanup() {
+        synchronized (this) {
+            isClosed = true;
+        }
+
+        executor.shutdownNow();
+
+        uploadQueue.cancel();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.hse.engine.loaders;
+
+import ru.hse.engine.MeshedItem;
+import ru.hse.engine.utils.TextureCache;
+import ru.hse.engine.utils.UploadQueue;
+import ru.hse.graphics.model.Material;
+import ru.hse.graphics.model.MaterialData;
+import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.Texture;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Upload of a loaded model, one texture or mesh per part.
+ * <p>
+ * The model's data is freed when the upload is finished, failed or cancelled.
+ */
+class ModelUpload implements UploadQueue.Upload {
+    private final LoadedModel loadedModel;
+
+    private final CompletableFuture<MeshedItem> result;
+
+    private final Iterator<String> texturePaths;
+
+    private final List<Texture> textures;
+
+    private final Mesh[] meshes;
+
+    private List<Material> materials;
+
+    private int meshesAmount;
+
+    /**
+     * The class' constructor.
+     *
+     * @param loadedModel loaded model
+     * @param result      future completed with the created item
+     */
+    ModelUpload(LoadedModel loadedModel, CompletableFuture<MeshedItem> result) {
+        this.loadedModel = loadedModel;
+        this.result = result;
+
+        texturePaths = loadedModel.getTexturePaths().iterator();
+
+        textures = new ArrayList<>();
+
+        meshes = new Mesh[loadedModel.getMeshes().size()];
+    }
+
+    @Override
+    public boolean uploadNext() {
+        try {
+            if (texturePaths.hasNext()) {
+                textures.add(TextureCache.getInstance().getTexture(texturePaths.next()));
+
+                return false;
+            }
+
+            if (materials == null) {
+                materials = new ArrayList<>();
+
+                for (MaterialData materialData : loadedModel.getMaterials())
+                    materials.add(StaticMeshLoader.createMaterial(materialData));
+            }
+
+            if (meshesAmount < meshes.length) {
+                meshes[meshesAmount] = StaticMeshLoader.createMesh(loadedModel.getMeshes().get(meshesAmount),
+                        materials);
+
+                meshesAmount++;
+
+                return false;
+            }
+
+            result.complete(loadedModel.isAnimated()
+                    ? AnimatedMeshLoader.createAnimatedItem(meshes, loadedModel.getAnimations())
+                    : new MeshedItem(meshes));
+        } catch (Exception e) {
+            for (int i = 0; i < meshesAmount; i++)
+                meshes[i].cleanUp();
+
+            result.completeExceptionally(e);
+        }
+
+        release();
+
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        for (int i = 0; i < meshesAmount; i++)
+            meshes[i].cleanUp();
+
+        result.cancel(false);
+
+        release();
+    }
+
+    /**
+     * Release materials and textures of the upload and free the model's data.
+     */
+    private void release() {
+        if (materials != null)
+            StaticMeshLoader.releaseMaterials(materials);
+
+        for (Texture texture : textures)
+            TextureCache.getInstance().releaseTexture(texture);
+
+        loadedModel.free();
+    }
+}
@@ -3,15 +3,22 @@ package ru.hse.engine.loaders;
 import org.joml.Vector4f;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.assimp.*;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import ru.hse.core.utils.Settings;
+import ru.hse.engine.utils.NativeMemory;
 import ru.hse.engine.utils.TextureCache;
-import ru.hse.engine.utils.Utils;
 import ru.hse.graphics.model.Material;
+import ru.hse.graphics.model.MaterialData;
 import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.MeshData;
 import ru.hse.graphics.model.Texture;
 
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 import static org.lwjgl.assimp.Assimp.*;
 
@@ -19,6 +26,11 @@ import static org.lwjgl.assimp.Assimp.*;
  * Static mesh loader.
  */
 public class StaticMeshLoader {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    private static final int DEFAULT_FLAGS = aiProcess_GenSmoothNormals | aiProcess_JoinIdenticalVertices
+            | aiProcess_Triangulate | aiProcess_FixInfacingNormals | aiProcess_PreTransformVertices;
+
     /**
      * Load static mesh.
      *
@@ -28,9 +40,7 @@ public class StaticMeshLoader {
      * @throws Exception an unhandled exception
      */
     public static Mesh[] load(String meshPath, String texturesDirectory) throws Exception {
-        return load(meshPath, texturesDirectory,
-                aiProcess_GenSmoothNormals | aiProcess_JoinIdenticalVertices | aiProcess_Triangulate
-                        | aiProcess_FixInfacingNormals | aiProcess_PreTransformVertices);
+        return load(meshPath, texturesDirectory, DEFAULT_FLAGS);
     }
 
     /**
@@ -43,11 +53,118 @@ public class StaticMeshLoader {
      * @throws Exception an unhandled exception
      */
     public static Mesh[] load(String meshPath, String texturesDirectory, int flags) throws Exception {
-        AIScene aiScene = aiImportFile(meshPath, flags);
+        LoadedModel loadedModel = loadModel(meshPath, texturesDirectory, flags);
+
+        try {
+            return createMeshes(loadedModel);
+        } finally {
+            loadedModel.free();
+        }
+    }
+
+    /**
+     * Load CPU-side data of a static mesh, it does not need an OpenGL context.
+     *
+     * @param meshPath          mesh path
+     * @param texturesDirectory texture directory
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadModel(String meshPath, String texturesDirectory) throws Exception {
+        return loadModel(meshPath, texturesDirectory, DEFAULT_FLAGS);
+    }
+
+    /**
+     * Load CPU-side data of a static mesh, it does not need an OpenGL context.
+     *
+     * @param meshPath          mesh path
+     * @param texturesDirectory texture directory
+     * @param flags             loading flags
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadModel(String meshPath, String texturesDirectory, int flags) throws Exception {
+        return loadModel(meshPath, texturesDirectory, flags, null);
+    }
+
+    /**
+     * Load CPU-side data of a static mesh, it does not need an OpenGL context.
+     *
+     * @param meshPath          mesh path
+     * @param texturesDirectory texture directory
+     * @param flags             loading flags
+     * @param fileIO            file system to import the mesh from or null to import it from the disk
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    public static LoadedModel loadModel(String meshPath, String texturesDirectory, int flags, ModelFileIO fileIO)
+            throws Exception {
+        AIScene aiScene = importScene(meshPath, flags, fileIO);
+
+        LoadedModel loadedModel;
+
+        try {
+            loadedModel = processScene(aiScene, texturesDirectory);
+        } finally {
+            releaseScene(aiScene);
+        }
+
+        decodeTextures(loadedModel);
+
+        return loadedModel;
+    }
+
+    /**
+     * Import scene of the model. The scene must be released by {@link #releaseScene(AIScene)}.
+     * <p>
+     * Unless another file system is given, the model's files are memory-mapped if it is enabled in the settings.
+     *
+     * @param meshPath mesh path
+     * @param flags    loading flags
+     * @param fileIO   file system to import the mesh from or null to import it from the disk
+     * @return imported scene
+     * @throws Exception an unhandled exception
+     */
+    protected static AIScene importScene(String meshPath, int flags, ModelFileIO fileIO) throws Exception {
+        AIScene aiScene;
+
+        if (fileIO != null)
+            aiScene = aiImportFileEx(meshPath, flags, fileIO.getFileIO());
+        else if (SETTINGS.isModelFileMapped()) {
+            try (ModelFileIO mappedFileIO = ModelFileIO.mapped()) {
+                aiScene = aiImportFileEx(meshPath, flags, mappedFileIO.getFileIO());
+            }
+        } else
+            aiScene = aiImportFile(meshPath, flags);
 
         if (aiScene == null)
             throw new Exception("Error loading model");
 
+        NativeMemory.track(NativeMemory.Tag.LOADER, aiScene.address(), 0);
+
+        return aiScene;
+    }
+
+    /**
+     * Release imported scene.
+     *
+     * @param aiScene imported scene
+     */
+    protected static void releaseScene(AIScene aiScene) {
+        NativeMemory.untrack(aiScene.address());
+
+        aiReleaseImport(aiScene);
+    }
+
+    /**
+     * Load CPU-side data of the imported static mesh.
+     *
+     * @param aiScene           imported scene
+     * @param texturesDirectory texture directory
+     * @return loaded model
+     * @throws Exception an unhandled exception
+     */
+    private static LoadedModel processScene(AIScene aiScene, String texturesDirectory) throws Exception {
         int materialsAmount = aiScene.mNumMaterials();
 
         PointerBuffer aiMaterials = aiScene.mMaterials();
@@ -55,12 +172,12 @@ public class StaticMeshLoader {
         if (aiMaterials == null)
             throw new Exception("Error loading model");
 
-        List<Material> materials = new ArrayList<>();
+        List<MaterialData> materials = new ArrayList<>();
 
         for (int i = 0; i < materialsAmount; i++) {
             AIMaterial aiMaterial = AIMaterial.create(aiMaterials.get(i));
 
-            processMaterial(aiMaterial, materials, texturesDirectory);
+            materials.add(processMaterial(aiMaterial, texturesDirectory));
         }
 
         int meshesAmount = aiScene.mNumMeshes();
@@ -70,73 +187,135 @@ public class StaticMeshLoader {
         if (aiMeshes == null)
             throw new Exception("Error loading model");
 
-        Mesh[] meshes = new Mesh[meshesAmount];
+        List<MeshData> meshes = new ArrayList<>();
 
         for (int i = 0; i < meshesAmount; i++) {
             AIMesh aiMesh = AIMesh.create(aiMeshes.get(i));
 
-            Mesh mesh = processMesh(aiMesh, materials);
+            meshes.add(new MeshData(processVertices(aiMesh), processTextureCoordinates(aiMesh),
+                    processNormals(aiMesh), processIndices(aiMesh), null, null, aiMesh.mMaterialIndex()));
+        }
+
+        if (SETTINGS.isMeshOptimized())
+            MeshOptimizer.optimize(meshes);
+
+        MeshSplitter.split(meshes);
+
+        MeshSimplifier.createLevelsOfDetail(meshes);
+
+        return new LoadedModel(materials, meshes, null);
+    }
 
-            meshes[i] = mesh;
+    /**
+     * Create GPU meshes of the loaded model in the calling thread. The model's data is not freed.
+     *
+     * @param loadedModel loaded model
+     * @return created meshes
+     * @throws Exception an unhandled exception
+     */
+    public static Mesh[] createMeshes(LoadedModel loadedModel) throws Exception {
+        List<Material> materials = new ArrayList<>();
+
+        try {
+            for (MaterialData materialData : loadedModel.getMaterials())
+                materials.add(createMaterial(materialData));
+
+            List<MeshData> meshesData = loadedModel.getMeshes();
+
+            Mesh[] meshes = new Mesh[meshesData.size()];
+
+            for (int i = 0; i < meshes.length; i++)
+                meshes[i] = createMesh(meshesData.get(i), materials);
+
+            return meshes;
+        } finally {
+            releaseMaterials(materials);
         }
+    }
+
+    /**
+     * Decode textures of the model in parallel and wait for them.
+     * <p>
+     * The model is freed if a texture can not be decoded.
+     *
+     * @param loadedModel loaded model
+     * @throws Exception an unhandled exception
+     */
+    protected static void decodeTextures(LoadedModel loadedModel) throws Exception {
+        try {
+            TextureCache.getInstance().decodeTextures(loadedModel.getTexturePaths()).join();
+        } catch (CompletionException e) {
+            loadedModel.free();
 
-        return meshes;
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+
+            throw e;
+        }
     }
 
     /**
      * Load mesh's indices.
      *
-     * @param aiMesh  loaded mesh
-     * @param indices indices
+     * @param aiMesh loaded mesh
+     * @return indices buffer allocated with NativeMemory
      */
-    protected static void processIndices(AIMesh aiMesh, List<Integer> indices) {
+    protected static IntBuffer processIndices(AIMesh aiMesh) {
         int facesNumber = aiMesh.mNumFaces();
 
-        AIFace.Buffer aiFaces = aiMesh.mFaces();
+        long facesAddress = aiMesh.mFaces().address();
+
+        int indicesAmount = 0;
+
+        for (int i = 0; i < facesNumber; i++)
+            indicesAmount += AIFace.nmNumIndices(facesAddress + (long) i * AIFace.SIZEOF);
+
+        IntBuffer indices = NativeMemory.allocInt(NativeMemory.Tag.MESH, indicesAmount);
+
+        long target = MemoryUtil.memAddress(indices);
 
         for (int i = 0; i < facesNumber; i++) {
-            AIFace aiFace = aiFaces.get(i);
+            long faceAddress = facesAddress + (long) i * AIFace.SIZEOF;
 
-            IntBuffer buffer = aiFace.mIndices();
+            long bytes = (long) AIFace.nmNumIndices(faceAddress) * Integer.BYTES;
 
-            while (buffer.remaining() > 0)
-                indices.add(buffer.get());
+            MemoryUtil.memCopy(MemoryUtil.memGetAddress(faceAddress + AIFace.MINDICES), target, bytes);
+
+            target += bytes;
         }
+
+        return indices;
     }
 
     /**
      * Load material.
      *
      * @param aiMaterial        loaded material
-     * @param materials         materials list
      * @param texturesDirectory texture directory
-     * @throws Exception an unhandled exception
+     * @return material data
      */
-    protected static void processMaterial(AIMaterial aiMaterial, List<Material> materials,
-                                          String texturesDirectory) throws Exception {
+    protected static MaterialData processMaterial(AIMaterial aiMaterial, String texturesDirectory) {
         AIColor4D color = AIColor4D.create();
 
-        AIString path = AIString.calloc();
-
-        Assimp.aiGetMaterialTexture(aiMaterial, aiTextureType_DIFFUSE, 0, path, (IntBuffer) null,
-                null, null, null, null, null);
+        String texturePath;
 
-        String texturePath = path.dataString();
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            AIString path = AIString.callocStack(stack);
 
-        Texture texture = null;
+            Assimp.aiGetMaterialTexture(aiMaterial, aiTextureType_DIFFUSE, 0, path, (IntBuffer) null,
+                    null, null, null, null, null);
 
-        if (texturePath != null && texturePath.length() > 0) {
-            TextureCache textureCache = TextureCache.getInstance();
+            texturePath = path.dataString();
+        }
 
-            String textureFile = "";
+        String textureFile = "";
 
+        if (texturePath != null && texturePath.length() > 0) {
             if (texturesDirectory != null && texturesDirectory.length() > 0)
                 textureFile += texturesDirectory + "/";
 
             textureFile += texturePath;
             textureFile = textureFile.replace("//", "/");
-
-            texture = textureCache.getTexture(textureFile);
         }
 
         Vector4f ambient = Material.DEFAULT_COLOUR;
@@ -160,45 +339,47 @@ public class StaticMeshLoader {
         if (result == 0)
             specular = new Vector4f(color.r(), color.g(), color.b(), color.a());
 
-        Material material = new Material(ambient, diffuse, specular, 1.0f);
+        return new MaterialData(ambient, diffuse, specular, 1.0f, textureFile);
+    }
+
+    /**
+     * Create material from its data.
+     * <p>
+     * The material holds a reference to its cached texture, which is released by
+     * {@link #releaseMaterials(List)} once the meshes using the material are created.
+     *
+     * @param materialData material data
+     * @return created material
+     * @throws Exception an unhandled exception
+     */
+    protected static Material createMaterial(MaterialData materialData) throws Exception {
+        Texture texture = null;
+
+        if (materialData.isTextured())
+            texture = TextureCache.getInstance().getTexture(materialData.getTexturePath());
+
+        Material material = new Material(materialData.getAmbientColour(), materialData.getDiffuseColour(),
+                materialData.getSpecularColour(), materialData.getReflectance());
 
         material.setTexture(texture);
-        materials.add(material);
+
+        return material;
     }
 
     /**
-     * Load mesh.
+     * Create GPU mesh from its data, skinned meshes are drawn instanced unless it is disabled in the settings. The mesh
+     * takes a reference to its cached texture, which is released by {@link Mesh#cleanUp()}.
      *
-     * @param aiMesh    loaded mesh
+     * @param meshData  mesh data
      * @param materials materials list
-     * @return loaded mesh
+     * @return created mesh
      */
-    private static Mesh processMesh(AIMesh aiMesh, List<Material> materials) {
-        List<Float> vertices = new ArrayList<>();
-        List<Float> textures = new ArrayList<>();
-        List<Float> normals = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
-
-        processVertices(aiMesh, vertices);
-        processNormals(aiMesh, normals);
-        processTextureCoordinates(aiMesh, textures);
-        processIndices(aiMesh, indices);
-
-        if (textures.size() == 0) {
-            int numElements = (vertices.size() / 3) * 2;
-
-            for (int i = 0; i < numElements; i++)
-                textures.add(0.0f);
-        }
-
-        Mesh mesh = new Mesh(Utils.listToArray(vertices),
-                Utils.listToArray(textures),
-                Utils.listToArray(normals),
-                Utils.listIntToArray(indices));
+    protected static Mesh createMesh(MeshData meshData, List<Material> materials) {
+        Mesh mesh = meshData.createMesh(SETTINGS.getInstancesPerDraw());
 
         Material material;
 
-        int materialIndex = aiMesh.mMaterialIndex();
+        int materialIndex = meshData.getMaterialIndex();
 
         if (materialIndex >= 0 && materialIndex < materials.size())
             material = materials.get(materialIndex);
@@ -207,61 +388,90 @@ public class StaticMeshLoader {
 
         mesh.setMaterial(material);
 
+        if (material.getTexture() != null)
+            TextureCache.getInstance().acquireTexture(material.getTexture());
+
         return mesh;
     }
 
+    /**
+     * Release the references to the cached textures held by the materials.
+     *
+     * @param materials materials
+     */
+    protected static void releaseMaterials(List<Material> materials) {
+        for (Material material : materials)
+            if (material.getTexture() != null)
+                TextureCache.getInstance().releaseTexture(material.getTexture());
+    }
+
     /**
      * Load normals.
      *
-     * @param aiMesh  loaded mesh
-     * @param normals normals list
+     * @param aiMesh loaded mesh
+     * @return normals buffer allocated with NativeMemory
      */
-    protected static void processNormals(AIMesh aiMesh, List<Float> normals) {
+    protected static FloatBuffer processNormals(AIMesh aiMesh) {
         AIVector3D.Buffer aiNormals = aiMesh.mNormals();
 
-        while (aiNormals != null && aiNormals.remaining() > 0) {
-            AIVector3D aiNormal = aiNormals.get();
+        if (aiNormals == null)
+            return NativeMemory.callocFloat(NativeMemory.Tag.MESH, 3 * aiMesh.mNumVertices());
 
-            normals.add(aiNormal.x());
-            normals.add(aiNormal.y());
-            normals.add(aiNormal.z());
-        }
+        return copyVectors(aiNormals, aiMesh.mNumVertices());
     }
 
     /**
      * Loade texture coordinates.
      *
-     * @param aiMesh   loaded mesh
-     * @param textures textures list
+     * @param aiMesh loaded mesh
+     * @return texture coordinates buffer allocated with NativeMemory
      */
-    protected static void processTextureCoordinates(AIMesh aiMesh, List<Float> textures) {
+    protected static FloatBuffer processTextureCoordinates(AIMesh aiMesh) {
+        int verticesAmount = aiMesh.mNumVertices();
+
         AIVector3D.Buffer textureCoordinates = aiMesh.mTextureCoords(0);
 
-        int textureCoordinatesAmount = textureCoordinates != null ? textureCoordinates.remaining() : 0;
+        if (textureCoordinates == null)
+            return NativeMemory.callocFloat(NativeMemory.Tag.MESH, 2 * verticesAmount);
+
+        FloatBuffer textures = NativeMemory.allocFloat(NativeMemory.Tag.MESH, 2 * verticesAmount);
 
-        for (int i = 0; i < textureCoordinatesAmount; i++) {
-            AIVector3D textureCoordinate = textureCoordinates.get();
+        long address = textureCoordinates.address();
 
-            textures.add(textureCoordinate.x());
-            textures.add(1 - textureCoordinate.y());
+        for (int i = 0; i < verticesAmount; i++) {
+            long textureCoordinate = address + (long) i * AIVector3D.SIZEOF;
+
+            textures.put(AIVector3D.nx(textureCoordinate));
+            textures.put(1 - AIVector3D.ny(textureCoordinate));
         }
+
+        textures.flip();
+
+        return textures;
     }
 
     /**
      * Load vertices.
      *
-     * @param aiMesh   loaded mesh
-     * @param vertices vertices list
+     * @param aiMesh loaded mesh
+     * @return vertices buffer allocated with NativeMemory
      */
-    protected static void processVertices(AIMesh aiMesh, List<Float> vertices) {
-        AIVector3D.Buffer aiVertices = aiMesh.mVertices();
+    protected static FloatBuffer processVertices(AIMesh aiMesh) {
+        return copyVectors(aiMesh.mVertices(), aiMesh.mNumVertices());
+    }
 
-        while (aiVertices.remaining() > 0) {
-            AIVector3D aiVertex = aiVertices.get();
+    /**
+     * Bulk copy vectors into a new buffer.
+     *
+     * @param aiVectors     loaded vectors
+     * @param vectorsAmount amount of vectors
+     * @return buffer allocated with NativeMemory
+     */
+    private static FloatBuffer copyVectors(AIVector3D.Buffer aiVectors, int vectorsAmount) {
+        FloatBuffer result = NativeMemory.allocFloat(NativeMemory.Tag.MESH, 3 * vectorsAmount);
 
-            vertices.add(aiVertex.x());
-            vertices.add(aiVertex.y());
-            vertices.add(aiVertex.z());
-        }
+        MemoryUtil.memCopy(aiVectors.address(), MemoryUtil.memAddress(result), (long) vectorsAmount * AIVector3D.SIZEOF);
+
+        return result;
     }
 }
@@ -0,0 +1,773 @@
+package ru.hse.engine.loaders.cache;
+
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+import org.lwjgl.system.MemoryUtil;
+import ru.hse.engine.animation.AnimatedFrame;
+import ru.hse.engine.animation.Animation;
+import ru.hse.engine.animation.AnimationBaker;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+import ru.hse.graphics.model.MaterialData;
+import ru.hse.graphics.model.MeshData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * On-disk cache of baked animated models.
+ * <p>
+ * A cache file is written in the native byte order and consists of the header (magic number and format version),
+ * materials, meshes' vertex streams with their levels of detail, the skeleton's joints amount, the skeleton itself if
+ * any animation is not baked yet and the animations, either as times and baked joint matrices of the frames or as
+ * raw channels to be baked on demand, so it can be memory-mapped and read without any Assimp import. Baked joint
+ * matrices are used in place from the mapped file.
+ */
+public class BakeCache {
+    private static final int MAGIC = 0x53415642;
+
+    private static final int VERSION = 8;
+
+    private static final int MATRIX_SIZE_FLOATS = AnimatedFrame.MATRIX_SIZE_FLOATS;
+
+    private static final int BAKED_ANIMATION = 0;
+
+    private static final int RAW_ANIMATION = 1;
+
+    private static final String FILE_EXTENSION = ".bake";
+
+    private final Path directory;
+
+    /**
+     * The class' constructor.
+     *
+     * @param directory cache files directory
+     */
+    public BakeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Create cache key of the model. The content of the model file and its sidecar files is hashed, so the key
+     * changes with any of them.
+     *
+     * @param meshPath          path to the mesh
+     * @param texturesDirectory mesh's texture directory
+     * @param flags             loading flags
+     * @param meshOptimized     true if the meshes are optimised after the import
+     * @param animationSampled  true if the animations are sampled, otherwise the first one is stored baked only
+     * @param animationClips    names of the kept animations or empty array if all of them are kept
+     * @return cache key
+     * @throws Exception an unhandled exception
+     */
+    public static String createKey(String meshPath, String texturesDirectory, int flags, boolean meshOptimized,
+                                   boolean animationSampled, String[] animationClips) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        for (Path file : findModelFiles(Paths.get(meshPath))) {
+            digest.update((file.getFileName().toString() + '\n').getBytes(StandardCharsets.UTF_8));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(4 * Integer.BYTES);
+        trailer.putInt(flags).putInt(meshOptimized ? 1 : 0).putInt(animationSampled ? 1 : 0).putInt(VERSION);
+
+        digest.update(trailer.array());
+
+        if (texturesDirectory != null)
+            digest.update(texturesDirectory.getBytes(StandardCharsets.UTF_8));
+
+        for (String animationClip : animationClips)
+            digest.update((animationClip + '\n').getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+
+        for (byte b : digest.digest())
+            key.append(String.format("%02x", b));
+
+        return key.toString();
+    }
+
+    /**
+     * Find files of the model: the model file itself followed by its sidecar files, e.g. md5anim animations of an
+     * md5mesh model, which are the files of the same directory with the same name and another extension.
+     *
+     * @param modelPath path to the model file
+     * @return model file and its sidecar files sorted by name
+     * @throws IOException input or output error
+     */
+    private static List<Path> findModelFiles(Path modelPath) throws IOException {
+        List<Path> files = new ArrayList<>();
+
+        files.add(modelPath);
+
+        Path absolutePath = modelPath.toAbsolutePath().normalize();
+        Path directory = absolutePath.getParent();
+
+        if (directory == null)
+            return files;
+
+        String stem = getStem(absolutePath.getFileName().toString());
+
+        List<Path> sidecarFiles = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream)
+                if (!file.equals(absolutePath) && getStem(file.getFileName().toString()).equals(stem)
+                        && Files.isRegularFile(file))
+                    sidecarFiles.add(file);
+        }
+
+        Collections.sort(sidecarFiles);
+
+        files.addAll(sidecarFiles);
+
+        return files;
+    }
+
+    /**
+     * Get file name without its extension.
+     *
+     * @param fileName file name
+     * @return file name up to its last dot
+     */
+    private static String getStem(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * Read baked model from the cache.
+     *
+     * @param key              cache key
+     * @param animationSampled true if the raw animations are sampled and false if their frames are baked on demand
+     * @return baked model or null if there is no valid cache file for the key
+     */
+    public BakedModel read(String key, boolean animationSampled) {
+        Path file = getFile(key);
+
+        if (!Files.isReadable(file))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+
+            return readModel(buffer, animationSampled);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Unable to read bake cache file: " + e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Write baked model to the cache.
+     *
+     * @param key        cache key
+     * @param bakedModel baked model
+     */
+    public void write(String key, BakedModel bakedModel) {
+        Path file = getFile(key);
+        Path temporaryFile = directory.resolve(key + ".tmp");
+
+        try {
+            Files.createDirectories(directory);
+
+            try (ChunkWriter writer = new ChunkWriter(FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                writeModel(writer, bakedModel);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Unable to write bake cache file: " + e.getMessage());
+
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Cache file getter.
+     *
+     * @param key cache key
+     * @return path to the cache file
+     */
+    private Path getFile(String key) {
+        return directory.resolve(key + FILE_EXTENSION);
+    }
+
+    /**
+     * Read baked model from the buffer.
+     *
+     * @param buffer           buffer with cache file content
+     * @param animationSampled true if the raw animations are sampled and false if their frames are baked on demand
+     * @return baked model or null if the file has a different format
+     */
+    private static BakedModel readModel(ByteBuffer buffer, boolean animationSampled) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            return null;
+
+        int materialsAmount = buffer.getInt();
+
+        List<MaterialData> materials = new ArrayList<>(materialsAmount);
+
+        for (int i = 0; i < materialsAmount; i++) {
+            Vector4f ambient = readVector4f(buffer);
+            Vector4f diffuse = readVector4f(buffer);
+            Vector4f specular = readVector4f(buffer);
+            float reflectance = buffer.getFloat();
+            String texturePath = readString(buffer);
+
+            materials.add(new MaterialData(ambient, diffuse, specular, reflectance, texturePath));
+        }
+
+        int meshesAmount = buffer.getInt();
+
+        List<MeshData> meshes = new ArrayList<>(meshesAmount);
+
+        for (int i = 0; i < meshesAmount; i++) {
+            int materialIndex = buffer.getInt();
+
+            FloatBuffer positions = readFloatBuffer(buffer);
+            FloatBuffer textCoords = readFloatBuffer(buffer);
+            FloatBuffer normals = readFloatBuffer(buffer);
+            FloatBuffer weights = readFloatBuffer(buffer);
+            IntBuffer jointIndices = readIntBuffer(buffer);
+            IntBuffer indices = readIntBuffer(buffer);
+
+            int levelsAmount = buffer.getInt();
+
+            IntBuffer[] levelsIndices = new IntBuffer[levelsAmount];
+            float[] levelsErrors = new float[levelsAmount];
+
+            for (int j = 0; j < levelsAmount; j++) {
+                levelsErrors[j] = buffer.getFloat();
+                levelsIndices[j] = readIntBuffer(buffer);
+            }
+
+            MeshData meshData = new MeshData(positions, textCoords, normals, indices, jointIndices, weights,
+                    materialIndex, false);
+
+            meshData.setLevelsOfDetail(levelsIndices, levelsErrors);
+
+            meshes.add(meshData);
+        }
+
+        int jointsAmount = buffer.getInt();
+
+        Skeleton skeleton = buffer.getInt() != 0 ? readSkeleton(buffer) : null;
+
+        int animationsAmount = buffer.getInt();
+
+        Map<String, Animation> animations = new LinkedHashMap<>();
+
+        for (int i = 0; i < animationsAmount; i++) {
+            String name = readString(buffer);
+            double duration = buffer.getDouble();
+            double ticksPerSecond = buffer.getDouble();
+
+            if (buffer.getInt() == RAW_ANIMATION) {
+                int channelsAmount = buffer.getInt();
+
+                AnimationChannel[] channels = new AnimationChannel[channelsAmount];
+
+                for (int j = 0; j < channelsAmount; j++)
+                    channels[j] = new AnimationChannel(readString(buffer), readFloats(buffer), readFloats(buffer),
+                            readFloats(buffer), readFloats(buffer), readFloats(buffer), readFloats(buffer));
+
+                animations.put(name, new Animation(name, new AnimationBaker(Objects.requireNonNull(skeleton),
+                        channels), duration, ticksPerSecond, animationSampled));
+
+                continue;
+            }
+
+            float[] frameTimes = readFloats(buffer);
+
+            int framesAmount = frameTimes.length;
+
+            int matricesSize = framesAmount * jointsAmount * MATRIX_SIZE_FLOATS * Float.BYTES;
+
+            ByteBuffer matrices = buffer.slice();
+            matrices.limit(matricesSize);
+            matrices.order(ByteOrder.nativeOrder());
+
+            List<AnimatedFrame> frames = AnimatedFrame.wrapFrames(matrices.asFloatBuffer(), framesAmount,
+                    jointsAmount);
+
+            buffer.position(buffer.position() + matricesSize);
+
+            animations.put(name, new Animation(name, frames, frameTimes, duration, ticksPerSecond));
+        }
+
+        return new BakedModel(materials, meshes, jointsAmount, animations);
+    }
+
+    /**
+     * Write baked model.
+     *
+     * @param writer     cache file writer
+     * @param bakedModel baked model
+     * @throws IOException input or output error
+     */
+    private static void writeModel(ChunkWriter writer, BakedModel bakedModel) throws IOException {
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+
+        List<MaterialData> materials = bakedModel.getMaterials();
+
+        writer.putInt(materials.size());
+
+        for (MaterialData material : materials) {
+            writer.putVector4f(material.getAmbientColour());
+            writer.putVector4f(material.getDiffuseColour());
+            writer.putVector4f(material.getSpecularColour());
+            writer.putFloat(material.getReflectance());
+            writer.putString(material.getTexturePath());
+        }
+
+        List<MeshData> meshes = bakedModel.getMeshes();
+
+        writer.putInt(meshes.size());
+
+        for (MeshData mesh : meshes) {
+            writer.putInt(mesh.getMaterialIndex());
+
+            writer.putBuffer(mesh.getPositions());
+            writer.putBuffer(mesh.getTextCoords());
+            writer.putBuffer(mesh.getNormals());
+            writer.putBuffer(mesh.getWeights());
+            writer.putBuffer(mesh.getJointIndices());
+            writer.putBuffer(mesh.getIndices());
+
+            IntBuffer[] levelsIndices = mesh.getLevelsIndices();
+            float[] levelsErrors = mesh.getLevelsErrors();
+
+            writer.putInt(levelsIndices.length);
+
+            for (int i = 0; i < levelsIndices.length; i++) {
+                writer.putFloat(levelsErrors[i]);
+                writer.putBuffer(levelsIndices[i]);
+            }
+        }
+
+        int jointsAmount = bakedModel.getJointsAmount();
+
+        writer.putInt(jointsAmount);
+
+        Collection<Animation> animations = bakedModel.getAnimations().values();
+
+        Map<Animation, AnimationBaker> bakers = new HashMap<>();
+
+        for (Animation animation : animations) {
+            AnimationBaker baker = animation.getBaker();
+
+            if (baker != null)
+                bakers.put(animation, baker);
+        }
+
+        if (bakers.isEmpty())
+            writer.putInt(0);
+        else {
+            writer.putInt(1);
+
+            writeSkeleton(writer, bakers.values().iterator().next().getSkeleton());
+        }
+
+        writer.putInt(animations.size());
+
+        for (Animation animation : animations) {
+            writer.putString(animation.getName());
+            writer.putDouble(animation.getDuration());
+            writer.putDouble(animation.getTicksPerSecond());
+
+            AnimationBaker baker = bakers.get(animation);
+
+            if (baker != null) {
+                AnimationChannel[] channels = baker.getChannels();
+
+                writer.putInt(RAW_ANIMATION);
+                writer.putInt(channels.length);
+
+                for (AnimationChannel channel : channels) {
+                    writer.putString(channel.getNodeName());
+                    writer.putFloats(channel.getPositionTimes());
+                    writer.putFloats(channel.getPositions());
+                    writer.putFloats(channel.getRotationTimes());
+                    writer.putFloats(channel.getRotations());
+                    writer.putFloats(channel.getScalingTimes());
+                    writer.putFloats(channel.getScalings());
+                }
+
+                continue;
+            }
+
+            List<AnimatedFrame> frames = animation.getFrames();
+
+            writer.putInt(BAKED_ANIMATION);
+            writer.putFloats(animation.getFrameTimes());
+
+            for (AnimatedFrame frame : frames)
+                writer.putMatrices(frame.getJointMatrices());
+        }
+    }
+
+    /**
+     * Read skeleton from the buffer.
+     *
+     * @param buffer buffer
+     * @return read skeleton
+     */
+    private static Skeleton readSkeleton(ByteBuffer buffer) {
+        int nodesAmount = buffer.getInt();
+
+        String[] nodeNames = new String[nodesAmount];
+        int[] parentIndices = new int[nodesAmount];
+        Matrix4f[] nodeTransformations = new Matrix4f[nodesAmount];
+        int[][] nodeBoneIds = new int[nodesAmount][];
+
+        for (int i = 0; i < nodesAmount; i++) {
+            nodeNames[i] = readString(buffer);
+            parentIndices[i] = buffer.getInt();
+            nodeTransformations[i] = readMatrix4f(buffer);
+            nodeBoneIds[i] = readInts(buffer);
+        }
+
+        Matrix4f[] boneOffsets = new Matrix4f[buffer.getInt()];
+
+        for (int i = 0; i < boneOffsets.length; i++)
+            boneOffsets[i] = readMatrix4f(buffer);
+
+        Matrix4f globalInverseTransformation = readMatrix4f(buffer);
+
+        return new Skeleton(nodeNames, parentIndices, nodeTransformations, nodeBoneIds, boneOffsets,
+                globalInverseTransformation);
+    }
+
+    /**
+     * Write skeleton.
+     *
+     * @param writer   cache file writer
+     * @param skeleton skeleton
+     * @throws IOException input or output error
+     */
+    private static void writeSkeleton(ChunkWriter writer, Skeleton skeleton) throws IOException {
+        String[] nodeNames = skeleton.getNodeNames();
+        int[] parentIndices = skeleton.getParentIndices();
+        Matrix4f[] nodeTransformations = skeleton.getNodeTransformations();
+        int[][] nodeBoneIds = skeleton.getNodeBoneIds();
+
+        writer.putInt(nodeNames.length);
+
+        for (int i = 0; i < nodeNames.length; i++) {
+            writer.putString(nodeNames[i]);
+            writer.putInt(parentIndices[i]);
+            writer.putMatrix4f(nodeTransformations[i]);
+            writer.putInts(nodeBoneIds[i]);
+        }
+
+        Matrix4f[] boneOffsets = skeleton.getBoneOffsets();
+
+        writer.putInt(boneOffsets.length);
+
+        for (Matrix4f boneOffset : boneOffsets)
+            writer.putMatrix4f(boneOffset);
+
+        writer.putMatrix4f(skeleton.getGlobalInverseTransformation());
+    }
+
+    /**
+     * Read Vector4f from the buffer.
+     *
+     * @param buffer buffer
+     * @return read vector
+     */
+    private static Vector4f readVector4f(ByteBuffer buffer) {
+        return new Vector4f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+    }
+
+    /**
+     * Read Matrix4f from the buffer.
+     *
+     * @param buffer buffer
+     * @return read matrix
+     */
+    private static Matrix4f readMatrix4f(ByteBuffer buffer) {
+        Matrix4f matrix = new Matrix4f().set(buffer.asFloatBuffer());
+
+        buffer.position(buffer.position() + MATRIX_SIZE_FLOATS * Float.BYTES);
+
+        return matrix;
+    }
+
+    /**
+     * Read float array from the buffer.
+     *
+     * @param buffer buffer
+     * @return read floats
+     */
+    private static float[] readFloats(ByteBuffer buffer) {
+        float[] values = new float[buffer.getInt()];
+
+        buffer.asFloatBuffer().get(values);
+
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+
+        return values;
+    }
+
+    /**
+     * Read int array from the buffer.
+     *
+     * @param buffer buffer
+     * @return read ints
+     */
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+
+        buffer.asIntBuffer().get(values);
+
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+
+        return values;
+    }
+
+    /**
+     * Read string from the buffer.
+     *
+     * @param buffer buffer
+     * @return read string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        buffer.position(buffer.position() + ChunkWriter.padding(length));
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read floats from the buffer without copying them.
+     *
+     * @param buffer buffer
+     * @return view of the floats in the buffer
+     */
+    private static FloatBuffer readFloatBuffer(ByteBuffer buffer) {
+        return readSlice(buffer, Float.BYTES).asFloatBuffer();
+    }
+
+    /**
+     * Read ints from the buffer without copying them.
+     *
+     * @param buffer buffer
+     * @return view of the ints in the buffer
+     */
+    private static IntBuffer readIntBuffer(ByteBuffer buffer) {
+        return readSlice(buffer, Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Read slice of elements from the buffer.
+     *
+     * @param buffer      buffer
+     * @param elementSize size of an element in bytes
+     * @return slice of the buffer
+     */
+    private static ByteBuffer readSlice(ByteBuffer buffer, int elementSize) {
+        int size = buffer.getInt() * elementSize;
+
+        ByteBuffer slice = buffer.slice();
+        slice.limit(size);
+        slice.order(ByteOrder.nativeOrder());
+
+        buffer.position(buffer.position() + size);
+
+        return slice;
+    }
+
+    /**
+     * Buffered writer of cache files.
+     */
+    private static class ChunkWriter implements Closeable {
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        private final float[] matrixValues;
+
+        /**
+         * The class' constructor.
+         *
+         * @param channel channel of the file to write
+         */
+        ChunkWriter(FileChannel channel) {
+            this.channel = channel;
+
+            buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+            matrixValues = new float[MATRIX_SIZE_FLOATS];
+        }
+
+        /**
+         * Calculate padding needed to align given length to four bytes.
+         *
+         * @param length length in bytes
+         * @return padding in bytes
+         */
+        static int padding(int length) {
+            return (Integer.BYTES - length % Integer.BYTES) % Integer.BYTES;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensureRemaining(Float.BYTES);
+            buffer.putFloat(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putVector4f(Vector4f value) throws IOException {
+            putFloat(value.x);
+            putFloat(value.y);
+            putFloat(value.z);
+            putFloat(value.w);
+        }
+
+        void putMatrix4f(Matrix4f value) throws IOException {
+            value.get(matrixValues);
+
+            for (float matrixValue : matrixValues)
+                putFloat(matrixValue);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+
+            putInt(bytes.length);
+
+            for (byte b : bytes) {
+                ensureRemaining(1);
+                buffer.put(b);
+            }
+
+            for (int i = 0; i < padding(bytes.length); i++) {
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        void putFloats(float[] values) throws IOException {
+            putInt(values.length);
+
+            for (float value : values)
+                putFloat(value);
+        }
+
+        void putInts(int[] values) throws IOException {
+            putInt(values.length);
+
+            for (int value : values)
+                putInt(value);
+        }
+
+        void putBuffer(FloatBuffer values) throws IOException {
+            putInt(values.remaining());
+            putBytes(MemoryUtil.memByteBuffer(values));
+        }
+
+        void putMatrices(FloatBuffer values) throws IOException {
+            putBytes(MemoryUtil.memByteBuffer(values));
+        }
+
+        void putBuffer(IntBuffer values) throws IOException {
+            putInt(values.remaining());
+            putBytes(MemoryUtil.memByteBuffer(values));
+        }
+
+        /**
+         * Write given bytes directly to the file.
+         *
+         * @param bytes bytes to write
+         * @throws IOException input or output error
+         */
+        private void putBytes(ByteBuffer bytes) throws IOException {
+            flush();
+
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        }
+
+        /**
+         * Flush the buffer if it has not enough space left.
+         *
+         * @param bytes bytes needed
+         * @throws IOException input or output error
+         */
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        /**
+         * Write buffered content to the file.
+         *
+         * @throws IOException input or output error
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.hse.engine.loaders.cache;
+
+import ru.hse.engine.animation.Animation;
+import ru.hse.graphics.model.MaterialData;
+import ru.hse.graphics.model.MeshData;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Baked animated model representation class.
+ */
+public class BakedModel {
+    private final List<MaterialData> materials;
+
+    private final List<MeshData> meshes;
+
+    private final int jointsAmount;
+
+    private final Map<String, Animation> animations;
+
+    /**
+     * The class' constructor.
+     *
+     * @param materials    materials of the model
+     * @param meshes       meshes of the model
+     * @param jointsAmount amount of joints in the model's skeleton
+     * @param animations   baked animations of the model
+     */
+    public BakedModel(List<MaterialData> materials, List<MeshData> meshes, int jointsAmount,
+                      Map<String, Animation> animations) {
+        this.materials = materials;
+        this.meshes = meshes;
+        this.jointsAmount = jointsAmount;
+        this.animations = animations;
+    }
+
+    /**
+     * Materials getter.
+     *
+     * @return materials
+     */
+    public List<MaterialData> getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Meshes getter.
+     *
+     * @return meshes
+     */
+    public List<MeshData> getMeshes() {
+        return meshes;
+    }
+
+    /**
+     * Joints amount getter.
+     *
+     * @return amount of joints in the model's skeleton
+     */
+    public int getJointsAmount() {
+        return jointsAmount;
+    }
+
+    /**
+     * Animations getter.
+     *
+     * @return baked animations
+     */
+    public Map<String, Animation> getAnimations() {
+        return animations;
+    }
+}
@@ -0,0 +1,258 @@
+package ru.hse.engine.loaders.cache;
+
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.TextureData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import static org.lwjgl.stb.STBImageResize.stbir_resize_uint8;
+
+/**
+ * On-disk cache of preprocessed textures.
+ * <p>
+ * A cache file is written in the native byte order and consists of the header (magic number, format version, width,
+ * height, amount of channels and amount of levels) and the pixels of the full mipmap chain. Opaque textures are
+ * stored without their alpha channel. The file is memory-mapped and its levels are uploaded as is, so neither the
+ * image decoding nor the mipmaps generation is needed.
+ */
+public class MipmapCache {
+    private static final int MAGIC = 0x50414D4D;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    private static final String FILE_EXTENSION = ".mips";
+
+    private final Path directory;
+
+    /**
+     * The class' constructor.
+     *
+     * @param directory cache files directory
+     */
+    public MipmapCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Create cache key of the texture.
+     *
+     * @param texturePath path to the texture image
+     * @param maximalSize maximal width and height of the texture or 0 if the size is not limited
+     * @return cache key
+     * @throws Exception an unhandled exception
+     */
+    public static String createKey(String texturePath, int maximalSize) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try (FileChannel channel = FileChannel.open(Paths.get(texturePath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(2 * Integer.BYTES);
+        trailer.putInt(maximalSize).putInt(VERSION);
+
+        digest.update(trailer.array());
+
+        StringBuilder key = new StringBuilder();
+
+        for (byte b : digest.digest())
+            key.append(String.format("%02x", b));
+
+        return key.toString();
+    }
+
+    /**
+     * Read preprocessed texture from the cache.
+     *
+     * @param key cache key
+     * @return texture with its mipmaps mapped from the file or null if there is no valid cache file for the key
+     */
+    public TextureData read(String key) {
+        Path file = getFile(key);
+
+        if (!Files.isReadable(file))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+
+            return readTexture(buffer);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Unable to read texture cache file: " + e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Preprocess the texture and write it to the cache.
+     *
+     * @param key         cache key
+     * @param textureData decoded RGBA texture without mipmaps, it is not freed
+     */
+    public void write(String key, TextureData textureData) {
+        Path file = getFile(key);
+        Path temporaryFile = directory.resolve(key + ".tmp");
+
+        try {
+            Files.createDirectories(directory);
+
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeTexture(channel, textureData);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Unable to write texture cache file: " + e.getMessage());
+
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Cache file getter.
+     *
+     * @param key cache key
+     * @return path to the cache file
+     */
+    private Path getFile(String key) {
+        return directory.resolve(key + FILE_EXTENSION);
+    }
+
+    /**
+     * Read preprocessed texture from the buffer.
+     *
+     * @param buffer buffer with cache file content
+     * @return texture or null if the file has a different format
+     */
+    private static TextureData readTexture(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            return null;
+
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int channelsAmount = buffer.getInt();
+
+        ByteBuffer[] levels = new ByteBuffer[buffer.getInt()];
+
+        for (int i = 0; i < levels.length; i++) {
+            int size = TextureData.calculateLevelSize(width, i) * TextureData.calculateLevelSize(height, i)
+                    * channelsAmount;
+
+            levels[i] = buffer.slice();
+            levels[i].limit(size);
+
+            buffer.position(buffer.position() + size);
+        }
+
+        return new TextureData(width, height, channelsAmount, levels);
+    }
+
+    /**
+     * Write preprocessed texture.
+     *
+     * @param channel     channel of the file to write
+     * @param textureData decoded RGBA texture without mipmaps
+     * @throws IOException input or output error
+     */
+    private static void writeTexture(FileChannel channel, TextureData textureData) throws IOException {
+        int width = textureData.getWidth();
+        int height = textureData.getHeight();
+        int channelsAmount = textureData.isOpaque() ? 3 : 4;
+        int levelsAmount = TextureData.calculateLevelsAmount(width, height);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(channelsAmount).putInt(levelsAmount);
+        header.flip();
+
+        writeFully(channel, header);
+
+        ByteBuffer level = channelsAmount == 4
+                ? textureData.getPixels()
+                : dropAlpha(textureData.getPixels(), width * height);
+
+        try {
+            writeFully(channel, level.duplicate());
+
+            for (int i = 1; i < levelsAmount; i++) {
+                int levelWidth = TextureData.calculateLevelSize(width, i);
+                int levelHeight = TextureData.calculateLevelSize(height, i);
+
+                ByteBuffer nextLevel = NativeMemory.alloc(NativeMemory.Tag.TEXTURE,
+                        levelWidth * levelHeight * channelsAmount);
+
+                if (!stbir_resize_uint8(level, TextureData.calculateLevelSize(width, i - 1),
+                        TextureData.calculateLevelSize(height, i - 1), 0, nextLevel, levelWidth, levelHeight, 0,
+                        channelsAmount)) {
+                    NativeMemory.free(nextLevel);
+
+                    throw new IOException("Error generating mipmap");
+                }
+
+                if (level != textureData.getPixels())
+                    NativeMemory.free(level);
+
+                level = nextLevel;
+
+                writeFully(channel, level.duplicate());
+            }
+        } finally {
+            if (level != textureData.getPixels())
+                NativeMemory.free(level);
+        }
+    }
+
+    /**
+     * Copy RGBA pixels without their alpha channel.
+     *
+     * @param pixels       RGBA pixels
+     * @param pixelsAmount amount of pixels
+     * @return RGB pixels allocated with NativeMemory
+     */
+    private static ByteBuffer dropAlpha(ByteBuffer pixels, int pixelsAmount) {
+        ByteBuffer result = NativeMemory.alloc(NativeMemory.Tag.TEXTURE, 3 * pixelsAmount);
+
+        for (int i = 0; i < pixelsAmount; i++) {
+            result.put(3 * i, pixels.get(4 * i));
+            result.put(3 * i + 1, pixels.get(4 * i + 1));
+            result.put(3 * i + 2, pixels.get(4 * i + 2));
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the whole buffer to the channel.
+     *
+     * @param channel channel
+     * @param buffer  buffer
+     * @throws IOException input or output error
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
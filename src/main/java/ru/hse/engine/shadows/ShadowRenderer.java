@@ -2,10 +2,12 @@ package ru.hse.engine.shadows;
 
 import org.joml.Matrix4f;
 import ru.hse.core.utils.Constants;
+import ru.hse.core.utils.Settings;
 import ru.hse.engine.Camera;
 import ru.hse.engine.MeshedItem;
 import ru.hse.engine.animation.AnimatedItem;
 import ru.hse.engine.animation.AnimatedFrame;
+import ru.hse.engine.utils.LevelOfDetailSelector;
 import ru.hse.engine.utils.Utils;
 import ru.hse.engine.utils.Window;
 import ru.hse.engine.wrappers.Scene;
@@ -27,6 +29,8 @@ import static org.lwjgl.opengl.GL30.*;
  * Shadow renderer class.
  */
 public class ShadowRenderer {
+    private static final Settings SETTINGS = Settings.getInstance();
+
     public static final float[] CASCADE_SPLITS = new float[]{Window.Z_FAR / 20.0f, Window.Z_FAR / 10.0f, Window.Z_FAR};
 
     private ShaderProgram depthShaderProgram;
@@ -35,13 +39,13 @@ public class ShadowRenderer {
 
     private ShadowBuffer shadowBuffer;
 
-    private final List<MeshedItem> filteredItems;
+    private final LevelOfDetailSelector levelOfDetailSelector;
 
     /**
      * The class' constructor.
      */
     public ShadowRenderer() {
-        filteredItems = new ArrayList<>();
+        levelOfDetailSelector = new LevelOfDetailSelector();
     }
 
     /**
@@ -100,7 +104,10 @@ public class ShadowRenderer {
         depthShaderProgram.createUniform("isInstanced");
         depthShaderProgram.createUniform("modelNonInstancedMatrix");
         depthShaderProgram.createUniform("lightViewMatrix");
-        depthShaderProgram.createUniform("jointsMatrix");
+        depthShaderProgram.createUniform("jointVectors");
+        depthShaderProgram.createUniform("jointsEncoding");
+        depthShaderProgram.createUniform("jointsPalette");
+        depthShaderProgram.createUniform("animationTexture");
         depthShaderProgram.createUniform("orthoProjectionMatrix");
     }
 
@@ -134,12 +141,18 @@ public class ShadowRenderer {
     public void render(Window window, Scene scene, Camera camera, Transformation transformation) {
         update(window, camera.getViewMatrix(), scene);
 
+        levelOfDetailSelector.update(window.getProjectionMatrix(), camera.getViewMatrix(), window.getHeight());
+
         glBindFramebuffer(GL_FRAMEBUFFER, shadowBuffer.getDepthMapFBO());
         glViewport(0, 0, ShadowBuffer.SHADOW_MAP_WIDTH, ShadowBuffer.SHADOW_MAP_HEIGHT);
         glClear(GL_DEPTH_BUFFER_BIT);
 
         depthShaderProgram.bind();
 
+        depthShaderProgram.setUniform("jointsEncoding", SETTINGS.getJointsEncoding().ordinal());
+        depthShaderProgram.setUniform("jointsPalette", InstancedMesh.JOINTS_PALETTE_TEXTURE_UNIT);
+        depthShaderProgram.setUniform("animationTexture", InstancedMesh.ANIMATION_TEXTURE_UNIT);
+
         for (int i = 0; i < Constants.CASCADES_NUMBER; i++) {
             ShadowCascade shadowCascade = shadowCascades.get(i);
 
@@ -172,15 +185,14 @@ public class ShadowRenderer {
         Map<InstancedMesh, List<MeshedItem>> mapMeshes = scene.getGameInstancedMeshes();
 
         for (InstancedMesh mesh : mapMeshes.keySet()) {
-            filteredItems.clear();
-
-            for (MeshedItem gameItem : mapMeshes.get(mesh))
-                if (gameItem.isInsideFrustum())
-                    filteredItems.add(gameItem);
-
             bindTextures(GL_TEXTURE2);
 
-            mesh.renderListInstanced(filteredItems, transformation, null);
+            for (int level = 0; level < mesh.getLevelsAmount(); level++) {
+                List<MeshedItem> filteredItems = levelOfDetailSelector.filter(mesh, level, mapMeshes.get(mesh));
+
+                if (!filteredItems.isEmpty())
+                    mesh.getLevel(level).renderListInstanced(filteredItems, transformation, null);
+            }
         }
     }
 
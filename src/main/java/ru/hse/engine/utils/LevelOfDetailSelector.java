@@ -0,0 +1,92 @@
+package ru.hse.engine.utils;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import ru.hse.core.utils.Settings;
+import ru.hse.engine.MeshedItem;
+import ru.hse.graphics.model.Mesh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Level of detail selection representation.
+ * <p>
+ * A mesh is drawn with the coarsest level of detail whose error, projected on the screen at the distance of the
+ * item's bounding sphere from the camera, does not exceed the allowed error in pixels.
+ */
+public class LevelOfDetailSelector {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    private final Matrix4f viewMatrix;
+
+    private final Vector3f viewPosition;
+
+    private final List<MeshedItem> levelItems;
+
+    private float pixelsPerUnitAtUnitDistance;
+
+    /**
+     * The class' constructor.
+     */
+    public LevelOfDetailSelector() {
+        viewMatrix = new Matrix4f();
+        viewPosition = new Vector3f();
+        levelItems = new ArrayList<>();
+    }
+
+    /**
+     * Update current camera.
+     *
+     * @param projectionMatrix projection matrix
+     * @param viewMatrix       view matrix
+     * @param viewportHeight   height of the viewport in pixels
+     */
+    public void update(Matrix4f projectionMatrix, Matrix4f viewMatrix, int viewportHeight) {
+        this.viewMatrix.set(viewMatrix);
+
+        pixelsPerUnitAtUnitDistance = projectionMatrix.m11() * viewportHeight / 2;
+    }
+
+    /**
+     * Select level of detail of the mesh for the item.
+     *
+     * @param mesh       mesh
+     * @param meshedItem item drawn with the mesh
+     * @return selected level, 0 is the mesh itself
+     */
+    public int selectLevel(Mesh mesh, MeshedItem meshedItem) {
+        float maxPixelError = SETTINGS.getLevelOfDetailPixelError();
+
+        if (mesh.getLevelsAmount() == 1 || maxPixelError <= 0)
+            return 0;
+
+        viewMatrix.transformPosition(meshedItem.getPosition(), viewPosition);
+
+        float boundingRadius = meshedItem.getScale() * mesh.getBoundingRadius();
+        float distance = -viewPosition.z - boundingRadius;
+
+        if (distance <= 0)
+            return 0;
+
+        return mesh.selectLevel(pixelsPerUnitAtUnitDistance * meshedItem.getScale() / distance, maxPixelError);
+    }
+
+    /**
+     * Filter items inside the frustum drawn with the level of detail of the mesh.
+     *
+     * @param mesh        mesh
+     * @param level       level of detail
+     * @param meshedItems items drawn with the mesh
+     * @return items of the level, the list is reused by the next call
+     */
+    public List<MeshedItem> filter(Mesh mesh, int level, List<MeshedItem> meshedItems) {
+        levelItems.clear();
+
+        for (MeshedItem meshedItem : meshedItems)
+            if (meshedItem.isInsideFrustum() && selectLevel(mesh, meshedItem) == level)
+                levelItems.add(meshedItem);
+
+        return levelItems;
+    }
+}
@@ -0,0 +1,294 @@
+package ru.hse.engine.utils;
+
+import org.lwjgl.system.MemoryUtil;
+import ru.hse.core.utils.Settings;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Native memory accounting class.
+ * <p>
+ * Every native allocation made through the class is counted by the subsystem it belongs to. Memory allocated by the
+ * native libraries themselves (stb_image, Assimp) is registered with {@link #track(Tag, long, long)}. Allocations
+ * which are still alive at shutdown are reported as leaks. In the debug mode the call site of every allocation is
+ * recorded and printed with the report.
+ */
+public class NativeMemory {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    private static final Map<Long, Allocation> allocationsMap = new ConcurrentHashMap<>();
+
+    private static final AtomicLongArray allocatedSizes = new AtomicLongArray(Tag.values().length);
+
+    private static final AtomicLongArray allocationsAmounts = new AtomicLongArray(Tag.values().length);
+
+    private static final AtomicLongArray peakSizes = new AtomicLongArray(Tag.values().length);
+
+    /**
+     * Subsystem owning an allocation.
+     */
+    public enum Tag {
+        LOADER,
+        TEXTURE,
+        MESH,
+        SCREENSHOT
+    }
+
+    /**
+     * Live allocation.
+     */
+    private static class Allocation {
+        private final Tag tag;
+
+        private final long size;
+
+        private final Throwable site;
+
+        /**
+         * The class' constructor.
+         *
+         * @param tag  subsystem owning the allocation
+         * @param size size in bytes
+         * @param site call site or null if it is not recorded
+         */
+        private Allocation(Tag tag, long size, Throwable site) {
+            this.tag = tag;
+            this.size = size;
+            this.site = site;
+        }
+    }
+
+    /**
+     * Allocate native memory.
+     *
+     * @param tag  subsystem owning the allocation
+     * @param size size in bytes
+     * @return allocated buffer
+     */
+    public static ByteBuffer alloc(Tag tag, int size) {
+        ByteBuffer buffer = MemoryUtil.memAlloc(size);
+
+        track(tag, MemoryUtil.memAddress(buffer), size);
+
+        return buffer;
+    }
+
+    /**
+     * Allocate native memory for floats.
+     *
+     * @param tag    subsystem owning the allocation
+     * @param amount amount of floats
+     * @return allocated buffer
+     */
+    public static FloatBuffer allocFloat(Tag tag, int amount) {
+        FloatBuffer buffer = MemoryUtil.memAllocFloat(amount);
+
+        track(tag, MemoryUtil.memAddress(buffer), (long) amount * Float.BYTES);
+
+        return buffer;
+    }
+
+    /**
+     * Allocate native memory for ints.
+     *
+     * @param tag    subsystem owning the allocation
+     * @param amount amount of ints
+     * @return allocated buffer
+     */
+    public static IntBuffer allocInt(Tag tag, int amount) {
+        IntBuffer buffer = MemoryUtil.memAllocInt(amount);
+
+        track(tag, MemoryUtil.memAddress(buffer), (long) amount * Integer.BYTES);
+
+        return buffer;
+    }
+
+    /**
+     * Allocate zeroed native memory for floats.
+     *
+     * @param tag    subsystem owning the allocation
+     * @param amount amount of floats
+     * @return allocated buffer
+     */
+    public static FloatBuffer callocFloat(Tag tag, int amount) {
+        FloatBuffer buffer = MemoryUtil.memCallocFloat(amount);
+
+        track(tag, MemoryUtil.memAddress(buffer), (long) amount * Float.BYTES);
+
+        return buffer;
+    }
+
+    /**
+     * Allocate zeroed native memory for ints.
+     *
+     * @param tag    subsystem owning the allocation
+     * @param amount amount of ints
+     * @return allocated buffer
+     */
+    public static IntBuffer callocInt(Tag tag, int amount) {
+        IntBuffer buffer = MemoryUtil.memCallocInt(amount);
+
+        track(tag, MemoryUtil.memAddress(buffer), (long) amount * Integer.BYTES);
+
+        return buffer;
+    }
+
+    /**
+     * Resize native memory keeping its content and owner. The given buffer must not be used after the call.
+     *
+     * @param buffer buffer allocated by the class
+     * @param size   new size in bytes
+     * @return resized buffer
+     */
+    public static ByteBuffer realloc(ByteBuffer buffer, int size) {
+        Allocation allocation = remove(MemoryUtil.memAddress0(buffer));
+
+        ByteBuffer result = MemoryUtil.memRealloc(buffer, size);
+
+        track(allocation != null ? allocation.tag : Tag.LOADER, MemoryUtil.memAddress0(result), size);
+
+        return result;
+    }
+
+    /**
+     * Free native memory allocated by the class.
+     *
+     * @param buffer buffer, may be null
+     */
+    public static void free(Buffer buffer) {
+        if (buffer == null)
+            return;
+
+        remove(MemoryUtil.memAddress0(buffer));
+
+        MemoryUtil.memFree(buffer);
+    }
+
+    /**
+     * Register native memory allocated outside of the class.
+     *
+     * @param tag     subsystem owning the allocation
+     * @param address address of the memory
+     * @param size    size in bytes or 0 if it is unknown
+     */
+    public static void track(Tag tag, long address, long size) {
+        if (address == MemoryUtil.NULL)
+            return;
+
+        Allocation allocation = new Allocation(tag, size,
+                SETTINGS.isNativeMemoryDebugEnabled() ? new Throwable() : null);
+
+        if (allocationsMap.put(address, allocation) != null)
+            System.out.println("Native memory at 0x" + Long.toHexString(address) + " is registered twice");
+
+        long allocatedSize = allocatedSizes.addAndGet(tag.ordinal(), size);
+        allocationsAmounts.incrementAndGet(tag.ordinal());
+
+        peakSizes.accumulateAndGet(tag.ordinal(), allocatedSize, Math::max);
+    }
+
+    /**
+     * Unregister native memory freed outside of the class.
+     *
+     * @param address address of the memory
+     */
+    public static void untrack(long address) {
+        remove(address);
+    }
+
+    /**
+     * Unregister native memory before it is freed.
+     *
+     * @param address address of the memory
+     * @return removed allocation or null if the memory is not registered
+     */
+    private static Allocation remove(long address) {
+        Allocation allocation = allocationsMap.remove(address);
+
+        if (allocation == null)
+            return null;
+
+        allocatedSizes.addAndGet(allocation.tag.ordinal(), -allocation.size);
+        allocationsAmounts.decrementAndGet(allocation.tag.ordinal());
+
+        return allocation;
+    }
+
+    /**
+     * Allocated size getter.
+     *
+     * @param tag subsystem
+     * @return size of the live allocations of the subsystem in bytes
+     */
+    public static long getAllocatedSize(Tag tag) {
+        return allocatedSizes.get(tag.ordinal());
+    }
+
+    /**
+     * Allocations amount getter.
+     *
+     * @param tag subsystem
+     * @return amount of the live allocations of the subsystem
+     */
+    public static long getAllocationsAmount(Tag tag) {
+        return allocationsAmounts.get(tag.ordinal());
+    }
+
+    /**
+     * Peak size getter.
+     *
+     * @param tag subsystem
+     * @return maximal size of the live allocations of the subsystem in bytes
+     */
+    public static long getPeakSize(Tag tag) {
+        return peakSizes.get(tag.ordinal());
+    }
+
+    /**
+     * Print current native memory usage of every subsystem.
+     */
+    public static void printUsage() {
+        System.out.println("Native memory usage:");
+
+        for (Tag tag : Tag.values()) {
+            System.out.printf("  %-10s %12d bytes in %6d allocations, peak %12d bytes%n", tag,
+                    getAllocatedSize(tag), getAllocationsAmount(tag), getPeakSize(tag));
+        }
+    }
+
+    /**
+     * Print the allocations which are still alive as leaks, with their call sites in the debug mode.
+     */
+    public static void printLeaks() {
+        if (allocationsMap.isEmpty()) {
+            System.out.println("No native memory leaks found.");
+
+            return;
+        }
+
+        printUsage();
+
+        System.out.println(allocationsMap.size() + " native memory allocations leaked:");
+
+        for (Map.Entry<Long, Allocation> entry : allocationsMap.entrySet()) {
+            Allocation allocation = entry.getValue();
+
+            System.out.println("  " + allocation.tag + " " + allocation.size + " bytes at 0x"
+                    + Long.toHexString(entry.getKey()));
+
+            if (allocation.site != null) {
+                StackTraceElement[] stackTrace = allocation.site.getStackTrace();
+
+                for (StackTraceElement element : stackTrace)
+                    if (!element.getClassName().equals(NativeMemory.class.getName()))
+                        System.out.println("      at " + element);
+            }
+        }
+    }
+}
@@ -1,23 +1,96 @@
 package ru.hse.engine.utils;
 
+import ru.hse.core.utils.Constants;
+import ru.hse.core.utils.Settings;
+import ru.hse.engine.loaders.cache.MipmapCache;
 import ru.hse.graphics.model.Texture;
+import ru.hse.graphics.model.TextureData;
 
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Cache for texture.
+ * <p>
+ * Images are decoded in parallel by a pool of daemon threads, a path requested several times is decoded only once.
+ * Decoded images with their mipmaps are kept in the texture cache directory, so later loads skip the decoding.
+ * Textures are created from the decoded images by the thread owning the OpenGL context.
+ * <p>
+ * Textures are reference counted. A texture which is no longer referenced stays cached until the textures exceed the
+ * memory budget, then the least recently released textures are deleted.
  */
 public class TextureCache {
+    private static final Settings SETTINGS = Settings.getInstance();
+
     private static TextureCache INSTANCE;
 
-    private final Map<String, Texture> texturesMap;
+    private final Map<String, CachedTexture> texturesMap;
+
+    private final Map<Texture, CachedTexture> handlesMap;
+
+    private final Map<String, CachedTexture> unusedTexturesMap;
+
+    private final Map<String, CompletableFuture<TextureData>> decodingsMap;
+
+    private final ExecutorService decodingExecutor;
+
+    private final MipmapCache mipmapCache;
+
+    private long memoryUsage;
+
+    /**
+     * Cached texture with its references amount.
+     */
+    private static class CachedTexture {
+        private final String path;
+
+        private final Texture texture;
+
+        private final long size;
+
+        private int referencesAmount;
+
+        /**
+         * The class' constructor.
+         *
+         * @param path    path to texture
+         * @param texture texture
+         */
+        private CachedTexture(String path, Texture texture) {
+            this.path = path;
+            this.texture = texture;
+
+            size = (long) texture.getWidth() * texture.getHeight() * 4 * 4 / 3;
+        }
+    }
 
     /**
      * The class' constructor.
      */
     private TextureCache() {
-        texturesMap = new HashMap<>();
+        texturesMap = new ConcurrentHashMap<>();
+        handlesMap = new HashMap<>();
+        unusedTexturesMap = new LinkedHashMap<>();
+        decodingsMap = new ConcurrentHashMap<>();
+
+        mipmapCache = new MipmapCache(Paths.get(Constants.TEXTURE_CACHE_DIRECTORY));
+
+        decodingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "Texture decoder");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
     }
 
     /**
@@ -33,21 +106,240 @@ public class TextureCache {
     }
 
     /**
-     * Texture getter.
+     * Start decoding of the textures which are neither created nor being decoded yet.
+     *
+     * @param paths paths to textures
+     * @return future completed when all the textures are decoded
+     */
+    public CompletableFuture<Void> decodeTextures(Collection<String> paths) {
+        return CompletableFuture.allOf(paths.stream()
+                .filter(path -> !texturesMap.containsKey(path))
+                .map(this::decodeTexture)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Start decoding of the texture if it is not being decoded yet. A failed decoding is removed from the decodings
+     * map, so the next request decodes the texture again.
+     *
+     * @param path path to texture
+     * @return future completed with the decoded texture
+     */
+    private CompletableFuture<TextureData> decodeTexture(String path) {
+        int maximalSize = SETTINGS.getMaximalTextureSize();
+
+        CompletableFuture<TextureData> decoding = decodingsMap.computeIfAbsent(path,
+                key -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return loadTextureData(key, maximalSize);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, decodingExecutor));
+
+        // The cleanup is registered after the decoding is in the map, so a decoding failed at once is removed too
+        decoding.whenComplete((textureData, e) -> {
+            if (e != null)
+                decodingsMap.remove(path, decoding);
+        });
+
+        return decoding;
+    }
+
+    /**
+     * Load texture image. If the texture cache is enabled, the image is preprocessed on the first load and then read
+     * with its mipmaps from the cache file.
+     *
+     * @param path        path to texture
+     * @param maximalSize maximal width and height or 0 if the size is not limited
+     * @return decoded texture
+     * @throws Exception an unhandled exception
+     */
+    private TextureData loadTextureData(String path, int maximalSize) throws Exception {
+        if (!SETTINGS.isTextureCacheEnabled())
+            return TextureData.decode(path, maximalSize);
+
+        String key = MipmapCache.createKey(path, maximalSize);
+
+        TextureData textureData = mipmapCache.read(key);
+
+        if (textureData != null)
+            return textureData;
+
+        textureData = TextureData.decode(path, maximalSize);
+
+        mipmapCache.write(key, textureData);
+
+        TextureData preprocessedTextureData = mipmapCache.read(key);
+
+        if (preprocessedTextureData == null)
+            return textureData;
+
+        textureData.free();
+
+        return preprocessedTextureData;
+    }
+
+    /**
+     * Texture getter, the texture is created from its decoded image, which is decoded first if needed. A reference to
+     * the texture is taken, it must be released by {@link #releaseTexture(Texture)}. Must be called by the thread
+     * owning the OpenGL context.
      *
      * @param path path to texture
      * @return texture
      * @throws Exception an unhandled exception
      */
     public Texture getTexture(String path) throws Exception {
-        Texture texture = texturesMap.get(path);
+        CachedTexture cachedTexture = texturesMap.get(path);
+
+        if (cachedTexture != null) {
+            CompletableFuture<TextureData> decoding = decodingsMap.remove(path);
+
+            if (decoding != null)
+                decoding.thenAccept(TextureData::free);
 
-        if (texture == null) {
-            texture = new Texture(path);
+            acquire(cachedTexture);
 
-            texturesMap.put(path, texture);
+            return cachedTexture.texture;
         }
 
-        return texture;
+        CompletableFuture<TextureData> decoding = decodeTexture(path);
+
+        TextureData textureData;
+
+        try {
+            textureData = decoding.join();
+        } catch (CompletionException e) {
+            decodingsMap.remove(path, decoding);
+
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+
+            throw e;
+        }
+
+        try {
+            cachedTexture = new CachedTexture(path, textureData.createTexture());
+
+            texturesMap.put(path, cachedTexture);
+            handlesMap.put(cachedTexture.texture, cachedTexture);
+
+            memoryUsage += cachedTexture.size;
+        } finally {
+            decodingsMap.remove(path, decoding);
+
+            textureData.free();
+        }
+
+        acquire(cachedTexture);
+
+        evictUnusedTextures();
+
+        return cachedTexture.texture;
+    }
+
+    /**
+     * Take one more reference to the texture.
+     *
+     * @param texture texture
+     * @return true if the texture is cached and false otherwise
+     */
+    public boolean acquireTexture(Texture texture) {
+        CachedTexture cachedTexture = handlesMap.get(texture);
+
+        if (cachedTexture == null)
+            return false;
+
+        acquire(cachedTexture);
+
+        return true;
+    }
+
+    /**
+     * Release a reference to the texture. The texture is kept cached while the memory budget allows it.
+     *
+     * @param texture texture
+     * @return true if the texture is cached and false otherwise
+     */
+    public boolean releaseTexture(Texture texture) {
+        CachedTexture cachedTexture = handlesMap.get(texture);
+
+        if (cachedTexture == null)
+            return false;
+
+        if (cachedTexture.referencesAmount > 0 && --cachedTexture.referencesAmount == 0) {
+            unusedTexturesMap.put(cachedTexture.path, cachedTexture);
+
+            evictUnusedTextures();
+        }
+
+        return true;
+    }
+
+    /**
+     * Memory usage getter.
+     *
+     * @return estimated size of the cached textures with their mipmaps in bytes
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Take a reference to the cached texture.
+     *
+     * @param cachedTexture cached texture
+     */
+    private void acquire(CachedTexture cachedTexture) {
+        if (cachedTexture.referencesAmount++ == 0)
+            unusedTexturesMap.remove(cachedTexture.path);
+    }
+
+    /**
+     * Delete the least recently released textures until the memory usage fits the budget.
+     */
+    private void evictUnusedTextures() {
+        long memoryBudget = (long) SETTINGS.getTextureMemoryBudget() * 1024 * 1024;
+
+        Iterator<CachedTexture> iterator = unusedTexturesMap.values().iterator();
+
+        while (memoryUsage > memoryBudget && iterator.hasNext()) {
+            CachedTexture cachedTexture = iterator.next();
+
+            iterator.remove();
+
+            delete(cachedTexture);
+        }
+    }
+
+    /**
+     * Delete the cached texture.
+     *
+     * @param cachedTexture cached texture
+     */
+    private void delete(CachedTexture cachedTexture) {
+        texturesMap.remove(cachedTexture.path);
+        handlesMap.remove(cachedTexture.texture);
+
+        memoryUsage -= cachedTexture.size;
+
+        cachedTexture.texture.cleanup();
+    }
+
+    /**
+     * Cleanup method, all the textures are deleted whether they are referenced or not.
+     */
+    public void cleanup() {
+        decodingExecutor.shutdownNow();
+
+        for (CompletableFuture<TextureData> decoding : decodingsMap.values())
+            decoding.thenAccept(TextureData::free);
+
+        decodingsMap.clear();
+
+        for (CachedTexture cachedTexture : handlesMap.values().toArray(new CachedTexture[0]))
+            delete(cachedTexture);
+
+        unusedTexturesMap.clear();
     }
 }
@@ -0,0 +1,84 @@
+package ru.hse.engine.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Queue of uploads to the GPU.
+ * <p>
+ * Uploads can be submitted by any thread and are processed part by part in the thread owning the OpenGL context
+ * within a time budget per frame, so large uploads do not freeze the frame loop.
+ */
+public class UploadQueue {
+    private final Queue<Upload> uploads;
+
+    /**
+     * Upload split into parts.
+     */
+    public interface Upload {
+        /**
+         * Upload the next part.
+         *
+         * @return true if the upload is finished and false otherwise
+         */
+        boolean uploadNext();
+
+        /**
+         * Abandon the upload releasing everything held by it.
+         */
+        void cancel();
+    }
+
+    /**
+     * The class' constructor.
+     */
+    public UploadQueue() {
+        uploads = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Add the upload to the end of the queue.
+     *
+     * @param upload upload to add
+     */
+    public void submit(Upload upload) {
+        uploads.add(upload);
+    }
+
+    /**
+     * Cancel all the uploads left in the queue.
+     */
+    public void cancel() {
+        Upload upload;
+
+        while ((upload = uploads.poll()) != null)
+            upload.cancel();
+    }
+
+    /**
+     * Upload parts in the submission order until the time budget is spent. At least one part is uploaded if the
+     * queue is not empty, so the uploads keep going even if a single part takes longer than the budget.
+     *
+     * @param timeBudget time budget in seconds
+     * @return true if anything was uploaded and false otherwise
+     */
+    public boolean process(double timeBudget) {
+        long deadline = System.nanoTime() + (long) (timeBudget * 1_000_000_000.0);
+
+        boolean uploaded = false;
+
+        Upload upload;
+
+        while ((upload = uploads.peek()) != null) {
+            if (upload.uploadNext())
+                uploads.poll();
+
+            uploaded = true;
+
+            if (System.nanoTime() >= deadline)
+                break;
+        }
+
+        return uploaded;
+    }
+}
@@ -1,8 +1,5 @@
 package ru.hse.engine.utils;
 
-import org.lwjgl.BufferUtils;
-import org.lwjgl.system.MemoryUtil;
-
 import java.io.*;
 import java.net.URLDecoder;
 import java.nio.ByteBuffer;
@@ -74,7 +71,8 @@ public class Utils {
     }
 
     /**
-     * Create ByteBuffer from resource.
+     * Create ByteBuffer from resource. The buffer is allocated with {@link NativeMemory} and must be freed by
+     * {@link NativeMemory#free(java.nio.Buffer)}.
      *
      * @param resource   resource
      * @param bufferSize buffer size
@@ -88,14 +86,14 @@ public class Utils {
 
         if (Files.isReadable(path)) {
             try (SeekableByteChannel fc = Files.newByteChannel(path)) {
-                buffer = MemoryUtil.memAlloc((int) fc.size() + 1);
+                buffer = NativeMemory.alloc(NativeMemory.Tag.LOADER, (int) fc.size() + 1);
 
                 while (fc.read(buffer) != -1) ;
             }
         } else {
             try (InputStream source = new FileInputStream(path.toFile());
                  ReadableByteChannel rbc = Channels.newChannel(source)) {
-                buffer = MemoryUtil.memAlloc(bufferSize);
+                buffer = NativeMemory.alloc(NativeMemory.Tag.LOADER, bufferSize);
 
                 while (true) {
                     int bytes = rbc.read(buffer);
@@ -104,7 +102,7 @@ public class Utils {
                         break;
 
                     if (buffer.remaining() == 0)
-                        buffer = resizeBuffer(buffer, buffer.capacity() * 2);
+                        buffer = NativeMemory.realloc(buffer, buffer.capacity() * 2);
                 }
             }
         }
@@ -113,18 +111,4 @@ public class Utils {
 
         return buffer;
     }
-
-    /**
-     * Resize given buffer.
-     *
-     * @param buffer      buffer
-     * @param newCapacity new size
-     * @return resized buffer
-     */
-    private static ByteBuffer resizeBuffer(ByteBuffer buffer, int newCapacity) {
-        ByteBuffer newBuffer = BufferUtils.createByteBuffer(newCapacity);
-        buffer.flip();
-        newBuffer.put(buffer);
-        return newBuffer;
-    }
 }
@@ -1,9 +1,9 @@
 package ru.hse.engine.utils.screenshots;
 
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import ru.hse.core.utils.Constants;
 import ru.hse.core.utils.Settings;
+import ru.hse.engine.utils.NativeMemory;
 import ru.hse.engine.utils.Window;
 
 import javax.imageio.ImageIO;
@@ -50,8 +50,7 @@ public class ScreenCapture implements Runnable {
         GL11.glReadBuffer(GL11.GL_FRONT);
 
         int bpp = 4;
-        ByteBuffer buffer = BufferUtils.createByteBuffer(windowWidth * windowHeight * bpp);
-        GL11.glReadPixels(0, 0, windowWidth, windowHeight, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
+        ByteBuffer buffer = NativeMemory.alloc(NativeMemory.Tag.SCREENSHOT, windowWidth * windowHeight * bpp);
 
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(Constants.SCREENSHOT_FILENAME_PATTERN);
         LocalDateTime now = LocalDateTime.now();
@@ -63,14 +62,20 @@ public class ScreenCapture implements Runnable {
         String format = fileType.fileType;
         BufferedImage image = new BufferedImage(windowWidth, windowHeight, BufferedImage.TYPE_INT_RGB);
 
-        for (int x = 0; x < windowWidth; x++) {
-            for (int y = 0; y < windowHeight; y++) {
-                int i = (x + (windowWidth * y)) * bpp;
-                int r = buffer.get(i) & 0xFF;
-                int g = buffer.get(i + 1) & 0xFF;
-                int b = buffer.get(i + 2) & 0xFF;
-                image.setRGB(x, windowHeight - (y + 1), (0xFF << 24) | (r << 16) | (g << 8) | b);
+        try {
+            GL11.glReadPixels(0, 0, windowWidth, windowHeight, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
+
+            for (int x = 0; x < windowWidth; x++) {
+                for (int y = 0; y < windowHeight; y++) {
+                    int i = (x + (windowWidth * y)) * bpp;
+                    int r = buffer.get(i) & 0xFF;
+                    int g = buffer.get(i + 1) & 0xFF;
+                    int b = buffer.get(i + 2) & 0xFF;
+                    image.setRGB(x, windowHeight - (y + 1), (0xFF << 24) | (r << 16) | (g << 8) | b);
+                }
             }
+        } finally {
+            NativeMemory.free(buffer);
         }
 
         try {
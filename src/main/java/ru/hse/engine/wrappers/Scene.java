@@ -66,6 +66,21 @@ public class Scene {
         }
     }
 
+    public void removeMeshItem(MeshedItem meshedItem) {
+        for (Mesh mesh : meshedItem.getMeshes()) {
+            Map<? extends Mesh, List<MeshedItem>> map = mesh instanceof InstancedMesh ? instancedMeshMap : meshMap;
+
+            List<MeshedItem> list = map.get(mesh);
+
+            if (list != null) {
+                list.remove(meshedItem);
+
+                if (list.isEmpty())
+                    map.remove(mesh);
+            }
+        }
+    }
+
     public void cleanup() {
         for (Mesh mesh : meshMap.keySet())
             mesh.cleanUp();
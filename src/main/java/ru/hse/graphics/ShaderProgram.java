@@ -118,6 +118,14 @@ public class ShaderProgram {
         }
     }
 
+    public void setUniform(String uniformName, FloatBuffer matrices) {
+        glUniformMatrix4fv(uniforms.get(uniformName), false, matrices);
+    }
+
+    public void setVectorArrayUniform(String uniformName, FloatBuffer vectors) {
+        glUniform4fv(uniforms.get(uniformName), vectors);
+    }
+
     public void setUniform(String uniformName, int value) {
         glUniform1i(uniforms.get(uniformName), value);
     }
@@ -0,0 +1,202 @@
+package ru.hse.graphics.model;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import ru.hse.engine.animation.AnimatedFrame;
+import ru.hse.engine.animation.Animation;
+import ru.hse.engine.animation.AnimationState;
+import ru.hse.engine.animation.JointsEncoding;
+import ru.hse.engine.utils.NativeMemory;
+
+import java.nio.FloatBuffer;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.GL_RGBA32F;
+import static org.lwjgl.opengl.GL31.GL_MAX_TEXTURE_BUFFER_SIZE;
+import static org.lwjgl.opengl.GL31.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL31.glTexBuffer;
+
+/**
+ * Baked frames of animations uploaded once into a texture buffer.
+ * <p>
+ * The joints of every clip are laid out as frames x joints with one RGBA32F texel per vector of their
+ * {@link JointsEncoding}, so an instance playing a baked clip only passes the offsets of its two nearest frames and
+ * the factor between them. The frames are found through the frame times of the animation, as the keys they are
+ * baked at are not always one tick apart. The texture is shared by the meshes of a model and deleted when the last of
+ * them releases it.
+ */
+public class AnimationTexture {
+    private final Map<Animation, Clip> clips;
+
+    private final int bufferId;
+
+    private final int textureId;
+
+    private int referencesAmount;
+
+    /**
+     * Location of a clip in the texture.
+     */
+    private static class Clip {
+        private final int offset;
+
+        private final int jointsAmount;
+
+        private final int framesAmount;
+
+        /**
+         * The class' constructor.
+         *
+         * @param offset       index of the clip's first joint in the texture
+         * @param jointsAmount amount of joints per frame
+         * @param framesAmount amount of frames
+         */
+        private Clip(int offset, int jointsAmount, int framesAmount) {
+            this.offset = offset;
+            this.jointsAmount = jointsAmount;
+            this.framesAmount = framesAmount;
+        }
+    }
+
+    /**
+     * The class' constructor. Clips which are not baked or do not fit into the texture are left out and played
+     * through the joints palette.
+     *
+     * @param animations     animations of the model
+     * @param jointsEncoding encoding of the joints in the texture
+     */
+    public AnimationTexture(Collection<Animation> animations, JointsEncoding jointsEncoding) {
+        clips = new IdentityHashMap<>();
+
+        int jointSize = jointsEncoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS;
+        int maxJointsAmount = jointsEncoding.getMaxJointsAmount(glGetInteger(GL_MAX_TEXTURE_BUFFER_SIZE));
+        int textureJointsAmount = 0;
+
+        for (Animation animation : animations) {
+            if (!animation.isBaked() || animation.getFrames().isEmpty())
+                continue;
+
+            List<AnimatedFrame> frames = animation.getFrames();
+
+            int jointsAmount = frames.get(0).getJointsAmount();
+            int clipJointsAmount = frames.size() * jointsAmount;
+
+            if (textureJointsAmount + clipJointsAmount > maxJointsAmount) {
+                System.out.println("Animation " + animation.getName() + " does not fit into the animation texture.");
+
+                continue;
+            }
+
+            clips.put(animation, new Clip(textureJointsAmount, jointsAmount, frames.size()));
+
+            textureJointsAmount += clipJointsAmount;
+        }
+
+        int size = Math.max(1, textureJointsAmount) * jointSize;
+
+        FloatBuffer joints = NativeMemory.allocFloat(NativeMemory.Tag.MESH, size);
+
+        try {
+            Matrix4f jointMatrix = new Matrix4f();
+            Quaternionf jointRotation = new Quaternionf();
+
+            for (Map.Entry<Animation, Clip> entry : clips.entrySet()) {
+                Clip clip = entry.getValue();
+
+                List<AnimatedFrame> frames = entry.getKey().getFrames();
+
+                for (int i = 0; i < clip.framesAmount; i++)
+                    jointsEncoding.encode(frames.get(i).getJointMatrices(), clip.jointsAmount, joints,
+                            (clip.offset + i * clip.jointsAmount) * jointSize, jointMatrix, jointRotation);
+            }
+
+            bufferId = glGenBuffers();
+            glBindBuffer(GL_TEXTURE_BUFFER, bufferId);
+            glBufferData(GL_TEXTURE_BUFFER, joints, GL_STATIC_DRAW);
+            glBindBuffer(GL_TEXTURE_BUFFER, 0);
+        } finally {
+            NativeMemory.free(joints);
+        }
+
+        textureId = glGenTextures();
+        glBindTexture(GL_TEXTURE_BUFFER, textureId);
+        glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, bufferId);
+        glBindTexture(GL_TEXTURE_BUFFER, 0);
+    }
+
+    /**
+     * Check if the animation is in the texture.
+     *
+     * @param animation animation
+     * @return true if the animation's frames are in the texture and false otherwise
+     */
+    public boolean contains(Animation animation) {
+        return clips.containsKey(animation);
+    }
+
+    /**
+     * Find the frames of the texture to draw the animation state with.
+     *
+     * @param state  playback state
+     * @param alpha  interpolation factor, 0 is the time before the last move and 1 is the current time
+     * @param looped true if the animation starts over at its end and false otherwise
+     * @param dest   vector to store the offsets of the frame and the next frame and the factor between them, the
+     *               factor is 0 unless the animation is sampled
+     * @return true if the state's animation is in the texture and false otherwise
+     */
+    public boolean getFrames(AnimationState state, float alpha, boolean looped, Vector3f dest) {
+        Clip clip = state != null ? clips.get(state.getAnimation()) : null;
+
+        if (clip == null)
+            return false;
+
+        Animation animation = state.getAnimation();
+
+        double time = state.getTime(alpha) * animation.getTicksPerSecond();
+
+        int frame = Math.min(clip.framesAmount - 1, animation.findFrame(time));
+        int nextFrame = frame + 1 < clip.framesAmount ? frame + 1 : looped ? 0 : frame;
+        float factor = animation.isSampled() ? animation.getFrameFactor(time, frame, nextFrame) : 0;
+
+        dest.set(clip.offset + frame * clip.jointsAmount, clip.offset + nextFrame * clip.jointsAmount, factor);
+
+        return true;
+    }
+
+    /**
+     * Bind the texture to the texture unit.
+     *
+     * @param textureUnit texture unit index
+     */
+    public void bind(int textureUnit) {
+        glActiveTexture(GL_TEXTURE0 + textureUnit);
+        glBindTexture(GL_TEXTURE_BUFFER, textureId);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    /**
+     * Acquire a reference to the texture, every mesh using the texture holds one.
+     */
+    public void acquire() {
+        referencesAmount++;
+    }
+
+    /**
+     * Release a reference to the texture, the texture is deleted with its last reference.
+     */
+    public void release() {
+        if (--referencesAmount > 0)
+            return;
+
+        glDeleteTextures(textureId);
+        glDeleteBuffers(bufferId);
+    }
+}
@@ -1,11 +1,15 @@
 package ru.hse.graphics.model;
 
 import org.joml.Matrix4f;
-import org.lwjgl.system.MemoryUtil;
+import org.joml.Vector3f;
 import ru.hse.engine.MeshedItem;
+import ru.hse.engine.animation.AnimatedItem;
+import ru.hse.engine.animation.AnimationPlayer;
+import ru.hse.engine.utils.NativeMemory;
 import ru.hse.graphics.Transformation;
 
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.List;
 
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
@@ -16,7 +20,25 @@ import static org.lwjgl.opengl.GL30.glBindVertexArray;
 import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
 import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
 
+/**
+ * Mesh drawn for many items with one instanced draw call.
+ * <p>
+ * Every instance has its model matrix, texture offset, selection or scaling and the offset of its joints in the
+ * {@link JointsPalette} the renderer fills once per frame, so skinned items of any animations and frames are drawn
+ * together and every mesh and pass drawing an item reads the same joints. Items playing a clip of the mesh's
+ * {@link AnimationTexture} without fading pass the offsets of its frames instead and have no joints in the palette.
+ */
 public class InstancedMesh extends Mesh {
+    /**
+     * Texture unit of the joints palette, after the texture, the normal map and the shadow maps.
+     */
+    public static final int JOINTS_PALETTE_TEXTURE_UNIT = 5;
+
+    /**
+     * Texture unit of the animation texture.
+     */
+    public static final int ANIMATION_TEXTURE_UNIT = 6;
+
     private static final int FLOAT_SIZE_BYTES = 4;
 
     private static final int VECTOR4F_SIZE_BYTES = 4 * InstancedMesh.FLOAT_SIZE_BYTES;
@@ -25,9 +47,9 @@ public class InstancedMesh extends Mesh {
 
     private static final int MATRIX_SIZE_BYTES = InstancedMesh.MATRIX_SIZE_FLOATS * InstancedMesh.FLOAT_SIZE_BYTES;
 
-    private static final int INSTANCE_SIZE_BYTES = InstancedMesh.MATRIX_SIZE_BYTES + InstancedMesh.FLOAT_SIZE_BYTES * 2 + InstancedMesh.FLOAT_SIZE_BYTES;
+    private static final int INSTANCE_SIZE_BYTES = InstancedMesh.MATRIX_SIZE_BYTES + InstancedMesh.FLOAT_SIZE_BYTES * 2 + InstancedMesh.FLOAT_SIZE_BYTES * 5;
 
-    private static final int INSTANCE_SIZE_FLOATS = InstancedMesh.MATRIX_SIZE_FLOATS + 3;
+    private static final int INSTANCE_SIZE_FLOATS = InstancedMesh.MATRIX_SIZE_FLOATS + 7;
 
     private final int numInstances;
 
@@ -35,16 +57,57 @@ public class InstancedMesh extends Mesh {
 
     private FloatBuffer instanceDataBuffer;
 
+    private final Vector3f bakedFrames;
+
+    private AnimationTexture animationTexture;
+
     public InstancedMesh(float[] positions, float[] textCoords, float[] normals, int[] indices, int numInstances) {
-        super(positions, textCoords, normals, indices, Mesh.createEmptyIntArray(Mesh.MAX_WEIGHTS * positions.length / 3, 0), Mesh.createEmptyFloatArray(Mesh.MAX_WEIGHTS * positions.length / 3, 0));
+        super(positions, textCoords, normals, indices);
 
         this.numInstances = numInstances;
 
-        glBindVertexArray(vaoId);
+        instanceDataVBO = glGenBuffers();
+        vboIdList.add(instanceDataVBO);
+        instanceDataBuffer = NativeMemory.allocFloat(NativeMemory.Tag.MESH, numInstances * InstancedMesh.INSTANCE_SIZE_FLOATS);
+        bakedFrames = new Vector3f();
+
+        setInstanceAttributes();
+    }
+
+    /**
+     * Creates a skinned instanced mesh from native buffers. The buffers are not freed by the mesh.
+     */
+    public InstancedMesh(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices, IntBuffer jointIndices, FloatBuffer weights, int numInstances) {
+        super(positions, textCoords, normals, indices, jointIndices, weights);
+
+        this.numInstances = numInstances;
 
         instanceDataVBO = glGenBuffers();
         vboIdList.add(instanceDataVBO);
-        instanceDataBuffer = MemoryUtil.memAllocFloat(numInstances * InstancedMesh.INSTANCE_SIZE_FLOATS);
+        instanceDataBuffer = NativeMemory.allocFloat(NativeMemory.Tag.MESH, numInstances * InstancedMesh.INSTANCE_SIZE_FLOATS);
+        bakedFrames = new Vector3f();
+
+        setInstanceAttributes();
+    }
+
+    /**
+     * Creates a level of detail of the mesh sharing the mesh's instance data.
+     */
+    public InstancedMesh(InstancedMesh mesh, IntBuffer indices) {
+        super(mesh, indices);
+
+        numInstances = mesh.numInstances;
+        instanceDataVBO = mesh.instanceDataVBO;
+        instanceDataBuffer = mesh.instanceDataBuffer;
+        bakedFrames = new Vector3f();
+        animationTexture = mesh.animationTexture;
+
+        setInstanceAttributes();
+    }
+
+    private void setInstanceAttributes() {
+        glBindVertexArray(vaoId);
+
         glBindBuffer(GL_ARRAY_BUFFER, instanceDataVBO);
         int start = 5;
         int strideStart = 0;
@@ -68,8 +131,21 @@ public class InstancedMesh extends Mesh {
         glVertexAttribPointer(start, 1, GL_FLOAT, false, InstancedMesh.INSTANCE_SIZE_BYTES, strideStart);
         glVertexAttribDivisor(start, 1);
         glEnableVertexAttribArray(start);
+        strideStart += InstancedMesh.FLOAT_SIZE_BYTES;
+        start++;
+
+        // Offset of the joint matrices in the palette, negative for not skinned instances
+        glVertexAttribPointer(start, 1, GL_FLOAT, false, InstancedMesh.INSTANCE_SIZE_BYTES, strideStart);
+        glVertexAttribDivisor(start, 1);
+        glEnableVertexAttribArray(start);
+        strideStart += InstancedMesh.FLOAT_SIZE_BYTES;
         start++;
 
+        // Offsets of the frame and the next frame in the animation texture and the factor between them
+        glVertexAttribPointer(start, 3, GL_FLOAT, false, InstancedMesh.INSTANCE_SIZE_BYTES, strideStart);
+        glVertexAttribDivisor(start, 1);
+        glEnableVertexAttribArray(start);
+
         glBindBuffer(GL_ARRAY_BUFFER, 0);
         glBindVertexArray(0);
     }
@@ -78,9 +154,42 @@ public class InstancedMesh extends Mesh {
     public void cleanUp() {
         super.cleanUp();
         if (this.instanceDataBuffer != null) {
-            MemoryUtil.memFree(this.instanceDataBuffer);
+            NativeMemory.free(this.instanceDataBuffer);
             this.instanceDataBuffer = null;
         }
+        if (this.animationTexture != null) {
+            this.animationTexture.release();
+            this.animationTexture = null;
+        }
+    }
+
+    public AnimationTexture getAnimationTexture() {
+        return animationTexture;
+    }
+
+    /**
+     * Animation texture setter, the texture is shared with the mesh's levels of detail and released by
+     * {@link #cleanUp()}.
+     */
+    public void setAnimationTexture(AnimationTexture animationTexture) {
+        if (this.animationTexture != null) {
+            this.animationTexture.release();
+        }
+        if (animationTexture != null) {
+            animationTexture.acquire();
+        }
+        this.animationTexture = animationTexture;
+        for (int level = 1; level < getLevelsAmount(); level++) {
+            getLevel(level).animationTexture = animationTexture;
+        }
+    }
+
+    /**
+     * Level of detail getter, levels of an instanced mesh are instanced meshes.
+     */
+    @Override
+    public InstancedMesh getLevel(int level) {
+        return (InstancedMesh) super.getLevel(level);
     }
 
     public void renderListInstanced(List<MeshedItem> gameItems, Transformation transformation, Matrix4f viewMatrix) {
@@ -108,6 +217,10 @@ public class InstancedMesh extends Mesh {
 
         Texture text = getMaterial().getTexture();
         for (MeshedItem gameItem : gameItems) {
+            AnimatedItem animatedItem = getVertexFormat().isSkinned() && gameItem instanceof AnimatedItem
+                    ? (AnimatedItem) gameItem : null;
+            boolean baked = animatedItem != null && findBakedFrames(animatedItem);
+
             Matrix4f modelMatrix = transformation.buildModelMatrix(gameItem);
             if (viewMatrix != null && billBoard) {
                 viewMatrix.transpose3x3(modelMatrix);
@@ -127,14 +240,67 @@ public class InstancedMesh extends Mesh {
             int buffPos = InstancedMesh.INSTANCE_SIZE_FLOATS * i + InstancedMesh.MATRIX_SIZE_FLOATS + 2;
             this.instanceDataBuffer.put(buffPos, billBoard ? gameItem.getScale() : gameItem.isSelected() ? 1 : 0);
 
+            // Joint matrices offset
+            this.instanceDataBuffer.put(buffPos + 1, animatedItem != null && !baked
+                    ? animatedItem.getJointsOffset() : -1);
+
+            // Animation texture frames
+            this.instanceDataBuffer.put(buffPos + 2, baked ? bakedFrames.x : -1);
+            this.instanceDataBuffer.put(buffPos + 3, baked ? bakedFrames.y : -1);
+            this.instanceDataBuffer.put(buffPos + 4, baked ? bakedFrames.z : 0);
+
             i++;
         }
 
+        drawInstances(i);
+    }
+
+    /**
+     * Check if the item is drawn with the frames of the animation texture, a cross-fade is blended on the CPU and
+     * drawn with the joints palette instead.
+     *
+     * @param animatedItem animated item
+     * @return true if the item's current animation is in the mesh's animation texture and false otherwise
+     */
+    public boolean isAnimationTextureUsed(AnimatedItem animatedItem) {
+        return animationTexture != null && !animatedItem.isFading()
+                && animationTexture.contains(animatedItem.getCurrentAnimation());
+    }
+
+    /**
+     * Find frames of the item in the animation texture, a cross-fade is blended on the CPU and uploaded instead.
+     *
+     * @param animatedItem animated item
+     * @return true if the frames are found and stored in the baked frames vector and false otherwise
+     */
+    private boolean findBakedFrames(AnimatedItem animatedItem) {
+        if (!isAnimationTextureUsed(animatedItem))
+            return false;
+
+        AnimationPlayer player = animatedItem.getPlayer();
+
+        return animationTexture.getFrames(animatedItem.getCurrentState(), player.getInterpolationAlpha(),
+                player.isLooped(), bakedFrames);
+    }
+
+    private void drawInstances(int amount) {
+        if (amount == 0) {
+            return;
+        }
+
+        if (animationTexture != null) {
+            animationTexture.bind(InstancedMesh.ANIMATION_TEXTURE_UNIT);
+        }
+
+        this.instanceDataBuffer.limit(amount * InstancedMesh.INSTANCE_SIZE_FLOATS);
+
         glBindBuffer(GL_ARRAY_BUFFER, instanceDataVBO);
-        glBufferData(GL_ARRAY_BUFFER, instanceDataBuffer, GL_DYNAMIC_READ);
+        glBufferData(GL_ARRAY_BUFFER, instanceDataBuffer, GL_STREAM_DRAW);
+
+        this.instanceDataBuffer.clear();
 
         glDrawElementsInstanced(
-                GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0, gameItems.size());
+                GL_TRIANGLES, getVertexCount(), getIndexType(), 0, amount);
 
         glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
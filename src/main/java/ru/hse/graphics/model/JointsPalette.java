@@ -0,0 +1,150 @@
+package ru.hse.graphics.model;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import ru.hse.engine.animation.JointsEncoding;
+import ru.hse.engine.utils.NativeMemory;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.GL_RGBA32F;
+import static org.lwjgl.opengl.GL31.GL_MAX_TEXTURE_BUFFER_SIZE;
+import static org.lwjgl.opengl.GL31.GL_TEXTURE_BUFFER;
+import static org.lwjgl.opengl.GL31.glTexBuffer;
+
+/**
+ * Joints of instanced skinned items packed into one texture buffer.
+ * <p>
+ * Every joint takes one RGBA32F texel per vector of its {@link JointsEncoding} and is read in the vertex shader with
+ * texelFetch. The renderer fills the palette with the joints of every visible item once per frame and uploads it with
+ * orphaning before the first pass, so all the instanced draws of the frame share it.
+ */
+public class JointsPalette {
+    private static final int INITIAL_CAPACITY_JOINTS = 1024;
+
+    private final JointsEncoding jointsEncoding;
+
+    private final int jointSizeBytes;
+
+    private final int bufferId;
+
+    private final int textureId;
+
+    private final int maxJointsAmount;
+
+    private final Matrix4f jointMatrix;
+
+    private final Quaternionf jointRotation;
+
+    private ByteBuffer joints;
+
+    private FloatBuffer jointsFloats;
+
+    private int jointsAmount;
+
+    public JointsPalette(JointsEncoding jointsEncoding) {
+        this.jointsEncoding = jointsEncoding;
+
+        jointSizeBytes = jointsEncoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS * Float.BYTES;
+
+        // Texture buffers are limited to 65536 texels in OpenGL 3.3, drivers usually allow much more
+        maxJointsAmount = jointsEncoding.getMaxJointsAmount(glGetInteger(GL_MAX_TEXTURE_BUFFER_SIZE));
+
+        jointMatrix = new Matrix4f();
+        jointRotation = new Quaternionf();
+
+        joints = NativeMemory.alloc(NativeMemory.Tag.MESH, INITIAL_CAPACITY_JOINTS * jointSizeBytes);
+        jointsFloats = joints.asFloatBuffer();
+
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_TEXTURE_BUFFER, bufferId);
+        glBufferData(GL_TEXTURE_BUFFER, joints.capacity(), GL_STREAM_DRAW);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+
+        textureId = glGenTextures();
+        glBindTexture(GL_TEXTURE_BUFFER, textureId);
+        glTexBuffer(GL_TEXTURE_BUFFER, GL_RGBA32F, bufferId);
+        glBindTexture(GL_TEXTURE_BUFFER, 0);
+    }
+
+    /**
+     * Remove all the joints from the palette.
+     */
+    public void clear() {
+        jointsAmount = 0;
+    }
+
+    /**
+     * Check if the palette has room for more joints.
+     *
+     * @param amount amount of joints
+     * @return true if the joints can be added and false if the palette has to be drawn and cleared first
+     */
+    public boolean fits(int amount) {
+        return jointsAmount == 0 || jointsAmount + amount <= maxJointsAmount;
+    }
+
+    /**
+     * Append joint matrices of an item encoded with the palette's encoding.
+     *
+     * @param jointMatrices joint matrices with 16 floats per joint
+     * @param jointsAmount  amount of joints
+     * @return index of the item's first joint in the palette
+     */
+    public int add(FloatBuffer jointMatrices, int jointsAmount) {
+        int offset = this.jointsAmount;
+
+        int size = (offset + jointsAmount) * jointSizeBytes;
+
+        if (size > joints.capacity()) {
+            joints = NativeMemory.realloc(joints, Math.max(size, 2 * joints.capacity()));
+            jointsFloats = joints.asFloatBuffer();
+        }
+
+        jointsEncoding.encode(jointMatrices, jointsAmount, jointsFloats, offset * jointSizeBytes / Float.BYTES,
+                jointMatrix, jointRotation);
+
+        this.jointsAmount += jointsAmount;
+
+        return offset;
+    }
+
+    public int getJointsAmount() {
+        return jointsAmount;
+    }
+
+    /**
+     * Upload the joints orphaning the previous storage, so drawing does not wait for the previous draws to finish
+     * reading it, and bind the palette to the texture unit.
+     *
+     * @param textureUnit texture unit index
+     */
+    public void upload(int textureUnit) {
+        joints.limit(jointsAmount * jointSizeBytes);
+
+        glBindBuffer(GL_TEXTURE_BUFFER, bufferId);
+        glBufferData(GL_TEXTURE_BUFFER, joints.capacity(), GL_STREAM_DRAW);
+        glBufferSubData(GL_TEXTURE_BUFFER, 0, joints);
+        glBindBuffer(GL_TEXTURE_BUFFER, 0);
+
+        joints.clear();
+
+        glActiveTexture(GL_TEXTURE0 + textureUnit);
+        glBindTexture(GL_TEXTURE_BUFFER, textureId);
+        glActiveTexture(GL_TEXTURE0);
+    }
+
+    public void cleanUp() {
+        glDeleteTextures(textureId);
+        glDeleteBuffers(bufferId);
+
+        NativeMemory.free(joints);
+        joints = null;
+        jointsFloats = null;
+    }
+}
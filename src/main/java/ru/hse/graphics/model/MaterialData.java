@@ -0,0 +1,90 @@
+package ru.hse.graphics.model;
+
+import org.joml.Vector4f;
+
+/**
+ * CPU-side material data representation class.
+ */
+public class MaterialData {
+    private final Vector4f ambientColour;
+
+    private final Vector4f diffuseColour;
+
+    private final Vector4f specularColour;
+
+    private final float reflectance;
+
+    private final String texturePath;
+
+    /**
+     * The class' constructor.
+     *
+     * @param ambientColour  ambient colour
+     * @param diffuseColour  diffuse colour
+     * @param specularColour specular colour
+     * @param reflectance    reflectance
+     * @param texturePath    path to the diffuse texture or empty string if there is none
+     */
+    public MaterialData(Vector4f ambientColour, Vector4f diffuseColour, Vector4f specularColour,
+                        float reflectance, String texturePath) {
+        this.ambientColour = ambientColour;
+        this.diffuseColour = diffuseColour;
+        this.specularColour = specularColour;
+        this.reflectance = reflectance;
+        this.texturePath = texturePath;
+    }
+
+    /**
+     * Ambient colour getter.
+     *
+     * @return ambient colour
+     */
+    public Vector4f getAmbientColour() {
+        return ambientColour;
+    }
+
+    /**
+     * Diffuse colour getter.
+     *
+     * @return diffuse colour
+     */
+    public Vector4f getDiffuseColour() {
+        return diffuseColour;
+    }
+
+    /**
+     * Specular colour getter.
+     *
+     * @return specular colour
+     */
+    public Vector4f getSpecularColour() {
+        return specularColour;
+    }
+
+    /**
+     * Reflectance getter.
+     *
+     * @return reflectance
+     */
+    public float getReflectance() {
+        return reflectance;
+    }
+
+    /**
+     * Texture path getter.
+     *
+     * @return path to the diffuse texture or empty string if there is none
+     */
+    public String getTexturePath() {
+        return texturePath;
+    }
+
+    /**
+     * Check if the material has a texture.
+     *
+     * @return true if the material has a texture and false otherwise
+     */
+    public boolean isTextured() {
+        return texturePath != null && texturePath.length() > 0;
+    }
+}
@@ -1,8 +1,11 @@
 package ru.hse.graphics.model;
 
-import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.BufferUtils;
 import ru.hse.engine.MeshedItem;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.engine.utils.TextureCache;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
@@ -23,122 +26,161 @@ public class Mesh {
 
     private final int vertexCount;
 
+    private final VertexFormat vertexFormat;
+
+    private final int indexType;
+
+    private Mesh[] levelsOfDetail;
+
+    private float[] levelsErrors;
+
     private Material material;
 
     private float boundingRadius;
 
     public Mesh(float[] positions, float[] textCoords, float[] normals, int[] indices) {
-        this(positions, textCoords, normals, indices, Mesh.createEmptyIntArray(Mesh.MAX_WEIGHTS * positions.length / 3, 0), Mesh.createEmptyFloatArray(Mesh.MAX_WEIGHTS * positions.length / 3, 0));
+        this(Mesh.createFloatBuffer(positions), Mesh.createFloatBuffer(textCoords), Mesh.createFloatBuffer(normals),
+                Mesh.createIntBuffer(indices));
     }
 
     public Mesh(float[] positions, float[] textCoords, float[] normals, int[] indices, int[] jointIndices, float[] weights) {
-        FloatBuffer posBuffer = null;
-        FloatBuffer textCoordsBuffer = null;
-        FloatBuffer vecNormalsBuffer = null;
-        FloatBuffer weightsBuffer = null;
-        IntBuffer jointIndicesBuffer = null;
-        IntBuffer indicesBuffer = null;
-        try {
-            calculateBoundingRadius(positions);
+        this(Mesh.createFloatBuffer(positions), Mesh.createFloatBuffer(textCoords), Mesh.createFloatBuffer(normals),
+                Mesh.createIntBuffer(indices), Mesh.createIntBuffer(jointIndices), Mesh.createFloatBuffer(weights));
+    }
+
+    /**
+     * Creates a static mesh from native buffers. The buffers are not freed by the mesh.
+     */
+    public Mesh(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices) {
+        this(VertexFormat.STATIC, positions, textCoords, normals, indices, null, null);
+    }
+
+    /**
+     * Creates a skinned mesh from native buffers, joint indices above 255 need the wide skinned format. The buffers are
+     * not freed by the mesh.
+     */
+    public Mesh(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices, IntBuffer jointIndices, FloatBuffer weights) {
+        this(VertexFormat.chooseSkinned(jointIndices), positions, textCoords, normals, indices, jointIndices, weights);
+    }
 
-            vertexCount = indices.length;
-            vboIdList = new ArrayList<>();
+    /**
+     * Creates a mesh packing the vertex streams into interleaved vertices of the given format.
+     */
+    private Mesh(VertexFormat vertexFormat, FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices, IntBuffer jointIndices, FloatBuffer weights) {
+        calculateBoundingRadius(positions);
 
-            vaoId = glGenVertexArrays();
-            glBindVertexArray(vaoId);
+        this.vertexFormat = vertexFormat;
+        vertexCount = indices.remaining();
+        vboIdList = new ArrayList<>();
+        levelsOfDetail = new Mesh[0];
+        levelsErrors = new float[0];
 
-            // Position VBO
+        vaoId = glGenVertexArrays();
+        glBindVertexArray(vaoId);
+
+        // Interleaved vertices VBO
+        ByteBuffer vertices = vertexFormat.pack(positions, textCoords, normals, jointIndices, weights);
+        try {
             int vboId = glGenBuffers();
             vboIdList.add(vboId);
-            posBuffer = MemoryUtil.memAllocFloat(positions.length);
-            posBuffer.put(positions).flip();
             glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, posBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(0);
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+            glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+            vertexFormat.setAttributes();
+        } finally {
+            NativeMemory.free(vertices);
+        }
 
-            // Texture coordinates VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            textCoordsBuffer = MemoryUtil.memAllocFloat(textCoords.length);
-            textCoordsBuffer.put(textCoords).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, textCoordsBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(1);
-            glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
+        // Index VBO, indices are as narrow as the mesh's vertices allow
+        indexType = createIndexBuffer(indices);
 
-            // Vertex normals VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            vecNormalsBuffer = MemoryUtil.memAllocFloat(normals.length);
-            if (vecNormalsBuffer.capacity() > 0) {
-                vecNormalsBuffer.put(normals).flip();
-            } else {
-                // Create empty structure
-                vecNormalsBuffer = MemoryUtil.memAllocFloat(positions.length);
-            }
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, vecNormalsBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(2);
-            glVertexAttribPointer(2, 3, GL_FLOAT, false, 0, 0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+    }
 
-            // Weights
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            weightsBuffer = MemoryUtil.memAllocFloat(weights.length);
-            weightsBuffer.put(weights).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, weightsBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(3);
-            glVertexAttribPointer(3, 4, GL_FLOAT, false, 0, 0);
+    /**
+     * Creates a level of detail of the mesh drawing the given indices of the mesh's own vertex buffer.
+     */
+    public Mesh(Mesh mesh, IntBuffer indices) {
+        boundingRadius = mesh.boundingRadius;
+        material = mesh.material;
 
-            // Joint indices
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            jointIndicesBuffer = MemoryUtil.memAllocInt(jointIndices.length);
-            jointIndicesBuffer.put(jointIndices).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, jointIndicesBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(4);
-            glVertexAttribPointer(4, 4, GL_FLOAT, false, 0, 0);
+        vertexFormat = mesh.vertexFormat;
+        vertexCount = indices.remaining();
+        vboIdList = new ArrayList<>();
+        levelsOfDetail = new Mesh[0];
+        levelsErrors = new float[0];
 
-            // Index VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            indicesBuffer = MemoryUtil.memAllocInt(indices.length);
-            indicesBuffer.put(indices).flip();
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL_STATIC_DRAW);
+        vaoId = glGenVertexArrays();
+        glBindVertexArray(vaoId);
 
-            glBindBuffer(GL_ARRAY_BUFFER, 0);
-            glBindVertexArray(0);
-        } finally {
-            if (posBuffer != null) {
-                MemoryUtil.memFree(posBuffer);
-            }
-            if (textCoordsBuffer != null) {
-                MemoryUtil.memFree(textCoordsBuffer);
-            }
-            if (vecNormalsBuffer != null) {
-                MemoryUtil.memFree(vecNormalsBuffer);
-            }
-            if (weightsBuffer != null) {
-                MemoryUtil.memFree(weightsBuffer);
-            }
-            if (jointIndicesBuffer != null) {
-                MemoryUtil.memFree(jointIndicesBuffer);
+        // Shared interleaved vertices VBO, it is deleted by the mesh
+        glBindBuffer(GL_ARRAY_BUFFER, mesh.vboIdList.get(0));
+        vertexFormat.setAttributes();
+
+        indexType = createIndexBuffer(indices);
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+    }
+
+    private int createIndexBuffer(IntBuffer indices) {
+        int indexType = chooseIndexType(indices);
+        int vboId = glGenBuffers();
+        vboIdList.add(vboId);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
+        if (indexType == GL_UNSIGNED_INT) {
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        } else {
+            ByteBuffer narrowIndices = packIndices(indices, indexType);
+            try {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, narrowIndices, GL_STATIC_DRAW);
+            } finally {
+                NativeMemory.free(narrowIndices);
             }
-            if (indicesBuffer != null) {
-                MemoryUtil.memFree(indicesBuffer);
+        }
+        return indexType;
+    }
+
+    /**
+     * Chooses the narrowest index type which can address every vertex used by the indices.
+     */
+    private static int chooseIndexType(IntBuffer indices) {
+        int maxIndex = 0;
+        for (int i = indices.position(); i < indices.limit(); i++) {
+            maxIndex = Math.max(maxIndex, indices.get(i));
+        }
+        if (maxIndex <= 0xFF) {
+            return GL_UNSIGNED_BYTE;
+        }
+        if (maxIndex <= 0xFFFF) {
+            return GL_UNSIGNED_SHORT;
+        }
+        return GL_UNSIGNED_INT;
+    }
+
+    /**
+     * Converts the indices to 8-bit or 16-bit ones allocated with NativeMemory.
+     */
+    private static ByteBuffer packIndices(IntBuffer indices, int indexType) {
+        int indexSize = indexType == GL_UNSIGNED_BYTE ? Byte.BYTES : Short.BYTES;
+        ByteBuffer result = NativeMemory.alloc(NativeMemory.Tag.MESH, indices.remaining() * indexSize);
+        for (int i = indices.position(); i < indices.limit(); i++) {
+            if (indexType == GL_UNSIGNED_BYTE) {
+                result.put((byte) indices.get(i));
+            } else {
+                result.putShort((short) indices.get(i));
             }
         }
+        result.flip();
+        return result;
     }
 
-    private void calculateBoundingRadius(float positions[]) {
-        int length = positions.length;
+    private void calculateBoundingRadius(FloatBuffer positions) {
+        int start = positions.position();
+        int end = positions.limit();
         boundingRadius = 0;
-        for (int i = 0; i < length; i++) {
-            float pos = positions[i];
+        for (int i = start; i < end; i++) {
+            float pos = positions.get(i);
             boundingRadius = Math.max(Math.abs(pos), boundingRadius);
         }
     }
@@ -149,6 +191,54 @@ public class Mesh {
 
     public void setMaterial(Material material) {
         this.material = material;
+        for (Mesh level : levelsOfDetail) {
+            level.setMaterial(material);
+        }
+    }
+
+    /**
+     * Levels of detail setter.
+     *
+     * @param levelsOfDetail levels of detail created from the mesh, from the finest to the coarsest
+     * @param levelsErrors   non-decreasing error of every level in the mesh's units
+     */
+    public void setLevelsOfDetail(Mesh[] levelsOfDetail, float[] levelsErrors) {
+        this.levelsOfDetail = levelsOfDetail;
+        this.levelsErrors = levelsErrors;
+    }
+
+    /**
+     * Levels amount getter.
+     *
+     * @return amount of the levels of detail including the mesh itself
+     */
+    public int getLevelsAmount() {
+        return levelsOfDetail.length + 1;
+    }
+
+    /**
+     * Level of detail getter.
+     *
+     * @param level level, 0 is the mesh itself
+     * @return mesh of the level
+     */
+    public Mesh getLevel(int level) {
+        return level == 0 ? this : levelsOfDetail[level - 1];
+    }
+
+    /**
+     * Selects the coarsest level of detail whose error is not visible.
+     *
+     * @param pixelsPerUnit  size of the mesh's unit on the screen in pixels
+     * @param maxPixelsError maximal error on the screen in pixels
+     * @return selected level, 0 is the mesh itself
+     */
+    public int selectLevel(float pixelsPerUnit, float maxPixelsError) {
+        int level = 0;
+        while (level < levelsErrors.length && levelsErrors[level] * pixelsPerUnit <= maxPixelsError) {
+            level++;
+        }
+        return level;
     }
 
     public final int getVaoId() {
@@ -159,6 +249,19 @@ public class Mesh {
         return vertexCount;
     }
 
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    /**
+     * Index type getter.
+     *
+     * @return GL_UNSIGNED_BYTE, GL_UNSIGNED_SHORT or GL_UNSIGNED_INT
+     */
+    public int getIndexType() {
+        return indexType;
+    }
+
     public float getBoundingRadius() {
         return boundingRadius;
     }
@@ -185,6 +288,10 @@ public class Mesh {
 
         // Draw the mesh
         glBindVertexArray(getVaoId());
+
+        // Static meshes have no weights, so they are not skinned
+        if (!vertexFormat.isSkinned())
+            glVertexAttrib4f(VertexFormat.WEIGHTS_LOCATION, 0, 0, 0, 0);
     }
 
     protected void endRender() {
@@ -197,7 +304,7 @@ public class Mesh {
     public void render() {
         initRender();
 
-        glDrawElements(GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0);
+        glDrawElements(GL_TRIANGLES, getVertexCount(), getIndexType(), 0);
 
         endRender();
     }
@@ -210,7 +317,7 @@ public class Mesh {
                 // Set up data required by GameItem
                 consumer.accept(gameItem);
                 // Render this game item
-                glDrawElements(GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0);
+                glDrawElements(GL_TRIANGLES, getVertexCount(), getIndexType(), 0);
             }
         }
 
@@ -220,15 +327,20 @@ public class Mesh {
     public void cleanUp() {
         glDisableVertexAttribArray(0);
 
+        // Delete the levels of detail, they share the texture of the mesh
+        for (Mesh level : levelsOfDetail) {
+            level.deleteBuffers();
+        }
+
         // Delete the VBOs
         glBindBuffer(GL_ARRAY_BUFFER, 0);
         for (int vboId : vboIdList) {
             glDeleteBuffers(vboId);
         }
 
-        // Delete the texture
+        // Release the texture, it is deleted only if it is not shared through the cache
         Texture texture = material.getTexture();
-        if (texture != null) {
+        if (texture != null && !TextureCache.getInstance().releaseTexture(texture)) {
             texture.cleanup();
         }
 
@@ -238,6 +350,10 @@ public class Mesh {
     }
 
     public void deleteBuffers() {
+        for (Mesh level : levelsOfDetail) {
+            level.deleteBuffers();
+        }
+
         // Delete the VBOs
         glBindBuffer(GL_ARRAY_BUFFER, 0);
         for (int vboId : vboIdList) {
@@ -249,6 +365,18 @@ public class Mesh {
         glDeleteVertexArrays(vaoId);
     }
 
+    protected static FloatBuffer createFloatBuffer(float[] data) {
+        FloatBuffer result = BufferUtils.createFloatBuffer(data.length);
+        result.put(data).flip();
+        return result;
+    }
+
+    protected static IntBuffer createIntBuffer(int[] data) {
+        IntBuffer result = BufferUtils.createIntBuffer(data.length);
+        result.put(data).flip();
+        return result;
+    }
+
     protected static float[] createEmptyFloatArray(int length, float defaultValue) {
         float[] result = new float[length];
         Arrays.fill(result, defaultValue);
@@ -0,0 +1,226 @@
+package ru.hse.graphics.model;
+
+import ru.hse.engine.utils.NativeMemory;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * CPU-side mesh data representation class.
+ * <p>
+ * The data is kept in native buffers, so it can be uploaded to the GPU without any intermediate copies.
+ */
+public class MeshData {
+    private final FloatBuffer positions;
+
+    private final FloatBuffer textCoords;
+
+    private final FloatBuffer normals;
+
+    private final IntBuffer indices;
+
+    private final IntBuffer jointIndices;
+
+    private final FloatBuffer weights;
+
+    private final int materialIndex;
+
+    private final boolean buffersOwner;
+
+    private IntBuffer[] levelsIndices;
+
+    private float[] levelsErrors;
+
+    /**
+     * The class' constructor for data allocated with NativeMemory.
+     *
+     * @param positions     vertex positions
+     * @param textCoords    texture coordinates
+     * @param normals       vertex normals
+     * @param indices       indices
+     * @param jointIndices  joint indices of each vertex or null for a static mesh
+     * @param weights       joint weights of each vertex or null for a static mesh
+     * @param materialIndex index of the mesh's material
+     */
+    public MeshData(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices,
+                    IntBuffer jointIndices, FloatBuffer weights, int materialIndex) {
+        this(positions, textCoords, normals, indices, jointIndices, weights, materialIndex, true);
+    }
+
+    /**
+     * The class' constructor.
+     *
+     * @param positions     vertex positions
+     * @param textCoords    texture coordinates
+     * @param normals       vertex normals
+     * @param indices       indices
+     * @param jointIndices  joint indices of each vertex or null for a static mesh
+     * @param weights       joint weights of each vertex or null for a static mesh
+     * @param materialIndex index of the mesh's material
+     * @param buffersOwner  true if the buffers were allocated with NativeMemory and must be freed by the data
+     */
+    public MeshData(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer indices,
+                    IntBuffer jointIndices, FloatBuffer weights, int materialIndex, boolean buffersOwner) {
+        this.positions = positions;
+        this.textCoords = textCoords;
+        this.normals = normals;
+        this.indices = indices;
+        this.jointIndices = jointIndices;
+        this.weights = weights;
+        this.materialIndex = materialIndex;
+        this.buffersOwner = buffersOwner;
+
+        levelsIndices = new IntBuffer[0];
+        levelsErrors = new float[0];
+    }
+
+    /**
+     * Vertex positions getter.
+     *
+     * @return vertex positions
+     */
+    public FloatBuffer getPositions() {
+        return positions;
+    }
+
+    /**
+     * Texture coordinates getter.
+     *
+     * @return texture coordinates
+     */
+    public FloatBuffer getTextCoords() {
+        return textCoords;
+    }
+
+    /**
+     * Vertex normals getter.
+     *
+     * @return vertex normals
+     */
+    public FloatBuffer getNormals() {
+        return normals;
+    }
+
+    /**
+     * Indices getter.
+     *
+     * @return indices
+     */
+    public IntBuffer getIndices() {
+        return indices;
+    }
+
+    /**
+     * Joint indices getter.
+     *
+     * @return joint indices or null for a static mesh
+     */
+    public IntBuffer getJointIndices() {
+        return jointIndices;
+    }
+
+    /**
+     * Joint weights getter.
+     *
+     * @return joint weights or null for a static mesh
+     */
+    public FloatBuffer getWeights() {
+        return weights;
+    }
+
+    /**
+     * Material index getter.
+     *
+     * @return material index
+     */
+    public int getMaterialIndex() {
+        return materialIndex;
+    }
+
+    /**
+     * Levels of detail indices getter.
+     *
+     * @return indices of every level of detail, from the finest to the coarsest
+     */
+    public IntBuffer[] getLevelsIndices() {
+        return levelsIndices;
+    }
+
+    /**
+     * Levels of detail errors getter.
+     *
+     * @return error of every level of detail in the mesh's units
+     */
+    public float[] getLevelsErrors() {
+        return levelsErrors;
+    }
+
+    /**
+     * Levels of detail setter. The indices reference the data's vertices and are owned by the data like its buffers.
+     *
+     * @param levelsIndices indices of every level of detail, from the finest to the coarsest
+     * @param levelsErrors  non-decreasing error of every level of detail in the mesh's units
+     */
+    public void setLevelsOfDetail(IntBuffer[] levelsIndices, float[] levelsErrors) {
+        this.levelsIndices = levelsIndices;
+        this.levelsErrors = levelsErrors;
+    }
+
+    /**
+     * Create GPU mesh with its levels of detail from the data.
+     *
+     * @return created mesh
+     */
+    public Mesh createMesh() {
+        return createMesh(0);
+    }
+
+    /**
+     * Create GPU mesh with its levels of detail from the data, a skinned mesh can be drawn instanced.
+     *
+     * @param instancesAmount maximal amount of instances drawn by one call of a skinned mesh, 0 if the mesh should be
+     *                        drawn item by item
+     * @return created mesh
+     */
+    public Mesh createMesh(int instancesAmount) {
+        Mesh mesh;
+
+        if (jointIndices == null || weights == null)
+            mesh = new Mesh(positions, textCoords, normals, indices);
+        else if (instancesAmount > 0)
+            mesh = new InstancedMesh(positions, textCoords, normals, indices, jointIndices, weights, instancesAmount);
+        else
+            mesh = new Mesh(positions, textCoords, normals, indices, jointIndices, weights);
+
+        if (levelsIndices.length > 0) {
+            Mesh[] levels = new Mesh[levelsIndices.length];
+
+            for (int i = 0; i < levels.length; i++)
+                levels[i] = mesh instanceof InstancedMesh
+                        ? new InstancedMesh((InstancedMesh) mesh, levelsIndices[i])
+                        : new Mesh(mesh, levelsIndices[i]);
+
+            mesh.setLevelsOfDetail(levels, levelsErrors);
+        }
+
+        return mesh;
+    }
+
+    /**
+     * Free native memory of the data.
+     */
+    public void free() {
+        if (!buffersOwner)
+            return;
+
+        NativeMemory.free(positions);
+        NativeMemory.free(textCoords);
+        NativeMemory.free(normals);
+        NativeMemory.free(indices);
+        NativeMemory.free(jointIndices);
+        NativeMemory.free(weights);
+
+        for (IntBuffer levelIndices : levelsIndices)
+            NativeMemory.free(levelIndices);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.hse.graphics.model;
 
 import org.lwjgl.system.MemoryStack;
+import ru.hse.engine.utils.NativeMemory;
 import ru.hse.engine.utils.Utils;
 
 import java.nio.ByteBuffer;
@@ -8,6 +9,7 @@ import java.nio.IntBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
 import static org.lwjgl.opengl.GL30.glGenerateMipmap;
 import static org.lwjgl.stb.STBImage.*;
 import static org.lwjgl.system.MemoryStack.stackPush;
@@ -50,10 +52,19 @@ public class Texture {
     }
 
     public Texture(String fileName) throws Exception {
-        this(Utils.ioResourceToByteBuffer(fileName, 1024));
+        this(Utils.ioResourceToByteBuffer(fileName, 1024), true);
     }
 
+    /**
+     * Creates a texture from an encoded image. The image data is not freed.
+     *
+     * @param imageData encoded image
+     */
     public Texture(ByteBuffer imageData) {
+        this(imageData, false);
+    }
+
+    private Texture(ByteBuffer imageData, boolean imageDataOwner) {
         try (MemoryStack stack = stackPush()) {
             IntBuffer w = stack.mallocInt(1);
             IntBuffer h = stack.mallocInt(1);
@@ -80,8 +91,45 @@ public class Texture {
             // Generate Mip Map
             glGenerateMipmap(GL_TEXTURE_2D);
 
-            stbi_image_free(imageData);
+            if (decodedImage != null)
+                stbi_image_free(decodedImage);
+        } finally {
+            if (imageDataOwner)
+                NativeMemory.free(imageData);
+        }
+    }
+
+    /**
+     * Creates a texture from decoded pixels. The data is not freed by the texture.
+     * Stored mipmap levels are uploaded as is, otherwise the mipmaps are generated.
+     *
+     * @param textureData decoded texture
+     */
+    public Texture(TextureData textureData) {
+        this.width = textureData.getWidth();
+        this.height = textureData.getHeight();
+
+        int format = textureData.getChannelsAmount() == 3 ? GL_RGB : GL_RGBA;
+        int levelsAmount = textureData.getLevelsAmount();
+
+        this.id = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, this.id);
+
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+
+        for (int level = 0; level < levelsAmount; level++) {
+            glTexImage2D(GL_TEXTURE_2D, level, format, TextureData.calculateLevelSize(this.width, level),
+                    TextureData.calculateLevelSize(this.height, level), 0, format, GL_UNSIGNED_BYTE,
+                    textureData.getLevel(level));
         }
+
+        if (levelsAmount > 1)
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, levelsAmount - 1);
+        else
+            glGenerateMipmap(GL_TEXTURE_2D);
     }
 
     public int getNumCols() {
@@ -0,0 +1,259 @@
+package ru.hse.graphics.model;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.engine.utils.Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.stb.STBImageResize.stbir_resize_uint8;
+
+/**
+ * CPU-side decoded texture representation class.
+ * <p>
+ * Decoding does not need an OpenGL context, so it can be done by a worker thread, while the texture itself is
+ * created from the data by the thread owning the context. The data has either only the base level of the texture,
+ * or its full mipmap chain with every level half the size of the previous one down to 1x1.
+ */
+public class TextureData {
+    private static final int STB_IMAGE_ALLOCATION = 0;
+
+    private static final int MEMORY_UTIL_ALLOCATION = 1;
+
+    private static final int NO_ALLOCATION = 2;
+
+    private final int width;
+
+    private final int height;
+
+    private final int channelsAmount;
+
+    private final ByteBuffer[] levels;
+
+    private final int allocation;
+
+    /**
+     * The class' constructor.
+     *
+     * @param width          width of the texture
+     * @param height         height of the texture
+     * @param channelsAmount amount of channels, 3 for RGB or 4 for RGBA
+     * @param levels         pixels of the mipmap levels
+     * @param allocation     allocator of the pixels
+     */
+    private TextureData(int width, int height, int channelsAmount, ByteBuffer[] levels, int allocation) {
+        this.width = width;
+        this.height = height;
+        this.channelsAmount = channelsAmount;
+        this.levels = levels;
+        this.allocation = allocation;
+    }
+
+    /**
+     * The class' constructor for pixels which are not owned by the data, e.g. memory-mapped.
+     *
+     * @param width          width of the texture
+     * @param height         height of the texture
+     * @param channelsAmount amount of channels, 3 for RGB or 4 for RGBA
+     * @param levels         pixels of the mipmap levels
+     */
+    public TextureData(int width, int height, int channelsAmount, ByteBuffer[] levels) {
+        this(width, height, channelsAmount, levels, NO_ALLOCATION);
+    }
+
+    /**
+     * Decode texture image file.
+     *
+     * @param path path to the image
+     * @return decoded texture
+     * @throws Exception an unhandled exception
+     */
+    public static TextureData decode(String path) throws Exception {
+        return decode(path, 0);
+    }
+
+    /**
+     * Decode texture image file, downscaling it if it is larger than the maximal size.
+     *
+     * @param path        path to the image
+     * @param maximalSize maximal width and height or 0 if the size is not limited
+     * @return decoded RGBA texture without mipmaps
+     * @throws Exception an unhandled exception
+     */
+    public static TextureData decode(String path, int maximalSize) throws Exception {
+        ByteBuffer imageData = Utils.ioResourceToByteBuffer(path, 1024);
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            ByteBuffer pixels = stbi_load_from_memory(imageData, width, height, channels, 4);
+
+            if (pixels == null)
+                throw new Exception("Error loading texture " + path + ": " + stbi_failure_reason());
+
+            NativeMemory.track(NativeMemory.Tag.TEXTURE, MemoryUtil.memAddress(pixels), pixels.capacity());
+
+            TextureData textureData = new TextureData(width.get(0), height.get(0), 4, new ByteBuffer[]{pixels},
+                    STB_IMAGE_ALLOCATION);
+
+            if (maximalSize > 0 && Math.max(textureData.width, textureData.height) > maximalSize)
+                return textureData.downscale(maximalSize);
+
+            return textureData;
+        } finally {
+            NativeMemory.free(imageData);
+        }
+    }
+
+    /**
+     * Downscale the texture keeping its aspect ratio. The data is freed.
+     *
+     * @param maximalSize maximal width and height
+     * @return downscaled texture
+     * @throws Exception an unhandled exception
+     */
+    private TextureData downscale(int maximalSize) throws Exception {
+        float factor = (float) maximalSize / Math.max(width, height);
+
+        int scaledWidth = Math.max(1, Math.round(width * factor));
+        int scaledHeight = Math.max(1, Math.round(height * factor));
+
+        ByteBuffer scaledPixels = NativeMemory.alloc(NativeMemory.Tag.TEXTURE,
+                scaledWidth * scaledHeight * channelsAmount);
+
+        try {
+            if (!stbir_resize_uint8(levels[0], width, height, 0, scaledPixels, scaledWidth, scaledHeight, 0,
+                    channelsAmount)) {
+                NativeMemory.free(scaledPixels);
+
+                throw new Exception("Error downscaling texture");
+            }
+        } finally {
+            free();
+        }
+
+        return new TextureData(scaledWidth, scaledHeight, channelsAmount, new ByteBuffer[]{scaledPixels},
+                MEMORY_UTIL_ALLOCATION);
+    }
+
+    /**
+     * Check if the texture is fully opaque, so its alpha channel can be dropped.
+     *
+     * @return true if the texture has no alpha channel or its alpha is 255 everywhere and false otherwise
+     */
+    public boolean isOpaque() {
+        if (channelsAmount < 4)
+            return true;
+
+        ByteBuffer pixels = levels[0];
+
+        for (int i = 3; i < pixels.limit(); i += 4)
+            if (pixels.get(i) != (byte) 0xFF)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Calculate amount of levels in the full mipmap chain.
+     *
+     * @param width  width of the base level
+     * @param height height of the base level
+     * @return amount of levels
+     */
+    public static int calculateLevelsAmount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * Calculate size of a mipmap level.
+     *
+     * @param size  size of the base level
+     * @param level level
+     * @return size of the level
+     */
+    public static int calculateLevelSize(int size, int level) {
+        return Math.max(1, size >> level);
+    }
+
+    /**
+     * Width getter.
+     *
+     * @return width of the texture
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Height getter.
+     *
+     * @return height of the texture
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Channels amount getter.
+     *
+     * @return amount of channels, 3 for RGB or 4 for RGBA
+     */
+    public int getChannelsAmount() {
+        return channelsAmount;
+    }
+
+    /**
+     * Levels amount getter.
+     *
+     * @return amount of mipmap levels in the data
+     */
+    public int getLevelsAmount() {
+        return levels.length;
+    }
+
+    /**
+     * Getter of the given mipmap level.
+     *
+     * @param level level
+     * @return pixels of the level
+     */
+    public ByteBuffer getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Pixels getter.
+     *
+     * @return pixels of the base level
+     */
+    public ByteBuffer getPixels() {
+        return levels[0];
+    }
+
+    /**
+     * Create GPU texture from the data.
+     *
+     * @return created texture
+     */
+    public Texture createTexture() {
+        return new Texture(this);
+    }
+
+    /**
+     * Free native memory of the data.
+     */
+    public void free() {
+        if (allocation == STB_IMAGE_ALLOCATION) {
+            NativeMemory.untrack(MemoryUtil.memAddress0(levels[0]));
+
+            stbi_image_free(levels[0]);
+        } else if (allocation == MEMORY_UTIL_ALLOCATION)
+            NativeMemory.free(levels[0]);
+    }
+}
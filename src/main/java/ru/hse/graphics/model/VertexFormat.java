@@ -0,0 +1,286 @@
+package ru.hse.graphics.model;
+
+import ru.hse.engine.utils.NativeMemory;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.GL_HALF_FLOAT;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
+
+/**
+ * Interleaved vertex format.
+ * <p>
+ * Every vertex is a position of three floats, texture coordinates of two half floats and a normal encoded
+ * octahedrally into two normalised shorts. A skinned vertex also has four joint indices as unsigned bytes and its
+ * influences as four unsigned bytes: the first three weights normalised and the amount of the vertex's influences,
+ * so the shaders blend only the real influences. The weights are quantised to sum up to one exactly, so the fourth
+ * weight is one minus the others. Meshes with joint indices above 255 use the wide skinned format with joint indices
+ * as unsigned shorts instead.
+ */
+public enum VertexFormat {
+    STATIC(20, false, 0),
+    SKINNED(28, true, Byte.BYTES),
+    SKINNED_WIDE(32, true, Short.BYTES);
+
+    public static final int POSITION_LOCATION = 0;
+
+    public static final int TEXTURE_COORDINATES_LOCATION = 1;
+
+    public static final int NORMAL_LOCATION = 2;
+
+    public static final int WEIGHTS_LOCATION = 3;
+
+    public static final int JOINT_INDICES_LOCATION = 4;
+
+    private static final int TEXTURE_COORDINATES_OFFSET = 12;
+
+    private static final int NORMAL_OFFSET = 16;
+
+    private static final int JOINT_INDICES_OFFSET = 20;
+
+    private static final int MAX_NARROW_JOINT_INDEX = 0xFF;
+
+    private static final int MAX_WIDE_JOINT_INDEX = 0xFFFF;
+
+    private final int stride;
+
+    private final boolean skinned;
+
+    private final int jointIndexSize;
+
+    private final int weightsOffset;
+
+    VertexFormat(int stride, boolean skinned, int jointIndexSize) {
+        this.stride = stride;
+        this.skinned = skinned;
+        this.jointIndexSize = jointIndexSize;
+
+        weightsOffset = JOINT_INDICES_OFFSET + Mesh.MAX_WEIGHTS * jointIndexSize;
+    }
+
+    /**
+     * Choose skinned format wide enough for the joint indices.
+     *
+     * @param jointIndices joint indices
+     * @return SKINNED if all the joint indices fit into unsigned bytes and SKINNED_WIDE otherwise
+     */
+    public static VertexFormat chooseSkinned(IntBuffer jointIndices) {
+        int maxJointIndex = 0;
+
+        for (int i = jointIndices.position(); i < jointIndices.limit(); i++)
+            maxJointIndex = Math.max(maxJointIndex, jointIndices.get(i));
+
+        if (maxJointIndex > MAX_WIDE_JOINT_INDEX)
+            throw new IllegalArgumentException("Joint index " + maxJointIndex + " does not fit into the vertex format");
+
+        return maxJointIndex > MAX_NARROW_JOINT_INDEX ? SKINNED_WIDE : SKINNED;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public boolean isSkinned() {
+        return skinned;
+    }
+
+    /**
+     * Pack vertex streams into interleaved vertices.
+     *
+     * @param positions    vertex positions
+     * @param textCoords   texture coordinates
+     * @param normals      vertex normals, may be empty
+     * @param jointIndices joint indices with MAX_WEIGHTS elements per vertex fitting into the format, ignored by the
+     *                     static format
+     * @param weights      weights sorted by descending weight with MAX_WEIGHTS elements per vertex, ignored by the
+     *                     static format
+     * @return vertices allocated with NativeMemory
+     */
+    public ByteBuffer pack(FloatBuffer positions, FloatBuffer textCoords, FloatBuffer normals, IntBuffer jointIndices,
+                           FloatBuffer weights) {
+        int verticesAmount = positions.remaining() / 3;
+
+        ByteBuffer vertices = NativeMemory.alloc(NativeMemory.Tag.MESH, verticesAmount * stride);
+
+        int positionsStart = positions.position();
+        int textCoordsStart = textCoords.position();
+        int normalsStart = normals.position();
+
+        boolean hasTextCoords = textCoords.remaining() >= 2 * verticesAmount;
+        boolean hasNormals = normals.remaining() >= 3 * verticesAmount;
+
+        for (int i = 0; i < verticesAmount; i++) {
+            int vertex = i * stride;
+
+            vertices.putFloat(vertex, positions.get(positionsStart + 3 * i));
+            vertices.putFloat(vertex + 4, positions.get(positionsStart + 3 * i + 1));
+            vertices.putFloat(vertex + 8, positions.get(positionsStart + 3 * i + 2));
+
+            if (hasTextCoords) {
+                vertices.putShort(vertex + TEXTURE_COORDINATES_OFFSET,
+                        toHalfFloat(textCoords.get(textCoordsStart + 2 * i)));
+                vertices.putShort(vertex + TEXTURE_COORDINATES_OFFSET + 2,
+                        toHalfFloat(textCoords.get(textCoordsStart + 2 * i + 1)));
+            } else
+                vertices.putInt(vertex + TEXTURE_COORDINATES_OFFSET, 0);
+
+            if (hasNormals)
+                putNormal(vertices, vertex + NORMAL_OFFSET, normals.get(normalsStart + 3 * i),
+                        normals.get(normalsStart + 3 * i + 1), normals.get(normalsStart + 3 * i + 2));
+            else
+                vertices.putInt(vertex + NORMAL_OFFSET, 0);
+
+            if (skinned)
+                putInfluences(vertices, vertex, jointIndexSize, weightsOffset, jointIndices,
+                        jointIndices.position() + Mesh.MAX_WEIGHTS * i, weights,
+                        weights.position() + Mesh.MAX_WEIGHTS * i);
+        }
+
+        return vertices;
+    }
+
+    /**
+     * Describe attributes of the vertices in the bound array buffer to the bound vertex array.
+     */
+    public void setAttributes() {
+        glVertexAttribPointer(POSITION_LOCATION, 3, GL_FLOAT, false, stride, 0);
+        glEnableVertexAttribArray(POSITION_LOCATION);
+
+        glVertexAttribPointer(TEXTURE_COORDINATES_LOCATION, 2, GL_HALF_FLOAT, false, stride,
+                TEXTURE_COORDINATES_OFFSET);
+        glEnableVertexAttribArray(TEXTURE_COORDINATES_LOCATION);
+
+        glVertexAttribPointer(NORMAL_LOCATION, 2, GL_SHORT, true, stride, NORMAL_OFFSET);
+        glEnableVertexAttribArray(NORMAL_LOCATION);
+
+        if (!skinned)
+            return;
+
+        glVertexAttribPointer(WEIGHTS_LOCATION, 4, GL_UNSIGNED_BYTE, true, stride, weightsOffset);
+        glEnableVertexAttribArray(WEIGHTS_LOCATION);
+
+        glVertexAttribIPointer(JOINT_INDICES_LOCATION, 4, jointIndexSize == Byte.BYTES ? GL_UNSIGNED_BYTE
+                : GL_UNSIGNED_SHORT, stride, JOINT_INDICES_OFFSET);
+        glEnableVertexAttribArray(JOINT_INDICES_LOCATION);
+    }
+
+    /**
+     * Put octahedrally encoded normal.
+     *
+     * @param vertices vertices
+     * @param index    index of the encoded normal
+     * @param x        x coordinate of the normal
+     * @param y        y coordinate of the normal
+     * @param z        z coordinate of the normal
+     */
+    private static void putNormal(ByteBuffer vertices, int index, float x, float y, float z) {
+        float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+
+        float u = 0;
+        float v = 0;
+
+        if (length > 0) {
+            u = x / length;
+            v = y / length;
+
+            if (z < 0) {
+                float foldedU = (1 - Math.abs(v)) * (u >= 0 ? 1 : -1);
+                float foldedV = (1 - Math.abs(u)) * (v >= 0 ? 1 : -1);
+
+                u = foldedU;
+                v = foldedV;
+            }
+        }
+
+        vertices.putShort(index, (short) Math.round(Math.max(-1, Math.min(1, u)) * Short.MAX_VALUE));
+        vertices.putShort(index + 2, (short) Math.round(Math.max(-1, Math.min(1, v)) * Short.MAX_VALUE));
+    }
+
+    /**
+     * Put joint indices, the first weights quantised so all the weights sum up to one exactly and the amount of the
+     * influences in place of the last weight. The influences are the leading non-zero weights, as the weights are
+     * sorted and padded with zeros.
+     *
+     * @param vertices          vertices
+     * @param vertex            index of the vertex
+     * @param jointIndexSize    size of a joint index in bytes
+     * @param weightsOffset     offset of the weights in the vertex
+     * @param jointIndices      joint indices
+     * @param jointIndicesStart index of the vertex's first joint index
+     * @param weights           weights sorted by descending weight
+     * @param weightsStart      index of the vertex's first weight
+     */
+    private static void putInfluences(ByteBuffer vertices, int vertex, int jointIndexSize, int weightsOffset,
+                                      IntBuffer jointIndices, int jointIndicesStart, FloatBuffer weights,
+                                      int weightsStart) {
+        int[] quantizedWeights = new int[Mesh.MAX_WEIGHTS];
+
+        int influencesAmount = 0;
+        int weightsSum = 0;
+
+        for (int i = 0; i < Mesh.MAX_WEIGHTS; i++) {
+            float weight = weights.get(weightsStart + i);
+
+            if (weight > 0 && influencesAmount == i)
+                influencesAmount++;
+
+            quantizedWeights[i] = Math.round(Math.max(0, Math.min(1, weight)) * 255);
+
+            weightsSum += quantizedWeights[i];
+
+            int jointIndex = jointIndices.get(jointIndicesStart + i);
+
+            if (jointIndexSize == Byte.BYTES)
+                vertices.put(vertex + JOINT_INDICES_OFFSET + i, (byte) jointIndex);
+            else
+                vertices.putShort(vertex + JOINT_INDICES_OFFSET + Short.BYTES * i, (short) jointIndex);
+        }
+
+        if (weightsSum > 0)
+            quantizedWeights[0] = Math.max(0, Math.min(255, quantizedWeights[0] + 255 - weightsSum));
+
+        for (int i = 0; i < Mesh.MAX_WEIGHTS - 1; i++)
+            vertices.put(vertex + weightsOffset + i, (byte) quantizedWeights[i]);
+
+        vertices.put(vertex + weightsOffset + Mesh.MAX_WEIGHTS - 1, (byte) influencesAmount);
+    }
+
+    /**
+     * Convert float to half float rounding to nearest.
+     *
+     * @param value float
+     * @return bits of the half float
+     */
+    private static short toHalfFloat(float value) {
+        int bits = Float.floatToIntBits(value);
+
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent >= 31) {
+            if (((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0)
+                return (short) (sign | 0x7E00);
+
+            return (short) (sign | 0x7C00);
+        }
+
+        if (exponent <= 0) {
+            if (exponent < -10)
+                return (short) sign;
+
+            mantissa |= 0x800000;
+
+            int shift = 14 - exponent;
+
+            return (short) (sign | ((mantissa + (1 << (shift - 1))) >> shift));
+        }
+
+        return (short) ((sign | (exponent << 10) | (mantissa >> 13)) + ((mantissa >> 12) & 1));
+    }
+}
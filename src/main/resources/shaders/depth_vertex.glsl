@@ -1,49 +1,154 @@
 #version 330
 
 const int MAX_WEIGHTS = 4;
-const int MAX_JOINTS = 150;
+const int MAX_JOINT_VECTORS = 600;
+const int MATRIX_ENCODING = 0;
+const int AFFINE_ENCODING = 1;
+const int DUAL_QUATERNION_ENCODING = 2;
 
 layout (location=0) in vec3 position;
 layout (location=1) in vec2 texCoord;
-layout (location=2) in vec3 vertexNormal;
+layout (location=2) in vec2 encodedNormal;
 layout (location=3) in vec4 jointWeights;
 layout (location=4) in ivec4 jointIndices;
 layout (location=5) in mat4 modelInstancedMatrix;
+layout (location=11) in float jointsOffsetInstanced;
+layout (location=12) in vec3 bakedFramesInstanced;
 
 uniform int isInstanced;
 uniform mat4 modelNonInstancedMatrix;
 uniform mat4 lightViewMatrix;
-uniform mat4 jointsMatrix[MAX_JOINTS];
+uniform vec4 jointVectors[MAX_JOINT_VECTORS];
+uniform int jointsEncoding;
+uniform samplerBuffer jointsPalette;
+uniform samplerBuffer animationTexture;
 uniform mat4 orthoProjectionMatrix;
 
+// Encoded joints blended for the vertex
+vec4 blendedJoint[4];
+
+// Amount of vectors encoding a joint
+int jointVectorsAmount()
+{
+    return jointsEncoding == MATRIX_ENCODING ? 4 : jointsEncoding == AFFINE_ENCODING ? 3 : 2;
+}
+
+// Adds encoded joint to the blend, dual quaternions are kept in the hemisphere of the blend
+void blendJoint(vec4 v0, vec4 v1, vec4 v2, vec4 v3, float weight)
+{
+    if (jointsEncoding == DUAL_QUATERNION_ENCODING && dot(blendedJoint[0], v0) < 0)
+    {
+        weight = -weight;
+    }
+    blendedJoint[0] += weight * v0;
+    blendedJoint[1] += weight * v1;
+    blendedJoint[2] += weight * v2;
+    blendedJoint[3] += weight * v3;
+}
+
+// Adds joint of the uniform array to the blend
+void blendUniformJoint(int joint, float weight)
+{
+    int vectors = jointVectorsAmount();
+    int index = vectors * joint;
+    blendJoint(jointVectors[index], jointVectors[index + 1], vectors > 2 ? jointVectors[index + 2] : vec4(0),
+               vectors > 3 ? jointVectors[index + 3] : vec4(0), weight);
+}
+
+// Adds joint of a texture buffer to the blend, a vector is one texel
+void blendTextureJoint(samplerBuffer joints, int joint, float weight)
+{
+    int vectors = jointVectorsAmount();
+    int texel = vectors * joint;
+    blendJoint(texelFetch(joints, texel), texelFetch(joints, texel + 1),
+               vectors > 2 ? texelFetch(joints, texel + 2) : vec4(0),
+               vectors > 3 ? texelFetch(joints, texel + 3) : vec4(0), weight);
+}
+
+// Adds joint of an instance to the blend, either interpolated between two frames of the animation texture or from
+// the palette
+void blendInstanceJoint(int joint, float weight)
+{
+    if (bakedFramesInstanced.x < 0)
+    {
+        blendTextureJoint(jointsPalette, int(jointsOffsetInstanced) + joint, weight);
+    }
+    else
+    {
+        float factor = bakedFramesInstanced.z;
+        blendTextureJoint(animationTexture, int(bakedFramesInstanced.x) + joint, weight * (1.0 - factor));
+        if (factor > 0)
+        {
+            blendTextureJoint(animationTexture, int(bakedFramesInstanced.y) + joint, weight * factor);
+        }
+    }
+}
+
+// Decodes the blended joint into a matrix: columns of a matrix, rows of an affine matrix or a dual quaternion
+mat4 decodeBlendedJoint()
+{
+    if (jointsEncoding == MATRIX_ENCODING)
+    {
+        return mat4(blendedJoint[0], blendedJoint[1], blendedJoint[2], blendedJoint[3]);
+    }
+    if (jointsEncoding == AFFINE_ENCODING)
+    {
+        return transpose(mat4(blendedJoint[0], blendedJoint[1], blendedJoint[2], vec4(0, 0, 0, 1)));
+    }
+    float len = length(blendedJoint[0]);
+    vec4 r = blendedJoint[0] / len;
+    vec4 d = blendedJoint[1] / len;
+    vec3 translation = 2.0 * (r.w * d.xyz - d.w * r.xyz + cross(r.xyz, d.xyz));
+    return mat4(1.0 - 2.0 * (r.y * r.y + r.z * r.z), 2.0 * (r.x * r.y + r.w * r.z), 2.0 * (r.x * r.z - r.w * r.y), 0,
+                2.0 * (r.x * r.y - r.w * r.z), 1.0 - 2.0 * (r.x * r.x + r.z * r.z), 2.0 * (r.y * r.z + r.w * r.x), 0,
+                2.0 * (r.x * r.z + r.w * r.y), 2.0 * (r.y * r.z - r.w * r.x), 1.0 - 2.0 * (r.x * r.x + r.y * r.y), 0,
+                translation, 1);
+}
+
+// Blends joints of the vertex, returns false if the vertex is not skinned. The last weight component holds the
+// amount of the vertex's influences and the last weight completes the others to one
+bool blendVertexJoints(bool instanced)
+{
+    for (int i = 0; i < 4; i++)
+    {
+        blendedJoint[i] = vec4(0);
+    }
+    int influences = min(int(round(jointWeights.w * 255.0)), MAX_WEIGHTS);
+    for (int i = 0; i < influences; i++)
+    {
+        float weight = i < MAX_WEIGHTS - 1 ? jointWeights[i] : 1.0 - jointWeights.x - jointWeights.y - jointWeights.z;
+        if (instanced)
+        {
+            blendInstanceJoint(jointIndices[i], weight);
+        }
+        else
+        {
+            blendUniformJoint(jointIndices[i], weight);
+        }
+    }
+    return influences > 0;
+}
+
 void main()
 {
-    vec4 initPos = vec4(0, 0, 0, 0);
+    vec4 initPos = vec4(position, 1.0);
     mat4 modelMatrix;
+    bool skinned;
     if ( isInstanced > 0 )
     {
         modelMatrix = modelInstancedMatrix;
-        initPos = vec4(position, 1.0);
+
+        skinned = (jointsOffsetInstanced >= 0 || bakedFramesInstanced.x >= 0) && blendVertexJoints(true);
     }
     else
     {
         modelMatrix = modelNonInstancedMatrix;
 
-        int count = 0;
-        for(int i = 0; i < MAX_WEIGHTS; i++)
-        {
-            float weight = jointWeights[i];
-            if(weight > 0) {
-                count++;
-                int jointIndex = jointIndices[i];
-                vec4 tmpPos = jointsMatrix[jointIndex] * vec4(position, 1.0);
-                initPos += weight * tmpPos;
-            }
-        }
-        if (count == 0)
-        {
-            initPos = vec4(position, 1.0);
-        }
+        skinned = blendVertexJoints(false);
+    }
+    if (skinned)
+    {
+        initPos = decodeBlendedJoint() * initPos;
     }
     gl_Position = orthoProjectionMatrix * lightViewMatrix * modelMatrix * initPos;
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package ru.hse.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArgumentsParserTest {
+    private static final Settings SETTINGS = Settings.getInstance();
+
+    @Test
+    void commandLineAlternatesFlagsAndValues() {
+        String skyboxPath = SETTINGS.getSkyboxPath();
+
+        SETTINGS.setSkyboxPath("skybox.obj");
+
+        String[] tokens;
+
+        try {
+            tokens = ArgumentsParser.createCommandLine().split(" ");
+        } finally {
+            SETTINGS.setSkyboxPath(skyboxPath);
+        }
+
+        assertEquals(0, tokens.length % 2);
+
+        for (int i = 0; i < tokens.length; i += 2) {
+            assertTrue(tokens[i].startsWith("-"), tokens[i]);
+            assertFalse(tokens[i + 1].isEmpty(), tokens[i]);
+        }
+    }
+
+    @Test
+    void commandLineKeepsValuesOfEveryFlag() {
+        Map<String, String> values = parse(ArgumentsParser.createCommandLine());
+
+        assertEquals(String.valueOf(SETTINGS.isBakeCacheEnabled()), values.get("-bc"));
+        assertEquals(String.valueOf(SETTINGS.getBakingParallelism()), values.get("-bp"));
+        assertEquals(String.valueOf(SETTINGS.isAnimationSampled()), values.get("-as"));
+        assertEquals(String.valueOf(SETTINGS.isAnimationCompressed()), values.get("-acmp"));
+        assertEquals(String.valueOf(SETTINGS.getInstancesPerDraw()), values.get("-ipd"));
+        assertEquals(String.valueOf(SETTINGS.isAnimationTextureEnabled()), values.get("-atex"));
+        assertEquals(SETTINGS.getSkyboxColorAsString(), values.get("-sc"));
+        assertEquals(SETTINGS.getJointsEncoding().name().toLowerCase(), values.get("-je"));
+    }
+
+    /**
+     * Split the command line into flags and their values.
+     *
+     * @param commandLine command line
+     * @return values by flags
+     */
+    private static Map<String, String> parse(String commandLine) {
+        String[] tokens = commandLine.split(" ");
+
+        Map<String, String> values = new HashMap<>();
+
+        for (int i = 0; i + 1 < tokens.length; i += 2)
+            values.put(tokens[i], tokens[i + 1]);
+
+        return values;
+    }
+}
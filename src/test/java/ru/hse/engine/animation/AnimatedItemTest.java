@@ -0,0 +1,167 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+import ru.hse.graphics.model.Mesh;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimatedItemTest {
+    private static final float TOLERANCE = 1e-5f;
+
+    private final List<AnimatedFrame> frames = AnimatedFrame.createFrames(5, 1);
+
+    private final Animation animation = new Animation("clip", frames, new float[]{0, 1, 2, 3, 4}, 4, 1);
+
+    @Test
+    void currentFrameIsReusedUntilUpdate() {
+        AnimatedItem item = new AnimatedItem(new Mesh[0], Collections.singletonMap("clip", animation));
+
+        AnimatedFrame frame = item.getCurrentFrame();
+
+        assertSame(frames.get(0), frame);
+        assertSame(frame, item.getCurrentFrame());
+
+        item.update(1);
+
+        assertSame(frames.get(1), item.getCurrentFrame());
+    }
+
+    @Test
+    void currentFrameFollowsInterpolationAlpha() {
+        AnimatedItem item = new AnimatedItem(new Mesh[0], Collections.singletonMap("clip", animation));
+
+        item.update(2);
+
+        assertSame(frames.get(2), item.getCurrentFrame());
+
+        item.getPlayer().setInterpolationAlpha(0);
+
+        assertSame(frames.get(0), item.getCurrentFrame());
+    }
+
+    @Test
+    void instancesHaveOwnJointsOffsets() {
+        AnimatedItem item = new AnimatedItem(new Mesh[0], Collections.singletonMap("clip", animation));
+        AnimatedItem instance = item.createInstance();
+
+        assertEquals(-1, item.getJointsOffset());
+
+        item.setJointsOffset(16);
+
+        assertEquals(16, item.getJointsOffset());
+        assertEquals(-1, instance.getJointsOffset());
+    }
+
+    @Test
+    void crossFadeWeightsChangeLinearly() {
+        AnimatedItem item = createFadingItem();
+
+        item.crossFade("right", 2);
+
+        AnimationState left = item.getState("left");
+        AnimationState right = item.getState("right");
+
+        assertSame(right, item.getCurrentState());
+        assertTrue(item.isFading());
+        assertEquals(1, left.getWeight(1), TOLERANCE);
+        assertEquals(0, right.getWeight(1), TOLERANCE);
+
+        item.update(1);
+
+        assertEquals(0.5f, left.getWeight(1), TOLERANCE);
+        assertEquals(0.5f, right.getWeight(1), TOLERANCE);
+        assertEquals(0.75f, left.getWeight(0.5f), TOLERANCE);
+        assertEquals(0.25f, right.getWeight(0.5f), TOLERANCE);
+
+        item.update(1);
+
+        assertEquals(0, left.getWeight(1), TOLERANCE);
+        assertEquals(1, right.getWeight(1), TOLERANCE);
+    }
+
+    @Test
+    void fadedOutAnimationIsDeactivated() {
+        AnimatedItem item = createFadingItem();
+
+        item.crossFade("right", 1);
+        item.update(1);
+
+        assertTrue(item.isFading());
+
+        item.update(1);
+
+        assertFalse(item.isFading());
+        assertEquals(4, item.getCurrentFrame().getJointMatrix(0, new Matrix4f()).m30(), TOLERANCE);
+    }
+
+    @Test
+    void crossFadeFrameBlendsByWeights() {
+        AnimatedItem item = createFadingItem();
+
+        item.crossFade("right", 4);
+        item.update(1);
+
+        assertEquals(1, item.getCurrentFrame().getJointMatrix(0, new Matrix4f()).m30(), TOLERANCE);
+
+        item.getPlayer().setInterpolationAlpha(0);
+
+        assertEquals(0, item.getCurrentFrame().getJointMatrix(0, new Matrix4f()).m30(), TOLERANCE);
+    }
+
+    @Test
+    void bakedAnimationsAreSwitchedWithoutFading() {
+        Map<String, Animation> animations = new LinkedHashMap<>();
+        animations.put("first", animation);
+        animations.put("second", new Animation("second", AnimatedFrame.createFrames(2, 1), new float[]{0, 1}, 2, 1));
+
+        AnimatedItem item = new AnimatedItem(new Mesh[0], animations);
+
+        item.crossFade("second", 1);
+
+        assertFalse(item.isFading());
+        assertEquals(1, item.getCurrentState().getWeight(1), TOLERANCE);
+        assertSame(animations.get("second"), item.getCurrentAnimation());
+    }
+
+    /**
+     * Create an item playing the left clip, its two sampled clips hold the root node at 0 and 4 along the x axis.
+     *
+     * @return animated item
+     */
+    private static AnimatedItem createFadingItem() {
+        Skeleton skeleton = new Skeleton(new String[]{"root"}, new int[]{-1}, new Matrix4f[]{new Matrix4f()},
+                new int[][]{{0}}, new Matrix4f[]{new Matrix4f()}, new Matrix4f());
+
+        Map<String, Animation> animations = new LinkedHashMap<>();
+        animations.put("left", createStillAnimation(skeleton, "left", 0));
+        animations.put("right", createStillAnimation(skeleton, "right", 4));
+
+        AnimatedItem item = new AnimatedItem(new Mesh[0], animations);
+        item.getPlayer().setSpeed(1);
+
+        return item;
+    }
+
+    /**
+     * Create a sampled clip holding the root node at the given x.
+     *
+     * @param skeleton skeleton
+     * @param name     clip name
+     * @param x        translation of the root node along the x axis
+     * @return animation
+     */
+    private static Animation createStillAnimation(Skeleton skeleton, String name, float x) {
+        AnimationChannel channel = new AnimationChannel("root", new float[]{0, 1}, new float[]{x, 0, 0, x, 0, 0},
+                new float[0], new float[0], new float[0], new float[0]);
+
+        return new Animation(name, new AnimationBaker(skeleton, new AnimationChannel[]{channel}), 8, 1, true);
+    }
+}
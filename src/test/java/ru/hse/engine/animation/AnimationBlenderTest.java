@@ -0,0 +1,92 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationBlenderTest {
+    private static final float TOLERANCE = 1e-5f;
+
+    private final Skeleton skeleton = new Skeleton(new String[]{"root"}, new int[]{-1}, new Matrix4f[]{new Matrix4f()},
+            new int[][]{{0}}, new Matrix4f[]{new Matrix4f()}, new Matrix4f());
+
+    private final AnimationBlender blender = new AnimationBlender(skeleton);
+
+    @Test
+    void singleAnimationIsNotWeighted() {
+        blender.begin();
+        blender.add(createState("left", 2), 0.25f);
+
+        assertEquals(2, getBlendedTranslation(), TOLERANCE);
+    }
+
+    @Test
+    void animationsAreWeightedByTheirShares() {
+        blender.begin();
+        blender.add(createState("left", 0), 1);
+        blender.add(createState("right", 4), 3);
+
+        assertEquals(3, getBlendedTranslation(), TOLERANCE);
+    }
+
+    @Test
+    void blendIsIndependentOfOrder() {
+        blender.begin();
+        blender.add(createState("right", 4), 3);
+        blender.add(createState("left", 0), 1);
+        blender.add(createState("middle", 2), 4);
+
+        assertEquals(2.5f, getBlendedTranslation(), TOLERANCE);
+    }
+
+    @Test
+    void animationsWithoutWeightAreSkipped() {
+        blender.begin();
+        blender.add(createState("left", 0), 0);
+        blender.add(createState("right", 4), 1);
+        blender.add(createState("middle", 2), -1);
+
+        assertEquals(4, getBlendedTranslation(), TOLERANCE);
+    }
+
+    @Test
+    void emptyBlendIsRestPose() {
+        blender.begin();
+        blender.add(createState("right", 4), 0);
+
+        assertEquals(0, getBlendedTranslation(), TOLERANCE);
+    }
+
+    @Test
+    void acceptsSampledAnimationsOfItsSkeleton() {
+        assertTrue(blender.accepts(createState("left", 0).getAnimation()));
+        assertFalse(blender.accepts(new Animation("baked", AnimatedFrame.createFrames(1, 1), new float[]{0}, 1, 1)));
+    }
+
+    /**
+     * Finish the blend and read translation of the root node along the x axis from the blended frame.
+     *
+     * @return blended translation
+     */
+    private float getBlendedTranslation() {
+        return blender.end().getJointMatrix(0, new Matrix4f()).m30();
+    }
+
+    /**
+     * Create playback state of a clip holding the root node at the given x.
+     *
+     * @param name clip name
+     * @param x    translation of the root node along the x axis
+     * @return animation state
+     */
+    private AnimationState createState(String name, float x) {
+        AnimationChannel channel = new AnimationChannel("root", new float[]{0, 1}, new float[]{x, 0, 0, x, 0, 0},
+                new float[0], new float[0], new float[0], new float[0]);
+
+        return new AnimationState(new Animation(name, new AnimationBaker(skeleton, new AnimationChannel[]{channel}),
+                1, 1, true));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.hse.engine.animation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationStateTest {
+    private static final double TOLERANCE = 1e-9;
+
+    private final List<AnimatedFrame> frames = AnimatedFrame.createFrames(5, 1);
+
+    private final Animation animation = new Animation("clip", frames, new float[]{0, 1, 2, 3, 4}, 4, 2);
+
+    @Test
+    void loopedMoveIsInterpolatedThroughTheEnd() {
+        AnimationState state = new AnimationState(animation);
+
+        state.advance(1.5, true);
+        state.advance(1, true);
+
+        assertEquals(0.5, state.getTime(1), TOLERANCE);
+        assertEquals(1.75, state.getTime(0.25f), TOLERANCE);
+        assertEquals(0.25, state.getTime(0.75f), TOLERANCE);
+        assertFalse(state.isFinished());
+    }
+
+    @Test
+    void notLoopedMoveStopsAtTheEnd() {
+        AnimationState state = new AnimationState(animation);
+
+        state.advance(1.5, false);
+        state.advance(1, false);
+
+        assertTrue(state.isFinished());
+        assertEquals(2, state.getTime(1), TOLERANCE);
+        assertEquals(1.75, state.getTime(0.5f), TOLERANCE);
+        assertSame(frames.get(4), state.getFrame(1));
+    }
+
+    @Test
+    void finishedAnimationKeepsItsLastPose() {
+        AnimationState state = new AnimationState(animation);
+
+        state.advance(2.5, false);
+        state.advance(0.5, false);
+
+        for (float alpha = 0; alpha <= 1; alpha += 0.25f) {
+            assertEquals(2, state.getTime(alpha), TOLERANCE);
+            assertSame(frames.get(4), state.getFrame(alpha));
+        }
+    }
+
+    @Test
+    void speedScalesTheMove() {
+        AnimationState state = new AnimationState(animation);
+
+        state.setSpeed(0.5);
+        state.advance(1, true);
+
+        assertEquals(0.5, state.getTime(1), TOLERANCE);
+        assertSame(frames.get(1), state.getFrame(1));
+
+        state.setSpeed(-1);
+        state.advance(1, true);
+
+        assertEquals(0, state.getSpeed());
+        assertEquals(0.5, state.getTime(1), TOLERANCE);
+    }
+
+    @Test
+    void rewindStartsOver() {
+        AnimationState state = new AnimationState(animation);
+
+        state.advance(3, false);
+        state.rewind();
+
+        assertFalse(state.isFinished());
+        assertEquals(0, state.getTime(0.5f), TOLERANCE);
+        assertSame(frames.get(0), state.getFrame(1));
+    }
+
+    @Test
+    void weightFadesLinearly() {
+        AnimationState state = new AnimationState(animation);
+
+        state.setWeight(1);
+        state.fadeTo(0, 2);
+
+        state.updateWeight(0.5);
+
+        assertEquals(0.75f, state.getWeight(1), 1e-6f);
+        assertEquals(0.875f, state.getWeight(0.5f), 1e-6f);
+        assertFalse(state.isFadedOut());
+
+        state.updateWeight(2);
+
+        assertEquals(0, state.getWeight(1));
+        assertFalse(state.isFadedOut());
+
+        state.updateWeight(1);
+
+        assertTrue(state.isFadedOut());
+    }
+}
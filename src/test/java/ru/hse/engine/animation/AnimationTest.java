@@ -0,0 +1,107 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationTest {
+    private final Animation animation = new Animation("clip", AnimatedFrame.createFrames(4, 1),
+            new float[]{0, 1, 3, 6}, 8, 1);
+
+    @Test
+    void findsLastFrameNotLaterThanTime() {
+        assertEquals(0, animation.findFrame(-1));
+        assertEquals(0, animation.findFrame(0));
+        assertEquals(0, animation.findFrame(0.5));
+        assertEquals(1, animation.findFrame(1));
+        assertEquals(1, animation.findFrame(2.9));
+        assertEquals(2, animation.findFrame(3));
+        assertEquals(3, animation.findFrame(7.5));
+    }
+
+    @Test
+    void frameFactorFollowsUnevenKeys() {
+        assertEquals(0.5f, animation.getFrameFactor(2, 1, 2), 1e-6f);
+        assertEquals(1f / 3, animation.getFrameFactor(4, 2, 3), 1e-6f);
+        assertEquals(0, animation.getFrameFactor(3, 2, 3));
+    }
+
+    @Test
+    void frameFactorWrapsToFirstFrame() {
+        assertEquals(0.5f, animation.getFrameFactor(7, 3, 0), 1e-6f);
+    }
+
+    @Test
+    void frameFactorOfSameFrameIsZero() {
+        assertEquals(0, animation.getFrameFactor(7, 3, 3));
+    }
+
+    @Test
+    void durationInSeconds() {
+        assertEquals(8, animation.getDurationSeconds());
+        assertEquals(0, new Animation("empty", AnimatedFrame.createFrames(1, 1), new float[]{0}, 0, 0)
+                .getDurationSeconds());
+    }
+
+    @Test
+    void sampledClipKeepsItsChannelsAfterBaking() {
+        Animation sampled = createSampledAnimation(true);
+
+        sampled.bake();
+
+        assertTrue(sampled.isSampled());
+        assertTrue(sampled.isBlendable());
+        assertNotNull(sampled.getBaker());
+    }
+
+    @Test
+    void bakedClipDropsItsChannelsAfterBaking() {
+        Animation baked = createSampledAnimation(false);
+
+        assertFalse(baked.isBlendable());
+        assertFalse(baked.isReady());
+
+        baked.bake();
+
+        assertFalse(baked.isSampled());
+        assertTrue(baked.isReady());
+        assertNull(baked.getBaker());
+    }
+
+    @Test
+    void statesOfOneClipAreSampledIndependently() {
+        Animation sampled = createSampledAnimation(true);
+
+        AnimationState first = new AnimationState(sampled);
+        AnimationState second = new AnimationState(sampled);
+
+        first.advance(1, true);
+        second.advance(3, true);
+
+        Matrix4f transformation = new Matrix4f();
+
+        assertEquals(1, first.samplePose(1, new AnimationPose(1)).getTransformation(0, transformation).m30(),
+                1e-6f);
+        assertEquals(3, second.samplePose(1, new AnimationPose(1)).getTransformation(0, transformation).m30(),
+                1e-6f);
+    }
+
+    /**
+     * Create a one-node clip moving its node along the x axis by one unit per second.
+     *
+     * @param sampled true if the clip is sampled and false if its frames are baked
+     * @return animation
+     */
+    private static Animation createSampledAnimation(boolean sampled) {
+        Skeleton skeleton = new Skeleton(new String[]{"root"}, new int[]{-1}, new Matrix4f[]{new Matrix4f()},
+                new int[][]{{0}}, new Matrix4f[]{new Matrix4f()}, new Matrix4f());
+
+        AnimationChannel channel = new AnimationChannel("root", new float[]{0, 4}, new float[]{0, 0, 0, 4, 0, 0},
+                new float[0], new float[0], new float[0], new float[0]);
+
+        return new Animation("move", new AnimationBaker(skeleton, new AnimationChannel[]{channel}), 4, 1, sampled);
+    }
+}
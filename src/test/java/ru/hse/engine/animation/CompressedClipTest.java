@@ -0,0 +1,115 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.Test;
+import ru.hse.core.utils.Constants;
+import ru.hse.engine.animation.structure.AnimationChannel;
+import ru.hse.engine.animation.structure.Skeleton;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedClipTest {
+    private static final int KEYS_AMOUNT = 120;
+
+    private static final float TOLERANCE = 0.01f;
+
+    @Test
+    void clipIsSmallerWithinTolerances() {
+        CompressedClip clip = new CompressedClip(createBaker());
+
+        assertTrue(clip.getCompressionRatio() > 2);
+        assertTrue(clip.getMaximalPositionError() <= 2 * Constants.ANIMATION_POSITION_TOLERANCE);
+        assertTrue(clip.getMaximalRotationError() <= 2 * Constants.ANIMATION_ROTATION_TOLERANCE);
+        assertTrue(clip.getMaximalScalingError() <= 2 * Constants.ANIMATION_SCALING_TOLERANCE);
+    }
+
+    @Test
+    void bakedFramesMatchRawFrames() {
+        AnimationBaker baker = createBaker();
+
+        List<AnimatedFrame> expected = baker.bake();
+        List<AnimatedFrame> actual = new CompressedClip(baker).bake();
+
+        assertEquals(expected.size(), actual.size());
+
+        Matrix4f expectedMatrix = new Matrix4f();
+        Matrix4f actualMatrix = new Matrix4f();
+
+        for (int i = 0; i < expected.size(); i++)
+            for (int j = 0; j < expected.get(i).getJointsAmount(); j++)
+                assertTrue(expected.get(i).getJointMatrix(j, expectedMatrix)
+                        .equals(actual.get(i).getJointMatrix(j, actualMatrix), TOLERANCE), "frame " + i);
+    }
+
+    @Test
+    void compressedAnimationIsStillSampled() {
+        Animation animation = new Animation("clip", createBaker(), KEYS_AMOUNT - 1, 30, true);
+
+        assertNotNull(animation.compress());
+
+        assertNull(animation.getBaker());
+        assertTrue(animation.isBlendable());
+        assertNotNull(animation.getSkeleton());
+        assertEquals(KEYS_AMOUNT, animation.getFrames().size());
+    }
+
+    /**
+     * Create baker of a two-node clip, the root moves along a curve and the child swings and stretches.
+     *
+     * @return baker
+     */
+    private static AnimationBaker createBaker() {
+        Skeleton skeleton = new Skeleton(new String[]{"root", "child"}, new int[]{-1, 0},
+                new Matrix4f[]{new Matrix4f(), new Matrix4f().translation(0, 1, 0)}, new int[][]{{0}, {1}},
+                new Matrix4f[]{new Matrix4f(), new Matrix4f().translation(0, -1, 0)}, new Matrix4f());
+
+        float[] times = new float[KEYS_AMOUNT];
+
+        float[] rootPositions = new float[3 * KEYS_AMOUNT];
+        float[] rootRotations = new float[4 * KEYS_AMOUNT];
+        float[] childRotations = new float[4 * KEYS_AMOUNT];
+        float[] childScalings = new float[3 * KEYS_AMOUNT];
+
+        Quaternionf rotation = new Quaternionf();
+
+        for (int i = 0; i < KEYS_AMOUNT; i++) {
+            times[i] = i;
+
+            rootPositions[3 * i] = (float) Math.sin(0.05 * i);
+            rootPositions[3 * i + 1] = 0.01f * i;
+            rootPositions[3 * i + 2] = (float) Math.cos(0.05 * i);
+
+            setRotation(rootRotations, i, rotation.identity().rotateAxis(0.02f * i, 0, 1, 0));
+            setRotation(childRotations, i, rotation.identity().rotateXYZ((float) Math.sin(0.1 * i), 0,
+                    0.5f * (float) Math.cos(0.07 * i)));
+
+            childScalings[3 * i] = 1;
+            childScalings[3 * i + 1] = 1 + 0.2f * (float) Math.sin(0.1 * i);
+            childScalings[3 * i + 2] = 1;
+        }
+
+        AnimationChannel[] channels = {
+                new AnimationChannel("root", times, rootPositions, times, rootRotations, new float[0], new float[0]),
+                new AnimationChannel("child", new float[0], new float[0], times, childRotations, times, childScalings)
+        };
+
+        return new AnimationBaker(skeleton, channels);
+    }
+
+    /**
+     * Store rotation key.
+     *
+     * @param rotations rotation keys
+     * @param key       index of the key
+     * @param rotation  rotation
+     */
+    private static void setRotation(float[] rotations, int key, Quaternionf rotation) {
+        rotations[4 * key] = rotation.x;
+        rotations[4 * key + 1] = rotation.y;
+        rotations[4 * key + 2] = rotation.z;
+        rotations[4 * key + 3] = rotation.w;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.hse.engine.animation;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import ru.hse.core.utils.Constants;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JointsEncodingTest {
+    private static final float TOLERANCE = 1e-4f;
+
+    private static final int DEST_POSITION = 5;
+
+    private static final Vector3f[] POINTS = {
+            new Vector3f(0, 0, 0),
+            new Vector3f(1, 0, 0),
+            new Vector3f(0, -2, 0.5f),
+            new Vector3f(3, 1, -4)
+    };
+
+    @Test
+    void vectorsAmounts() {
+        assertEquals(4, JointsEncoding.MATRIX.getVectorsAmount());
+        assertEquals(3, JointsEncoding.AFFINE.getVectorsAmount());
+        assertEquals(2, JointsEncoding.DUAL_QUATERNION.getVectorsAmount());
+    }
+
+    @Test
+    void smallerEncodingsFitMoreJoints() {
+        int matricesAmount = JointsEncoding.MATRIX.getMaxJointsAmount(Constants.MAX_JOINT_VECTORS);
+
+        assertEquals(Constants.MAX_JOINT_VECTORS / 4, matricesAmount);
+        assertEquals(4 * matricesAmount / 3, JointsEncoding.AFFINE.getMaxJointsAmount(Constants.MAX_JOINT_VECTORS));
+        assertEquals(2 * matricesAmount,
+                JointsEncoding.DUAL_QUATERNION.getMaxJointsAmount(Constants.MAX_JOINT_VECTORS));
+    }
+
+    @Test
+    void encodingsTransformPointsAsMatrices() {
+        Matrix4f[] matrices = createRigidMatrices();
+
+        FloatBuffer jointMatrices = createJointMatrices(matrices);
+
+        for (JointsEncoding encoding : JointsEncoding.values()) {
+            FloatBuffer dest = encode(encoding, jointMatrices, matrices.length);
+
+            for (int i = 0; i < matrices.length; i++) {
+                int position = DEST_POSITION + i * encoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS;
+
+                for (Vector3f point : POINTS) {
+                    Vector3f expected = matrices[i].transformPosition(point, new Vector3f());
+                    Vector3f actual = transform(encoding, dest, position, point);
+
+                    assertTrue(expected.equals(actual, TOLERANCE),
+                            encoding + " joint " + i + ": " + expected + " " + actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dualQuaternionsAreInPositiveHemisphere() {
+        Matrix4f[] matrices = createRigidMatrices();
+
+        FloatBuffer dest = encode(JointsEncoding.DUAL_QUATERNION, createJointMatrices(matrices), matrices.length);
+
+        for (int i = 0; i < matrices.length; i++)
+            assertTrue(dest.get(DEST_POSITION + 8 * i + 3) >= 0);
+    }
+
+    @Test
+    void encodingKeepsBufferAroundJoints() {
+        Matrix4f[] matrices = createRigidMatrices();
+
+        FloatBuffer jointMatrices = createJointMatrices(matrices);
+
+        for (JointsEncoding encoding : JointsEncoding.values()) {
+            int jointsSize = matrices.length * encoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS;
+
+            FloatBuffer dest = encode(encoding, jointMatrices, matrices.length);
+
+            assertEquals(0, dest.position());
+            assertEquals(0, jointMatrices.position());
+
+            for (int i = 0; i < DEST_POSITION; i++)
+                assertEquals(-1, dest.get(i));
+
+            for (int i = DEST_POSITION + jointsSize; i < dest.capacity(); i++)
+                assertEquals(-1, dest.get(i));
+        }
+    }
+
+    /**
+     * Create rigid joint matrices, including rotations by more than a half turn.
+     *
+     * @return matrices
+     */
+    private static Matrix4f[] createRigidMatrices() {
+        return new Matrix4f[]{
+                new Matrix4f(),
+                new Matrix4f().translate(1, 2, 3),
+                new Matrix4f().rotate(new Quaternionf().rotateAxis(0.7f, 1, 1, 0)),
+                new Matrix4f().translate(-2, 0.5f, 4).rotate(new Quaternionf().rotateAxis(5.5f, 0, 0, 1)),
+                new Matrix4f().translate(0, -3, 1).rotate(new Quaternionf().rotateXYZ(2.5f, -1.2f, 3))
+        };
+    }
+
+    /**
+     * Store joint matrices in a buffer.
+     *
+     * @param matrices matrices
+     * @return buffer with 16 floats per joint
+     */
+    private static FloatBuffer createJointMatrices(Matrix4f[] matrices) {
+        FloatBuffer buffer = BufferUtils.createFloatBuffer(matrices.length * AnimatedFrame.MATRIX_SIZE_FLOATS);
+
+        for (int i = 0; i < matrices.length; i++)
+            matrices[i].get(i * AnimatedFrame.MATRIX_SIZE_FLOATS, buffer);
+
+        return buffer;
+    }
+
+    /**
+     * Encode joints after a few filled floats and leave a few filled floats after them.
+     *
+     * @param encoding      encoding
+     * @param jointMatrices joint matrices
+     * @param jointsAmount  amount of joints
+     * @return buffer with the encoded joints at {@link #DEST_POSITION}
+     */
+    private static FloatBuffer encode(JointsEncoding encoding, FloatBuffer jointMatrices, int jointsAmount) {
+        int jointsSize = jointsAmount * encoding.getVectorsAmount() * JointsEncoding.VECTOR_SIZE_FLOATS;
+
+        FloatBuffer dest = BufferUtils.createFloatBuffer(2 * DEST_POSITION + jointsSize);
+
+        for (int i = 0; i < dest.capacity(); i++)
+            dest.put(i, -1);
+
+        encoding.encode(jointMatrices, jointsAmount, dest, DEST_POSITION, new Matrix4f(), new Quaternionf());
+
+        return dest;
+    }
+
+    /**
+     * Transform point by an encoded joint the way the vertex shaders decode it.
+     *
+     * @param encoding encoding
+     * @param buffer   buffer with the encoded joint
+     * @param position index of the first float of the joint in the buffer
+     * @param point    point
+     * @return transformed point
+     */
+    private static Vector3f transform(JointsEncoding encoding, FloatBuffer buffer, int position, Vector3f point) {
+        switch (encoding) {
+            case MATRIX:
+                return new Matrix4f().set(position, buffer).transformPosition(point, new Vector3f());
+            case AFFINE:
+                return new Vector3f(dotRow(buffer, position, point), dotRow(buffer, position + 4, point),
+                        dotRow(buffer, position + 8, point));
+            default:
+                Quaternionf real = new Quaternionf(buffer.get(position), buffer.get(position + 1),
+                        buffer.get(position + 2), buffer.get(position + 3));
+                Quaternionf dual = new Quaternionf(buffer.get(position + 4), buffer.get(position + 5),
+                        buffer.get(position + 6), buffer.get(position + 7));
+
+                Quaternionf translation = dual.mul(real.conjugate(new Quaternionf()));
+
+                return real.transform(point, new Vector3f()).add(2 * translation.x, 2 * translation.y,
+                        2 * translation.z);
+        }
+    }
+
+    /**
+     * Multiply row of an affine matrix by a point.
+     *
+     * @param buffer   buffer with the row
+     * @param position index of the first float of the row in the buffer
+     * @param point    point
+     * @return transformed coordinate
+     */
+    private static float dotRow(FloatBuffer buffer, int position, Vector3f point) {
+        return buffer.get(position) * point.x + buffer.get(position + 1) * point.y
+                + buffer.get(position + 2) * point.z + buffer.get(position + 3);
+    }
+}
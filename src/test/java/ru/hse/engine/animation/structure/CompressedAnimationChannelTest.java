@@ -0,0 +1,167 @@
+package ru.hse.engine.animation.structure;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedAnimationChannelTest {
+    private static final int KEYS_AMOUNT = 60;
+
+    private static final float POSITION_TOLERANCE = 1e-3f;
+
+    private static final float ROTATION_TOLERANCE = 1e-3f;
+
+    private static final float SCALING_TOLERANCE = 1e-3f;
+
+    @Test
+    void linearTracksAreReducedToEndKeys() {
+        float[] times = createTimes();
+
+        float[] positions = new float[3 * KEYS_AMOUNT];
+        float[] rotations = new float[4 * KEYS_AMOUNT];
+        float[] scalings = new float[3 * KEYS_AMOUNT];
+
+        Quaternionf rotation = new Quaternionf();
+
+        for (int i = 0; i < KEYS_AMOUNT; i++) {
+            positions[3 * i] = 0.5f * i;
+            positions[3 * i + 1] = -0.25f * i;
+            positions[3 * i + 2] = 2;
+
+            rotation.identity().rotateAxis(0.04f * i, 0, 1, 0);
+            setRotation(rotations, i, rotation);
+
+            scalings[3 * i] = 1;
+            scalings[3 * i + 1] = 1;
+            scalings[3 * i + 2] = 1;
+        }
+
+        AnimationChannel channel = new AnimationChannel("node", times, positions, times, rotations, times,
+                scalings);
+
+        CompressedAnimationChannel compressed = CompressedAnimationChannel.compress(channel, POSITION_TOLERANCE,
+                ROTATION_TOLERANCE, SCALING_TOLERANCE);
+
+        int rawSize = Float.BYTES * (3 * times.length + positions.length + rotations.length + scalings.length);
+
+        assertEquals("node", compressed.getNodeName());
+        assertTrue(compressed.getSize() < rawSize / 10);
+
+        assertSamplesMatch(channel, compressed, 0.01f);
+    }
+
+    @Test
+    void curvedTracksAreSampledWithinTolerance() {
+        float[] times = createTimes();
+
+        float[] positions = new float[3 * KEYS_AMOUNT];
+        float[] rotations = new float[4 * KEYS_AMOUNT];
+        float[] scalings = new float[3 * KEYS_AMOUNT];
+
+        Quaternionf rotation = new Quaternionf();
+
+        for (int i = 0; i < KEYS_AMOUNT; i++) {
+            positions[3 * i] = (float) Math.sin(0.2 * i);
+            positions[3 * i + 1] = (float) Math.cos(0.1 * i);
+            positions[3 * i + 2] = 0.01f * i * i;
+
+            rotation.identity().rotateXYZ((float) Math.sin(0.1 * i), 0.05f * i, (float) Math.cos(0.15 * i));
+            setRotation(rotations, i, rotation);
+
+            scalings[3 * i] = 1 + 0.5f * (float) Math.sin(0.3 * i);
+            scalings[3 * i + 1] = 1;
+            scalings[3 * i + 2] = 2 - 0.01f * i;
+        }
+
+        AnimationChannel channel = new AnimationChannel("node", times, positions, times, rotations, times,
+                scalings);
+
+        CompressedAnimationChannel compressed = CompressedAnimationChannel.compress(channel, POSITION_TOLERANCE,
+                ROTATION_TOLERANCE, SCALING_TOLERANCE);
+
+        assertTrue(compressed.getMaximalPositionError() <= 2 * POSITION_TOLERANCE);
+        assertTrue(compressed.getMaximalRotationError() <= 2 * ROTATION_TOLERANCE);
+        assertTrue(compressed.getMaximalScalingError() <= 2 * SCALING_TOLERANCE);
+
+        assertSamplesMatch(channel, compressed, 0.01f);
+    }
+
+    @Test
+    void negativeRotationsKeepTheirOrientation() {
+        float[] times = {0, 1};
+
+        float[] rotations = new float[8];
+
+        Quaternionf rotation = new Quaternionf().rotateAxis(0.3f, 1, 0, 0);
+        setRotation(rotations, 0, new Quaternionf(-rotation.x, -rotation.y, -rotation.z, -rotation.w));
+
+        rotation.identity().rotateAxis(2.5f, 0, 0, 1);
+        setRotation(rotations, 1, new Quaternionf(-rotation.x, -rotation.y, -rotation.z, -rotation.w));
+
+        AnimationChannel channel = new AnimationChannel("node", new float[0], new float[0], times, rotations,
+                new float[0], new float[0]);
+
+        CompressedAnimationChannel compressed = CompressedAnimationChannel.compress(channel, POSITION_TOLERANCE,
+                ROTATION_TOLERANCE, SCALING_TOLERANCE);
+
+        assertTrue(compressed.getMaximalRotationError() <= ROTATION_TOLERANCE);
+
+        assertSamplesMatch(channel, compressed, 0.01f);
+    }
+
+    /**
+     * Create key times one tick apart.
+     *
+     * @return key times
+     */
+    private static float[] createTimes() {
+        float[] times = new float[KEYS_AMOUNT];
+
+        for (int i = 0; i < KEYS_AMOUNT; i++)
+            times[i] = i;
+
+        return times;
+    }
+
+    /**
+     * Store rotation key.
+     *
+     * @param rotations rotation keys
+     * @param key       index of the key
+     * @param rotation  rotation
+     */
+    private static void setRotation(float[] rotations, int key, Quaternionf rotation) {
+        rotations[4 * key] = rotation.x;
+        rotations[4 * key + 1] = rotation.y;
+        rotations[4 * key + 2] = rotation.z;
+        rotations[4 * key + 3] = rotation.w;
+    }
+
+    /**
+     * Check that the channels are sampled to close transformations at and between the keys.
+     *
+     * @param expected  original channel
+     * @param actual    compressed channel
+     * @param tolerance maximal difference of the matrices' elements
+     */
+    private static void assertSamplesMatch(SampledChannel expected, SampledChannel actual, float tolerance) {
+        int[] expectedCursors = new int[SampledChannel.CURSORS_AMOUNT];
+        int[] actualCursors = new int[SampledChannel.CURSORS_AMOUNT];
+
+        Quaternionf rotation = new Quaternionf();
+        Quaternionf targetRotation = new Quaternionf();
+
+        Matrix4f expectedMatrix = new Matrix4f();
+        Matrix4f actualMatrix = new Matrix4f();
+
+        for (float time = 0; time <= KEYS_AMOUNT; time += 0.25f) {
+            expected.sample(time, expectedCursors, 0, rotation, targetRotation, expectedMatrix);
+            actual.sample(time, actualCursors, 0, rotation, targetRotation, actualMatrix);
+
+            assertTrue(expectedMatrix.equals(actualMatrix, tolerance),
+                    "Sampled at " + time + ":\n" + expectedMatrix + "\n" + actualMatrix);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ru.hse.engine.loaders;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshOptimizerTest {
+    private static final int GRID_SIZE = 30;
+
+    private static final double MAX_ACMR = 0.75;
+
+    private static final double MAX_ATVR = 1.4;
+
+    @Test
+    void countsMissesOfSingleTriangle() {
+        assertEquals(3, MeshOptimizer.countCacheMisses(new int[]{0, 1, 2}, 3, MeshOptimizer.FIFO_CACHE_SIZE));
+    }
+
+    @Test
+    void vertexCacheOptimisationKeepsTriangles() {
+        int[] indices = createShuffledGrid();
+
+        int[] optimized = MeshOptimizer.optimizeVertexCache(indices.clone(), GRID_SIZE * GRID_SIZE);
+
+        assertEquals(sortedTriangles(indices), sortedTriangles(optimized));
+    }
+
+    @Test
+    void vertexCacheOptimisationBoundsCacheMissRatios() {
+        int verticesAmount = GRID_SIZE * GRID_SIZE;
+
+        int[] indices = createShuffledGrid();
+        int trianglesAmount = indices.length / 3;
+
+        int[] optimized = MeshOptimizer.optimizeVertexCache(indices, verticesAmount);
+
+        int missesBefore = MeshOptimizer.countCacheMisses(indices, verticesAmount, MeshOptimizer.FIFO_CACHE_SIZE);
+        int missesAfter = MeshOptimizer.countCacheMisses(optimized, verticesAmount, MeshOptimizer.FIFO_CACHE_SIZE);
+
+        assertTrue((double) missesBefore / trianglesAmount > 2 * MAX_ACMR);
+        assertTrue((double) missesAfter / trianglesAmount <= MAX_ACMR);
+        assertTrue((double) missesAfter / verticesAmount <= MAX_ATVR);
+    }
+
+    @Test
+    void vertexFetchOptimisationNumbersVerticesByFirstUse() {
+        int[] indices = {5, 2, 7, 2, 7, 0};
+        int[] original = indices.clone();
+
+        int[] remap = MeshOptimizer.optimizeVertexFetch(indices, 8);
+
+        assertArrayEquals(new int[]{0, 1, 2, 1, 2, 3}, indices);
+
+        for (int i = 0; i < original.length; i++)
+            assertEquals(remap[original[i]], indices[i]);
+
+        boolean[] used = new boolean[remap.length];
+
+        for (int newIndex : remap) {
+            assertFalse(used[newIndex]);
+
+            used[newIndex] = true;
+        }
+    }
+
+    @Test
+    void optimizationKeepsTrianglesOfMesh() {
+        int[] indices = createShuffledGrid();
+
+        int verticesAmount = GRID_SIZE * GRID_SIZE;
+
+        FloatBuffer positions = BufferUtils.createFloatBuffer(3 * verticesAmount);
+
+        for (int i = 0; i < verticesAmount; i++)
+            positions.put(i).put(0).put(0);
+
+        positions.flip();
+
+        IntBuffer indicesBuffer = BufferUtils.createIntBuffer(indices.length);
+        indicesBuffer.put(indices).flip();
+
+        MeshData meshData = new MeshData(positions, BufferUtils.createFloatBuffer(2 * verticesAmount),
+                BufferUtils.createFloatBuffer(3 * verticesAmount), indicesBuffer, null, null, 0, false);
+
+        List<MeshData> meshes = new ArrayList<>();
+        meshes.add(meshData);
+
+        MeshOptimizer.optimize(meshes);
+
+        int[] originalIndices = new int[indices.length];
+
+        for (int i = 0; i < indices.length; i++)
+            originalIndices[i] = Math.round(positions.get(3 * indicesBuffer.get(i)));
+
+        assertEquals(sortedTriangles(indices), sortedTriangles(originalIndices));
+    }
+
+    /**
+     * Create indices of a grid of two triangles per cell in a random order.
+     *
+     * @return indices
+     */
+    private static int[] createShuffledGrid() {
+        List<int[]> triangles = new ArrayList<>();
+
+        for (int y = 0; y + 1 < GRID_SIZE; y++) {
+            for (int x = 0; x + 1 < GRID_SIZE; x++) {
+                int vertex = y * GRID_SIZE + x;
+
+                triangles.add(new int[]{vertex, vertex + 1, vertex + GRID_SIZE});
+                triangles.add(new int[]{vertex + 1, vertex + GRID_SIZE + 1, vertex + GRID_SIZE});
+            }
+        }
+
+        Collections.shuffle(triangles, new Random(1));
+
+        int[] indices = new int[3 * triangles.size()];
+
+        for (int i = 0; i < triangles.size(); i++)
+            System.arraycopy(triangles.get(i), 0, indices, 3 * i, 3);
+
+        return indices;
+    }
+
+    /**
+     * List triangles rotated to start with their smallest index, so the winding is kept, in sorted order.
+     *
+     * @param indices indices
+     * @return sorted triangles
+     */
+    private static List<String> sortedTriangles(int[] indices) {
+        List<String> triangles = new ArrayList<>();
+
+        for (int i = 0; i < indices.length; i += 3) {
+            int first = indices[i] <= indices[i + 1] && indices[i] <= indices[i + 2] ? 0
+                    : indices[i + 1] <= indices[i + 2] ? 1 : 2;
+
+            triangles.add(indices[i + first] + " " + indices[i + (first + 1) % 3] + " "
+                    + indices[i + (first + 2) % 3]);
+        }
+
+        Collections.sort(triangles);
+
+        return triangles;
+    }
+}
@@ -0,0 +1,203 @@
+package ru.hse.engine.loaders;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshSimplifierTest {
+    private static final int GRID_SIZE = 30;
+
+    @Test
+    void flatGridIsSimplifiedWithoutError() {
+        MeshData meshData = createGridMesh(GRID_SIZE, 0, 0);
+
+        MeshSimplifier.createLevelsOfDetail(meshData);
+
+        assertEquals(MeshSimplifier.LEVEL_RATIOS.length, meshData.getLevelsIndices().length);
+
+        for (float error : meshData.getLevelsErrors())
+            assertEquals(0, error, 1e-3f);
+
+        checkLevels(meshData);
+
+        freeLevels(meshData);
+    }
+
+    @Test
+    void curvedGridErrorsAreBoundedByRadius() {
+        MeshData meshData = createGridMesh(GRID_SIZE, 1, 0);
+
+        MeshSimplifier.createLevelsOfDetail(meshData);
+
+        assertTrue(meshData.getLevelsIndices().length > 0);
+
+        float maxError = MeshSimplifier.MAX_RELATIVE_ERROR * calculateRadius(meshData);
+
+        float previousError = 0;
+
+        for (float error : meshData.getLevelsErrors()) {
+            assertTrue(error >= previousError);
+            assertTrue(error <= maxError);
+
+            previousError = error;
+        }
+
+        checkLevels(meshData);
+
+        freeLevels(meshData);
+    }
+
+    @Test
+    void errorBoundStopsSimplificationOfBumpyGrid() {
+        MeshData meshData = createGridMesh(GRID_SIZE, 0, 10);
+
+        MeshSimplifier.createLevelsOfDetail(meshData);
+
+        float maxError = MeshSimplifier.MAX_RELATIVE_ERROR * calculateRadius(meshData);
+
+        IntBuffer[] levelsIndices = meshData.getLevelsIndices();
+
+        int indicesAmount = meshData.getIndices().remaining();
+
+        boolean limited = levelsIndices.length < MeshSimplifier.LEVEL_RATIOS.length;
+
+        for (int i = 0; i < levelsIndices.length; i++) {
+            assertTrue(meshData.getLevelsErrors()[i] <= maxError);
+
+            if (levelsIndices[i].remaining() > MeshSimplifier.LEVEL_RATIOS[i] * indicesAmount)
+                limited = true;
+        }
+
+        assertTrue(limited);
+
+        checkLevels(meshData);
+
+        freeLevels(meshData);
+    }
+
+    @Test
+    void singleTriangleHasNoLevels() {
+        MeshData meshData = createGridMesh(2, 0, 0);
+
+        meshData.getIndices().limit(3);
+
+        MeshSimplifier.createLevelsOfDetail(meshData);
+
+        assertEquals(0, meshData.getLevelsIndices().length);
+        assertEquals(0, meshData.getLevelsErrors().length);
+    }
+
+    /**
+     * Create grid mesh data in the XY plane with vertices at integer coordinates, the grid is bent into a paraboloid
+     * along the z axis and its vertices are raised by random bumps.
+     *
+     * @param size       amount of vertices along a side
+     * @param curvature  height of the paraboloid at the grid's corners relative to the grid's size
+     * @param bumpHeight maximal height of the bumps
+     * @return mesh data which does not own its buffers
+     */
+    private static MeshData createGridMesh(int size, float curvature, float bumpHeight) {
+        int verticesAmount = size * size;
+
+        FloatBuffer positions = BufferUtils.createFloatBuffer(3 * verticesAmount);
+        FloatBuffer textCoords = BufferUtils.createFloatBuffer(2 * verticesAmount);
+        FloatBuffer normals = BufferUtils.createFloatBuffer(3 * verticesAmount);
+
+        float center = (size - 1) / 2f;
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < verticesAmount; i++) {
+            float x = i % size - center;
+            float y = i / size - center;
+
+            positions.put(i % size).put(i / size).put(curvature * (x * x + y * y) / (2 * size)
+                    + bumpHeight * random.nextFloat());
+            textCoords.put((float) (i % size) / size).put((float) (i / size) / size);
+            normals.put(0).put(0).put(1);
+        }
+
+        positions.flip();
+        textCoords.flip();
+        normals.flip();
+
+        IntBuffer indices = BufferUtils.createIntBuffer(6 * (size - 1) * (size - 1));
+
+        for (int y = 0; y + 1 < size; y++) {
+            for (int x = 0; x + 1 < size; x++) {
+                int vertex = y * size + x;
+
+                indices.put(vertex).put(vertex + 1).put(vertex + size);
+                indices.put(vertex + 1).put(vertex + size + 1).put(vertex + size);
+            }
+        }
+
+        indices.flip();
+
+        return new MeshData(positions, textCoords, normals, indices, null, null, 0, false);
+    }
+
+    /**
+     * Calculate radius of the mesh the same way the mesh's bounding radius is calculated.
+     *
+     * @param meshData mesh data
+     * @return maximal absolute coordinate
+     */
+    private static float calculateRadius(MeshData meshData) {
+        FloatBuffer positions = meshData.getPositions();
+
+        float radius = 0;
+
+        for (int i = positions.position(); i < positions.limit(); i++)
+            radius = Math.max(radius, Math.abs(positions.get(i)));
+
+        return radius;
+    }
+
+    /**
+     * Check that every level has noticeably less triangles than the previous one, references the mesh's vertices and
+     * has no degenerate triangles.
+     *
+     * @param meshData mesh data with levels of detail
+     */
+    private static void checkLevels(MeshData meshData) {
+        int verticesAmount = meshData.getPositions().remaining() / 3;
+        int previousIndicesAmount = meshData.getIndices().remaining();
+
+        for (IntBuffer levelIndices : meshData.getLevelsIndices()) {
+            assertEquals(0, levelIndices.remaining() % 3);
+            assertTrue(levelIndices.remaining() < previousIndicesAmount);
+
+            for (int i = 0; i < levelIndices.remaining(); i += 3) {
+                int a = levelIndices.get(i);
+                int b = levelIndices.get(i + 1);
+                int c = levelIndices.get(i + 2);
+
+                assertTrue(a >= 0 && a < verticesAmount);
+                assertTrue(b >= 0 && b < verticesAmount);
+                assertTrue(c >= 0 && c < verticesAmount);
+
+                assertTrue(a != b && b != c && c != a);
+            }
+
+            previousIndicesAmount = levelIndices.remaining();
+        }
+    }
+
+    /**
+     * Free the levels of detail, the test meshes do not own their buffers.
+     *
+     * @param meshData mesh data with levels of detail
+     */
+    private static void freeLevels(MeshData meshData) {
+        for (IntBuffer levelIndices : meshData.getLevelsIndices())
+            NativeMemory.free(levelIndices);
+    }
+}
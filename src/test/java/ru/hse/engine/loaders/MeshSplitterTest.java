@@ -0,0 +1,225 @@
+package ru.hse.engine.loaders;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import ru.hse.engine.utils.NativeMemory;
+import ru.hse.graphics.model.Mesh;
+import ru.hse.graphics.model.MeshData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshSplitterTest {
+    private static final int GRID_SIZE = 20;
+
+    private static final int LARGE_GRID_SIZE = 300;
+
+    private static final int MAX_VERTICES = 64;
+
+    @Test
+    void meshAddressableWith16BitIndicesIsKept() {
+        MeshData meshData = createMesh(createGridIndices(GRID_SIZE, true), GRID_SIZE * GRID_SIZE, null, null);
+
+        List<MeshData> meshes = new ArrayList<>();
+        meshes.add(meshData);
+
+        MeshSplitter.split(meshes);
+
+        assertEquals(1, meshes.size());
+        assertSame(meshData, meshes.get(0));
+    }
+
+    @Test
+    void largeMeshIsSplitFor16BitIndices() {
+        int[] indices = createGridIndices(LARGE_GRID_SIZE, false);
+
+        int verticesAmount = LARGE_GRID_SIZE * LARGE_GRID_SIZE;
+
+        assertTrue(verticesAmount > MeshSplitter.MAX_VERTICES);
+
+        List<MeshData> meshes = new ArrayList<>();
+        meshes.add(createMesh(indices, verticesAmount, null, null));
+
+        MeshSplitter.split(meshes);
+
+        assertEquals(2, meshes.size());
+
+        int indicesAmount = 0;
+
+        for (MeshData part : meshes) {
+            assertTrue(part.getPositions().remaining() / 3 <= MeshSplitter.MAX_VERTICES);
+
+            IntBuffer partIndices = part.getIndices();
+
+            for (int i = 0; i < partIndices.remaining(); i++)
+                assertTrue(partIndices.get(i) <= 0xFFFF);
+
+            indicesAmount += partIndices.remaining();
+        }
+
+        assertEquals(indices.length, indicesAmount);
+
+        free(meshes);
+    }
+
+    @Test
+    void partsAreLimitedAndKeepTrianglesInOrder() {
+        int[] indices = createGridIndices(GRID_SIZE, true);
+
+        List<MeshData> parts = MeshSplitter.split(createMesh(indices, GRID_SIZE * GRID_SIZE, null, null),
+                MAX_VERTICES);
+
+        assertTrue(parts.size() > 1);
+
+        int offset = 0;
+
+        for (MeshData part : parts) {
+            int verticesAmount = part.getPositions().remaining() / 3;
+
+            assertTrue(verticesAmount <= MAX_VERTICES);
+
+            IntBuffer partIndices = part.getIndices();
+
+            for (int i = 0; i < partIndices.remaining(); i++) {
+                int index = partIndices.get(i);
+
+                assertTrue(index >= 0 && index < verticesAmount);
+                assertEquals(indices[offset++], getVertex(part, index));
+            }
+        }
+
+        assertEquals(indices.length, offset);
+
+        free(parts);
+    }
+
+    @Test
+    void partsCopySkin() {
+        int verticesAmount = GRID_SIZE * GRID_SIZE;
+
+        IntBuffer jointIndices = BufferUtils.createIntBuffer(Mesh.MAX_WEIGHTS * verticesAmount);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(Mesh.MAX_WEIGHTS * verticesAmount);
+
+        for (int i = 0; i < verticesAmount; i++) {
+            for (int j = 0; j < Mesh.MAX_WEIGHTS; j++) {
+                jointIndices.put(i + j);
+                weights.put(j == 0 ? 1 : 0);
+            }
+        }
+
+        jointIndices.flip();
+        weights.flip();
+
+        MeshData meshData = createMesh(createGridIndices(GRID_SIZE, true), verticesAmount, jointIndices, weights);
+
+        List<MeshData> parts = MeshSplitter.split(meshData, MAX_VERTICES);
+
+        for (MeshData part : parts) {
+            for (int vertex = 0; vertex < part.getPositions().remaining() / 3; vertex++) {
+                for (int j = 0; j < Mesh.MAX_WEIGHTS; j++) {
+                    assertEquals(getVertex(part, vertex) + j,
+                            part.getJointIndices().get(Mesh.MAX_WEIGHTS * vertex + j));
+                    assertEquals(j == 0 ? 1 : 0, part.getWeights().get(Mesh.MAX_WEIGHTS * vertex + j));
+                }
+            }
+        }
+
+        free(parts);
+    }
+
+    @Test
+    void partsAreFreed() {
+        long allocationsAmount = NativeMemory.getAllocationsAmount(NativeMemory.Tag.MESH);
+
+        List<MeshData> parts = MeshSplitter.split(createMesh(createGridIndices(GRID_SIZE, true),
+                GRID_SIZE * GRID_SIZE, null, null), MAX_VERTICES);
+
+        assertTrue(NativeMemory.getAllocationsAmount(NativeMemory.Tag.MESH) > allocationsAmount);
+
+        free(parts);
+
+        assertEquals(allocationsAmount, NativeMemory.getAllocationsAmount(NativeMemory.Tag.MESH));
+    }
+
+    /**
+     * Create indices of a grid of two triangles per cell.
+     *
+     * @param size     amount of vertices along a side
+     * @param shuffled true if the triangles are taken in a random order and false if they are taken row by row
+     * @return indices
+     */
+    private static int[] createGridIndices(int size, boolean shuffled) {
+        List<int[]> triangles = new ArrayList<>();
+
+        for (int y = 0; y + 1 < size; y++) {
+            for (int x = 0; x + 1 < size; x++) {
+                int vertex = y * size + x;
+
+                triangles.add(new int[]{vertex, vertex + 1, vertex + size});
+                triangles.add(new int[]{vertex + 1, vertex + size + 1, vertex + size});
+            }
+        }
+
+        if (shuffled)
+            Collections.shuffle(triangles, new Random(1));
+
+        int[] indices = new int[3 * triangles.size()];
+
+        for (int i = 0; i < triangles.size(); i++)
+            System.arraycopy(triangles.get(i), 0, indices, 3 * i, 3);
+
+        return indices;
+    }
+
+    /**
+     * Create mesh data whose vertices store their own indices in the x coordinate.
+     *
+     * @param indices        indices
+     * @param verticesAmount amount of vertices
+     * @param jointIndices   joint indices or null
+     * @param weights        weights or null
+     * @return mesh data which does not own its buffers
+     */
+    private static MeshData createMesh(int[] indices, int verticesAmount, IntBuffer jointIndices,
+                                       FloatBuffer weights) {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(3 * verticesAmount);
+
+        for (int i = 0; i < verticesAmount; i++)
+            positions.put(i).put(0).put(0);
+
+        positions.flip();
+
+        IntBuffer indicesBuffer = BufferUtils.createIntBuffer(indices.length);
+        indicesBuffer.put(indices).flip();
+
+        return new MeshData(positions, BufferUtils.createFloatBuffer(2 * verticesAmount),
+                BufferUtils.createFloatBuffer(3 * verticesAmount), indicesBuffer, jointIndices, weights, 0, false);
+    }
+
+    /**
+     * Find index of the part's vertex in the split mesh.
+     *
+     * @param part   part of the mesh created by {@link #createMesh}
+     * @param vertex index of the vertex in the part
+     * @return index of the vertex in the split mesh
+     */
+    private static int getVertex(MeshData part, int vertex) {
+        return Math.round(part.getPositions().get(part.getPositions().position() + 3 * vertex));
+    }
+
+    /**
+     * Free the parts.
+     *
+     * @param parts parts
+     */
+    private static void free(List<MeshData> parts) {
+        for (MeshData part : parts)
+            part.free();
+    }
+}
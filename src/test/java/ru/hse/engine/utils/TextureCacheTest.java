@@ -0,0 +1,19 @@
+package ru.hse.engine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureCacheTest {
+    @Test
+    void failedDecodingIsRetried() {
+        TextureCache textureCache = TextureCache.getInstance();
+
+        String path = "missing_texture.png";
+
+        Exception first = assertThrows(Exception.class, () -> textureCache.getTexture(path));
+        Exception second = assertThrows(Exception.class, () -> textureCache.getTexture(path));
+
+        assertNotSame(first, second);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.hse.graphics.model;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+import ru.hse.engine.utils.NativeMemory;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexFormatTest {
+    private static final int WEIGHTS_OFFSET = 24;
+
+    @Test
+    void influencesAmountIsPackedInPlaceOfLastWeight() {
+        ByteBuffer vertices = pack(new int[]{3, 7, 0, 0}, new float[]{0.7f, 0.3f, 0, 0});
+
+        assertEquals(3, vertices.get(20));
+        assertEquals(7, vertices.get(21));
+
+        assertEquals(Math.round(0.3f * 255), vertices.get(WEIGHTS_OFFSET + 1) & 0xFF);
+        assertEquals(255, (vertices.get(WEIGHTS_OFFSET) & 0xFF) + (vertices.get(WEIGHTS_OFFSET + 1) & 0xFF));
+        assertEquals(0, vertices.get(WEIGHTS_OFFSET + 2));
+        assertEquals(2, vertices.get(WEIGHTS_OFFSET + 3));
+
+        NativeMemory.free(vertices);
+    }
+
+    @Test
+    void lastWeightCompletesOthersToOne() {
+        ByteBuffer vertices = pack(new int[]{1, 2, 3, 4}, new float[]{0.4f, 0.3f, 0.2f, 0.1f});
+
+        int weightsSum = 0;
+
+        for (int i = 0; i < Mesh.MAX_WEIGHTS - 1; i++)
+            weightsSum += vertices.get(WEIGHTS_OFFSET + i) & 0xFF;
+
+        assertEquals(Math.round(0.1f * 255), 255 - weightsSum);
+        assertEquals(4, vertices.get(WEIGHTS_OFFSET + 3));
+
+        NativeMemory.free(vertices);
+    }
+
+    @Test
+    void vertexWithoutInfluencesIsNotSkinned() {
+        ByteBuffer vertices = pack(new int[]{0, 0, 0, 0}, new float[]{0, 0, 0, 0});
+
+        for (int i = 0; i < Mesh.MAX_WEIGHTS; i++)
+            assertEquals(0, vertices.get(WEIGHTS_OFFSET + i));
+
+        NativeMemory.free(vertices);
+    }
+
+    /**
+     * Pack one skinned vertex at the origin.
+     *
+     * @param jointIndices joint indices of the vertex
+     * @param weights      weights of the vertex sorted by descending weight
+     * @return packed vertex allocated with NativeMemory
+     */
+    private static ByteBuffer pack(int[] jointIndices, float[] weights) {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(3);
+        FloatBuffer textCoords = BufferUtils.createFloatBuffer(2);
+        FloatBuffer normals = BufferUtils.createFloatBuffer(3);
+
+        IntBuffer jointIndicesBuffer = BufferUtils.createIntBuffer(Mesh.MAX_WEIGHTS);
+        jointIndicesBuffer.put(jointIndices).flip();
+
+        FloatBuffer weightsBuffer = BufferUtils.createFloatBuffer(Mesh.MAX_WEIGHTS);
+        weightsBuffer.put(weights).flip();
+
+        ByteBuffer vertices = VertexFormat.SKINNED.pack(positions, textCoords, normals, jointIndicesBuffer,
+                weightsBuffer);
+
+        assertEquals(VertexFormat.SKINNED.getStride(), vertices.capacity());
+
+        return vertices;
+    }
+}